@@ -1,7 +1,17 @@
+# The sources use virtual threads and other APIs of Java 21 , an older javac fails on dozens of files
+if ! javac --release 21 -version > /dev/null 2>&1; then
+    echo "Xplr needs JDK 21 or later to build , the javac on the PATH is $(javac -version 2>&1)." >&2
+    exit 1
+fi
+
 echo " Let's build the helping class.........................."
 
 javac -cp build -d build src/com/Xplr/Forensics/Models/Cluster/Cluster.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/Cluster/ClusterBuilder.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Geometry/DiskGeometry.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/BiosParameterBlock.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/FSInfoSector.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/TrackingSector.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/BootSector.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/BootSectorBuilder.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/Sector/Sector.java
@@ -11,10 +21,70 @@ javac -cp build -d build src/com/Xplr/Forensics/Models/Journal/Journal.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/Journal/JournalBuilder.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/FAT/FATEntry.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/FAT/FATEntryBuilder.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/FAT/ClusterAllocator.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/FAT/FAT.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/FAT/FATBuilder.java
-javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/VirtualDisk.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/DiskStorage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/ArrayDiskStorage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/ClusterDigest.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/ClusterPool.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/ClusterBufferPool.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/DedupDiskStorage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/FileDiskStorage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/Storage/CachedDiskStorage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ChangedBlockTracker.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/IncrementalImage.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ImportSummary.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ExportSummary.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ImportFilter.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/SpaceRegion.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/SpaceRegionHandler.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/Extent.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/MappedFile.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ClusterOwnershipIndex.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/VirtualDisk.java src/com/Xplr/Forensics/Models/VirtualDisk/ReadAheadEngine.java src/com/Xplr/Forensics/Models/VirtualDisk/ClusterChainInputStream.java
 javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/VirtualDiskBuilder.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ClusterSizeReport.java
+javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/ClusterSizeAdvisor.java
+
+echo "Let's build the analysis engines.........................."
+
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Scan/ChunkScanner.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/CarvingSignature.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/SignatureTable.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/CarvedFile.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/CarvedFileHandler.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/CarvingSummary.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Carving/FileCarver.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/AhoCorasickAutomaton.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/Keyword.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/KeywordHit.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/KeywordHitHandler.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/KeywordSearchSummary.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Search/KeywordSearcher.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Hashing/DigestSet.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Hashing/MerkleTree.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Hashing/ImageHashResult.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Hashing/ImageHasher.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/KnownFiles/BloomFilter.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/KnownFiles/KnownHashSet.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/KnownFiles/KnownFileStatus.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/KnownFiles/KnownFileFilter.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Entropy/ContentClass.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Entropy/ClusterEntropyMap.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Entropy/ClusterEntropyAnalyzer.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Strings/PrintableClassifier.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Strings/ExtractedString.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Strings/ExtractedStringHandler.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Strings/StringExtractionSummary.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Strings/StringExtractor.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Diff/FileChangeKind.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Diff/FileChange.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Diff/ImageDiffReport.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Diff/ImageDiffer.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Recovery/RecoverySource.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Recovery/RecoveryCandidate.java
+javac -cp build -d build src/com/Xplr/Forensics/Analysis/Recovery/UndeleteScanner.java
 
 # fdf
 
@@ -24,5 +94,19 @@ javac -cp build -d build src/com/Xplr/Forensics/Models/VirtualDisk/VirtualDiskBu
 echo "Let's build the Main function and cross fingers..............................."
 
 javac -cp build -d build src/com/Xplr/Forensics/Main.java
+javac -cp build -d build src/com/Xplr/Forensics/ApplyIncrement.java
+javac -cp build -d build src/com/Xplr/Forensics/ConcurrencyStress.java
+javac -cp build -d build src/com/Xplr/Forensics/AdviseClusterSize.java
+javac -cp build -d build src/com/Xplr/Forensics/CarveImage.java
+javac -cp build -d build src/com/Xplr/Forensics/SearchKeywords.java
+javac -cp build -d build src/com/Xplr/Forensics/HashImage.java
+javac -cp build -d build src/com/Xplr/Forensics/CompileHashSet.java
+javac -cp build -d build src/com/Xplr/Forensics/ClassifyFiles.java
+javac -cp build -d build src/com/Xplr/Forensics/ExtractSpace.java
+javac -cp build -d build src/com/Xplr/Forensics/EntropyMap.java
+javac -cp build -d build src/com/Xplr/Forensics/ExtractStrings.java
+javac -cp build -d build src/com/Xplr/Forensics/DiffImages.java
+javac -cp build -d build src/com/Xplr/Forensics/Undelete.java
+javac -cp build -d build src/com/Xplr/Forensics/UndeleteCheck.java
 
 # java -cp . com/Xplr/Forensics/Main
\ No newline at end of file
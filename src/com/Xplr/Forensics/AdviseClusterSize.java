@@ -0,0 +1,58 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterSizeAdvisor;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterSizeReport;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line tool recommending a cluster size for a disk , from the files of a host directory.
+ * <p>
+ * Usage : {@code AdviseClusterSize <disk size in bytes> <host directory> [sector size]}. The sizes of the files
+ * under the directory are replayed on a disk of the given size with every candidate cluster size , one line is
+ * printed per candidate and the recommended one comes last. The sector size is 512 bytes unless given , 4096
+ * replays a 4Kn disk.
+ * </p>
+ */
+public class AdviseClusterSize {
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: AdviseClusterSize <disk size in bytes> <host directory> [sector size]");
+            return;
+        }
+
+        int sectorSize = args.length == 3 ? Integer.parseInt(args[2]) : DiskGeometry.DEFAULT_SECTOR_SIZE;
+        try {
+            long[] sizes = ClusterSizeAdvisor.fileSizesOf(Paths.get(args[1]));
+            System.out.println("Replaying " + sizes.length + " files");
+            List<ClusterSizeReport> reports = new ClusterSizeAdvisor(Long.parseLong(args[0]), sectorSize).evaluate(sizes);
+            for (ClusterSizeReport report : reports) {
+                System.out.println(report);
+            }
+            ClusterSizeReport best = ClusterSizeAdvisor.recommend(reports);
+            System.out.println(best == null ? "No cluster size can hold this disk." : "Recommended cluster size: " + best.getClusterBytes() + " bytes (" + best.getSectorsPerCluster() + " sectors)");
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file found by a {@link FileCarver} : where it lies in the image , how long it is and which type it is.
+ * <p>
+ * The bytes are not copied when the file is found , they are read from the image when {@link #getData()} or
+ * {@link #writeTo(Path)} is called. The image must thus stay open , and unchanged , until the carved files are
+ * handled.
+ * </p>
+ */
+public class CarvedFile {
+
+    private final CarvingSignature signature;
+    private final DiskStorage storage;
+    private final long imageOffset;
+    private final long length;
+    private final int firstClusterId;
+    private final boolean footerFound;
+    private final String ownerFileName;
+
+    /**
+     * Constructs a carved file.
+     *
+     * @param signature      The type of the file.
+     * @param storage        The image the file was found in.
+     * @param imageOffset    The byte offset in the image of the first byte of the header.
+     * @param length         The length of the file in bytes.
+     * @param firstClusterId The cluster holding the header.
+     * @param footerFound    False if the file was cut at the maximum length or at an allocated cluster.
+     * @param ownerFileName  The file of the disk owning the first cluster , null if the cluster is unallocated.
+     */
+    public CarvedFile(CarvingSignature signature, DiskStorage storage, long imageOffset, long length, int firstClusterId, boolean footerFound,
+                      String ownerFileName) {
+        this.signature = signature;
+        this.storage = storage;
+        this.imageOffset = imageOffset;
+        this.length = length;
+        this.firstClusterId = firstClusterId;
+        this.footerFound = footerFound;
+        this.ownerFileName = ownerFileName;
+    }
+
+    /**
+     * Reads the bytes of the file from the image.
+     *
+     * @return The content of the file.
+     * @throws IllegalStateException if the file is larger than a Java array , use {@link #writeTo(Path)} then.
+     */
+    public byte[] getData() {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The carved file is too large to be held in an array.");
+        }
+        byte[] data = new byte[(int) length];
+        storage.read(imageOffset, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * Copies the file from the image to a host file , without holding it in memory.
+     *
+     * @param target The host file , created or truncated.
+     * @throws IOException If the host file cannot be written.
+     */
+    public void writeTo(Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            storage.transferTo(imageOffset, length, channel);
+        }
+    }
+
+    /**
+     * Builds a name for the file from its position , unique within an image.
+     *
+     * @return A name such as {@code 000001a2b000.jpg}.
+     */
+    public String suggestedFileName() {
+        return String.format("%012x.%s", imageOffset, signature.getExtension());
+    }
+
+    /**
+     * Retrieves the type of the file.
+     *
+     * @return The signature that recognized the file.
+     */
+    public CarvingSignature getSignature() {
+        return signature;
+    }
+
+    /**
+     * Retrieves the position of the file in the image.
+     *
+     * @return The byte offset of the first byte of the header.
+     */
+    public long getImageOffset() {
+        return imageOffset;
+    }
+
+    /**
+     * Retrieves the length of the file.
+     *
+     * @return The number of bytes carved.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Retrieves the cluster the file starts in.
+     *
+     * @return The ID of the cluster holding the header.
+     */
+    public int getFirstClusterId() {
+        return firstClusterId;
+    }
+
+    /**
+     * Tells whether the end of the file was found.
+     *
+     * @return False if the file was cut , it is then likely incomplete.
+     */
+    public boolean isFooterFound() {
+        return footerFound;
+    }
+
+    /**
+     * Retrieves the file of the disk the carved file was found in , when the whole data region is carved.
+     *
+     * @return The name of the file owning the first cluster , null if the cluster is unallocated.
+     */
+    public String getOwnerFileName() {
+        return ownerFileName;
+    }
+
+    @Override
+    public String toString() {
+        return "CarvedFile{type=" + signature.getName() + ", offset=" + imageOffset + ", length=" + length
+                + ", cluster=" + firstClusterId + ", complete=" + footerFound
+                + (ownerFileName == null ? "" : ", inside=" + ownerFileName) + "}";
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import java.io.IOException;
+
+/**
+ * Receives the files found by a {@link FileCarver}. The handler is always called from the thread that started the
+ * carving , one file at a time , so it needs no synchronization of its own.
+ */
+@FunctionalInterface
+public interface CarvedFileHandler {
+
+    /**
+     * Handles a carved file , usually by writing it to the host.
+     *
+     * @param file The carved file.
+     * @throws IOException If the file cannot be handled , the carving is then stopped.
+     */
+    void handle(CarvedFile file) throws IOException;
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import java.util.Arrays;
+
+/**
+ * Describes how a file type is recognized in raw bytes : the header it starts with , the footer it ends with and
+ * the largest size a carved file of this type may have.
+ * <p>
+ * Some formats keep a few bytes after their footer (the end of central directory of a ZIP archive holds 18
+ * bytes after its signature) , they are given as the trailer length and are carved with the file. A signature
+ * without footer carves {@link #getMaxLength()} bytes from every header it finds.
+ * </p>
+ */
+public class CarvingSignature {
+
+    private final String name;
+    private final String extension;
+    private final byte[] header;
+    private final byte[] footer;
+    private final int trailerLength;
+    private final long maxLength;
+
+    /**
+     * Constructs a signature.
+     *
+     * @param name          The name of the file type , used in the reports.
+     * @param extension     The extension given to the carved files , without the dot.
+     * @param header        The bytes every file of this type starts with.
+     * @param footer        The bytes every file of this type ends with , null if the type has no footer.
+     * @param trailerLength The number of bytes kept after the footer.
+     * @param maxLength     The largest size of a carved file , a file whose footer is not found is cut there.
+     * @throws IllegalArgumentException if the header is empty , the footer is empty , or a length is negative.
+     */
+    public CarvingSignature(String name, String extension, byte[] header, byte[] footer, int trailerLength, long maxLength) {
+        if (header == null || header.length == 0) {
+            throw new IllegalArgumentException("A carving signature needs a header.");
+        }
+        if (footer != null && footer.length == 0) {
+            throw new IllegalArgumentException("The footer of a carving signature cannot be empty , use null instead.");
+        }
+        if (trailerLength < 0 || maxLength < header.length) {
+            throw new IllegalArgumentException("Invalid lengths for the carving signature " + name);
+        }
+        this.name = name;
+        this.extension = extension;
+        this.header = header.clone();
+        this.footer = footer == null ? null : footer.clone();
+        this.trailerLength = trailerLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Tells whether the header of this signature is found at a position of a buffer.
+     *
+     * @param buffer   The bytes to look into.
+     * @param position The index of the first byte to compare.
+     * @param limit    The index following the last byte available in the buffer.
+     * @return True if the whole header fits before the limit and matches.
+     */
+    public boolean matchesHeader(byte[] buffer, int position, int limit) {
+        if (limit - position < header.length) {
+            return false;
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (buffer[position + i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the name of the file type.
+     *
+     * @return The name of the type.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the extension given to the carved files.
+     *
+     * @return The extension , without the dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Retrieves the header of the type.
+     *
+     * @return A copy of the header bytes.
+     */
+    public byte[] getHeader() {
+        return header.clone();
+    }
+
+    /**
+     * Retrieves the length of the header.
+     *
+     * @return The number of bytes of the header.
+     */
+    public int getHeaderLength() {
+        return header.length;
+    }
+
+    /**
+     * Retrieves the first byte of the header , the one the scan dispatches on.
+     *
+     * @return The first header byte.
+     */
+    public byte getFirstHeaderByte() {
+        return header[0];
+    }
+
+    /**
+     * Retrieves the footer of the type.
+     *
+     * @return A copy of the footer bytes , null if the type has no footer.
+     */
+    public byte[] getFooter() {
+        return footer == null ? null : footer.clone();
+    }
+
+    /**
+     * Tells whether the type has a footer.
+     *
+     * @return True if the end of a file can be found.
+     */
+    public boolean hasFooter() {
+        return footer != null;
+    }
+
+    /**
+     * Retrieves the number of bytes kept after the footer.
+     *
+     * @return The trailer length.
+     */
+    public int getTrailerLength() {
+        return trailerLength;
+    }
+
+    /**
+     * Retrieves the largest size of a carved file.
+     *
+     * @return The maximum length in bytes.
+     */
+    public long getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public String toString() {
+        return "CarvingSignature{name=" + name + ", extension=" + extension + ", header=" + Arrays.toString(header)
+                + ", footer=" + Arrays.toString(footer) + ", trailer=" + trailerLength + ", maxLength=" + maxLength + "}";
+    }
+}
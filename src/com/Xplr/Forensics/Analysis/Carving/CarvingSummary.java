@@ -0,0 +1,111 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of {@link FileCarver#carve(CarvedFileHandler)} : how many files were carved , of which types , how
+ * many bytes were scanned and how long it took.
+ */
+public class CarvingSummary {
+
+    private final long filesCarved;
+    private final long incompleteFiles;
+    private final long bytesScanned;
+    private final long elapsedNanos;
+    private final Map<String, Long> filesPerType;
+
+    /**
+     * Constructs the summary of a carving.
+     *
+     * @param filesCarved     The number of files handed to the handler.
+     * @param incompleteFiles The number of those files whose footer was not found.
+     * @param bytesScanned    The number of bytes of the image scanned for headers.
+     * @param elapsedNanos    The duration of the whole carving in nanoseconds.
+     * @param filesPerType    The number of files carved for each signature name.
+     */
+    public CarvingSummary(long filesCarved, long incompleteFiles, long bytesScanned, long elapsedNanos, Map<String, Long> filesPerType) {
+        this.filesCarved = filesCarved;
+        this.incompleteFiles = incompleteFiles;
+        this.bytesScanned = bytesScanned;
+        this.elapsedNanos = elapsedNanos;
+        this.filesPerType = Collections.unmodifiableMap(new TreeMap<>(filesPerType));
+    }
+
+    /**
+     * Retrieves the number of files carved.
+     *
+     * @return The number of files handed to the handler.
+     */
+    public long getFilesCarved() {
+        return filesCarved;
+    }
+
+    /**
+     * Retrieves the number of files cut before their footer.
+     *
+     * @return The number of likely incomplete files.
+     */
+    public long getIncompleteFiles() {
+        return incompleteFiles;
+    }
+
+    /**
+     * Retrieves the number of bytes scanned.
+     *
+     * @return The bytes of the image looked at for headers.
+     */
+    public long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    /**
+     * Retrieves the duration of the carving.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the number of files carved for each type.
+     *
+     * @return The counts , by signature name.
+     */
+    public Map<String, Long> getFilesPerType() {
+        return filesPerType;
+    }
+
+    /**
+     * Computes the scan throughput.
+     *
+     * @return The number of bytes scanned per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesScanned * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CarvingSummary{files=%d, incomplete=%d, types=%s, scanned=%d, seconds=%.2f, MB/s=%.1f}",
+                filesCarved, incompleteFiles, filesPerType, bytesScanned, elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.FAT.ClusterAllocator;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterOwnershipIndex;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recovers files from the raw bytes of a disk by looking for the headers and footers of known file types.
+ * <p>
+ * The data region is split into chunks of clusters , scanned in parallel by a {@link ForkJoinPool} through the
+ * {@link ChunkScanner} pipeline. Each chunk is
+ * read with a few bytes of the next one , as many as the longest header minus one , so that a header crossing a
+ * chunk boundary is still found , and found once : only the chunk it starts in reports it. From every header the
+ * carver looks forward for the footer of its type , and hands the carved file to a bounded queue ; the thread that
+ * started the carving drains the queue into a {@link CarvedFileHandler}. A slow handler thus slows the scan down
+ * instead of piling up carved files in memory.
+ * </p>
+ *
+ * <p>
+ * By default only the clusters the Main FAT marks as free are scanned : the files still on the disk are read
+ * through the journal , what is worth carving lies in the unallocated space. A carved file then stops at the first
+ * allocated cluster , since the data of a deleted file cannot have survived in a cluster handed out again. Headers
+ * are only looked for at sector boundaries by default , where a file system puts the start of every file ; an
+ * alignment of 1 also finds the files embedded in other files , at a much higher cost.
+ * </p>
+ *
+ * <p>
+ * The carver reads the image through the storage of the disk without taking its locks : the disk must not be
+ * written while it is carved.
+ * </p>
+ */
+public class FileCarver {
+
+    /**
+     * The number of carved files the queue holds before the scan waits for the handler.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * The number of bytes read at once while looking for a footer.
+     */
+    private static final int FOOTER_WINDOW_BYTES = 1024 * 1024;
+
+    private final DiskStorage storage;
+    private final DiskGeometry geometry;
+    private final ClusterAllocator allocator;
+    private final ClusterOwnershipIndex owners;
+    private final SignatureTable table;
+    private final boolean unallocatedOnly;
+    private final int alignment;
+    private final int parallelism;
+    private final int chunkClusters;
+
+    /**
+     * Constructs a carver scanning the unallocated clusters of a disk , at sector boundaries , on every core.
+     *
+     * @param disk  The disk to carve.
+     * @param table The file types to look for.
+     */
+    public FileCarver(VirtualDisk disk, SignatureTable table) {
+        this(disk, table, true, disk.getSectorSize(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a carver.
+     *
+     * @param disk            The disk to carve.
+     * @param table           The file types to look for.
+     * @param unallocatedOnly True to only scan the clusters the Main FAT marks as free , false to scan the whole data region.
+     * @param alignment       The alignment in bytes of the headers in the image , 1 to look at every byte.
+     * @param parallelism     The number of threads scanning the image.
+     * @throws IllegalArgumentException if the table is empty , or the alignment or the parallelism is not strictly positive.
+     */
+    public FileCarver(VirtualDisk disk, SignatureTable table, boolean unallocatedOnly, int alignment, int parallelism) {
+        if (table.getSignatures().isEmpty()) {
+            throw new IllegalArgumentException("The signature table is empty , there is nothing to carve.");
+        }
+        if (alignment <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("The alignment and the parallelism must be strictly positive.");
+        }
+        this.storage = disk.getStorage();
+        this.geometry = disk.getGeometry();
+        this.allocator = disk.getMain().getAllocator();
+        this.owners = disk.getOwnershipIndex();
+        this.table = table;
+        this.unallocatedOnly = unallocatedOnly;
+        this.alignment = alignment;
+        this.parallelism = parallelism;
+        this.chunkClusters = ChunkScanner.chunkClusters(geometry.getClusterBytes());
+    }
+
+    /**
+     * Scans the disk and hands every carved file to a handler , in no particular order.
+     *
+     * @param handler Receives the carved files , always from the calling thread.
+     * @return The summary of the carving.
+     * @throws IOException If the image cannot be read , or if the handler fails ; the scan is stopped then.
+     */
+    public CarvingSummary carve(CarvedFileHandler handler) throws IOException {
+        long start = System.nanoTime();
+        LongAdder bytesScanned = new LongAdder();
+        long[] counts = new long[2]; // The files carved , then the ones whose footer was not found
+        Map<String, Long> filesPerType = new HashMap<>();
+        ChunkScanner.<CarvedFile>scan(DiskGeometry.FIRST_CLUSTER, DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount(), chunkClusters,
+                parallelism, DEFAULT_QUEUE_CAPACITY,
+                (from, to, out) -> new ChunkCarver(out, bytesScanned).scanChunk((int) from, (int) to),
+                file -> {
+                    handler.handle(file);
+                    counts[0]++;
+                    if (!file.isFooterFound()) {
+                        counts[1]++;
+                    }
+                    filesPerType.merge(file.getSignature().getName(), 1L, Long::sum);
+                }, "carving");
+        return new CarvingSummary(counts[0], counts[1], bytesScanned.sum(), System.nanoTime() - start, filesPerType);
+    }
+
+    /**
+     * Carves the files whose header lies in one chunk of clusters.
+     */
+    private final class ChunkCarver {
+
+        private final ChunkScanner.Emitter<CarvedFile> out;
+        private final LongAdder bytesScanned;
+
+        private byte[] footerWindow;
+
+        private ChunkCarver(ChunkScanner.Emitter<CarvedFile> out, LongAdder bytesScanned) {
+            this.out = out;
+            this.bytesScanned = bytesScanned;
+        }
+
+        /**
+         * Walks the chunk run by run , a run being a sequence of clusters we have to scan.
+         */
+        private void scanChunk(int firstCluster, int endCluster) {
+            int cluster = firstCluster;
+            while (cluster < endCluster && !out.isCancelled()) {
+                if (unallocatedOnly && allocator.isUsed(cluster)) {
+                    cluster++;
+                    continue;
+                }
+                int runEnd = cluster + 1;
+                while (runEnd < endCluster && !(unallocatedOnly && allocator.isUsed(runEnd))) {
+                    runEnd++;
+                }
+                scanRun(cluster, runEnd);
+                cluster = runEnd;
+            }
+        }
+
+        /**
+         * Looks for headers in a run of clusters , the bytes following the run are read as the overlap.
+         */
+        private void scanRun(int runStart, int runEnd) {
+            long start = geometry.clusterToByteOffset(runStart);
+            long end = geometry.clusterToByteOffset(runEnd - 1) + geometry.getClusterBytes();
+            int overlap = (int) Math.min(table.getLongestHeader() - 1, storage.size() - end);
+            byte[] bytes = new byte[(int) (end - start) + overlap];
+            storage.read(start, bytes, 0, bytes.length);
+            bytesScanned.add(end - start);
+
+            int scanned = (int) (end - start); // Only the headers starting in the run belong to this chunk
+            int position = (int) ((alignment - start % alignment) % alignment);
+            while (position < scanned) {
+                if (alignment == 1 && !table.startsSomeHeader(bytes[position])) {
+                    position++; // The fast path , most bytes start no header at all
+                    continue;
+                }
+                CarvingSignature signature = table.match(bytes, position, bytes.length);
+                if (signature != null) {
+                    carveFrom(signature, start + position);
+                    if (out.isCancelled()) {
+                        return;
+                    }
+                }
+                position += alignment;
+            }
+        }
+
+        /**
+         * Finds the end of a file whose header was found , then hands the file to the queue.
+         */
+        private void carveFrom(CarvingSignature signature, long headerOffset) {
+            int headerCluster = geometry.byteOffsetToCluster(headerOffset);
+            long limit = Math.min(storage.size(), headerOffset + signature.getMaxLength());
+            if (unallocatedOnly) {
+                // The file cannot go on past the free clusters following its header
+                int cluster = headerCluster + 1;
+                int lastCluster = DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount();
+                while (cluster < lastCluster && !allocator.isUsed(cluster) && geometry.clusterToByteOffset(cluster) < limit) {
+                    cluster++;
+                }
+                limit = Math.min(limit, geometry.clusterToByteOffset(cluster - 1) + geometry.getClusterBytes());
+            }
+
+            long length = limit - headerOffset;
+            boolean footerFound = false;
+            if (signature.hasFooter()) {
+                long footerOffset = findFooter(signature.getFooter(), headerOffset + signature.getHeaderLength(), limit);
+                if (footerOffset >= 0) {
+                    length = Math.min(limit, footerOffset + signature.getFooter().length + signature.getTrailerLength()) - headerOffset;
+                    footerFound = true;
+                }
+            }
+            JournalEntry owner = owners.ownerOf(headerCluster); // Only the carving of the whole data region finds files inside other files
+            out.emit(new CarvedFile(signature, storage, headerOffset, length, headerCluster, footerFound, owner == null ? null : owner.getFileName()));
+        }
+
+        /**
+         * Looks for a footer between two offsets of the image , window by window.
+         *
+         * @return The offset of the first byte of the footer , -1 if it is not there.
+         */
+        private long findFooter(byte[] footer, long from, long limit) {
+            if (footerWindow == null) {
+                footerWindow = new byte[FOOTER_WINDOW_BYTES];
+            }
+            long position = from;
+            while (limit - position >= footer.length) {
+                int length = (int) Math.min(footerWindow.length, limit - position);
+                storage.read(position, footerWindow, 0, length);
+                int last = length - footer.length;
+                for (int i = 0; i <= last; i++) {
+                    if (footerWindow[i] != footer[0]) {
+                        continue;
+                    }
+                    int j = 1;
+                    while (j < footer.length && footerWindow[i + j] == footer[j]) {
+                        j++;
+                    }
+                    if (j == footer.length) {
+                        return position + i;
+                    }
+                }
+                if (position + length >= limit) {
+                    break;
+                }
+                position += last + 1; // The windows overlap , a footer crossing two of them is still found
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Carving;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The set of file types a {@link FileCarver} looks for.
+ * <p>
+ * The signatures are indexed by the first byte of their header , so that the scan only compares the headers
+ * that can start with the byte it is looking at : with a dozen types , most bytes of an image match none of them
+ * and cost a single array lookup. The table is filled before the carving starts and must not change during it.
+ * </p>
+ */
+public class SignatureTable {
+
+    private final List<CarvingSignature> signatures = new ArrayList<>();
+
+    /**
+     * The signatures whose header starts with each byte value , null for the values no header starts with.
+     */
+    @SuppressWarnings("unchecked")
+    private final List<CarvingSignature>[] byFirstByte = (List<CarvingSignature>[]) new List<?>[256];
+
+    private int longestHeader;
+
+    /**
+     * Constructs an empty table.
+     */
+    public SignatureTable() {
+    }
+
+    /**
+     * Builds the table of the common types : JPEG , PNG , GIF , PDF and ZIP (which also covers the office
+     * documents and the jar files).
+     *
+     * @return A new table holding the default signatures.
+     */
+    public static SignatureTable defaultTable() {
+        SignatureTable table = new SignatureTable();
+        table.add(new CarvingSignature("JPEG", "jpg", bytes(0xFF, 0xD8, 0xFF), bytes(0xFF, 0xD9), 0, 20L * 1024 * 1024));
+        table.add(new CarvingSignature("PNG", "png", bytes(0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A),
+                bytes(0x49, 0x45, 0x4E, 0x44, 0xAE, 0x42, 0x60, 0x82), 0, 20L * 1024 * 1024));
+        table.add(new CarvingSignature("GIF", "gif", ascii("GIF89a"), bytes(0x00, 0x3B), 0, 10L * 1024 * 1024));
+        table.add(new CarvingSignature("GIF", "gif", ascii("GIF87a"), bytes(0x00, 0x3B), 0, 10L * 1024 * 1024));
+        table.add(new CarvingSignature("PDF", "pdf", ascii("%PDF-"), ascii("%%EOF"), 0, 64L * 1024 * 1024));
+        table.add(new CarvingSignature("ZIP", "zip", bytes(0x50, 0x4B, 0x03, 0x04), bytes(0x50, 0x4B, 0x05, 0x06), 18, 64L * 1024 * 1024));
+        return table;
+    }
+
+    /**
+     * Adds a signature to the table.
+     *
+     * @param signature The signature to look for.
+     * @return This table , for chaining.
+     */
+    public SignatureTable add(CarvingSignature signature) {
+        signatures.add(signature);
+        int first = signature.getFirstHeaderByte() & 0xFF;
+        if (byFirstByte[first] == null) {
+            byFirstByte[first] = new ArrayList<>();
+        }
+        byFirstByte[first].add(signature);
+        longestHeader = Math.max(longestHeader, signature.getHeaderLength());
+        return this;
+    }
+
+    /**
+     * Finds the signature whose header is found at a position of a buffer.
+     *
+     * @param buffer   The bytes to look into.
+     * @param position The index of the first byte to compare.
+     * @param limit    The index following the last byte available in the buffer.
+     * @return The first matching signature , in the order they were added , null if none matches.
+     */
+    public CarvingSignature match(byte[] buffer, int position, int limit) {
+        List<CarvingSignature> candidates = byFirstByte[buffer[position] & 0xFF];
+        if (candidates == null) {
+            return null;
+        }
+        for (CarvingSignature signature : candidates) {
+            if (signature.matchesHeader(buffer, position, limit)) {
+                return signature;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether some header starts with a byte value.
+     *
+     * @param value The byte value.
+     * @return True if the scan must compare the headers at a byte of this value.
+     */
+    public boolean startsSomeHeader(byte value) {
+        return byFirstByte[value & 0xFF] != null;
+    }
+
+    /**
+     * Retrieves the signatures of the table.
+     *
+     * @return The signatures , in the order they were added.
+     */
+    public List<CarvingSignature> getSignatures() {
+        return Collections.unmodifiableList(signatures);
+    }
+
+    /**
+     * Retrieves the length of the longest header , the overlap two adjacent chunks need.
+     *
+     * @return The number of bytes of the longest header , 0 for an empty table.
+     */
+    public int getLongestHeader() {
+        return longestHeader;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Diff;
+
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+
+/**
+ * A file that differs between two images , with its directory entry in each of them.
+ */
+public class FileChange {
+
+    private final String fileName;
+    private final FileChangeKind kind;
+    private final JournalEntry before;
+    private final JournalEntry after;
+    private final int changedClusters;
+
+    /**
+     * Constructs a change.
+     *
+     * @param fileName        The name of the file.
+     * @param kind            How the file differs.
+     * @param before          The entry of the file in the earlier image , null if it was added.
+     * @param after           The entry of the file in the later image , null if it was removed.
+     * @param changedClusters The number of clusters of the file whose bytes differ.
+     */
+    public FileChange(String fileName, FileChangeKind kind, JournalEntry before, JournalEntry after, int changedClusters) {
+        this.fileName = fileName;
+        this.kind = kind;
+        this.before = before;
+        this.after = after;
+        this.changedClusters = changedClusters;
+    }
+
+    /**
+     * Retrieves the name of the file.
+     *
+     * @return The file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Retrieves how the file differs.
+     *
+     * @return The kind of change.
+     */
+    public FileChangeKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Retrieves the entry of the file in the earlier image.
+     *
+     * @return The journal entry , null if the file was added.
+     */
+    public JournalEntry getBefore() {
+        return before;
+    }
+
+    /**
+     * Retrieves the entry of the file in the later image.
+     *
+     * @return The journal entry , null if the file was removed.
+     */
+    public JournalEntry getAfter() {
+        return after;
+    }
+
+    /**
+     * Retrieves the number of clusters of the file whose bytes differ , in either image.
+     *
+     * @return The number of changed clusters owned by the file.
+     */
+    public int getChangedClusters() {
+        return changedClusters;
+    }
+
+    @Override
+    public String toString() {
+        return "FileChange{file=" + fileName + ", kind=" + kind + ", changedClusters=" + changedClusters + "}";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Diff;
+
+/**
+ * How a file differs between two images.
+ */
+public enum FileChangeKind {
+
+    /**
+     * The file is only in the later image.
+     */
+    ADDED,
+
+    /**
+     * The file is only in the earlier image.
+     */
+    REMOVED,
+
+    /**
+     * The content of the file differs.
+     */
+    MODIFIED,
+
+    /**
+     * The content is the same but the directory entry differs : its dates , or the clusters holding it.
+     */
+    METADATA_ONLY
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Diff;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link ImageDiffer#diff()} : the files that differ between two images , and where the bytes of the
+ * images differ below the files , in the reserved sectors , the allocation tables and the data clusters.
+ */
+public class ImageDiffReport {
+
+    private final List<FileChange> fileChanges;
+    private final BitSet changedClusters;
+    private final BitSet changedFatEntries;
+    private final BitSet changedReservedSectors;
+    private final int unallocatedChangedClusters;
+    private final int unownedChangedClusters;
+    private final long bytesCompared;
+    private final int chunksSkipped;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs a report.
+     *
+     * @param fileChanges                The files that differ , in the order of the journal of the later image.
+     * @param changedClusters            The data clusters whose bytes differ.
+     * @param changedFatEntries          The clusters whose entry differs in one of the allocation tables.
+     * @param changedReservedSectors     The sectors outside the allocation tables and the data region whose bytes differ.
+     * @param unallocatedChangedClusters The changed clusters that are free in the later image.
+     * @param unownedChangedClusters     The changed clusters in use in the later image but owned by no file , the journal for instance.
+     * @param bytesCompared              The number of bytes read from each image.
+     * @param chunksSkipped              The number of chunks found equal through their hashes , without being read.
+     * @param elapsedNanos               The duration of the comparison in nanoseconds.
+     */
+    public ImageDiffReport(List<FileChange> fileChanges, BitSet changedClusters, BitSet changedFatEntries, BitSet changedReservedSectors,
+                           int unallocatedChangedClusters, int unownedChangedClusters, long bytesCompared, int chunksSkipped, long elapsedNanos) {
+        this.fileChanges = Collections.unmodifiableList(new ArrayList<>(fileChanges));
+        this.changedClusters = (BitSet) changedClusters.clone();
+        this.changedFatEntries = (BitSet) changedFatEntries.clone();
+        this.changedReservedSectors = (BitSet) changedReservedSectors.clone();
+        this.unallocatedChangedClusters = unallocatedChangedClusters;
+        this.unownedChangedClusters = unownedChangedClusters;
+        this.bytesCompared = bytesCompared;
+        this.chunksSkipped = chunksSkipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Retrieves the files that differ.
+     *
+     * @return The changes , in the order of the journal of the later image followed by the removed files.
+     */
+    public List<FileChange> getFileChanges() {
+        return fileChanges;
+    }
+
+    /**
+     * Retrieves the files that differ in a given way.
+     *
+     * @param kind The kind of change.
+     * @return The changes of that kind.
+     */
+    public List<FileChange> getFileChanges(FileChangeKind kind) {
+        List<FileChange> changes = new ArrayList<>();
+        for (FileChange change : fileChanges) {
+            if (change.getKind() == kind) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Tells whether the two images hold the same bytes.
+     *
+     * @return True if no byte differs.
+     */
+    public boolean isIdentical() {
+        return changedClusters.isEmpty() && changedFatEntries.isEmpty() && changedReservedSectors.isEmpty();
+    }
+
+    /**
+     * Retrieves the data clusters whose bytes differ.
+     *
+     * @return A copy of the set , indexed by cluster id.
+     */
+    public BitSet getChangedClusters() {
+        return (BitSet) changedClusters.clone();
+    }
+
+    /**
+     * Retrieves the clusters whose entry differs in one of the allocation tables.
+     *
+     * @return A copy of the set , indexed by cluster id.
+     */
+    public BitSet getChangedFatEntries() {
+        return (BitSet) changedFatEntries.clone();
+    }
+
+    /**
+     * Retrieves the sectors outside the allocation tables and the data region whose bytes differ , the boot sector
+     * and the FSInfo sector among them.
+     *
+     * @return A copy of the set , indexed by sector number.
+     */
+    public BitSet getChangedReservedSectors() {
+        return (BitSet) changedReservedSectors.clone();
+    }
+
+    /**
+     * Retrieves the number of changed clusters that are free in the later image , freed or wiped space.
+     *
+     * @return The number of unallocated changed clusters.
+     */
+    public int getUnallocatedChangedClusters() {
+        return unallocatedChangedClusters;
+    }
+
+    /**
+     * Retrieves the number of changed clusters in use in the later image but owned by no file , such as the journal.
+     *
+     * @return The number of unowned changed clusters.
+     */
+    public int getUnownedChangedClusters() {
+        return unownedChangedClusters;
+    }
+
+    /**
+     * Retrieves the number of bytes read from each image.
+     *
+     * @return The number of bytes compared.
+     */
+    public long getBytesCompared() {
+        return bytesCompared;
+    }
+
+    /**
+     * Retrieves the number of chunks found equal through their hashes without being read.
+     *
+     * @return The number of skipped chunks.
+     */
+    public int getChunksSkipped() {
+        return chunksSkipped;
+    }
+
+    /**
+     * Retrieves the duration of the comparison.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Computes the comparison throughput.
+     *
+     * @return The number of bytes compared per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesCompared * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImageDiffReport{added=%d, removed=%d, modified=%d, metadataOnly=%d, changedClusters=%d, changedFatEntries=%d, "
+                        + "changedReservedSectors=%d, unallocatedChangedClusters=%d, unownedChangedClusters=%d, bytesCompared=%d, chunksSkipped=%d, "
+                        + "seconds=%.2f, MB/s=%.1f}",
+                getFileChanges(FileChangeKind.ADDED).size(), getFileChanges(FileChangeKind.REMOVED).size(),
+                getFileChanges(FileChangeKind.MODIFIED).size(), getFileChanges(FileChangeKind.METADATA_ONLY).size(),
+                changedClusters.cardinality(), changedFatEntries.cardinality(), changedReservedSectors.cardinality(),
+                unallocatedChangedClusters, unownedChangedClusters, bytesCompared, chunksSkipped,
+                elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
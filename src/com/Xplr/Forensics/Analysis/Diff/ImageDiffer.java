@@ -0,0 +1,349 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Diff;
+
+import com.Xplr.Forensics.Analysis.Hashing.MerkleTree;
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterOwnershipIndex;
+import com.Xplr.Forensics.Models.VirtualDisk.Extent;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares two images of the same geometry , two acquisitions of a disk or a disk and its later snapshot , and tells
+ * which files were added , removed , modified or only touched in between.
+ * <p>
+ * The images are cut in chunks compared in parallel by a {@link ForkJoinPool} , through
+ * {@link ChunkScanner#forEachChunk} : both chunks are mapped through
+ * {@link DiskStorage#map(long, int)} and compared with {@link ByteBuffer#mismatch(ByteBuffer)} , many bytes at a time
+ * and without any copy when the storage exposes its bytes in place. Every mismatch is placed in the layout of the
+ * disk , a reserved sector , an entry of an allocation table or a data cluster , and the comparison resumes at the
+ * end of that sector , entry or cluster : a chunk costs one pass over its bytes whatever the number of changes.
+ * When the {@link MerkleTree}s of both images are known , the chunks whose hashes are equal are not read at all.
+ * </p>
+ *
+ * <p>
+ * The changed clusters are then given to the files owning them in either image through the
+ * {@link ClusterOwnershipIndex} of each disk , and the journals are compared entry by entry. A file whose clusters
+ * were moved is compared through its content , so that a relocated but equal file is only reported as a change of
+ * its metadata. Neither disk should be written during the comparison.
+ * </p>
+ */
+public class ImageDiffer {
+
+    /**
+     * The size of the buffers used to compare the content of a relocated file.
+     */
+    private static final int COMPARE_BUFFER_BYTES = 1024 * 1024;
+
+    private final VirtualDisk before;
+    private final VirtualDisk after;
+    private final DiskGeometry geometry;
+    private final int parallelism;
+    private final long imageSize;
+    private final long[] fatStarts;
+    private final long fatBytes;
+
+    /**
+     * Constructs a differ using every core.
+     *
+     * @param before The earlier image.
+     * @param after  The later image.
+     * @throws IllegalArgumentException if the images do not share the same geometry.
+     */
+    public ImageDiffer(VirtualDisk before, VirtualDisk after) {
+        this(before, after, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a differ.
+     *
+     * @param before      The earlier image.
+     * @param after       The later image.
+     * @param parallelism The number of threads comparing the chunks.
+     * @throws IllegalArgumentException if the images do not share the same geometry or the parallelism is not strictly positive.
+     */
+    public ImageDiffer(VirtualDisk before, VirtualDisk after, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be strictly positive.");
+        }
+        if (!before.getGeometry().equals(after.getGeometry()) || before.getStorage().size() != after.getStorage().size()) {
+            throw new IllegalArgumentException("The images do not share the same geometry.");
+        }
+        this.before = before;
+        this.after = after;
+        this.geometry = after.getGeometry();
+        this.parallelism = parallelism;
+        this.imageSize = after.getStorage().size();
+        this.fatStarts = new long[DiskGeometry.FAT_COUNT];
+        for (int fat = 0; fat < fatStarts.length; fat++) {
+            fatStarts[fat] = geometry.lbaToByteOffset(geometry.getFatLba(fat));
+        }
+        this.fatBytes = geometry.getFatSizeInBytes();
+    }
+
+    /**
+     * Compares every byte of the two images.
+     *
+     * @return The report of the differences.
+     * @throws IOException If an image cannot be read.
+     */
+    public ImageDiffReport diff() throws IOException {
+        return diff(null, null);
+    }
+
+    /**
+     * Compares the two images , skipping the chunks whose hashes are equal in both trees.
+     * The trees must be up to date with the images , such as those of {@link com.Xplr.Forensics.Analysis.Hashing.ImageHasher}
+     * refreshed after the last change.
+     *
+     * @param beforeTree The hash tree of the earlier image , null to compare every chunk.
+     * @param afterTree  The hash tree of the later image , null to compare every chunk.
+     * @return The report of the differences.
+     * @throws IOException If an image cannot be read.
+     * @throws IllegalArgumentException if the trees do not cover the images with the same chunks.
+     */
+    public ImageDiffReport diff(MerkleTree beforeTree, MerkleTree afterTree) throws IOException {
+        boolean useTrees = beforeTree != null && afterTree != null;
+        if (useTrees && (beforeTree.getChunkSize() != afterTree.getChunkSize()
+                || beforeTree.getImageSize() != imageSize || afterTree.getImageSize() != imageSize)) {
+            throw new IllegalArgumentException("The hash trees do not cover the images with the same chunks.");
+        }
+        long start = System.nanoTime();
+        int chunkSize = useTrees ? beforeTree.getChunkSize() : ChunkScanner.CHUNK_BYTES; // The trees fix the chunks they hashed
+        int chunkCount = (int) ((imageSize + chunkSize - 1) / chunkSize);
+        Changes changes = new Changes();
+        ChunkScanner.forEachChunk(0, chunkCount, 1, parallelism, (from, to, out) -> compareChunk((int) from, chunkSize,
+                useTrees ? beforeTree : null, useTrees ? afterTree : null, changes), "comparison");
+        return report(changes, start);
+    }
+
+    /**
+     * Gives the changed clusters to the files owning them and compares the journals of the images.
+     */
+    private ImageDiffReport report(Changes changes, long start) throws IOException {
+        ClusterOwnershipIndex beforeOwners = before.getOwnershipIndex();
+        ClusterOwnershipIndex afterOwners = after.getOwnershipIndex();
+        Map<String, Integer> changedByFile = new HashMap<>();
+        int unallocated = 0;
+        int unowned = 0;
+        for (int cluster = changes.clusters.nextSetBit(0); cluster >= 0; cluster = changes.clusters.nextSetBit(cluster + 1)) {
+            JournalEntry beforeOwner = beforeOwners.ownerOf(cluster);
+            JournalEntry afterOwner = afterOwners.ownerOf(cluster);
+            if (afterOwner != null) {
+                changedByFile.merge(afterOwner.getFileName(), 1, Integer::sum);
+            } else if (after.getMain().getAllocator().isUsed(cluster)) {
+                unowned++;
+            } else {
+                unallocated++;
+            }
+            if (beforeOwner != null && (afterOwner == null || !beforeOwner.getFileName().equals(afterOwner.getFileName()))) {
+                changedByFile.merge(beforeOwner.getFileName(), 1, Integer::sum);
+            }
+        }
+
+        Map<String, JournalEntry> beforeEntries = new LinkedHashMap<>();
+        for (JournalEntry entry : before.getRootDirectory().getEntries()) {
+            beforeEntries.put(entry.getFileName(), entry);
+        }
+        List<FileChange> fileChanges = new ArrayList<>();
+        for (JournalEntry afterEntry : after.getRootDirectory().getEntries()) {
+            String name = afterEntry.getFileName();
+            JournalEntry beforeEntry = beforeEntries.remove(name);
+            int changed = changedByFile.getOrDefault(name, 0);
+            if (beforeEntry == null) {
+                fileChanges.add(new FileChange(name, FileChangeKind.ADDED, null, afterEntry, changed));
+                continue;
+            }
+            FileChangeKind kind = compareFile(name, beforeEntry, afterEntry, changed);
+            if (kind != null) {
+                fileChanges.add(new FileChange(name, kind, beforeEntry, afterEntry, changed));
+            }
+        }
+        for (JournalEntry beforeEntry : beforeEntries.values()) {
+            String name = beforeEntry.getFileName();
+            fileChanges.add(new FileChange(name, FileChangeKind.REMOVED, beforeEntry, null, changedByFile.getOrDefault(name, 0)));
+        }
+        return new ImageDiffReport(fileChanges, changes.clusters, changes.fatEntries, changes.reservedSectors, unallocated, unowned,
+                changes.bytesCompared.sum(), changes.chunksSkipped.intValue(), System.nanoTime() - start);
+    }
+
+    /**
+     * Tells how a file present in both images differs.
+     *
+     * @return The kind of change , null if the file is the same in both images.
+     */
+    private FileChangeKind compareFile(String name, JournalEntry beforeEntry, JournalEntry afterEntry, int changedClusters) throws IOException {
+        boolean sameEntry = Arrays.equals(beforeEntry.toByteArray(), afterEntry.toByteArray());
+        boolean sameLayout = sameExtents(before.getFileExtents(name), after.getFileExtents(name));
+        boolean sameContent;
+        if (!beforeEntry.getFileSize().equals(afterEntry.getFileSize())) {
+            sameContent = false;
+        } else if (sameLayout) {
+            sameContent = changedClusters == 0; // The file holds the same clusters , only their bytes can tell
+        } else {
+            sameContent = sameContent(name); // The clusters were moved , the bytes are compared in file order
+        }
+        if (!sameContent) {
+            return FileChangeKind.MODIFIED;
+        }
+        return sameEntry && sameLayout ? null : FileChangeKind.METADATA_ONLY;
+    }
+
+    private static boolean sameExtents(List<Extent> first, List<Extent> second) {
+        if (first == null || second == null || first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i).getDiskOffset() != second.get(i).getDiskOffset() || first.get(i).getLength() != second.get(i).getLength()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the content of a file in both images , in file order.
+     */
+    private boolean sameContent(String name) throws IOException {
+        InputStream beforeStream = before.openFile(name);
+        InputStream afterStream = after.openFile(name);
+        if (beforeStream == null || afterStream == null) {
+            return false;
+        }
+        try (InputStream first = beforeStream; InputStream second = afterStream) {
+            byte[] firstBuffer = new byte[COMPARE_BUFFER_BYTES];
+            byte[] secondBuffer = new byte[COMPARE_BUFFER_BYTES];
+            while (true) {
+                int firstRead = first.readNBytes(firstBuffer, 0, firstBuffer.length);
+                int secondRead = second.readNBytes(secondBuffer, 0, secondBuffer.length);
+                if (Arrays.mismatch(firstBuffer, 0, firstRead, secondBuffer, 0, secondRead) >= 0) {
+                    return false;
+                }
+                if (firstRead < firstBuffer.length) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Places a differing byte in the layout of the disk and records the sector , table entry or cluster holding it.
+     *
+     * @param offset The offset of the byte in the image.
+     * @return The offset of the first byte after the recorded unit , where the comparison resumes.
+     */
+    private long record(long offset, Changes changes) {
+        for (long fatStart : fatStarts) {
+            if (offset >= fatStart && offset < fatStart + fatBytes) {
+                long entry = (offset - fatStart) / DiskGeometry.FAT_ENTRY_BYTES; // The id of the cluster , 0 and 1 being the reserved entries
+                changes.setFatEntry((int) entry);
+                return fatStart + (entry + 1) * DiskGeometry.FAT_ENTRY_BYTES;
+            }
+        }
+        int cluster = geometry.byteOffsetToCluster(offset);
+        if (cluster >= 0) {
+            changes.setCluster(cluster);
+            return geometry.clusterToByteOffset(cluster) + geometry.getClusterBytes();
+        }
+        long sector = offset / geometry.getSectorSize();
+        changes.setReservedSector((int) sector);
+        return (sector + 1) * geometry.getSectorSize();
+    }
+
+    /**
+     * The differences found by the comparing threads.
+     */
+    private static final class Changes {
+
+        private final BitSet clusters = new BitSet();
+        private final BitSet fatEntries = new BitSet();
+        private final BitSet reservedSectors = new BitSet();
+        private final LongAdder bytesCompared = new LongAdder();
+        private final LongAdder chunksSkipped = new LongAdder();
+
+        private synchronized void setCluster(int cluster) {
+            clusters.set(cluster);
+        }
+
+        private synchronized void setFatEntry(int cluster) {
+            fatEntries.set(cluster);
+        }
+
+        private synchronized void setReservedSector(int sector) {
+            reservedSectors.set(sector);
+        }
+    }
+
+    /**
+     * Compares one chunk of the images , unless the hash trees tell it is equal.
+     *
+     * @param chunk      The index of the chunk.
+     * @param chunkSize  The size of the chunks in bytes.
+     * @param beforeTree The hash tree of the first image , null to always compare.
+     * @param afterTree  The hash tree of the second image , null to always compare.
+     * @param changes    Collects the changes , from every comparing thread.
+     */
+    private void compareChunk(int chunk, int chunkSize, MerkleTree beforeTree, MerkleTree afterTree, Changes changes) {
+        if (beforeTree != null) {
+            byte[] beforeHash = beforeTree.getLeaf(chunk);
+            if (beforeHash != null && Arrays.equals(beforeHash, afterTree.getLeaf(chunk))) {
+                changes.chunksSkipped.increment();
+                return;
+            }
+        }
+
+        long position = (long) chunk * chunkSize;
+        int length = (int) Math.min(chunkSize, imageSize - position);
+        ByteBuffer first;
+        ByteBuffer second;
+        try {
+            first = before.getStorage().map(position, length);
+            second = after.getStorage().map(position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        changes.bytesCompared.add(length);
+        int index = 0;
+        while (index < length) {
+            first.position(index);
+            second.position(index);
+            int mismatch = first.mismatch(second);
+            if (mismatch < 0) {
+                break;
+            }
+            long resume = record(position + index + mismatch, changes);
+            index = (int) Math.min(resume - position, length);
+        }
+    }
+}
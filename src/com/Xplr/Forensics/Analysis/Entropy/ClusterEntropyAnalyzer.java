@@ -0,0 +1,212 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Entropy;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the Shannon entropy and the {@link ContentClass} of every data cluster of a disk.
+ * <p>
+ * The data region is cut in chunks of whole clusters scanned in parallel by a {@link ForkJoinPool} through
+ * {@link ChunkScanner#forEachChunk} , every thread
+ * writing the results of its own clusters straight into the {@link ClusterEntropyMap}. A cluster costs one
+ * histogram of its bytes : the entropy comes from the histogram through a table of {@code n log2 n} , the class
+ * from the histogram and the first bytes of the cluster.
+ * </p>
+ *
+ * <p>
+ * A cluster whose entropy is close to that of random bytes of the same length is classed as compressed ; the bound
+ * follows the cluster size , since a short cluster of random bytes cannot reach 8 bits per byte.
+ * </p>
+ */
+public class ClusterEntropyAnalyzer {
+
+    /**
+     * The share of printable bytes from which a cluster is taken for text.
+     */
+    private static final double TEXT_RATIO = 0.95;
+
+    /**
+     * How far below the expected entropy of random bytes a cluster may be and still be taken for compressed , in bits per byte.
+     */
+    private static final double COMPRESSED_MARGIN = 0.3;
+
+    private final DiskStorage storage;
+    private final DiskGeometry geometry;
+    private final int parallelism;
+    private final int clusterBytes;
+    private final int chunkClusters;
+
+    /**
+     * The value of {@code c log2 c} for every count a byte can have in a cluster.
+     */
+    private final double[] weightedLog;
+
+    /**
+     * The smallest quantized entropy of a compressed cluster.
+     */
+    private final int compressedThreshold;
+
+    /**
+     * A cluster of zeros , compared with every cluster before its histogram is made.
+     */
+    private final byte[] zeros;
+
+    /**
+     * Constructs an analyzer using every core.
+     *
+     * @param disk The disk to analyze.
+     */
+    public ClusterEntropyAnalyzer(VirtualDisk disk) {
+        this(disk, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an analyzer.
+     *
+     * @param disk        The disk to analyze.
+     * @param parallelism The number of threads scanning the clusters.
+     * @throws IllegalArgumentException if the parallelism is not strictly positive.
+     */
+    public ClusterEntropyAnalyzer(VirtualDisk disk, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be strictly positive.");
+        }
+        this.storage = disk.getStorage();
+        this.geometry = disk.getGeometry();
+        this.parallelism = parallelism;
+        this.clusterBytes = geometry.getClusterBytes();
+        this.chunkClusters = ChunkScanner.chunkClusters(clusterBytes);
+        this.zeros = new byte[clusterBytes];
+        this.weightedLog = new double[clusterBytes + 1];
+        for (int count = 1; count <= clusterBytes; count++) {
+            weightedLog[count] = count * (Math.log(count) / Math.log(2));
+        }
+        // Random bytes fall short of 8 bits per byte by about 255 / (2 n ln 2) over n bytes
+        double randomEntropy = 8 - 255 / (2 * clusterBytes * Math.log(2));
+        this.compressedThreshold = (int) Math.ceil((randomEntropy - COMPRESSED_MARGIN) * ClusterEntropyMap.ENTROPY_SCALE);
+    }
+
+    /**
+     * Analyzes every data cluster of the disk.
+     *
+     * @return The map of the clusters.
+     * @throws IOException If the image cannot be read.
+     */
+    public ClusterEntropyMap analyze() throws IOException {
+        ClusterEntropyMap map = new ClusterEntropyMap(storage.size(), clusterBytes, geometry.getClusterCount());
+        ChunkScanner.forEachChunk(0, geometry.getClusterCount(), chunkClusters, parallelism,
+                (from, to, out) -> analyzeChunk((int) from, (int) to, map), "analysis");
+        return map;
+    }
+
+    /**
+     * Loads the map of the disk from a sidecar file , or analyzes the disk and saves the map there when the sidecar
+     * is missing or stale.
+     *
+     * @param sidecar    The sidecar file , next to the image.
+     * @param imageStamp The stamp of the image , its modification time for instance.
+     * @return The map of the clusters.
+     * @throws IOException If the image or the sidecar cannot be read , or the sidecar cannot be written.
+     */
+    public ClusterEntropyMap analyzeCached(Path sidecar, long imageStamp) throws IOException {
+        ClusterEntropyMap map = ClusterEntropyMap.load(sidecar, geometry, storage.size(), imageStamp);
+        if (map == null) {
+            map = analyze();
+            map.save(sidecar, imageStamp);
+        }
+        return map;
+    }
+
+    /**
+     * Computes the entropy of a cluster from its histogram.
+     *
+     * @param histogram The number of occurrences of every byte value.
+     * @param length    The number of bytes counted.
+     * @return The entropy in steps of 1/{@link ClusterEntropyMap#ENTROPY_SCALE} bit , between 0 and 255.
+     */
+    private int quantizedEntropy(int[] histogram, int length) {
+        double sum = 0;
+        for (int count : histogram) {
+            sum += weightedLog[count];
+        }
+        // H = log2 n - (sum of c log2 c) / n
+        double entropy = (weightedLog[length] - sum) / length;
+        return (int) Math.min(255, Math.round(entropy * ClusterEntropyMap.ENTROPY_SCALE));
+    }
+
+    /**
+     * Classes a cluster from its histogram , its entropy and its first bytes.
+     */
+    private ContentClass classify(byte[] bytes, int offset, int[] histogram, int quantizedEntropy) {
+        if (histogram[0] == clusterBytes) {
+            return ContentClass.ZERO;
+        }
+        if (isExecutableHeader(bytes, offset)) {
+            return ContentClass.EXECUTABLE;
+        }
+        if (quantizedEntropy >= compressedThreshold) {
+            return ContentClass.COMPRESSED;
+        }
+        int printable = histogram['\t'] + histogram['\n'] + histogram['\r'];
+        for (int value = 0x20; value < 0x7F; value++) {
+            printable += histogram[value];
+        }
+        return printable >= TEXT_RATIO * clusterBytes ? ContentClass.TEXT : ContentClass.BINARY;
+    }
+
+    /**
+     * Tells whether a cluster starts with the header of a PE , ELF or Mach-O executable.
+     */
+    private static boolean isExecutableHeader(byte[] bytes, int offset) {
+        int first = ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+        return (first >>> 16) == 0x4D5A // "MZ"
+                || first == 0x7F454C46 // 0x7F "ELF"
+                || first == 0xFEEDFACE || first == 0xFEEDFACF || first == 0xCEFAEDFE || first == 0xCFFAEDFE;
+    }
+
+    /**
+     * Analyzes the clusters of indexes {@code [from, to)} of a chunk , counted from the first data cluster.
+     */
+    private void analyzeChunk(int from, int to, ClusterEntropyMap map) {
+        // The data clusters follow each other in the image , the chunk is read in one go
+        byte[] bytes = new byte[(to - from) * clusterBytes];
+        storage.read(geometry.clusterToByteOffset(DiskGeometry.FIRST_CLUSTER + from), bytes, 0, bytes.length);
+        int[] histogram = new int[256];
+        for (int index = from; index < to; index++) {
+            int offset = (index - from) * clusterBytes;
+            if (Arrays.mismatch(bytes, offset, offset + clusterBytes, zeros, 0, clusterBytes) < 0) {
+                map.set(index, 0, ContentClass.ZERO); // Never written or wiped , the common case of a large disk , compared many bytes at a time
+                continue;
+            }
+            Arrays.fill(histogram, 0);
+            for (int i = offset; i < offset + clusterBytes; i++) {
+                histogram[bytes[i] & 0xFF]++;
+            }
+            int entropy = quantizedEntropy(histogram, clusterBytes);
+            map.set(index, entropy, classify(bytes, offset, histogram, entropy));
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Entropy;
+
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The entropy and the content class of every data cluster of a disk , as computed by a {@link ClusterEntropyAnalyzer}.
+ * <p>
+ * The map holds two bytes per cluster : the entropy in bits per byte , in steps of 1/32 , and the ordinal of the
+ * {@link ContentClass}. A 32 GB disk of 4 KB clusters takes 16 MB. The map can be saved next to the image , in a
+ * sidecar file stamped with the image modification time , so that a later session skips the pass.
+ * </p>
+ *
+ * <p>Layout of the sidecar file (every number is little-endian) :</p>
+ * <pre>
+ * 0x00  8 bytes  magic "XPLRENT1"
+ * 0x08  8 bytes  size of the disk image in bytes
+ * 0x10  4 bytes  cluster size in bytes
+ * 0x14  4 bytes  number of clusters
+ * 0x18  8 bytes  stamp of the image the map was computed from
+ * then one entropy byte per cluster , then one class byte per cluster
+ * </pre>
+ */
+public class ClusterEntropyMap {
+
+    /**
+     * The signature found at the very beginning of every sidecar file.
+     */
+    public static final byte[] MAGIC = {'X', 'P', 'L', 'R', 'E', 'N', 'T', '1'};
+
+    /**
+     * The size in bytes of the fixed header.
+     */
+    public static final int HEADER_SIZE = 0x20;
+
+    /**
+     * The number of entropy steps per bit , an entropy byte of 255 stands for 8 bits per byte.
+     */
+    public static final int ENTROPY_SCALE = 32;
+
+    private static final ContentClass[] CLASSES = ContentClass.values();
+
+    private final long imageSize;
+    private final int clusterBytes;
+    private final byte[] entropy;
+    private final byte[] classes;
+
+    /**
+     * Constructs an empty map , filled by the analyzer.
+     *
+     * @param imageSize    The size of the disk image in bytes.
+     * @param clusterBytes The size of a cluster in bytes.
+     * @param clusterCount The number of data clusters.
+     */
+    ClusterEntropyMap(long imageSize, int clusterBytes, int clusterCount) {
+        this.imageSize = imageSize;
+        this.clusterBytes = clusterBytes;
+        this.entropy = new byte[clusterCount];
+        this.classes = new byte[clusterCount];
+    }
+
+    /**
+     * Records the analysis of a cluster.
+     *
+     * @param index            The index of the cluster , counted from the first data cluster.
+     * @param quantizedEntropy The entropy in steps of 1/{@link #ENTROPY_SCALE} bit , at most 255.
+     * @param contentClass     The class of the cluster.
+     */
+    void set(int index, int quantizedEntropy, ContentClass contentClass) {
+        entropy[index] = (byte) quantizedEntropy;
+        classes[index] = (byte) contentClass.ordinal();
+    }
+
+    /**
+     * Retrieves the entropy of a cluster.
+     *
+     * @param clusterId The ID of a data cluster.
+     * @return The entropy in bits per byte , between 0 and 8.
+     * @throws ArrayIndexOutOfBoundsException if the cluster is not a data cluster.
+     */
+    public double getEntropy(int clusterId) {
+        return (entropy[clusterId - DiskGeometry.FIRST_CLUSTER] & 0xFF) / (double) ENTROPY_SCALE;
+    }
+
+    /**
+     * Retrieves the class of a cluster.
+     *
+     * @param clusterId The ID of a data cluster.
+     * @return The content class.
+     * @throws ArrayIndexOutOfBoundsException if the cluster is not a data cluster.
+     */
+    public ContentClass getContentClass(int clusterId) {
+        return CLASSES[classes[clusterId - DiskGeometry.FIRST_CLUSTER]];
+    }
+
+    /**
+     * Counts the clusters of every class.
+     *
+     * @return The number of clusters per class , every class present.
+     */
+    public Map<ContentClass, Long> countByClass() {
+        long[] counts = new long[CLASSES.length];
+        for (byte contentClass : classes) {
+            counts[contentClass]++;
+        }
+        Map<ContentClass, Long> byClass = new EnumMap<>(ContentClass.class);
+        for (ContentClass contentClass : CLASSES) {
+            byClass.put(contentClass, counts[contentClass.ordinal()]);
+        }
+        return byClass;
+    }
+
+    /**
+     * Down-samples the entropy into a strip of buckets , each one the mean of a run of consecutive clusters.
+     *
+     * @param buckets The number of buckets wanted , the width of the strip drawn by the UI.
+     * @return The mean entropy of every bucket , at most one bucket per cluster.
+     */
+    public double[] averageEntropy(int buckets) {
+        int width = bucketCount(buckets);
+        double[] means = new double[width];
+        for (int bucket = 0; bucket < width; bucket++) {
+            int from = bucketStart(bucket, width);
+            int to = bucketStart(bucket + 1, width);
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += entropy[i] & 0xFF;
+            }
+            means[bucket] = (double) sum / (to - from) / ENTROPY_SCALE;
+        }
+        return means;
+    }
+
+    /**
+     * Down-samples the classes into a strip of buckets , each one the most frequent class of a run of consecutive clusters.
+     *
+     * @param buckets The number of buckets wanted , the width of the strip drawn by the UI.
+     * @return The dominant class of every bucket , at most one bucket per cluster.
+     */
+    public ContentClass[] dominantClasses(int buckets) {
+        int width = bucketCount(buckets);
+        ContentClass[] dominant = new ContentClass[width];
+        int[] counts = new int[CLASSES.length];
+        for (int bucket = 0; bucket < width; bucket++) {
+            Arrays.fill(counts, 0);
+            for (int i = bucketStart(bucket, width); i < bucketStart(bucket + 1, width); i++) {
+                counts[classes[i]]++;
+            }
+            int best = 0;
+            for (int c = 1; c < counts.length; c++) {
+                if (counts[c] > counts[best]) {
+                    best = c;
+                }
+            }
+            dominant[bucket] = CLASSES[best];
+        }
+        return dominant;
+    }
+
+    /**
+     * Saves the map in a sidecar file.
+     *
+     * @param sidecar    The file to create (overwritten if it exists).
+     * @param imageStamp The stamp of the image , its modification time for instance , checked by {@link #load}.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path sidecar, long imageStamp) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putLong(imageSize);
+        header.putInt(clusterBytes);
+        header.putInt(entropy.length);
+        header.putLong(imageStamp);
+        header.flip();
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer buffer : new ByteBuffer[]{header, ByteBuffer.wrap(entropy), ByteBuffer.wrap(classes)}) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a map saved by {@link #save} , if it still describes the image.
+     *
+     * @param sidecar    The sidecar file.
+     * @param geometry   The geometry of the disk.
+     * @param imageSize  The size of the disk image in bytes.
+     * @param imageStamp The stamp the image has now.
+     * @return The map , null if the file does not exist or was computed from another image , another geometry or an older stamp.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static ClusterEntropyMap load(Path sidecar, DiskGeometry geometry, long imageSize, long imageStamp) throws IOException {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getLong() != imageSize || header.getInt() != geometry.getClusterBytes()
+                    || header.getInt() != geometry.getClusterCount() || header.getLong() != imageStamp
+                    || channel.size() != HEADER_SIZE + 2L * geometry.getClusterCount()) {
+                return null; // A stale or foreign sidecar is simply computed again
+            }
+            ClusterEntropyMap map = new ClusterEntropyMap(imageSize, geometry.getClusterBytes(), geometry.getClusterCount());
+            readFully(channel, ByteBuffer.wrap(map.entropy));
+            readFully(channel, ByteBuffer.wrap(map.classes));
+            for (byte contentClass : map.classes) {
+                if (contentClass < 0 || contentClass >= CLASSES.length) {
+                    return null;
+                }
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Retrieves the number of clusters of the map.
+     *
+     * @return The number of data clusters.
+     */
+    public int getClusterCount() {
+        return entropy.length;
+    }
+
+    /**
+     * Retrieves the size of a cluster.
+     *
+     * @return The number of bytes of a cluster.
+     */
+    public int getClusterBytes() {
+        return clusterBytes;
+    }
+
+    private int bucketCount(int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("The number of buckets must be strictly positive.");
+        }
+        return Math.max(1, Math.min(buckets, entropy.length));
+    }
+
+    private int bucketStart(int bucket, int width) {
+        return (int) ((long) bucket * entropy.length / width);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Truncated entropy sidecar.");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterEntropyMap{clusters=" + entropy.length + ", clusterBytes=" + clusterBytes + ", " + countByClass() + "}";
+    }
+}
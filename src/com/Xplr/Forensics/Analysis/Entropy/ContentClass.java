@@ -0,0 +1,48 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Entropy;
+
+/**
+ * A rough guess of what a cluster holds , made from its byte histogram and its first bytes.
+ */
+public enum ContentClass {
+
+    /**
+     * Only zero bytes : never written , or wiped.
+     */
+    ZERO,
+
+    /**
+     * Mostly printable ASCII , with tabs and line breaks.
+     */
+    TEXT,
+
+    /**
+     * Bytes spread almost evenly : compressed or encrypted data , an encrypted container looks like this from end to end.
+     */
+    COMPRESSED,
+
+    /**
+     * The header of an executable : PE , ELF or Mach-O.
+     */
+    EXECUTABLE,
+
+    /**
+     * Anything else : structured binary data , media , or a mix.
+     */
+    BINARY
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Hashing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The digests of one piece of evidence , the whole image or one file , by algorithm name.
+ */
+public class DigestSet {
+
+    private final long length;
+    private final Map<String, byte[]> digests;
+
+    /**
+     * Constructs a set of digests.
+     *
+     * @param length  The number of bytes hashed.
+     * @param digests The digests by algorithm name , in the order the algorithms were requested.
+     */
+    public DigestSet(long length, Map<String, byte[]> digests) {
+        this.length = length;
+        this.digests = Collections.unmodifiableMap(new LinkedHashMap<>(digests));
+    }
+
+    /**
+     * Retrieves the number of bytes hashed.
+     *
+     * @return The length of the evidence.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Retrieves a digest.
+     *
+     * @param algorithm The name of the algorithm , such as {@code SHA-256}.
+     * @return A copy of the digest , null if the algorithm was not requested.
+     */
+    public byte[] getDigest(String algorithm) {
+        byte[] digest = digests.get(algorithm);
+        return digest == null ? null : digest.clone();
+    }
+
+    /**
+     * Retrieves a digest as lower case hexadecimal text , the form found in the custody reports.
+     *
+     * @param algorithm The name of the algorithm , such as {@code SHA-256}.
+     * @return The digest in hexadecimal , null if the algorithm was not requested.
+     */
+    public String getHex(String algorithm) {
+        byte[] digest = digests.get(algorithm);
+        return digest == null ? null : toHex(digest);
+    }
+
+    /**
+     * Retrieves the names of the algorithms.
+     *
+     * @return The algorithms , in the order they were requested.
+     */
+    public Iterable<String> getAlgorithms() {
+        return digests.keySet();
+    }
+
+    /**
+     * Turns bytes into lower case hexadecimal text.
+     *
+     * @param bytes The bytes.
+     * @return Two characters per byte.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DigestSet{length=").append(length);
+        for (Map.Entry<String, byte[]> digest : digests.entrySet()) {
+            sb.append(", ").append(digest.getKey()).append('=').append(toHex(digest.getValue()));
+        }
+        return sb.append('}').toString();
+    }
+}
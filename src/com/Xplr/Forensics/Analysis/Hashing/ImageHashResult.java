@@ -0,0 +1,83 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Hashing;
+
+/**
+ * The outcome of {@link ImageHasher#hashImage()} : the digests of the whole image , the Merkle tree of its chunks
+ * and how long it took.
+ */
+public class ImageHashResult {
+
+    private final DigestSet digests;
+    private final MerkleTree tree;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs the result of a hashing.
+     *
+     * @param digests      The digests of the whole image.
+     * @param tree         The Merkle tree of the chunks of the image.
+     * @param elapsedNanos The duration of the hashing in nanoseconds.
+     */
+    public ImageHashResult(DigestSet digests, MerkleTree tree, long elapsedNanos) {
+        this.digests = digests;
+        this.tree = tree;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Retrieves the digests of the whole image.
+     *
+     * @return The digests , one per requested algorithm.
+     */
+    public DigestSet getDigests() {
+        return digests;
+    }
+
+    /**
+     * Retrieves the Merkle tree of the chunks.
+     *
+     * @return The tree , to be given to {@link ImageHasher#refresh(MerkleTree, java.util.BitSet)} after a change.
+     */
+    public MerkleTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Retrieves the duration of the hashing.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Computes the hashing throughput.
+     *
+     * @return The number of bytes hashed per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : digests.getLength() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImageHashResult{%s, merkleRoot=%s, seconds=%.2f, MB/s=%.1f}",
+                digests, tree.getRootHex(), elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
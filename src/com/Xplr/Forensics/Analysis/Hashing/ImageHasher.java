@@ -0,0 +1,333 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Hashing;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the digests a chain of custody needs : of the whole image and of every file of the journal.
+ * <p>
+ * The image is read once , in large chunks aligned on the clusters , by a pool of reader threads. Each reader also
+ * hashes its chunk into a leaf of a {@link MerkleTree}. The digests of the whole image (MD5 , SHA-1 and SHA-256 by
+ * default) cannot be split , they must see the bytes in order : every algorithm runs on a thread of its own , fed
+ * the chunks in image order , so that the algorithms run side by side and the image is read only once. The
+ * number of chunks between the readers and the digests is bounded.
+ * </p>
+ *
+ * <p>
+ * After the disk changed , {@link #refresh(MerkleTree, BitSet)} rehashes only the chunks holding a changed cluster ,
+ * as reported by the change tracker of the disk , and updates the root of the tree ; the digests of the whole
+ * image need a full pass again. The image is read without taking the locks of the disk , it must not be written
+ * while it is hashed.
+ * </p>
+ */
+public class ImageHasher {
+
+    /**
+     * The digests computed by default.
+     */
+    public static final List<String> DEFAULT_ALGORITHMS = List.of("MD5", "SHA-1", "SHA-256");
+
+    /**
+     * The size of a chunk , rounded down to whole clusters.
+     */
+    public static final int DEFAULT_CHUNK_BYTES = ChunkScanner.CHUNK_BYTES;
+
+    /**
+     * The size of the buffer a file is hashed through.
+     */
+    private static final int FILE_BUFFER_BYTES = 1024 * 1024;
+
+    private final VirtualDisk disk;
+    private final DiskStorage storage;
+    private final List<String> algorithms;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int clusterBytes;
+
+    /**
+     * Constructs a hasher computing the default digests on every core.
+     *
+     * @param disk The disk to hash.
+     */
+    public ImageHasher(VirtualDisk disk) {
+        this(disk, DEFAULT_ALGORITHMS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a hasher.
+     *
+     * @param disk        The disk to hash.
+     * @param algorithms  The names of the digests to compute , as known by {@link MessageDigest}.
+     * @param parallelism The number of threads reading and hashing the chunks and the files.
+     * @throws IllegalArgumentException if an algorithm is not available , none is given , or the parallelism is not strictly positive.
+     */
+    public ImageHasher(VirtualDisk disk, List<String> algorithms, int parallelism) {
+        if (algorithms.isEmpty() || parallelism <= 0) {
+            throw new IllegalArgumentException("At least one algorithm and one thread are needed.");
+        }
+        for (String algorithm : algorithms) {
+            newDigest(algorithm); // Fails now rather than in the middle of a pass
+        }
+        this.disk = disk;
+        this.storage = disk.getStorage();
+        this.algorithms = List.copyOf(algorithms);
+        this.parallelism = parallelism;
+        this.clusterBytes = disk.getGeometry().getClusterBytes();
+        this.chunkSize = Math.max(clusterBytes, DEFAULT_CHUNK_BYTES / clusterBytes * clusterBytes);
+    }
+
+    /**
+     * Hashes the whole image in one pass.
+     *
+     * @return The digests of the image and the Merkle tree of its chunks.
+     * @throws IOException If the image cannot be read.
+     */
+    public ImageHashResult hashImage() throws IOException {
+        long start = System.nanoTime();
+        MerkleTree tree = new MerkleTree(storage.size(), chunkSize);
+        List<MessageDigest> digests = new ArrayList<>();
+        List<ExecutorService> digesters = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            digests.add(newDigest(algorithm));
+            digesters.add(Executors.newSingleThreadExecutor()); // One thread per algorithm keeps the chunks in order
+        }
+        // A chunk holds a permit from its read until every algorithm has digested it
+        Semaphore inFlight = new Semaphore(2 * parallelism + algorithms.size());
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+        try (ExecutorService readers = Executors.newFixedThreadPool(parallelism)) {
+            int chunkCount = tree.getChunkCount();
+            int nextChunk = 0;
+            while (nextChunk < chunkCount || !pending.isEmpty()) {
+                if (nextChunk < chunkCount && inFlight.tryAcquire()) {
+                    int chunk = nextChunk++;
+                    pending.add(readers.submit(() -> readAndHashChunk(tree, chunk)));
+                    continue;
+                }
+                if (pending.isEmpty()) {
+                    inFlight.acquire(); // Every permit is held by the digests , let's wait for one of them
+                    inFlight.release();
+                    continue;
+                }
+                // The oldest chunk is the next one every algorithm needs
+                byte[] bytes = pending.poll().get();
+                AtomicInteger remaining = new AtomicInteger(digests.size());
+                for (int i = 0; i < digests.size(); i++) {
+                    MessageDigest digest = digests.get(i);
+                    digesters.get(i).execute(() -> {
+                        digest.update(bytes);
+                        if (remaining.decrementAndGet() == 0) {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The hashing was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw ChunkScanner.unwrap(e, "hashing");
+        } finally {
+            for (ExecutorService digester : digesters) {
+                digester.close(); // Waits for the last chunks to be digested
+            }
+        }
+
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.size(); i++) {
+            results.put(algorithms.get(i), digests.get(i).digest());
+        }
+        return new ImageHashResult(new DigestSet(storage.size(), results), tree, System.nanoTime() - start);
+    }
+
+    /**
+     * Rehashes the chunks holding a changed cluster and updates the tree.
+     *
+     * @param tree          The tree of an earlier pass , updated in place ; keep a {@link MerkleTree#copy()} to compare.
+     * @param changedBlocks The cluster sized blocks of the image changed since the earlier pass , as given by
+     *                      {@link VirtualDisk#getChangedBlocks(long)}.
+     * @return The indexes of the rehashed chunks , in increasing order.
+     * @throws IOException If the image cannot be read.
+     * @throws IllegalArgumentException if the tree was not built by a hasher of this disk.
+     */
+    public int[] refresh(MerkleTree tree, BitSet changedBlocks) throws IOException {
+        if (tree.getChunkSize() != chunkSize || tree.getImageSize() != storage.size()) {
+            throw new IllegalArgumentException("The tree does not cover the chunks of this image.");
+        }
+        BitSet dirtyChunks = new BitSet(tree.getChunkCount());
+        for (int block = changedBlocks.nextSetBit(0); block >= 0; block = changedBlocks.nextSetBit(block + 1)) {
+            dirtyChunks.set((int) ((long) block * clusterBytes / chunkSize));
+        }
+
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (int chunk = dirtyChunks.nextSetBit(0); chunk >= 0; chunk = dirtyChunks.nextSetBit(chunk + 1)) {
+            int index = chunk;
+            tasks.add(() -> {
+                readAndHashChunk(tree, index);
+                return null; // The bytes are not needed , only the leaf
+            });
+        }
+        try (ExecutorService readers = Executors.newFixedThreadPool(parallelism)) {
+            for (Future<byte[]> done : readers.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The hashing was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw ChunkScanner.unwrap(e, "hashing");
+        }
+        return dirtyChunks.stream().toArray();
+    }
+
+    /**
+     * Rehashes the chunks changed since a checkpoint of the disk and updates the tree.
+     *
+     * @param tree            The tree of an earlier pass , updated in place.
+     * @param sinceCheckpoint The checkpoint taken when the earlier pass was made , see {@link VirtualDisk#checkpoint()}.
+     * @return The indexes of the rehashed chunks , in increasing order.
+     * @throws IOException If the image cannot be read.
+     */
+    public int[] refresh(MerkleTree tree, long sinceCheckpoint) throws IOException {
+        return refresh(tree, disk.getChangedBlocks(sinceCheckpoint));
+    }
+
+    /**
+     * Hashes every file of the journal , several files at once.
+     *
+     * @return The digests of each file , by file name , in the order of the journal.
+     * @throws IOException If a file cannot be read.
+     */
+    public Map<String, DigestSet> hashFiles() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (JournalEntry entry : new ArrayList<>(disk.getRootDirectory().getEntries())) {
+            names.add(entry.getFileName());
+        }
+        Map<String, DigestSet> results = new LinkedHashMap<>();
+        try (ExecutorService hashers = Executors.newFixedThreadPool(parallelism)) {
+            List<Future<DigestSet>> futures = new ArrayList<>();
+            for (String name : names) {
+                futures.add(hashers.submit(() -> hashFile(name)));
+            }
+            for (int i = 0; i < names.size(); i++) {
+                results.put(names.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The hashing was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw ChunkScanner.unwrap(e, "hashing");
+        }
+        return results;
+    }
+
+    /**
+     * Hashes one file of the disk with every algorithm , streaming it cluster after cluster.
+     *
+     * @param filename The name of the file.
+     * @return The digests of the file.
+     * @throws IOException If the file is not found or cannot be read.
+     */
+    public DigestSet hashFile(String filename) throws IOException {
+        InputStream content = disk.openFile(filename);
+        if (content == null) {
+            throw new IOException("File '" + filename + "' not found.");
+        }
+        try (InputStream in = content) {
+            return hashStream(in, algorithms);
+        }
+    }
+
+    /**
+     * Hashes a stream with several algorithms in one pass , the stream is read to its end but not closed.
+     *
+     * @param in         The stream to hash , a file of the disk or of the host.
+     * @param algorithms The names of the digests to compute , as known by {@link MessageDigest}.
+     * @return The digests of the stream.
+     * @throws IOException If the stream cannot be read.
+     * @throws IllegalArgumentException if an algorithm is not available.
+     */
+    public static DigestSet hashStream(InputStream in, List<String> algorithms) throws IOException {
+        List<MessageDigest> digests = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            digests.add(newDigest(algorithm));
+        }
+        long length = 0;
+        byte[] buffer = new byte[FILE_BUFFER_BYTES];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (MessageDigest digest : digests) {
+                digest.update(buffer, 0, read);
+            }
+            length += read;
+        }
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.size(); i++) {
+            results.put(algorithms.get(i), digests.get(i).digest());
+        }
+        return new DigestSet(length, results);
+    }
+
+    /**
+     * Retrieves the size of the chunks.
+     *
+     * @return The number of bytes of a chunk , a multiple of the cluster size.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Reads a chunk of the image and sets its leaf in the tree.
+     */
+    private byte[] readAndHashChunk(MerkleTree tree, int chunk) {
+        byte[] bytes = new byte[tree.chunkLength(chunk)];
+        storage.read((long) chunk * chunkSize, bytes, 0, bytes.length);
+        tree.setLeaf(chunk, MerkleTree.hashLeaf(bytes, 0, bytes.length));
+        return bytes;
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Hashing;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A SHA-256 Merkle tree over the fixed size chunks of an image.
+ * <p>
+ * Every leaf is the hash of a chunk , every node the hash of its two children ; a node without right sibling is
+ * carried up unchanged. The leaves and the nodes are hashed with a different leading byte (0x00 for a chunk ,
+ * 0x01 for a pair of children) so that a chunk can never be taken for a node. Changing a chunk only changes the
+ * nodes on its path to the root : after an incremental change , the chunks that were written are rehashed and the
+ * root is updated in a logarithmic number of hashes per chunk , the rest of the image is not read again.
+ * </p>
+ */
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final int chunkSize;
+    private final long imageSize;
+
+    /**
+     * The hashes of every level , level 0 being the leaves and the last level holding the root alone.
+     */
+    private final byte[][][] levels;
+
+    /**
+     * Constructs a tree whose leaves are all unknown yet , they must all be set before the root is read.
+     *
+     * @param imageSize The size of the image in bytes.
+     * @param chunkSize The size of a chunk in bytes , the last chunk may be shorter.
+     * @throws IllegalArgumentException if the chunk size is not strictly positive or the image is empty.
+     */
+    public MerkleTree(long imageSize, int chunkSize) {
+        if (chunkSize <= 0 || imageSize <= 0) {
+            throw new IllegalArgumentException("A Merkle tree needs a non empty image and strictly positive chunks.");
+        }
+        this.chunkSize = chunkSize;
+        this.imageSize = imageSize;
+        int leaves = (int) ((imageSize + chunkSize - 1) / chunkSize);
+        int depth = 1;
+        for (int width = leaves; width > 1; width = (width + 1) / 2) {
+            depth++;
+        }
+        this.levels = new byte[depth][][];
+        int width = leaves;
+        for (int level = 0; level < depth; level++) {
+            levels[level] = new byte[width][];
+            width = (width + 1) / 2;
+        }
+    }
+
+    /**
+     * Hashes a chunk the way a leaf of the tree is hashed.
+     *
+     * @param bytes  The array holding the chunk.
+     * @param offset The index of the first byte of the chunk.
+     * @param length The length of the chunk.
+     * @return The hash of the leaf.
+     */
+    public static byte[] hashLeaf(byte[] bytes, int offset, int length) {
+        MessageDigest sha256 = sha256();
+        sha256.update(LEAF_PREFIX);
+        sha256.update(bytes, offset, length);
+        return sha256.digest();
+    }
+
+    /**
+     * Sets the hash of a chunk , the nodes above it are recomputed once all the leaves are known.
+     *
+     * @param chunk The index of the chunk.
+     * @param hash  The hash computed by {@link #hashLeaf(byte[], int, int)}.
+     */
+    public synchronized void setLeaf(int chunk, byte[] hash) {
+        levels[0][chunk] = hash;
+        // Now let's climb to the root , as far as both children of the parent are known
+        int index = chunk;
+        for (int level = 1; level < levels.length; level++) {
+            int left = index & ~1;
+            byte[] leftHash = levels[level - 1][left];
+            byte[] rightHash = left + 1 < levels[level - 1].length ? levels[level - 1][left + 1] : null;
+            index >>= 1;
+            if (leftHash == null || (rightHash == null && left + 1 < levels[level - 1].length)) {
+                levels[level][index] = null; // A sibling is not known yet , its own climb will compute the parent
+                return;
+            }
+            levels[level][index] = rightHash == null ? leftHash : hashNode(leftHash, rightHash);
+        }
+    }
+
+    /**
+     * Retrieves the hash of a chunk.
+     *
+     * @param chunk The index of the chunk.
+     * @return A copy of its hash , null if it was never set.
+     */
+    public synchronized byte[] getLeaf(int chunk) {
+        byte[] hash = levels[0][chunk];
+        return hash == null ? null : hash.clone();
+    }
+
+    /**
+     * Retrieves the root of the tree , the one hash standing for the whole image.
+     *
+     * @return A copy of the root hash.
+     * @throws IllegalStateException if some chunk was never hashed.
+     */
+    public synchronized byte[] getRoot() {
+        byte[] root = levels[levels.length - 1][0];
+        if (root == null) {
+            throw new IllegalStateException("Some chunks of the image were not hashed yet.");
+        }
+        return root.clone();
+    }
+
+    /**
+     * Retrieves the root as hexadecimal text.
+     *
+     * @return The root hash in lower case hexadecimal.
+     */
+    public String getRootHex() {
+        return DigestSet.toHex(getRoot());
+    }
+
+    /**
+     * Lists the chunks whose hash differs between two trees of the same image layout.
+     *
+     * @param other The other tree.
+     * @return The indexes of the differing chunks , in increasing order.
+     * @throws IllegalArgumentException if the trees do not cover the same image with the same chunks.
+     */
+    public synchronized int[] differingChunks(MerkleTree other) {
+        if (other.chunkSize != chunkSize || other.imageSize != imageSize) {
+            throw new IllegalArgumentException("The trees do not cover the same chunks.");
+        }
+        int[] differing = new int[getChunkCount()];
+        int count = 0;
+        for (int chunk = 0; chunk < differing.length; chunk++) {
+            if (!Arrays.equals(levels[0][chunk], other.getLeaf(chunk))) {
+                differing[count++] = chunk;
+            }
+        }
+        return Arrays.copyOf(differing, count);
+    }
+
+    /**
+     * Makes an independent copy of the tree , kept as the reference while the original is refreshed.
+     *
+     * @return A tree with the same hashes.
+     */
+    public synchronized MerkleTree copy() {
+        MerkleTree copy = new MerkleTree(imageSize, chunkSize);
+        for (int level = 0; level < levels.length; level++) {
+            System.arraycopy(levels[level], 0, copy.levels[level], 0, levels[level].length);
+        }
+        return copy;
+    }
+
+    /**
+     * Retrieves the size of a chunk.
+     *
+     * @return The number of bytes of a chunk.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Retrieves the size of the image.
+     *
+     * @return The number of bytes covered by the tree.
+     */
+    public long getImageSize() {
+        return imageSize;
+    }
+
+    /**
+     * Retrieves the number of chunks.
+     *
+     * @return The number of leaves of the tree.
+     */
+    public int getChunkCount() {
+        return levels[0].length;
+    }
+
+    /**
+     * Computes the length of a chunk.
+     *
+     * @param chunk The index of the chunk.
+     * @return The chunk size , or less for the last chunk.
+     */
+    public int chunkLength(int chunk) {
+        return (int) Math.min(chunkSize, imageSize - (long) chunk * chunkSize);
+    }
+
+    private static byte[] hashNode(byte[] left, byte[] right) {
+        MessageDigest sha256 = sha256();
+        sha256.update(NODE_PREFIX);
+        sha256.update(left);
+        sha256.update(right);
+        return sha256.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every Java runtime must provide it
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MerkleTree{imageSize=" + imageSize + ", chunkSize=" + chunkSize + ", chunks=" + getChunkCount() + "}";
+    }
+}
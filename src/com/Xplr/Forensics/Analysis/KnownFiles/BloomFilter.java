@@ -0,0 +1,184 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.KnownFiles;
+
+import java.nio.LongBuffer;
+
+/**
+ * A Bloom filter over digests , telling in a few memory accesses that a digest is certainly not in a set.
+ * <p>
+ * The members are cryptographic digests , whose bits are already uniformly spread : the positions of a digest are
+ * taken from its first sixteen bytes by double hashing , without hashing it again. A digest never added is
+ * reported as maybe present with about the false positive rate given at construction.
+ * </p>
+ * <p>
+ * The bits are held in segments of 64 bit words , on the heap for a filter being built or mapped from a
+ * {@link KnownHashSet} index for a filter read back , which is then read-only.
+ * </p>
+ */
+public class BloomFilter {
+
+    /**
+     * The shortest digest the filter accepts , the length of an MD5.
+     */
+    public static final int MIN_DIGEST_LENGTH = 16;
+
+    /**
+     * The number of words of a segment , 1 GB of bits , a buffer being limited to 2 GB.
+     */
+    static final int WORDS_PER_SEGMENT = 1 << 27;
+
+    private static final int SEGMENT_SHIFT = 27;
+
+    private final LongBuffer[] words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Constructs an empty filter sized for a number of digests.
+     *
+     * @param expectedEntries   The number of digests that will be added.
+     * @param falsePositiveRate The wanted rate of false positives once they are all added , between 0 and 1.
+     * @throws IllegalArgumentException if the rate is not strictly between 0 and 1.
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("The false positive rate must lie between 0 and 1.");
+        }
+        this.bitCount = bitCountFor(expectedEntries, falsePositiveRate);
+        this.hashCount = hashCountFor(expectedEntries, bitCount);
+        long wordCount = bitCount / 64;
+        this.words = new LongBuffer[(int) ((wordCount + WORDS_PER_SEGMENT - 1) / WORDS_PER_SEGMENT)];
+        for (int segment = 0; segment < words.length; segment++) {
+            words[segment] = LongBuffer.wrap(new long[(int) Math.min(WORDS_PER_SEGMENT, wordCount - (long) segment * WORDS_PER_SEGMENT)]);
+        }
+    }
+
+    /**
+     * Constructs a filter over words held elsewhere , such as the mapped filter of an index.
+     *
+     * @param words     The segments of words , each of {@link #WORDS_PER_SEGMENT} words but the last.
+     * @param bitCount  The number of bits of the filter , a multiple of 64.
+     * @param hashCount The number of positions set per digest.
+     */
+    BloomFilter(LongBuffer[] words, long bitCount, int hashCount) {
+        this.words = words;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Computes the optimal size of a filter , m = -n ln p / (ln 2)^2 bits rounded up to whole words.
+     */
+    static long bitCountFor(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        return Math.max(1, (bits + 63) / 64) * 64;
+    }
+
+    /**
+     * Computes the optimal number of hashes of a filter , k = m / n ln 2.
+     */
+    static int hashCountFor(long expectedEntries, long bitCount) {
+        return (int) Math.max(1, Math.round((double) bitCount / Math.max(1, expectedEntries) * Math.log(2)));
+    }
+
+    /**
+     * Adds a digest to the filter.
+     *
+     * @param digest The digest , at least {@link #MIN_DIGEST_LENGTH} bytes long.
+     * @throws java.nio.ReadOnlyBufferException if the filter was read back from an index.
+     */
+    public void add(byte[] digest) {
+        add(word(digest, 0), word(digest, 8));
+    }
+
+    /**
+     * Tells whether a digest may have been added.
+     *
+     * @param digest The digest , at least {@link #MIN_DIGEST_LENGTH} bytes long.
+     * @return False if the digest was certainly never added , true if it may have been.
+     */
+    public boolean mightContain(byte[] digest) {
+        return mightContain(word(digest, 0), word(digest, 8));
+    }
+
+    /**
+     * Adds a digest given by its first two big-endian words.
+     */
+    void add(long first, long second) {
+        long stride = second | 1; // An odd stride visits distinct positions
+        long combined = first;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(combined, bitCount);
+            LongBuffer segment = words[(int) (bit >>> (6 + SEGMENT_SHIFT))];
+            int word = (int) ((bit >>> 6) & (WORDS_PER_SEGMENT - 1));
+            segment.put(word, segment.get(word) | (1L << bit));
+            combined += stride;
+        }
+    }
+
+    /**
+     * Tells whether a digest given by its first two big-endian words may have been added.
+     */
+    boolean mightContain(long first, long second) {
+        long stride = second | 1;
+        long combined = first;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(combined, bitCount);
+            if ((words[(int) (bit >>> (6 + SEGMENT_SHIFT))].get((int) ((bit >>> 6) & (WORDS_PER_SEGMENT - 1))) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += stride;
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the size of the filter.
+     *
+     * @return The number of bits of the filter.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Retrieves the number of positions set per digest.
+     *
+     * @return The number of hash functions.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private static long word(byte[] digest, int offset) {
+        if (digest.length < MIN_DIGEST_LENGTH) {
+            throw new IllegalArgumentException("A digest of " + digest.length + " bytes is too short for the filter.");
+        }
+        long word = 0;
+        for (int i = 0; i < 8; i++) {
+            word = (word << 8) | (digest[offset + i] & 0xFF);
+        }
+        return word;
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter{bits=" + bitCount + ", hashes=" + hashCount + "}";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.KnownFiles;
+
+import com.Xplr.Forensics.Analysis.Hashing.DigestSet;
+import com.Xplr.Forensics.Analysis.Hashing.ImageHasher;
+import com.Xplr.Forensics.Models.VirtualDisk.ImportFilter;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sorts files out against sets of known good and known bad digests , so that the files every seized disk holds
+ * are left out and the files known to matter are flagged.
+ * <p>
+ * A file found in a known bad set is {@link KnownFileStatus#KNOWN_BAD} , even if some known good set holds it
+ * too ; otherwise a file found in a known good set is {@link KnownFileStatus#KNOWN_GOOD}. The sets may use
+ * different algorithms , every file is hashed once with all of them.
+ * </p>
+ */
+public class KnownFileFilter {
+
+    private final List<KnownHashSet> knownGood;
+    private final List<KnownHashSet> knownBad;
+    private final List<String> algorithms;
+
+    /**
+     * Constructs a filter.
+     *
+     * @param knownGood The sets of files that can be left out.
+     * @param knownBad  The sets of files to flag.
+     */
+    public KnownFileFilter(List<KnownHashSet> knownGood, List<KnownHashSet> knownBad) {
+        this.knownGood = List.copyOf(knownGood);
+        this.knownBad = List.copyOf(knownBad);
+        List<String> needed = new ArrayList<>();
+        for (KnownHashSet set : this.knownBad) {
+            if (!needed.contains(set.getAlgorithm())) {
+                needed.add(set.getAlgorithm());
+            }
+        }
+        for (KnownHashSet set : this.knownGood) {
+            if (!needed.contains(set.getAlgorithm())) {
+                needed.add(set.getAlgorithm());
+            }
+        }
+        this.algorithms = List.copyOf(needed);
+    }
+
+    /**
+     * Retrieves the algorithms a file must be hashed with to be classified.
+     *
+     * @return The distinct algorithms of the sets.
+     */
+    public List<String> getAlgorithms() {
+        return algorithms;
+    }
+
+    /**
+     * Classifies a file from its digests.
+     *
+     * @param digests The digests of the file , a set whose algorithm is missing is not consulted.
+     * @return The status of the file.
+     */
+    public KnownFileStatus classify(DigestSet digests) {
+        if (matchesAny(knownBad, digests)) {
+            return KnownFileStatus.KNOWN_BAD;
+        }
+        return matchesAny(knownGood, digests) ? KnownFileStatus.KNOWN_GOOD : KnownFileStatus.UNKNOWN;
+    }
+
+    /**
+     * Classifies every file of a disk , several files being hashed at once.
+     *
+     * @param disk        The disk to list.
+     * @param parallelism The number of files hashed at once.
+     * @return The status of each file , by file name , in the order of the journal.
+     * @throws IOException If a file cannot be read.
+     */
+    public Map<String, KnownFileStatus> classifyFiles(VirtualDisk disk, int parallelism) throws IOException {
+        Map<String, KnownFileStatus> statuses = new LinkedHashMap<>();
+        if (algorithms.isEmpty()) {
+            disk.getRootDirectory().getEntries().forEach(entry -> statuses.put(entry.getFileName(), KnownFileStatus.UNKNOWN));
+            return statuses;
+        }
+        ImageHasher hasher = new ImageHasher(disk, algorithms, parallelism);
+        for (Map.Entry<String, DigestSet> file : hasher.hashFiles().entrySet()) {
+            statuses.put(file.getKey(), classify(file.getValue()));
+        }
+        return statuses;
+    }
+
+    /**
+     * Builds the filter of an import leaving the known good host files out.
+     * <p>
+     * Every host file is hashed before it is imported , at most a few files at once : the hashing is bound by the
+     * processors , not by the number of files the import has in flight. The known bad files are imported and
+     * their names added to the given collection.
+     * </p>
+     *
+     * @param knownBadNames The collection receiving the names of the known bad files imported , it must be thread safe.
+     * @return The filter to give to {@link VirtualDisk#importTree(java.nio.file.Path, ImportFilter)}.
+     */
+    public ImportFilter asImportFilter(Collection<String> knownBadNames) {
+        if (algorithms.isEmpty()) {
+            return ImportFilter.ALL;
+        }
+        Semaphore hashing = new Semaphore(2 * Runtime.getRuntime().availableProcessors());
+        return (hostFile, name) -> {
+            DigestSet digests;
+            try {
+                hashing.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("The hashing was interrupted.", e);
+            }
+            try (InputStream in = Files.newInputStream(hostFile)) {
+                digests = ImageHasher.hashStream(in, algorithms);
+            } finally {
+                hashing.release();
+            }
+            KnownFileStatus status = classify(digests);
+            if (status == KnownFileStatus.KNOWN_BAD) {
+                knownBadNames.add(name);
+            }
+            return status != KnownFileStatus.KNOWN_GOOD;
+        };
+    }
+
+    private static boolean matchesAny(List<KnownHashSet> sets, DigestSet digests) {
+        for (KnownHashSet set : sets) {
+            byte[] digest = digests.getDigest(set.getAlgorithm());
+            if (digest != null && set.contains(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.KnownFiles;
+
+/**
+ * What the known file sets say of a file.
+ */
+public enum KnownFileStatus {
+
+    /**
+     * The file is in a set of known good files , an operating system or vendor file that can be left out.
+     */
+    KNOWN_GOOD,
+
+    /**
+     * The file is in a set of known bad files and must be brought to the attention of the examiner.
+     */
+    KNOWN_BAD,
+
+    /**
+     * The file is in none of the sets.
+     */
+    UNKNOWN
+}
@@ -0,0 +1,507 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.KnownFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A large set of file digests of one algorithm , such as a published list of known operating system files.
+ * <p>
+ * The set lives in an index file holding the distinct digests sorted , memory mapped so that millions of them cost
+ * no heap and are shared with the host page cache. A {@link BloomFilter} stored in the index and mapped with it
+ * answers for most of the digests that are not in the set , which are the common case , without touching the
+ * records ; the others are looked for by a binary search over the mapped records. The index is made once from a
+ * text hash list by {@link #compile(Path, String, Path)} , so that opening it reads nothing but its header.
+ * </p>
+ *
+ * <p>Layout of the index file (every number is little-endian) :</p>
+ * <pre>
+ * 0x00  8 bytes   magic "XPLRKHS2"
+ * 0x08  16 bytes  name of the digest algorithm , ASCII , padded with zeros
+ * 0x18  4 bytes   length of a digest in bytes
+ * 0x1C  8 bytes   number of digests
+ * 0x24  4 bytes   number of hashes of the filter
+ * 0x28  8 bytes   number of bits of the filter , a multiple of 64
+ * then the bits of the filter , as 64 bit words
+ * then the digests , in increasing unsigned order , without duplicates
+ * </pre>
+ */
+public class KnownHashSet {
+
+    /**
+     * The signature found at the very beginning of every index file.
+     */
+    public static final byte[] MAGIC = {'X', 'P', 'L', 'R', 'K', 'H', 'S', '2'};
+
+    /**
+     * The size in bytes of the fixed header.
+     */
+    public static final int HEADER_SIZE = 0x30;
+
+    /**
+     * The false positive rate of the filter in front of the index.
+     */
+    public static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * The signature of the indexes without a stored filter , which must be compiled again.
+     */
+    private static final byte[] OLD_MAGIC = {'X', 'P', 'L', 'R', 'K', 'H', 'S', '1'};
+
+    private static final int ALGORITHM_NAME_BYTES = 16;
+
+    /**
+     * The largest mapping , a mapped buffer is limited to 2 GB.
+     */
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    /**
+     * The largest run of digests sorted in memory by {@link #compile(Path, String, Path)} , longer lists are
+     * sorted run after run in temporary files which are then merged.
+     */
+    private static final int RUN_BYTES = 64 << 20;
+
+    private static final int STAGING_BYTES = 1 << 20;
+
+    private final String algorithm;
+    private final int digestLength;
+    private final long count;
+    private final int recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private final BloomFilter filter;
+
+    private KnownHashSet(String algorithm, int digestLength, long count, MappedByteBuffer[] segments, BloomFilter filter) {
+        this.algorithm = algorithm;
+        this.digestLength = digestLength;
+        this.count = count;
+        this.recordsPerSegment = SEGMENT_BYTES / digestLength;
+        this.segments = segments;
+        this.filter = filter;
+    }
+
+    /**
+     * Opens an index file made by {@link #compile(Path, String, Path)}.
+     *
+     * @param index The index file.
+     * @return The set , mapped over the file.
+     * @throws IOException If the file cannot be read or is not an index.
+     */
+    public static KnownHashSet open(Path index) throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Truncated known hash index: " + index);
+                }
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (Arrays.equals(magic, OLD_MAGIC)) {
+                throw new IOException("The known hash index " + index + " was written by an older version without its filter , compile it again.");
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a known hash index: " + index);
+            }
+            byte[] name = new byte[ALGORITHM_NAME_BYTES];
+            header.get(name);
+            int nameLength = 0;
+            while (nameLength < name.length && name[nameLength] != 0) {
+                nameLength++;
+            }
+            String algorithm = new String(name, 0, nameLength, StandardCharsets.US_ASCII);
+            int digestLength = header.getInt();
+            long count = header.getLong();
+            int hashCount = header.getInt();
+            long bitCount = header.getLong();
+            if (digestLength < BloomFilter.MIN_DIGEST_LENGTH || count < 0 || hashCount < 1 || bitCount < 64 || bitCount % 64 != 0
+                    || channel.size() < HEADER_SIZE + bitCount / 8 + count * digestLength) {
+                throw new IOException("Corrupted known hash index: " + index);
+            }
+            BloomFilter filter = new BloomFilter(asWords(mapFilter(channel, FileChannel.MapMode.READ_ONLY, bitCount)), bitCount, hashCount);
+
+            // The records are mapped in segments of whole digests , a mapping cannot exceed 2 GB
+            long recordsPerSegment = SEGMENT_BYTES / digestLength;
+            long recordsStart = HEADER_SIZE + bitCount / 8;
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            for (long first = 0; first < count; first += recordsPerSegment) {
+                long records = Math.min(recordsPerSegment, count - first);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, recordsStart + first * digestLength, records * digestLength));
+            }
+            return new KnownHashSet(algorithm, digestLength, count, segments.toArray(new MappedByteBuffer[0]), filter);
+        } // The mappings stay valid once the channel is closed
+    }
+
+    /**
+     * Makes an index file from a text hash list.
+     * <p>
+     * On every line , the first field that is a digest of the algorithm written in hexadecimal is taken , the fields
+     * being separated by commas , tabs or spaces and possibly quoted. Lines without such a field , headers and
+     * comments for instance , are skipped. This reads plain lists of digests as well as the CSV files of the
+     * published reference sets , whose lines hold the SHA-1 , then the MD5 of a file.
+     * </p>
+     * <p>
+     * The digests are sorted in runs of at most 64 MB , each written to a temporary file next to the index but the
+     * last , and the runs are then merged into the index while the filter is filled , mapped over the index. The
+     * heap used stays bounded whatever the size of the list.
+     * </p>
+     *
+     * @param hashList  The text hash list.
+     * @param algorithm The name of the digest algorithm , as known by {@link MessageDigest}.
+     * @param index     The index file to create (overwritten if it exists).
+     * @return The number of distinct digests written.
+     * @throws IOException If the list cannot be read or the index written.
+     * @throws IllegalArgumentException if the algorithm is not available or its digests are too short.
+     */
+    public static long compile(Path hashList, String algorithm, Path index) throws IOException {
+        int digestLength = digestLengthOf(algorithm);
+        byte[] nameBytes = algorithm.getBytes(StandardCharsets.US_ASCII);
+        if (nameBytes.length > ALGORITHM_NAME_BYTES) {
+            throw new IllegalArgumentException("The algorithm name is too long: " + algorithm);
+        }
+        int runRecords = RUN_BYTES / digestLength;
+        List<Path> runFiles = new ArrayList<>();
+        List<RunReader> runs = new ArrayList<>();
+        try {
+            // First the digests are gathered in runs , each sorted and written out once full
+            byte[] records = new byte[digestLength * 1024];
+            int count = 0;
+            long total = 0; // The digests of every run , without the duplicates within a run
+            try (BufferedReader reader = Files.newBufferedReader(hashList, StandardCharsets.ISO_8859_1)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    for (String field : line.split("[,\\t ]+")) {
+                        String hex = field.length() >= 2 && field.charAt(0) == '"' ? field.substring(1, field.length() - 1) : field;
+                        if (hex.length() == 2 * digestLength && isHex(hex)) {
+                            if (count == runRecords) {
+                                int distinct = sortRun(records, count, digestLength);
+                                Path runFile = Files.createTempFile(index.toAbsolutePath().getParent(), "khs", ".run");
+                                runFiles.add(runFile);
+                                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(runFile))) {
+                                    out.write(records, 0, distinct * digestLength);
+                                }
+                                total += distinct;
+                                count = 0;
+                            } else if (records.length < (count + 1) * digestLength) {
+                                records = Arrays.copyOf(records, Math.min(records.length * 2, runRecords * digestLength));
+                            }
+                            parseHex(hex, records, count * digestLength);
+                            count++;
+                            break;
+                        }
+                    }
+                }
+            }
+            int distinct = sortRun(records, count, digestLength);
+            total += distinct;
+            for (Path runFile : runFiles) {
+                runs.add(new RunReader(new BufferedInputStream(Files.newInputStream(runFile)), digestLength));
+            }
+            runs.add(new RunReader(new ByteArrayInputStream(records, 0, distinct * digestLength), digestLength));
+
+            // Then the runs are merged , the filter being sized for every digest read
+            long bitCount = BloomFilter.bitCountFor(total, FILTER_FALSE_POSITIVE_RATE);
+            int hashCount = BloomFilter.hashCountFor(total, bitCount);
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer[] filterSegments = mapFilter(channel, FileChannel.MapMode.READ_WRITE, bitCount);
+                BloomFilter filter = new BloomFilter(asWords(filterSegments), bitCount, hashCount);
+                PriorityQueue<RunReader> pending = new PriorityQueue<>((first, second) -> Arrays.compareUnsigned(first.current, second.current));
+                for (RunReader run : runs) {
+                    if (run.advance()) {
+                        pending.add(run);
+                    }
+                }
+                ByteBuffer staging = ByteBuffer.allocate(STAGING_BYTES - STAGING_BYTES % digestLength);
+                byte[] previous = new byte[digestLength];
+                long position = HEADER_SIZE + bitCount / 8;
+                long written = 0;
+                while (!pending.isEmpty()) {
+                    RunReader run = pending.poll();
+                    if (written == 0 || !Arrays.equals(run.current, previous)) {
+                        System.arraycopy(run.current, 0, previous, 0, digestLength);
+                        filter.add(previous);
+                        if (!staging.hasRemaining()) {
+                            position = writeFully(channel, staging, position);
+                        }
+                        staging.put(previous);
+                        written++;
+                    }
+                    if (run.advance()) {
+                        pending.add(run);
+                    }
+                }
+                writeFully(channel, staging, position);
+                for (MappedByteBuffer segment : filterSegments) {
+                    segment.force();
+                }
+
+                // Finally the header , once the number of distinct digests is known
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.put(MAGIC);
+                header.put(Arrays.copyOf(nameBytes, ALGORITHM_NAME_BYTES));
+                header.putInt(digestLength);
+                header.putLong(written);
+                header.putInt(hashCount);
+                header.putLong(bitCount);
+                writeFully(channel, header, 0);
+                return written;
+            }
+        } finally {
+            for (RunReader run : runs) {
+                run.close();
+            }
+            for (Path runFile : runFiles) {
+                Files.deleteIfExists(runFile);
+            }
+        }
+    }
+
+    /**
+     * Tells whether a digest is in the set.
+     *
+     * @param digest The digest , of the algorithm of the set.
+     * @return True if the digest is in the set.
+     */
+    public boolean contains(byte[] digest) {
+        if (digest.length != digestLength || !filter.mightContain(digest)) {
+            return false;
+        }
+        long low = 0;
+        long high = count - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int comparison = compareRecord(middle, digest);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the algorithm of the digests.
+     *
+     * @return The name of the algorithm , as known by {@link MessageDigest}.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Retrieves the number of digests.
+     *
+     * @return The number of distinct digests of the set.
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Retrieves the filter in front of the index.
+     *
+     * @return The Bloom filter of the set.
+     */
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Compares a record of the index with a digest , byte after byte as unsigned values.
+     */
+    private int compareRecord(long index, byte[] digest) {
+        ByteBuffer segment = segments[(int) (index / recordsPerSegment)];
+        int position = (int) (index % recordsPerSegment) * digestLength;
+        for (int i = 0; i < digestLength; i++) {
+            int difference = (segment.get(position + i) & 0xFF) - (digest[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private static int digestLengthOf(String algorithm) {
+        try {
+            int length = MessageDigest.getInstance(algorithm).getDigestLength();
+            if (length < BloomFilter.MIN_DIGEST_LENGTH) {
+                throw new IllegalArgumentException("The digests of " + algorithm + " are too short for a known hash set.");
+            }
+            return length;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Sorts a run of digests in place and squeezes out its duplicates : a counting sort on the first two bytes , then
+     * a sort of each small bucket.
+     *
+     * @return The number of distinct digests , now at the beginning of the run.
+     */
+    private static int sortRun(byte[] records, int count, int digestLength) {
+        int[] bucketStarts = new int[65536 + 1];
+        for (int i = 0; i < count; i++) {
+            bucketStarts[bucketOf(records, i * digestLength) + 1]++;
+        }
+        for (int bucket = 0; bucket < 65536; bucket++) {
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        byte[] sorted = new byte[count * digestLength];
+        int[] next = Arrays.copyOf(bucketStarts, 65536);
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(records, i * digestLength, sorted, next[bucketOf(records, i * digestLength)]++ * digestLength, digestLength);
+        }
+        for (int bucket = 0; bucket < 65536; bucket++) {
+            int size = bucketStarts[bucket + 1] - bucketStarts[bucket];
+            if (size > 1) {
+                byte[][] digests = new byte[size][];
+                for (int i = 0; i < size; i++) {
+                    int from = (bucketStarts[bucket] + i) * digestLength;
+                    digests[i] = Arrays.copyOfRange(sorted, from, from + digestLength);
+                }
+                Arrays.sort(digests, Arrays::compareUnsigned);
+                for (int i = 0; i < size; i++) {
+                    System.arraycopy(digests[i], 0, sorted, (bucketStarts[bucket] + i) * digestLength, digestLength);
+                }
+            }
+        }
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || Arrays.compareUnsigned(sorted, i * digestLength, (i + 1) * digestLength,
+                    records, (distinct - 1) * digestLength, distinct * digestLength) != 0) {
+                System.arraycopy(sorted, i * digestLength, records, distinct++ * digestLength, digestLength);
+            }
+        }
+        return distinct;
+    }
+
+    private static int bucketOf(byte[] records, int offset) {
+        return ((records[offset] & 0xFF) << 8) | (records[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Maps the filter of an index in segments of {@link BloomFilter#WORDS_PER_SEGMENT} words , a mapping read-write
+     * growing the file to hold them.
+     */
+    private static MappedByteBuffer[] mapFilter(FileChannel channel, FileChannel.MapMode mode, long bitCount) throws IOException {
+        long wordCount = bitCount / 64;
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((wordCount + BloomFilter.WORDS_PER_SEGMENT - 1) / BloomFilter.WORDS_PER_SEGMENT)];
+        for (int segment = 0; segment < segments.length; segment++) {
+            long first = (long) segment * BloomFilter.WORDS_PER_SEGMENT;
+            long words = Math.min(BloomFilter.WORDS_PER_SEGMENT, wordCount - first);
+            segments[segment] = channel.map(mode, HEADER_SIZE + first * 8, words * 8);
+        }
+        return segments;
+    }
+
+    private static LongBuffer[] asWords(MappedByteBuffer[] segments) {
+        LongBuffer[] words = new LongBuffer[segments.length];
+        for (int segment = 0; segment < segments.length; segment++) {
+            words[segment] = segments[segment].duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+        return words;
+    }
+
+    /**
+     * Writes a filled buffer at a position of a channel , then empties it for the next records.
+     *
+     * @return The position following the bytes written.
+     */
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    private static boolean isHex(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.digit(text.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void parseHex(String hex, byte[] destination, int offset) {
+        for (int i = 0; i < hex.length(); i += 2) {
+            destination[offset + i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4) | Character.digit(hex.charAt(i + 1), 16));
+        }
+    }
+
+    /**
+     * A sorted run of distinct digests , read back digest after digest while the runs are merged.
+     */
+    private static final class RunReader implements Closeable {
+
+        private final InputStream in;
+        private final byte[] current;
+
+        private RunReader(InputStream in, int digestLength) {
+            this.in = in;
+            this.current = new byte[digestLength];
+        }
+
+        /**
+         * Reads the next digest of the run into {@link #current}.
+         *
+         * @return False once the run is exhausted.
+         */
+        private boolean advance() throws IOException {
+            return in.readNBytes(current, 0, current.length) == current.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KnownHashSet{algorithm=" + algorithm + ", digests=" + count + ", " + filter + "}";
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Recovery;
+
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+
+/**
+ * A file that may be recovered : where its evidence was found , the clusters believed to hold its content and how
+ * much that belief is worth.
+ */
+public class RecoveryCandidate {
+
+    private final String fileName;
+    private final RecoverySource source;
+    private final JournalEntry entry;
+    private final long size;
+    private final int[] clusters;
+    private final int skippedClusters;
+    private final double confidence;
+
+    /**
+     * Constructs a candidate.
+     *
+     * @param fileName        The name the file had , or a name made up for an orphaned chain.
+     * @param source          Where the evidence of the file was found.
+     * @param entry           The journal entry of the file , null for an orphaned chain.
+     * @param size            The size of the file in bytes.
+     * @param clusters        The clusters believed to hold the content , in file order.
+     * @param skippedClusters The number of clusters in use that were skipped while gathering the clusters.
+     * @param confidence      How likely the clusters hold the original content , from 0 to 1.
+     */
+    public RecoveryCandidate(String fileName, RecoverySource source, JournalEntry entry, long size, int[] clusters, int skippedClusters, double confidence) {
+        this.fileName = fileName;
+        this.source = source;
+        this.entry = entry;
+        this.size = size;
+        this.clusters = clusters.clone();
+        this.skippedClusters = skippedClusters;
+        this.confidence = confidence;
+    }
+
+    /**
+     * Retrieves the name of the file.
+     *
+     * @return The file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Retrieves where the evidence of the file was found.
+     *
+     * @return The source of the candidate.
+     */
+    public RecoverySource getSource() {
+        return source;
+    }
+
+    /**
+     * Retrieves the journal entry of the file.
+     *
+     * @return The entry , null for an orphaned chain.
+     */
+    public JournalEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Retrieves the size of the file.
+     *
+     * @return The number of bytes to recover.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the clusters believed to hold the content.
+     *
+     * @return A copy of the cluster ids , in file order.
+     */
+    public int[] getClusters() {
+        return clusters.clone();
+    }
+
+    /**
+     * Retrieves the number of clusters in use skipped while gathering the clusters of the file.
+     *
+     * @return 0 when the file is found on a run of free clusters.
+     */
+    public int getSkippedClusters() {
+        return skippedClusters;
+    }
+
+    /**
+     * Retrieves how likely the clusters hold the original content.
+     *
+     * @return The confidence , from 0 to 1.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecoveryCandidate{file=%s, source=%s, size=%d, clusters=%d, skippedClusters=%d, confidence=%.2f}",
+                fileName, source, size, clusters.length, skippedClusters, confidence);
+    }
+}
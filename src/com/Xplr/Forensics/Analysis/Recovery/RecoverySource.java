@@ -0,0 +1,38 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Recovery;
+
+/**
+ * Where the evidence of a recoverable file was found.
+ */
+public enum RecoverySource {
+
+    /**
+     * A tombstone of the journal , left by the deletion of the file.
+     */
+    DELETED_ENTRY,
+
+    /**
+     * A journal entry found in a free cluster , left there by an earlier copy of the journal.
+     */
+    STALE_ENTRY,
+
+    /**
+     * A chain of the allocation table that no journal entry starts , its name and exact size are lost.
+     */
+    ORPHANED_CHAIN
+}
@@ -0,0 +1,476 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Recovery;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.FAT.ClusterAllocator;
+import com.Xplr.Forensics.Models.FAT.FAT;
+import com.Xplr.Forensics.Models.FAT.FATEntry;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.Journal;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterOwnershipIndex;
+import com.Xplr.Forensics.Models.VirtualDisk.ImportSummary;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the files that can still be recovered from a disk and copies them into another disk.
+ * <p>
+ * The tombstones the journal keeps for the deleted files are read from its whole chain of clusters , then every run
+ * of free clusters is scanned in parallel by a {@link ForkJoinPool} , through {@link ChunkScanner#forEachChunk} , for
+ * the journal entry lines an earlier copy of the journal left in space that is free now. Since the deletion freed the
+ * chain of the file , the clusters of each entry are gathered from its first cluster onwards , the way the allocator
+ * handed them out : the free clusters are taken in order and the clusters in use are skipped. The most recent deletions are placed first , so that a
+ * cluster reused by a later file and freed again is given to that later file.
+ * </p>
+ *
+ * <p>
+ * The chains of the allocation table that no entry starts are reported as well , with a made up name and their
+ * whole clusters as content. Every candidate holds a confidence : high for a tombstone whose clusters follow each
+ * other and are all free , lower when clusters in use had to be skipped , or when the evidence is a stale entry or
+ * an orphaned chain. The disk should not be written while it is scanned.
+ * </p>
+ */
+public class UndeleteScanner {
+
+    /**
+     * The longest journal entry line , a line still open that far from its start is given up.
+     */
+    private static final int MAX_LINE_BYTES = 4096;
+
+    /**
+     * The beginning of every journal entry line.
+     */
+    private static final byte[] ENTRY_PREFIX = "JournalEntry{".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The marker in front of the line of a deleted entry.
+     */
+    private static final byte[] DELETED_PREFIX = Journal.DELETED_MARKER.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The confidence in a tombstone whose clusters are all free and follow each other.
+     */
+    private static final double DELETED_ENTRY_CONFIDENCE = 0.9;
+
+    /**
+     * The confidence in a stale entry whose clusters are all free and follow each other.
+     */
+    private static final double STALE_ENTRY_CONFIDENCE = 0.7;
+
+    /**
+     * The confidence in an orphaned chain ending with an end of chain marker.
+     */
+    private static final double ORPHANED_CHAIN_CONFIDENCE = 0.6;
+
+    /**
+     * The confidence in an orphaned chain cut short.
+     */
+    private static final double BROKEN_CHAIN_CONFIDENCE = 0.4;
+
+    /**
+     * The factor applied to the confidence of a file whose clusters do not follow each other.
+     */
+    private static final double FRAGMENTED_FACTOR = 0.5;
+
+    private final VirtualDisk disk;
+    private final DiskStorage storage;
+    private final DiskGeometry geometry;
+    private final int parallelism;
+    private final int clusterBytes;
+    private final int chunkClusters;
+
+    /**
+     * A cluster of zeros , the free clusters that were never written are compared with it and not searched.
+     */
+    private final byte[] zeros;
+
+    /**
+     * Constructs a scanner using every core.
+     *
+     * @param disk The disk to scan.
+     */
+    public UndeleteScanner(VirtualDisk disk) {
+        this(disk, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a scanner.
+     *
+     * @param disk        The disk to scan.
+     * @param parallelism The number of threads scanning the clusters and copying the recovered files.
+     * @throws IllegalArgumentException if the parallelism is not strictly positive.
+     */
+    public UndeleteScanner(VirtualDisk disk, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be strictly positive.");
+        }
+        this.disk = disk;
+        this.storage = disk.getStorage();
+        this.geometry = disk.getGeometry();
+        this.parallelism = parallelism;
+        this.clusterBytes = geometry.getClusterBytes();
+        this.chunkClusters = ChunkScanner.chunkClusters(clusterBytes); // The largest number of free clusters scanned by a single task
+        this.zeros = new byte[clusterBytes];
+    }
+
+    /**
+     * Scans the disk for recoverable files.
+     *
+     * @return The candidates , the most likely first.
+     * @throws IOException If the image cannot be read.
+     */
+    public List<RecoveryCandidate> scan() throws IOException {
+        ClusterAllocator allocator = disk.getMain().getAllocator();
+        int end = DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount();
+
+        // The tombstones first , the lines of the journal may cross from one cluster of its chain to the next
+        List<Integer> journalClusters = disk.getJournalClusters();
+        ConcurrentLinkedQueue<FoundEntry> found = new ConcurrentLinkedQueue<>();
+        List<JournalEntry> tombstones = Journal.fromByteArray(readChain(journalClusters)).getDeletedEntries();
+        for (int i = 0; i < tombstones.size(); i++) {
+            found.add(new FoundEntry(tombstones.get(i), RecoverySource.DELETED_ENTRY, i)); // Oldest first , the way the journal writes them
+        }
+
+        // Then the free space cut in runs of at most a chunk
+        List<int[]> regions = new ArrayList<>();
+        for (int cluster = DiskGeometry.FIRST_CLUSTER; cluster < end; ) {
+            if (allocator.isUsed(cluster)) {
+                cluster++;
+                continue;
+            }
+            int first = cluster;
+            while (cluster < end && cluster - first < chunkClusters && !allocator.isUsed(cluster)) {
+                cluster++;
+            }
+            regions.add(new int[]{first, cluster - first});
+        }
+
+        ChunkScanner.forEachChunk(0, regions.size(), 1, parallelism, (from, to, out) -> scanRegion(regions.get((int) from), found), "scan");
+
+        // The tombstones first , then the stale entries , the latest written first in both cases
+        List<FoundEntry> entries = new ArrayList<>(found);
+        entries.sort(Comparator.comparingInt((FoundEntry entry) -> entry.source.ordinal()).thenComparing(entry -> -entry.position));
+        Set<String> seen = new HashSet<>();
+        for (JournalEntry live : disk.getRootDirectory().getEntries()) {
+            seen.add(keyOf(live)); // An entry still in the journal was not deleted
+        }
+        List<RecoveryCandidate> candidates = new ArrayList<>();
+        BitSet claimed = new BitSet();
+        for (FoundEntry entry : entries) {
+            if (seen.add(keyOf(entry.entry))) {
+                RecoveryCandidate candidate = gatherClusters(entry, allocator, claimed, end);
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        candidates.addAll(orphanedChains(allocator, end, journalClusters));
+        candidates.sort(Comparator.comparingDouble(RecoveryCandidate::getConfidence).reversed().thenComparing(RecoveryCandidate::getFileName));
+        return candidates;
+    }
+
+    /**
+     * Copies candidates into another disk , in parallel. A file whose name is already taken on the target is
+     * renamed with a {@code ~} and a number.
+     *
+     * @param candidates    The candidates , as returned by {@link #scan()}.
+     * @param target        The disk the files are written to , another disk than the scanned one.
+     * @param minConfidence The confidence below which a candidate is skipped.
+     * @return The summary of the recovery , the candidates below the confidence are counted as skipped.
+     * @throws IllegalArgumentException if the target is the scanned disk.
+     */
+    public ImportSummary recover(List<RecoveryCandidate> candidates, VirtualDisk target, double minConfidence) {
+        if (target == disk) {
+            throw new IllegalArgumentException("The files must be recovered into another disk , writing to the scanned one would overwrite them.");
+        }
+        long start = System.nanoTime();
+        LongAdder filesRecovered = new LongAdder();
+        LongAdder bytesRecovered = new LongAdder();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        long filesSkipped = 0;
+        Set<String> names = new HashSet<>();
+        for (JournalEntry entry : target.getRootDirectory().getEntries()) {
+            names.add(entry.getFileName());
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            for (RecoveryCandidate candidate : candidates) {
+                if (candidate.getConfidence() < minConfidence) {
+                    filesSkipped++;
+                    continue;
+                }
+                String name = candidate.getFileName();
+                for (int copy = 1; !names.add(name); copy++) {
+                    name = candidate.getFileName() + "~" + copy;
+                }
+                String targetName = name;
+                executor.execute(() -> {
+                    try (InputStream in = new ClusterInputStream(candidate.getClusters(), candidate.getSize())) {
+                        target.createFile(targetName, in, candidate.getSize());
+                        filesRecovered.increment();
+                        bytesRecovered.add(candidate.getSize());
+                    } catch (IOException | RuntimeException e) {
+                        failures.add(targetName + ": " + e.getMessage());
+                    }
+                });
+            }
+        } // Closing the executor waits for every file in flight
+        return new ImportSummary(filesRecovered.sum(), filesSkipped, bytesRecovered.sum(), System.nanoTime() - start, new ArrayList<>(failures));
+    }
+
+    /**
+     * Gathers the clusters of an entry from its first cluster onwards , skipping the clusters in use or given to a
+     * more recent candidate.
+     *
+     * @return The candidate , null if its first cluster is in use again or the disk ends before the file does.
+     */
+    private RecoveryCandidate gatherClusters(FoundEntry found, ClusterAllocator allocator, BitSet claimed, int end) {
+        JournalEntry entry = found.entry;
+        long size = entry.getFileSize();
+        double confidence = found.source == RecoverySource.DELETED_ENTRY ? DELETED_ENTRY_CONFIDENCE : STALE_ENTRY_CONFIDENCE;
+        int needed = (int) ((size + clusterBytes - 1) / clusterBytes);
+        if (needed == 0) {
+            return new RecoveryCandidate(entry.getFileName(), found.source, entry, 0, new int[0], 0, confidence);
+        }
+        int first = entry.getCluster_id();
+        if (!geometry.isDataCluster(first) || allocator.isUsed(first) || claimed.get(first)) {
+            return null; // The first cluster was handed out again , what it holds now belongs to another file
+        }
+        int[] clusters = new int[needed];
+        int gathered = 0;
+        int skipped = 0;
+        for (int cluster = first; gathered < needed && cluster < end && skipped <= needed; cluster++) {
+            if (allocator.isUsed(cluster) || claimed.get(cluster)) {
+                skipped++;
+            } else {
+                clusters[gathered++] = cluster;
+            }
+        }
+        if (gathered < needed) {
+            return null;
+        }
+        for (int cluster : clusters) {
+            claimed.set(cluster);
+        }
+        if (skipped > 0) {
+            confidence *= FRAGMENTED_FACTOR * needed / (needed + skipped);
+        }
+        return new RecoveryCandidate(entry.getFileName(), found.source, entry, size, clusters, skipped, confidence);
+    }
+
+    /**
+     * Reads a chain of clusters as one run of bytes.
+     */
+    private byte[] readChain(List<Integer> chain) {
+        byte[] bytes = new byte[chain.size() * clusterBytes];
+        for (int i = 0; i < chain.size(); i++) {
+            storage.read(geometry.clusterToByteOffset(chain.get(i)), bytes, i * clusterBytes, clusterBytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Finds the chains of clusters in use that no journal entry owns , the chain of the journal itself aside.
+     */
+    private List<RecoveryCandidate> orphanedChains(ClusterAllocator allocator, int end, List<Integer> journalClusters) {
+        ClusterOwnershipIndex owners = disk.getOwnershipIndex();
+        FAT fat = disk.getMain();
+        BitSet journal = new BitSet();
+        journalClusters.forEach(journal::set);
+        BitSet orphans = new BitSet();
+        for (int cluster = DiskGeometry.FIRST_CLUSTER; cluster < end; cluster++) {
+            if (!journal.get(cluster) && allocator.isUsed(cluster) && owners.ownerIdOf(cluster) == ClusterOwnershipIndex.NO_OWNER) {
+                FATEntry fatEntry = fat.findFATEntryUsingClusterIdentification(cluster);
+                if (fatEntry != null && !fatEntry.isBAD()) {
+                    orphans.set(cluster);
+                }
+            }
+        }
+        // The head of a chain is an orphan no other orphan points to
+        BitSet pointed = new BitSet();
+        for (int cluster = orphans.nextSetBit(0); cluster >= 0; cluster = orphans.nextSetBit(cluster + 1)) {
+            int next = nextOf(fat, cluster);
+            if (next >= 0 && orphans.get(next)) {
+                pointed.set(next);
+            }
+        }
+
+        List<RecoveryCandidate> chains = new ArrayList<>();
+        BitSet visited = new BitSet();
+        for (int head = orphans.nextSetBit(0); head >= 0; head = orphans.nextSetBit(head + 1)) {
+            if (pointed.get(head)) {
+                continue;
+            }
+            List<Integer> chain = new ArrayList<>();
+            boolean terminated = false;
+            for (int cluster = head; cluster >= 0 && orphans.get(cluster) && !visited.get(cluster); ) {
+                visited.set(cluster);
+                chain.add(cluster);
+                FATEntry fatEntry = fat.findFATEntryUsingClusterIdentification(cluster);
+                if (fatEntry.isEndOfChain()) {
+                    terminated = true;
+                    break;
+                }
+                cluster = nextOf(fat, cluster);
+            }
+            int[] clusters = chain.stream().mapToInt(Integer::intValue).toArray();
+            chains.add(new RecoveryCandidate("orphan-" + head, RecoverySource.ORPHANED_CHAIN, null, (long) clusters.length * clusterBytes,
+                    clusters, 0, terminated ? ORPHANED_CHAIN_CONFIDENCE : BROKEN_CHAIN_CONFIDENCE));
+        }
+        return chains;
+    }
+
+    /**
+     * Reads the next cluster of a chain from the allocation table.
+     *
+     * @return The next cluster , -1 at the end of the chain or on a value that is not a data cluster.
+     */
+    private int nextOf(FAT fat, int cluster) {
+        FATEntry fatEntry = fat.findFATEntryUsingClusterIdentification(cluster);
+        if (fatEntry == null || fatEntry.isEndOfChain() || fatEntry.isFREE() || fatEntry.isBAD()) {
+            return -1;
+        }
+        int next = fatEntry.getFatEntryValue();
+        return geometry.isDataCluster(next) ? next : -1;
+    }
+
+    private static String keyOf(JournalEntry entry) {
+        return entry.getFileName() + '\0' + entry.getCluster_id() + '\0' + entry.getFileSize();
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        return offset >= 0 && offset + prefix.length <= bytes.length
+                && Arrays.equals(bytes, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * A journal entry line found by the scan.
+     */
+    private static final class FoundEntry {
+
+        private final JournalEntry entry;
+        private final RecoverySource source;
+        private final long position; // The index of a tombstone in the journal , the image offset of a stale line , later lines were written later
+
+        private FoundEntry(JournalEntry entry, RecoverySource source, long position) {
+            this.entry = entry;
+            this.source = source;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Scans a region of free clusters for the journal entry lines it holds.
+     *
+     * @param region The first cluster of the region and its number of clusters.
+     * @param found    Collects the entries found , from every scanning thread.
+     */
+    private void scanRegion(int[] region, ConcurrentLinkedQueue<FoundEntry> found) {
+        int first = region[0];
+        int length = region[1] * clusterBytes;
+        long position = geometry.clusterToByteOffset(first);
+        // The bytes after the region are read as well , for a line starting in its last cluster
+        byte[] bytes = new byte[(int) Math.min(length + MAX_LINE_BYTES, storage.size() - position)];
+        storage.read(position, bytes, 0, bytes.length);
+        for (int offset = 0; offset < length; offset += clusterBytes) {
+            if (Arrays.mismatch(bytes, offset, offset + clusterBytes, zeros, 0, clusterBytes) < 0) {
+                continue; // Never written or wiped , the common case of the free space
+            }
+            for (int index = offset; index < offset + clusterBytes; index++) {
+                if (bytes[index] == ENTRY_PREFIX[0] && startsWith(bytes, index, ENTRY_PREFIX)) {
+                    boolean deleted = startsWith(bytes, index - DELETED_PREFIX.length, DELETED_PREFIX);
+                    parseLine(bytes, deleted ? index - DELETED_PREFIX.length : index, deleted, position, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the line starting at an index and records the entry it holds.
+     */
+    private void parseLine(byte[] bytes, int start, boolean deleted, long position, ConcurrentLinkedQueue<FoundEntry> found) {
+        int end = start;
+        int limit = Math.min(bytes.length, start + MAX_LINE_BYTES);
+        while (end < limit && bytes[end] != '\n' && bytes[end] != 0x00) {
+            end++;
+        }
+        if (end == limit) {
+            return; // The line is cut , by the end of the image or by a later write
+        }
+        Journal line = Journal.fromByteArray(Arrays.copyOfRange(bytes, start, end));
+        List<JournalEntry> entries = deleted ? line.getDeletedEntries() : line.getEntries();
+        for (JournalEntry entry : entries) {
+            found.add(new FoundEntry(entry, RecoverySource.STALE_ENTRY, position + start));
+        }
+    }
+
+    /**
+     * Streams the content of a candidate from its clusters.
+     */
+    private final class ClusterInputStream extends InputStream {
+
+        private final int[] clusters;
+        private final long size;
+        private long position;
+
+        private ClusterInputStream(int[] clusters, long size) {
+            this.clusters = clusters;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destination, int offset, int length) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            int done = 0;
+            while (done < length && position < size) {
+                int index = (int) (position / clusterBytes);
+                int inCluster = (int) (position % clusterBytes);
+                int chunk = (int) Math.min(Math.min(length - done, clusterBytes - inCluster), size - position);
+                storage.read(geometry.clusterToByteOffset(clusters[index]) + inCluster, destination, offset + done, chunk);
+                done += chunk;
+                position += chunk;
+            }
+            return done;
+        }
+    }
+}
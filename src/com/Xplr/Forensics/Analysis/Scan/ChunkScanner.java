@@ -0,0 +1,291 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Scan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a scan of an image cut in chunks on a {@link ForkJoinPool} , the pipeline shared by the analyses of a disk.
+ * <p>
+ * A range of units , bytes , clusters or chunk indexes , is split in halves on whole chunk boundaries until a task
+ * holds a single chunk , which is handed to a {@link ChunkScan}. What a chunk finds goes through a bounded queue
+ * drained by the thread that started the scan , so a slow consumer slows the scan down instead of piling up results
+ * in memory. When the consumer fails the scan is cancelled : the tasks waiting on the full queue give up and the
+ * chunks not started yet are skipped.
+ * </p>
+ *
+ * <p>
+ * The failures of the scanning threads are rethrown as the {@link IOException} they wrap , see
+ * {@link #unwrap(ExecutionException, String)} , which the analyses running their own executors use as well.
+ * </p>
+ */
+public final class ChunkScanner {
+
+    /**
+     * The number of bytes of the image a leaf task reads , rounded down to whole clusters where the scan walks clusters.
+     */
+    public static final int CHUNK_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * How long the draining thread waits for a result before checking whether the scan is over.
+     */
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * How long a scanning thread waits on a full queue before checking whether the scan was cancelled.
+     */
+    private static final long OFFER_MILLIS = 50;
+
+    private ChunkScanner() {
+        // Only static helpers here
+    }
+
+    /**
+     * Scans a single chunk , on a thread of the pool.
+     *
+     * @param <T> The type of what the scan finds.
+     */
+    @FunctionalInterface
+    public interface ChunkScan<T> {
+
+        /**
+         * Scans the units {@code [from, to)}.
+         *
+         * @param from The first unit of the chunk.
+         * @param to   The unit after the last one of the chunk.
+         * @param out  Takes what the chunk finds , and tells whether the scan was cancelled.
+         */
+        void scan(long from, long to, Emitter<T> out);
+    }
+
+    /**
+     * Hands the results of the chunks to the thread draining them.
+     *
+     * @param <T> The type of what the scan finds.
+     */
+    public interface Emitter<T> {
+
+        /**
+         * Puts a result in the queue , waiting while it is full unless the scan was cancelled.
+         *
+         * @param item The result.
+         */
+        void emit(T item);
+
+        /**
+         * Tells whether the scan was cancelled , a long chunk should stop as soon as it is.
+         *
+         * @return True if the scan was cancelled.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * Receives the results of the chunks , always on the thread that started the scan , one at a time.
+     *
+     * @param <T> The type of what the scan finds.
+     */
+    @FunctionalInterface
+    public interface Drain<T> {
+
+        /**
+         * Handles a result.
+         *
+         * @param item The result.
+         * @throws IOException If the result cannot be handled , the scan is then cancelled.
+         */
+        void accept(T item) throws IOException;
+    }
+
+    /**
+     * Scans a range chunk by chunk in parallel , and drains what the chunks find on the calling thread.
+     *
+     * @param from          The first unit of the range.
+     * @param to            The unit after the last one of the range.
+     * @param chunkUnits    The number of units of a chunk.
+     * @param parallelism   The number of threads scanning the chunks.
+     * @param queueCapacity The number of results the queue holds before the chunks wait for the drain.
+     * @param scan          Scans one chunk.
+     * @param drain         Receives the results.
+     * @param activity      The name of the scan in the error messages , such as {@code carving}.
+     * @param <T>           The type of what the scan finds.
+     * @throws IOException If the image cannot be read , or if the drain fails ; the scan is stopped then.
+     */
+    public static <T> void scan(long from, long to, long chunkUnits, int parallelism, int queueCapacity,
+                                ChunkScan<T> scan, Drain<T> drain, String activity) throws IOException {
+        Pipeline<T> pipeline = new Pipeline<>(new ArrayBlockingQueue<>(queueCapacity));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ForkJoinTask<Void> task = pool.submit(new ChunkTask<>(from, to, chunkUnits, scan, pipeline));
+            // The scan is over once the root task is done , the queue then only holds what is left to drain
+            while (!task.isDone() || !pipeline.queue.isEmpty()) {
+                T item = pipeline.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    drain.accept(item);
+                }
+            }
+            task.get(); // Rethrows what went wrong in the scan
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The " + activity + " was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e, activity);
+        } finally {
+            pipeline.cancelled = true; // Stops the tasks still waiting on a full queue when the drain failed
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans a range chunk by chunk in parallel , for a scan whose chunks keep what they find themselves.
+     *
+     * @param from        The first unit of the range.
+     * @param to          The unit after the last one of the range.
+     * @param chunkUnits  The number of units of a chunk.
+     * @param parallelism The number of threads scanning the chunks.
+     * @param scan        Scans one chunk , it must not emit anything.
+     * @param activity    The name of the scan in the error messages , such as {@code analysis}.
+     * @throws IOException If the image cannot be read.
+     */
+    public static void forEachChunk(long from, long to, long chunkUnits, int parallelism,
+                                    ChunkScan<Void> scan, String activity) throws IOException {
+        Pipeline<Void> pipeline = new Pipeline<>(null);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(new ChunkTask<>(from, to, chunkUnits, scan, pipeline)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The " + activity + " was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e, activity);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Retrieves the number of clusters of a chunk.
+     *
+     * @param clusterBytes The size of a cluster in bytes.
+     * @return The number of whole clusters in {@link #CHUNK_BYTES} , at least one.
+     */
+    public static int chunkClusters(int clusterBytes) {
+        return Math.max(1, CHUNK_BYTES / clusterBytes);
+    }
+
+    /**
+     * Finds the I/O failure behind the failure of a task.
+     * The tasks cannot throw an {@link IOException} , they wrap it in an {@link UncheckedIOException}.
+     *
+     * @param e        The failure of the task.
+     * @param activity The name of the work the task was doing , such as {@code hashing}.
+     * @return The I/O failure of the task , or a new one wrapping any other failure.
+     */
+    public static IOException unwrap(ExecutionException e, String activity) {
+        if (e.getCause() instanceof IOException) {
+            return (IOException) e.getCause();
+        }
+        if (e.getCause() instanceof UncheckedIOException) {
+            return ((UncheckedIOException) e.getCause()).getCause();
+        }
+        return new IOException("The " + activity + " failed : " + e.getCause(), e.getCause());
+    }
+
+    /**
+     * The queue and the cancellation flag shared by the tasks of one scan.
+     */
+    private static final class Pipeline<T> implements Emitter<T> {
+
+        private final BlockingQueue<T> queue;
+
+        /**
+         * Set when the scan stops early , read by every task.
+         */
+        private volatile boolean cancelled;
+
+        private Pipeline(BlockingQueue<T> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void emit(T item) {
+            if (queue == null) {
+                throw new IllegalStateException("This scan has no drain , its chunks cannot emit results.");
+            }
+            try {
+                while (!cancelled && !queue.offer(item, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // The drain is behind , let's wait for it
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Scans a range of units , splitting it in halves until it holds a single chunk.
+     */
+    private static final class ChunkTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final long chunkUnits;
+        private final transient ChunkScan<T> scan; // A task only lives in its pool , it is never serialized
+        private final transient Pipeline<T> pipeline;
+
+        private ChunkTask(long from, long to, long chunkUnits, ChunkScan<T> scan, Pipeline<T> pipeline) {
+            this.from = from;
+            this.to = to;
+            this.chunkUnits = chunkUnits;
+            this.scan = scan;
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        protected void compute() {
+            if (pipeline.cancelled) {
+                return;
+            }
+            if (to - from > chunkUnits) {
+                // Chunks are split on whole chunk boundaries , the leaves then line up with the prefetched ranges
+                long middle = from + (to - from) / chunkUnits / 2 * chunkUnits;
+                if (middle == from) {
+                    middle = from + chunkUnits;
+                }
+                invokeAll(new ChunkTask<>(from, middle, chunkUnits, scan, pipeline), new ChunkTask<>(middle, to, chunkUnits, scan, pipeline));
+                return;
+            }
+            scan.scan(from, to, pipeline);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton over bytes , finding every occurrence of many patterns in a single pass.
+ * <p>
+ * The trie of the patterns is turned into a complete deterministic automaton : every state has a transition for
+ * each of the 256 byte values , the failure links being folded into the table once and for all. Scanning a byte
+ * is then one array lookup , whatever the number of patterns , and the whole table is shared read-only by the
+ * threads of a search. The table takes 1 KB per state , a state per distinct pattern prefix.
+ * </p>
+ *
+ * <p>
+ * A case insensitive automaton folds the ASCII letters : the patterns are lowered when they are added , and the
+ * transitions of the upper case letters are copies of the lower case ones. Bytes outside A-Z are compared as they
+ * are , which also folds the ASCII letters of UTF-16LE patterns.
+ * </p>
+ */
+public class AhoCorasickAutomaton {
+
+    private static final int ALPHABET = 256;
+
+    /**
+     * The transitions , {@code ALPHABET} entries per state , state 0 being the root.
+     */
+    private final int[] transitions;
+
+    /**
+     * The patterns ending at each state , following the failure links , null for the states ending none.
+     */
+    private final int[][] outputs;
+
+    private final int[] patternLengths;
+    private final int longestPattern;
+
+    /**
+     * Compiles a set of patterns.
+     *
+     * @param patterns        The patterns , their index in the list is the id reported by {@link #outputsOf(int)}.
+     * @param caseInsensitive True to fold the ASCII letters.
+     * @throws IllegalArgumentException if there is no pattern or a pattern is empty.
+     */
+    public AhoCorasickAutomaton(List<byte[]> patterns, boolean caseInsensitive) {
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("An automaton needs at least one pattern.");
+        }
+
+        // First the trie , -1 marking the missing children
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        trie.add(newRow());
+        ends.add(null);
+        this.patternLengths = new int[patterns.size()];
+        int longest = 0;
+        for (int id = 0; id < patterns.size(); id++) {
+            byte[] pattern = patterns.get(id);
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("The pattern " + id + " is empty.");
+            }
+            int state = 0;
+            for (byte b : pattern) {
+                int symbol = caseInsensitive ? fold(b & 0xFF) : b & 0xFF;
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newRow());
+                    ends.add(null);
+                }
+                state = trie.get(state)[symbol];
+            }
+            ends.set(state, append(ends.get(state), id));
+            patternLengths[id] = pattern.length;
+            longest = Math.max(longest, pattern.length);
+        }
+        this.longestPattern = longest;
+
+        // Then the failure links , breadth first , turned into transitions as we go
+        int stateCount = trie.size();
+        this.transitions = new int[stateCount * ALPHABET];
+        this.outputs = new int[stateCount][];
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        outputs[0] = ends.get(0);
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = trie.get(0)[symbol];
+            if (child < 0) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = child;
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            outputs[state] = merge(ends.get(state), outputs[failure[state]]);
+            int[] children = trie.get(state);
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = children[symbol];
+                int fallback = transitions[failure[state] * ALPHABET + symbol];
+                if (child < 0) {
+                    transitions[state * ALPHABET + symbol] = fallback;
+                } else {
+                    transitions[state * ALPHABET + symbol] = child;
+                    failure[child] = fallback;
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        if (caseInsensitive) {
+            for (int state = 0; state < stateCount; state++) {
+                int row = state * ALPHABET;
+                System.arraycopy(transitions, row + 'a', transitions, row + 'A', 26);
+            }
+        }
+    }
+
+    /**
+     * Follows the transition of a byte.
+     *
+     * @param state The current state , 0 at the start of a scan.
+     * @param b     The byte read.
+     * @return The next state.
+     */
+    public int next(int state, byte b) {
+        return transitions[state * ALPHABET + (b & 0xFF)];
+    }
+
+    /**
+     * Runs the automaton over a range of bytes and reports every match.
+     *
+     * @param bytes    The bytes to scan.
+     * @param from     The index of the first byte to scan , the automaton starts in state 0 there.
+     * @param to       The index following the last byte to scan.
+     * @param listener Receives the matches , in the order their last byte is read.
+     */
+    public void scan(byte[] bytes, int from, int to, MatchListener listener) {
+        int[] table = transitions;
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = table[(state << 8) | (bytes[i] & 0xFF)];
+            int[] matched = outputs[state];
+            if (matched != null) {
+                for (int id : matched) {
+                    listener.onMatch(id, i - patternLengths[id] + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the patterns ending at a state.
+     *
+     * @param state The state.
+     * @return The ids of the patterns , null if none ends there.
+     */
+    public int[] outputsOf(int state) {
+        return outputs[state];
+    }
+
+    /**
+     * Retrieves the length of a pattern.
+     *
+     * @param id The id of the pattern.
+     * @return Its number of bytes.
+     */
+    public int getPatternLength(int id) {
+        return patternLengths[id];
+    }
+
+    /**
+     * Retrieves the length of the longest pattern , two scanned chunks must overlap by this length minus one.
+     *
+     * @return The number of bytes of the longest pattern.
+     */
+    public int getLongestPattern() {
+        return longestPattern;
+    }
+
+    /**
+     * Retrieves the number of states.
+     *
+     * @return The number of states of the automaton.
+     */
+    public int getStateCount() {
+        return outputs.length;
+    }
+
+    /**
+     * Receives the matches of a scan.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+
+        /**
+         * Called for every occurrence of a pattern.
+         *
+         * @param patternId The id of the pattern.
+         * @param start     The index of the first byte of the occurrence in the scanned array.
+         */
+        void onMatch(int patternId, int start);
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int fold(int symbol) {
+        return symbol >= 'A' && symbol <= 'Z' ? symbol + ('a' - 'A') : symbol;
+    }
+
+    private static int[] append(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (own == null) {
+            return inherited;
+        }
+        if (inherited == null) {
+            return own;
+        }
+        int[] result = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, result, own.length, inherited.length);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+import java.nio.charset.Charset;
+
+/**
+ * One encoded variant of a search term : the same term is looked for as ASCII text and as UTF-16LE text , each
+ * variant being a pattern of its own in the automaton.
+ */
+public class Keyword {
+
+    private final String term;
+    private final Charset charset;
+    private final byte[] pattern;
+
+    /**
+     * Constructs a variant of a term.
+     *
+     * @param term    The term , as the analyst typed it.
+     * @param charset The encoding looked for.
+     */
+    public Keyword(String term, Charset charset) {
+        this.term = term;
+        this.charset = charset;
+        this.pattern = term.getBytes(charset);
+    }
+
+    /**
+     * Retrieves the term.
+     *
+     * @return The term , as the analyst typed it.
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * Retrieves the encoding of the variant.
+     *
+     * @return The charset the term was encoded with.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Retrieves the bytes looked for.
+     *
+     * @return A copy of the encoded term.
+     */
+    public byte[] getPattern() {
+        return pattern.clone();
+    }
+
+    /**
+     * Retrieves the number of bytes of the encoded term.
+     *
+     * @return The length of the pattern.
+     */
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public String toString() {
+        return term + " (" + charset.name() + ")";
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+/**
+ * An occurrence of a keyword in a disk image , located both in the image and in the file system.
+ */
+public class KeywordHit {
+
+    private final Keyword keyword;
+    private final long imageOffset;
+    private final int clusterId;
+    private final String fileName;
+
+    /**
+     * Constructs a hit.
+     *
+     * @param keyword     The variant of the term that was found.
+     * @param imageOffset The byte offset in the image of the first byte of the occurrence.
+     * @param clusterId   The cluster holding the first byte , -1 outside the data region.
+     * @param fileName    The file owning the cluster , null if the cluster is not allocated to a file.
+     */
+    public KeywordHit(Keyword keyword, long imageOffset, int clusterId, String fileName) {
+        this.keyword = keyword;
+        this.imageOffset = imageOffset;
+        this.clusterId = clusterId;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Retrieves the variant of the term that was found.
+     *
+     * @return The keyword.
+     */
+    public Keyword getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Retrieves the position of the occurrence.
+     *
+     * @return The byte offset in the image of its first byte.
+     */
+    public long getImageOffset() {
+        return imageOffset;
+    }
+
+    /**
+     * Retrieves the cluster of the occurrence.
+     *
+     * @return The ID of the cluster holding its first byte , -1 if it lies in the reserved region or the FATs.
+     */
+    public int getClusterId() {
+        return clusterId;
+    }
+
+    /**
+     * Retrieves the file the occurrence belongs to.
+     *
+     * @return The name of the file owning the cluster , null for the unallocated space and the metadata.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public String toString() {
+        return "KeywordHit{keyword=" + keyword + ", offset=" + imageOffset + ", cluster=" + clusterId
+                + ", file=" + (fileName == null ? "<unallocated>" : fileName) + "}";
+    }
+}
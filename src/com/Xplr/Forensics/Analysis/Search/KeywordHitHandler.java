@@ -0,0 +1,35 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+import java.io.IOException;
+
+/**
+ * Receives the hits of a {@link KeywordSearcher}. The handler is always called from the thread that started the
+ * search , one hit at a time , so it needs no synchronization of its own.
+ */
+@FunctionalInterface
+public interface KeywordHitHandler {
+
+    /**
+     * Handles a hit , usually by recording it in a report.
+     *
+     * @param hit The hit.
+     * @throws IOException If the hit cannot be handled , the search is then stopped.
+     */
+    void handle(KeywordHit hit) throws IOException;
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of {@link KeywordSearcher#search(KeywordHitHandler)} : how many hits were found , for which terms ,
+ * how many bytes were scanned and how long it took.
+ */
+public class KeywordSearchSummary {
+
+    private final long hits;
+    private final long bytesScanned;
+    private final long elapsedNanos;
+    private final Map<String, Long> hitsPerTerm;
+
+    /**
+     * Constructs the summary of a search.
+     *
+     * @param hits         The number of hits handed to the handler.
+     * @param bytesScanned The number of bytes of the image scanned.
+     * @param elapsedNanos The duration of the whole search in nanoseconds.
+     * @param hitsPerTerm  The number of hits of each term , all encodings together.
+     */
+    public KeywordSearchSummary(long hits, long bytesScanned, long elapsedNanos, Map<String, Long> hitsPerTerm) {
+        this.hits = hits;
+        this.bytesScanned = bytesScanned;
+        this.elapsedNanos = elapsedNanos;
+        this.hitsPerTerm = Collections.unmodifiableMap(new TreeMap<>(hitsPerTerm));
+    }
+
+    /**
+     * Retrieves the number of hits.
+     *
+     * @return The number of hits handed to the handler.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of bytes scanned.
+     *
+     * @return The bytes of the image run through the automaton.
+     */
+    public long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    /**
+     * Retrieves the duration of the search.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the number of hits of each term.
+     *
+     * @return The counts , by term ; the terms without hit are not listed.
+     */
+    public Map<String, Long> getHitsPerTerm() {
+        return hitsPerTerm;
+    }
+
+    /**
+     * Computes the scan throughput.
+     *
+     * @return The number of bytes scanned per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesScanned * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KeywordSearchSummary{hits=%d, terms=%s, scanned=%d, seconds=%.2f, MB/s=%.1f}",
+                hits, hitsPerTerm, bytesScanned, elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
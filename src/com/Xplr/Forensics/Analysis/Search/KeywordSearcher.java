@@ -0,0 +1,188 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Search;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterOwnershipIndex;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Looks for many keywords at once in the whole image of a disk.
+ * <p>
+ * Every term is looked for as ASCII text (UTF-8 for the terms that are not pure ASCII) and as UTF-16LE text ,
+ * all the variants being compiled into a single {@link AhoCorasickAutomaton}. The image is then read once , in
+ * chunks scanned in parallel by a {@link ForkJoinPool} through the {@link ChunkScanner} pipeline : the cost of the search grows with the size of the image ,
+ * not with the number of keywords. Each chunk is read with as many bytes of the next one as the longest pattern
+ * minus one , and only reports the occurrences starting in it , so an occurrence crossing two chunks is found once.
+ * </p>
+ *
+ * <p>
+ * Every hit is located in the file system : the cluster holding it and , through the
+ * {@link ClusterOwnershipIndex} of the disk , the file owning that cluster. The disk must not be written during a
+ * search. The hits go through a bounded queue drained by the thread that started the search.
+ * </p>
+ */
+public class KeywordSearcher {
+
+    /**
+     * The number of hit batches the queue holds before the scan waits for the handler.
+     */
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final DiskStorage storage;
+    private final DiskGeometry geometry;
+    private final List<Keyword> keywords = new ArrayList<>();
+    private final AhoCorasickAutomaton automaton;
+    private final int parallelism;
+    private final ClusterOwnershipIndex owners;
+
+    /**
+     * Constructs a case insensitive searcher running on every core.
+     *
+     * @param disk  The disk to search.
+     * @param terms The terms to look for.
+     */
+    public KeywordSearcher(VirtualDisk disk, List<String> terms) {
+        this(disk, terms, true, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a searcher.
+     *
+     * @param disk            The disk to search.
+     * @param terms           The terms to look for , the duplicates and the empty ones are ignored.
+     * @param caseInsensitive True to fold the ASCII letters.
+     * @param parallelism     The number of threads scanning the image.
+     * @throws IllegalArgumentException if there is no term to look for or the parallelism is not strictly positive.
+     */
+    public KeywordSearcher(VirtualDisk disk, List<String> terms, boolean caseInsensitive, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be strictly positive.");
+        }
+        this.storage = disk.getStorage();
+        this.geometry = disk.getGeometry();
+        this.parallelism = parallelism;
+        this.owners = disk.getOwnershipIndex();
+
+        List<byte[]> patterns = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(terms)) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            boolean ascii = StandardCharsets.US_ASCII.newEncoder().canEncode(term);
+            keywords.add(new Keyword(term, ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8));
+            keywords.add(new Keyword(term, StandardCharsets.UTF_16LE));
+        }
+        for (Keyword keyword : keywords) {
+            patterns.add(keyword.getPattern());
+        }
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("There is no term to look for.");
+        }
+        this.automaton = new AhoCorasickAutomaton(patterns, caseInsensitive);
+    }
+
+    /**
+     * Scans the whole image and hands every hit to a handler , in no particular order.
+     *
+     * @param handler Receives the hits , always from the calling thread.
+     * @return The summary of the search.
+     * @throws IOException If the image cannot be read , or if the handler fails ; the search is stopped then.
+     */
+    public KeywordSearchSummary search(KeywordHitHandler handler) throws IOException {
+        long start = System.nanoTime();
+        LongAdder bytesScanned = new LongAdder();
+        long[] hits = new long[1];
+        Map<String, Long> hitsPerTerm = new HashMap<>();
+        ChunkScanner.<List<KeywordHit>>scan(0, storage.size(), ChunkScanner.CHUNK_BYTES, parallelism, QUEUE_CAPACITY,
+                (from, to, out) -> scanChunk(from, to, out, bytesScanned),
+                batch -> {
+                    for (KeywordHit hit : batch) {
+                        handler.handle(hit);
+                        hits[0]++;
+                        hitsPerTerm.merge(hit.getKeyword().getTerm(), 1L, Long::sum);
+                    }
+                }, "search");
+        return new KeywordSearchSummary(hits[0], bytesScanned.sum(), System.nanoTime() - start, hitsPerTerm);
+    }
+
+    /**
+     * Retrieves the variants looked for.
+     *
+     * @return The keywords , two per term.
+     */
+    public List<Keyword> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * Retrieves the compiled automaton.
+     *
+     * @return The automaton shared by the scanning threads.
+     */
+    public AhoCorasickAutomaton getAutomaton() {
+        return automaton;
+    }
+
+    /**
+     * Finds the file owning a cluster.
+     *
+     * @param clusterId The ID of the cluster , -1 outside the data region.
+     * @return The name of the file , null if no file owns the cluster.
+     */
+    private String ownerOf(int clusterId) {
+        JournalEntry owner = owners.ownerOf(clusterId);
+        return owner == null ? null : owner.getFileName();
+    }
+
+    /**
+     * Scans a chunk of the image and hands its hits to the queue in a single batch.
+     * The chunk is read with the bytes of the next one that an occurrence starting in it may cover.
+     */
+    private void scanChunk(long from, long to, ChunkScanner.Emitter<List<KeywordHit>> out, LongAdder bytesScanned) {
+        int scanned = (int) (to - from);
+        int overlap = (int) Math.min(automaton.getLongestPattern() - 1, storage.size() - to);
+        byte[] bytes = new byte[scanned + overlap];
+        storage.read(from, bytes, 0, bytes.length);
+        bytesScanned.add(scanned);
+
+        List<KeywordHit> hits = new ArrayList<>();
+        automaton.scan(bytes, 0, bytes.length, (patternId, start) -> {
+            if (start < scanned) { // The occurrences starting in the overlap belong to the next chunk
+                long offset = from + start;
+                int cluster = geometry.byteOffsetToCluster(offset);
+                hits.add(new KeywordHit(keywords.get(patternId), offset, cluster, ownerOf(cluster)));
+            }
+        });
+        if (!hits.isEmpty()) {
+            out.emit(hits);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Strings;
+
+import java.nio.charset.Charset;
+
+/**
+ * A run of printable characters found in a disk image , located both in the image and in the file system.
+ */
+public class ExtractedString {
+
+    private final long imageOffset;
+    private final long charCount;
+    private final Charset charset;
+    private final String text;
+    private final int clusterId;
+    private final String fileName;
+
+    /**
+     * Constructs a string.
+     *
+     * @param imageOffset The byte offset in the image of its first character.
+     * @param charCount   The number of characters of the run.
+     * @param charset     The encoding of the run , US-ASCII or UTF-16LE.
+     * @param text        The characters , cut after {@link StringExtractor#MAX_TEXT_CHARS} for a longer run.
+     * @param clusterId   The cluster holding the first byte , -1 outside the data region.
+     * @param fileName    The file owning the cluster , null if the cluster is not allocated to a file.
+     */
+    public ExtractedString(long imageOffset, long charCount, Charset charset, String text, int clusterId, String fileName) {
+        this.imageOffset = imageOffset;
+        this.charCount = charCount;
+        this.charset = charset;
+        this.text = text;
+        this.clusterId = clusterId;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Retrieves the position of the string.
+     *
+     * @return The byte offset in the image of its first character.
+     */
+    public long getImageOffset() {
+        return imageOffset;
+    }
+
+    /**
+     * Retrieves the length of the run.
+     *
+     * @return The number of characters , which may exceed the length of {@link #getText()}.
+     */
+    public long getCharCount() {
+        return charCount;
+    }
+
+    /**
+     * Retrieves the encoding of the string.
+     *
+     * @return US-ASCII or UTF-16LE.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Retrieves the characters of the string.
+     *
+     * @return The text , cut after {@link StringExtractor#MAX_TEXT_CHARS} characters.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Tells whether the text was cut.
+     *
+     * @return True if the run holds more characters than the text.
+     */
+    public boolean isTruncated() {
+        return charCount > text.length();
+    }
+
+    /**
+     * Retrieves the cluster of the string.
+     *
+     * @return The ID of the cluster holding its first byte , -1 if it lies in the reserved region or the FATs.
+     */
+    public int getClusterId() {
+        return clusterId;
+    }
+
+    /**
+     * Retrieves the file the string belongs to.
+     *
+     * @return The name of the file owning the cluster , null for the unallocated space and the metadata.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractedString{offset=" + imageOffset + ", chars=" + charCount + ", charset=" + charset + ", cluster=" + clusterId
+                + ", file=" + (fileName == null ? "<unallocated>" : fileName) + ", text=" + text + "}";
+    }
+}
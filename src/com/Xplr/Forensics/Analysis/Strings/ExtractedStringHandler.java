@@ -0,0 +1,35 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Strings;
+
+import java.io.IOException;
+
+/**
+ * Receives the strings found by a {@link StringExtractor}. The handler is always called from the thread that
+ * started the extraction , one string at a time , so it needs no synchronization of its own.
+ */
+@FunctionalInterface
+public interface ExtractedStringHandler {
+
+    /**
+     * Handles a string , usually by printing it or indexing it.
+     *
+     * @param string The string found.
+     * @throws IOException If the string cannot be handled , the extraction is then stopped.
+     */
+    void handle(ExtractedString string) throws IOException;
+}
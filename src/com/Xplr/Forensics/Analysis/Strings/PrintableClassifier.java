@@ -0,0 +1,109 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Strings;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Classifies the bytes of a buffer into two bitmaps , one bit per byte : the printable bytes (ASCII from 0x20 to
+ * 0x7E , and the tab) and the zero bytes.
+ * <p>
+ * The bytes are classified eight at a time inside a {@code long} (SWAR , SIMD within a register) : a few additions
+ * and masks set the high bit of every lane holding a printable or a zero byte , without any branch , and a
+ * multiplication gathers the eight high bits into one byte of the bitmap. The few bytes after the last whole word
+ * go through the scalar test.
+ * </p>
+ */
+public final class PrintableClassifier {
+
+    private static final VarHandle LITTLE_ENDIAN_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long EACH_0x01 = 0x0101010101010101L;
+    private static final long EACH_0x09 = 0x0909090909090909L;
+    private static final long EACH_0x60 = 0x6060606060606060L;
+
+    /**
+     * Moves the high bit of lane k to bit 56 + k , the eight bits then make the top byte.
+     */
+    private static final long GATHER_HIGH_BITS = 0x0002040810204081L;
+
+    private PrintableClassifier() {
+        // Only static helpers here
+    }
+
+    /**
+     * Fills the bitmaps of the first bytes of a buffer. The bitmaps must be cleared beforehand , bit i of word
+     * i / 64 stands for byte i.
+     *
+     * @param bytes     The buffer.
+     * @param length    The number of bytes to classify , from the start of the buffer.
+     * @param printable The bitmap receiving the printable bytes.
+     * @param zero      The bitmap receiving the zero bytes.
+     */
+    public static void classify(byte[] bytes, int length, long[] printable, long[] zero) {
+        int words = length >>> 3;
+        for (int w = 0; w < words; w++) {
+            long word = (long) LITTLE_ENDIAN_LONGS.get(bytes, w << 3);
+            int shift = (w & 7) << 3;
+            printable[w >>> 3] |= gather(printableLanes(word)) << shift;
+            zero[w >>> 3] |= gather(zeroLanes(word)) << shift;
+        }
+        for (int i = words << 3; i < length; i++) {
+            if (isPrintable(bytes[i])) {
+                printable[i >>> 6] |= 1L << i;
+            }
+            if (bytes[i] == 0) {
+                zero[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Tells whether a byte is printable , the scalar form of the test.
+     *
+     * @param b The byte.
+     * @return True for ASCII from 0x20 to 0x7E and for the tab.
+     */
+    public static boolean isPrintable(byte b) {
+        return (b >= 0x20 && b < 0x7F) || b == '\t';
+    }
+
+    /**
+     * Sets the high bit of the lanes of a word holding a printable byte.
+     */
+    static long printableLanes(long word) {
+        long low = word & LOW_SEVEN_BITS; // No lane can carry into its neighbour once its high bit is gone
+        long atLeast0x20 = low + EACH_0x60; // Reaches 0x80 from 0x20 up
+        long atMost0x7E = ~(low + EACH_0x01); // Reaches 0x80 only for 0x7F
+        return (atLeast0x20 & atMost0x7E & ~word & HIGH_BITS) | zeroLanes(word ^ EACH_0x09);
+    }
+
+    /**
+     * Sets the high bit of the lanes of a word holding a zero byte , exactly , without the borrow of the usual test.
+     */
+    static long zeroLanes(long word) {
+        return ~(((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word | LOW_SEVEN_BITS);
+    }
+
+    private static long gather(long lanes) {
+        return (lanes & HIGH_BITS) * GATHER_HIGH_BITS >>> 56;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Strings;
+
+/**
+ * The outcome of {@link StringExtractor#extract(ExtractedStringHandler)} : how many strings were found in each
+ * encoding , how many bytes were scanned and how long it took.
+ */
+public class StringExtractionSummary {
+
+    private final long asciiStrings;
+    private final long utf16Strings;
+    private final long bytesScanned;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs the summary of an extraction.
+     *
+     * @param asciiStrings The number of ASCII strings handed to the handler.
+     * @param utf16Strings The number of UTF-16LE strings handed to the handler.
+     * @param bytesScanned The number of bytes of the image scanned.
+     * @param elapsedNanos The duration of the whole extraction in nanoseconds.
+     */
+    public StringExtractionSummary(long asciiStrings, long utf16Strings, long bytesScanned, long elapsedNanos) {
+        this.asciiStrings = asciiStrings;
+        this.utf16Strings = utf16Strings;
+        this.bytesScanned = bytesScanned;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Retrieves the number of ASCII strings.
+     *
+     * @return The number of ASCII strings found.
+     */
+    public long getAsciiStrings() {
+        return asciiStrings;
+    }
+
+    /**
+     * Retrieves the number of UTF-16LE strings.
+     *
+     * @return The number of UTF-16LE strings found.
+     */
+    public long getUtf16Strings() {
+        return utf16Strings;
+    }
+
+    /**
+     * Retrieves the number of bytes scanned.
+     *
+     * @return The bytes of the image classified.
+     */
+    public long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    /**
+     * Retrieves the duration of the extraction.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Computes the scan throughput.
+     *
+     * @return The number of bytes scanned per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesScanned * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StringExtractionSummary{ascii=%d, utf16=%d, scanned=%d, seconds=%.2f, MB/s=%.1f}",
+                asciiStrings, utf16Strings, bytesScanned, elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Analysis.Strings;
+
+import com.Xplr.Forensics.Analysis.Scan.ChunkScanner;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.ClusterOwnershipIndex;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts the runs of printable ASCII and UTF-16LE characters of a disk image , as the {@code strings} tool does.
+ * <p>
+ * The image is cut in chunks classified in parallel by a pool of threads : the {@link PrintableClassifier} turns
+ * every chunk into bitmaps of printable and zero bytes eight bytes at a time , then the runs are found a word of
+ * the bitmaps at a time. A UTF-16LE character being a printable byte followed by a zero byte , its bitmap is the
+ * printable bitmap masked by the zero bitmap shifted by one , split between the even and the odd positions.
+ * </p>
+ *
+ * <p>
+ * The chunks are handed back in image order , so that the runs crossing the end of a chunk are stitched with the
+ * run opening the next one whatever their length : the strings reach the handler in image order , each one with
+ * its offset , its cluster and the file owning it.
+ * </p>
+ */
+public class StringExtractor {
+
+    /**
+     * The number of characters of the shortest string reported by default.
+     */
+    public static final int DEFAULT_MIN_LENGTH = 4;
+
+    /**
+     * The number of characters kept of a string , a longer run is reported with its full length and a cut text.
+     */
+    public static final int MAX_TEXT_CHARS = 4096;
+
+    private static final long EVEN_BITS = 0x5555555555555555L;
+
+    private final DiskStorage storage;
+    private final DiskGeometry geometry;
+    private final ClusterOwnershipIndex owners;
+    private final int minLength;
+    private final boolean ascii;
+    private final boolean utf16;
+    private final int parallelism;
+
+    /**
+     * Constructs an extractor of the ASCII and UTF-16LE strings of the default minimum length , using every core.
+     *
+     * @param disk The disk to scan.
+     */
+    public StringExtractor(VirtualDisk disk) {
+        this(disk, DEFAULT_MIN_LENGTH, true, true, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an extractor.
+     *
+     * @param disk        The disk to scan.
+     * @param minLength   The number of characters of the shortest string reported.
+     * @param ascii       Whether the ASCII strings are reported.
+     * @param utf16       Whether the UTF-16LE strings are reported.
+     * @param parallelism The number of threads classifying the chunks.
+     * @throws IllegalArgumentException if no encoding is chosen , or the length or the parallelism is not strictly positive.
+     */
+    public StringExtractor(VirtualDisk disk, int minLength, boolean ascii, boolean utf16, int parallelism) {
+        if (minLength <= 0 || parallelism <= 0 || !(ascii || utf16)) {
+            throw new IllegalArgumentException("An encoding , a strictly positive length and a strictly positive parallelism are needed.");
+        }
+        this.storage = disk.getStorage();
+        this.geometry = disk.getGeometry();
+        this.owners = disk.getOwnershipIndex();
+        this.minLength = minLength;
+        this.ascii = ascii;
+        this.utf16 = utf16;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scans the whole image and hands every string to a handler , in image order within each chunk.
+     *
+     * @param handler Receives the strings , always from the calling thread.
+     * @return The summary of the extraction.
+     * @throws IOException If the image cannot be read , or if the handler fails ; the extraction is stopped then.
+     */
+    public StringExtractionSummary extract(ExtractedStringHandler handler) throws IOException {
+        long start = System.nanoTime();
+        List<Stream> streams = new ArrayList<>();
+        if (ascii) {
+            streams.add(new Stream(StandardCharsets.US_ASCII, 1, 0));
+        }
+        if (utf16) {
+            streams.add(new Stream(StandardCharsets.UTF_16LE, 2, 0));
+            streams.add(new Stream(StandardCharsets.UTF_16LE, 2, 1));
+        }
+
+        long[] counts = new long[2]; // ASCII , then UTF-16LE
+        long size = storage.size();
+        ArrayDeque<Future<ChunkRuns>> pending = new ArrayDeque<>();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            long next = 0;
+            while (true) {
+                // A few chunks ahead are classified while the oldest one is stitched
+                while (pending.size() < 2 * parallelism && next < size) {
+                    long from = next;
+                    int length = (int) Math.min(ChunkScanner.CHUNK_BYTES, size - from); // Even , the UTF-16LE positions keep their parity
+                    pending.add(pool.submit(() -> scanChunk(streams, from, length)));
+                    next += length;
+                }
+                Future<ChunkRuns> oldest = pending.poll();
+                if (oldest == null) {
+                    break;
+                }
+                ChunkRuns chunk = oldest.get();
+                List<ExtractedString> found = new ArrayList<>();
+                for (int s = 0; s < streams.size(); s++) {
+                    streams.get(s).stitch(chunk, s, found);
+                }
+                emit(found, handler, counts);
+            }
+            List<ExtractedString> found = new ArrayList<>();
+            for (Stream stream : streams) {
+                stream.close(found); // The runs reaching the end of the image
+            }
+            emit(found, handler, counts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The extraction was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw ChunkScanner.unwrap(e, "extraction");
+        } finally {
+            pool.shutdownNow();
+        }
+        return new StringExtractionSummary(counts[0], counts[1], size, System.nanoTime() - start);
+    }
+
+    /**
+     * Reads a chunk and finds its runs in every stream.
+     */
+    private ChunkRuns scanChunk(List<Stream> streams, long from, int length) {
+        // One more byte tells whether the last byte of the chunk starts a UTF-16LE character
+        int margin = (int) Math.min(1, storage.size() - from - length);
+        byte[] bytes = new byte[length + margin];
+        storage.read(from, bytes, 0, bytes.length);
+        int words = (bytes.length >>> 6) + 2;
+        long[] printable = new long[words];
+        long[] zero = new long[words];
+        PrintableClassifier.classify(bytes, bytes.length, printable, zero);
+        printable[length >>> 6] &= ~(1L << length); // The byte of the margin belongs to the next chunk
+
+        long[] even = null;
+        long[] odd = null;
+        if (utf16) {
+            even = new long[words];
+            odd = new long[words];
+            for (int w = 0; w + 1 < words; w++) {
+                long characters = printable[w] & ((zero[w] >>> 1) | (zero[w + 1] << 63));
+                int shift = (w & 1) << 5;
+                even[w >>> 1] |= Long.compress(characters, EVEN_BITS) << shift;
+                odd[w >>> 1] |= Long.compress(characters >>> 1, EVEN_BITS) << shift;
+            }
+        }
+
+        ChunkRuns chunk = new ChunkRuns(from, streams.size());
+        for (int s = 0; s < streams.size(); s++) {
+            Stream stream = streams.get(s);
+            long[] bitmap = stream.unitBytes == 1 ? printable : stream.parity == 0 ? even : odd;
+            int units = (length - stream.parity + stream.unitBytes - 1) / stream.unitBytes;
+            chunk.units[s] = units;
+            chunk.runs.set(s, runsOf(bitmap, units, bytes, stream));
+        }
+        return chunk;
+    }
+
+    /**
+     * Finds the runs of set bits of a bitmap , keeping the ones long enough and the ones touching an end of the chunk.
+     *
+     * @return The runs , in chunk order.
+     */
+    private List<Run> runsOf(long[] bitmap, int units, byte[] bytes, Stream stream) {
+        List<Run> runs = new ArrayList<>();
+        BitSet bits = BitSet.valueOf(bitmap);
+        for (int first = bits.nextSetBit(0); first >= 0 && first < units; first = bits.nextSetBit(first + 1)) {
+            int end = Math.min(units, bits.nextClearBit(first));
+            if (end - first >= minLength || first == 0 || end == units) {
+                int chars = Math.min(end - first, MAX_TEXT_CHARS);
+                String text = new String(bytes, first * stream.unitBytes + stream.parity, chars * stream.unitBytes, stream.charset);
+                runs.add(new Run(first, end, text));
+            }
+            first = end;
+        }
+        return runs;
+    }
+
+    private void emit(List<ExtractedString> found, ExtractedStringHandler handler, long[] counts) throws IOException {
+        found.sort(Comparator.comparingLong(ExtractedString::getImageOffset));
+        for (ExtractedString string : found) {
+            handler.handle(string);
+            counts[string.getCharset() == StandardCharsets.US_ASCII ? 0 : 1]++;
+        }
+    }
+
+    /**
+     * Locates a run and makes it a string.
+     */
+    private ExtractedString stringOf(long offset, long chars, Charset charset, String text) {
+        int cluster = geometry.byteOffsetToCluster(offset);
+        JournalEntry owner = owners.ownerOf(cluster);
+        return new ExtractedString(offset, chars, charset, text, cluster, owner == null ? null : owner.getFileName());
+    }
+
+    /**
+     * A run of a chunk , in units of its stream.
+     */
+    private static final class Run {
+
+        private final int first;
+        private final int end;
+        private final String text;
+
+        private Run(int first, int end, String text) {
+            this.first = first;
+            this.end = end;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The runs found in a chunk , per stream.
+     */
+    private static final class ChunkRuns {
+
+        private final long from;
+        private final int[] units;
+        private final List<List<Run>> runs;
+
+        private ChunkRuns(long from, int streams) {
+            this.from = from;
+            this.units = new int[streams];
+            this.runs = new ArrayList<>();
+            for (int s = 0; s < streams; s++) {
+                runs.add(null);
+            }
+        }
+    }
+
+    /**
+     * The characters of one encoding at one parity , with the run left open at the end of the last chunk stitched.
+     */
+    private final class Stream {
+
+        private final Charset charset;
+        private final int unitBytes;
+        private final int parity;
+
+        private long openOffset = -1;
+        private long openChars;
+        private StringBuilder openText;
+
+        private Stream(Charset charset, int unitBytes, int parity) {
+            this.charset = charset;
+            this.unitBytes = unitBytes;
+            this.parity = parity;
+        }
+
+        /**
+         * Adds the runs of the next chunk , the run left open is continued by a run starting the chunk or closed.
+         */
+        private void stitch(ChunkRuns chunk, int index, List<ExtractedString> found) {
+            List<Run> runs = chunk.runs.get(index);
+            int units = chunk.units[index];
+            int i = 0;
+            if (openOffset >= 0) {
+                if (!runs.isEmpty() && runs.get(0).first == 0) {
+                    Run run = runs.get(0);
+                    openChars += run.end;
+                    openText.append(run.text, 0, Math.min(run.text.length(), MAX_TEXT_CHARS - openText.length()));
+                    i = 1;
+                    if (run.end < units) {
+                        close(found);
+                    }
+                } else {
+                    close(found);
+                }
+            }
+            for (; i < runs.size(); i++) {
+                Run run = runs.get(i);
+                long offset = chunk.from + (long) run.first * unitBytes + parity;
+                if (run.end == units) {
+                    openOffset = offset; // The run may go on in the next chunk
+                    openChars = run.end - run.first;
+                    openText = new StringBuilder(run.text);
+                } else if (run.end - run.first >= minLength) {
+                    found.add(stringOf(offset, run.end - run.first, charset, run.text));
+                }
+            }
+        }
+
+        /**
+         * Reports the open run if it is long enough.
+         */
+        private void close(List<ExtractedString> found) {
+            if (openOffset >= 0 && openChars >= minLength) {
+                found.add(stringOf(openOffset, openChars, charset, openText.toString()));
+            }
+            openOffset = -1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Models.VirtualDisk.IncrementalImage;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool applying one or more incremental images onto a base disk image.
+ * <p>
+ * Usage : {@code ApplyIncrement <base image> <increment> [<increment> ...]} , the increments are applied in
+ * the order they are given , which must be the order they were exported in. An increment that cannot bring the base
+ * image up to date , because the base was taken from another disk or is at a checkpoint the increment does not start
+ * from , stops the tool before anything is written by it , with an exit status of 1.
+ * </p>
+ */
+public class ApplyIncrement {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: ApplyIncrement <base image> <increment> [<increment> ...]");
+            return;
+        }
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                long checkpoint = IncrementalImage.apply(Paths.get(args[0]), Paths.get(args[i])); // The base records its checkpoint , the next increment checks it
+                System.out.println("Applied " + args[i] + " , the base image is now at checkpoint " + checkpoint);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Carving.CarvingSummary;
+import com.Xplr.Forensics.Analysis.Carving.FileCarver;
+import com.Xplr.Forensics.Analysis.Carving.SignatureTable;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool carving the JPEG , PNG , GIF , PDF and ZIP files out of a disk image.
+ * <p>
+ * Usage : {@code CarveImage <image> <output directory> [--all] [--align <bytes>]}. Only the unallocated clusters
+ * are scanned unless {@code --all} is given , headers are looked for at sector boundaries unless another
+ * alignment is given. Every carved file is written to the output directory , named after its offset in the image.
+ * </p>
+ */
+public class CarveImage {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: CarveImage <image> <output directory> [--all] [--align <bytes>]");
+            return;
+        }
+
+        boolean unallocatedOnly = true;
+        int alignment = -1;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--all")) {
+                unallocatedOnly = false;
+            } else if (args[i].equals("--align") && i + 1 < args.length) {
+                alignment = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        try {
+            Path output = Files.createDirectories(Paths.get(args[1]));
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                FileCarver carver = new FileCarver(disk, SignatureTable.defaultTable(), unallocatedOnly,
+                        alignment > 0 ? alignment : disk.getSectorSize(), Runtime.getRuntime().availableProcessors());
+                CarvingSummary summary = carver.carve(file -> {
+                    file.writeTo(output.resolve(file.suggestedFileName()));
+                    System.out.println(file);
+                });
+                System.out.println(summary);
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
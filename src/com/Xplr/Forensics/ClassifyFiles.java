@@ -0,0 +1,87 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.KnownFiles.KnownFileFilter;
+import com.Xplr.Forensics.Analysis.KnownFiles.KnownFileStatus;
+import com.Xplr.Forensics.Analysis.KnownFiles.KnownHashSet;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line tool listing the files of a disk image against known hash sets.
+ * <p>
+ * Usage : {@code ClassifyFiles <image> [--good <index>]... [--bad <index>]... [--all]}. The indexes are made by
+ * {@link CompileHashSet}. The known bad files are printed with a {@code !} , the unknown ones as they are , and
+ * the known good ones are left out unless {@code --all} is given.
+ * </p>
+ */
+public class ClassifyFiles {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ClassifyFiles <image> [--good <index>]... [--bad <index>]... [--all]");
+            return;
+        }
+
+        List<KnownHashSet> good = new ArrayList<>();
+        List<KnownHashSet> bad = new ArrayList<>();
+        boolean all = false;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--all")) {
+                    all = true;
+                } else if (args[i].equals("--good") && i + 1 < args.length) {
+                    good.add(KnownHashSet.open(Paths.get(args[++i])));
+                } else if (args[i].equals("--bad") && i + 1 < args.length) {
+                    bad.add(KnownHashSet.open(Paths.get(args[++i])));
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+
+            KnownFileFilter filter = new KnownFileFilter(good, bad);
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                int known = 0;
+                for (Map.Entry<String, KnownFileStatus> file : filter.classifyFiles(disk, Runtime.getRuntime().availableProcessors()).entrySet()) {
+                    switch (file.getValue()) {
+                        case KNOWN_BAD -> System.out.println("! " + file.getKey());
+                        case UNKNOWN -> System.out.println("  " + file.getKey());
+                        case KNOWN_GOOD -> {
+                            known++;
+                            if (all) {
+                                System.out.println("= " + file.getKey());
+                            }
+                        }
+                    }
+                }
+                System.out.println(known + " known good files");
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
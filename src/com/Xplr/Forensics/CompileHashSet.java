@@ -0,0 +1,47 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.KnownFiles.KnownHashSet;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool making a known hash index from a text hash list.
+ * <p>
+ * Usage : {@code CompileHashSet <hash list> <algorithm> <index file>}. The index is then given to
+ * {@link ClassifyFiles} as a set of known good or known bad files.
+ * </p>
+ */
+public class CompileHashSet {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: CompileHashSet <hash list> <algorithm> <index file>");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            long count = KnownHashSet.compile(Paths.get(args[0]), args[1], Paths.get(args[2]));
+            System.out.printf("%d distinct %s digests indexed in %.2f s%n", count, args[1], (System.nanoTime() - start) / 1e9);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
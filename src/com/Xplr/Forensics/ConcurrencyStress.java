@@ -0,0 +1,228 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line stress test of the thread safety of a {@link VirtualDisk}.
+ * <p>
+ * Usage : {@code ConcurrencyStress [<max threads>] [<seconds per round>]}. The tool
+ * <ol>
+ *   <li>creates files from several threads at once and checks every one of them reads back intact,</li>
+ *   <li>reads random files with 1 , 2 , 4 ... threads and reports the read throughput of each round,</li>
+ *   <li>reads while other threads delete and recreate files , a read must return either the whole file or nothing,</li>
+ *   <li>ingests many small files on a fresh disk with 1 , 2 , 4 ... threads and reports the files created per second.</li>
+ * </ol>
+ * It exits with status 1 if a single corrupted read was seen.
+ * </p>
+ */
+public class ConcurrencyStress {
+
+    private static final int FILE_COUNT = 256;
+    private static final int FILE_SIZE = 64 * 1024;
+    private static final long DISK_SIZE = 64L * 1024 * 1024;
+    private static final int SMALL_FILE_COUNT = 2048;
+    private static final int SMALL_FILE_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long roundMillis = (args.length > 1 ? Long.parseLong(args[1]) : 2) * 1000;
+
+        VirtualDisk disk = new VirtualDisk("STRESS", DISK_SIZE);
+        byte[][] expected = new byte[FILE_COUNT][];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            expected[i] = contentOf(i);
+        }
+
+        // Parallel creation
+        ExecutorService pool = Executors.newFixedThreadPool(maxThreads);
+        List<Future<Object>> creations = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            int index = i;
+            creations.add(pool.submit(() -> {
+                disk.createFile(nameOf(index), expected[index]);
+                return null;
+            }));
+        }
+        for (Future<Object> creation : creations) {
+            creation.get();
+        }
+        pool.shutdown();
+
+        long failures = 0;
+        for (int i = 0; i < FILE_COUNT; i++) {
+            if (!Arrays.equals(disk.readFile(nameOf(i)), expected[i])) {
+                System.err.println("Corrupted after parallel creation: " + nameOf(i));
+                failures++;
+            }
+        }
+        if (disk.getMain().getFreeClusterNumber() != disk.getBackup().getFreeClusterNumber()) {
+            System.err.println("The Main and Backup FATs disagree on the number of free clusters");
+            failures++;
+        }
+        System.out.println("Created " + FILE_COUNT + " files from " + maxThreads + " threads , " + failures + " failures");
+
+        // Read scaling
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            AtomicLong errors = new AtomicLong();
+            long bytes = runRound(threads, roundMillis, () -> {
+                int index = ThreadLocalRandom.current().nextInt(FILE_COUNT);
+                byte[] read = disk.readFile(nameOf(index));
+                if (!Arrays.equals(read, expected[index])) {
+                    errors.incrementAndGet();
+                }
+                return (long) FILE_SIZE;
+            }, null);
+            double throughput = bytes / (1024.0 * 1024.0) / (roundMillis / 1000.0);
+            if (threads == 1) {
+                baseline = throughput;
+            }
+            System.out.printf("%2d reader(s): %10.1f MB/s  x%.2f%n", threads, throughput, throughput / baseline);
+            failures += errors.get();
+        }
+
+        // Reads racing with deletions and re-creations
+        AtomicLong errors = new AtomicLong();
+        AtomicLong missing = new AtomicLong();
+        int readers = Math.max(1, maxThreads - 1);
+        runRound(readers, roundMillis, () -> {
+            int index = ThreadLocalRandom.current().nextInt(FILE_COUNT);
+            byte[] read = disk.readFile(nameOf(index));
+            if (read == null) {
+                missing.incrementAndGet();
+            } else if (!Arrays.equals(read, expected[index])) {
+                errors.incrementAndGet();
+            }
+            return 0L;
+        }, () -> {
+            int index = ThreadLocalRandom.current().nextInt(FILE_COUNT);
+            disk.deleteFile(nameOf(index));
+            disk.createFile(nameOf(index), expected[index]);
+            return 0L;
+        });
+        System.out.println("Mixed round: " + errors.get() + " corrupted reads , " + missing.get() + " reads of a file being recreated");
+        failures += errors.get();
+
+        // Parallel ingestion of small files , every round starts from an empty disk
+        byte[] small = new byte[SMALL_FILE_SIZE];
+        new Random(SMALL_FILE_SIZE).nextBytes(small);
+        double ingestBaseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            VirtualDisk fresh = new VirtualDisk("INGEST", DISK_SIZE);
+            int clusterBytes = fresh.getClusterSizeInSectors() * fresh.getSectorSize();
+            long expectedFree = fresh.getMain().getFreeClusterNumber() - (long) SMALL_FILE_COUNT * ((SMALL_FILE_SIZE + clusterBytes - 1) / clusterBytes);
+            ExecutorService ingesters = Executors.newFixedThreadPool(threads);
+            List<Future<Object>> ingestions = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                int stride = threads;
+                ingestions.add(ingesters.submit(() -> {
+                    for (int i = first; i < SMALL_FILE_COUNT; i += stride) {
+                        fresh.createFile("small" + i, small);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Object> ingestion : ingestions) {
+                ingestion.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            ingesters.shutdown();
+
+            expectedFree -= fresh.getJournalClusters().size() - 1; // The journal took more clusters as it grew
+            if (fresh.getMain().getFreeClusterNumber() != expectedFree || fresh.getBackup().getFreeClusterNumber() != expectedFree) {
+                System.err.println("Wrong number of free clusters after parallel ingestion");
+                failures++;
+            }
+            for (int i = 0; i < SMALL_FILE_COUNT; i += 97) {
+                if (!Arrays.equals(fresh.readFile("small" + i), small)) {
+                    System.err.println("Corrupted after parallel ingestion: small" + i);
+                    failures++;
+                }
+            }
+            double rate = SMALL_FILE_COUNT / seconds;
+            if (threads == 1) {
+                ingestBaseline = rate;
+            }
+            System.out.printf("%2d writer(s): %10.0f files/s  x%.2f%n", threads, rate, rate / ingestBaseline);
+        }
+
+        System.out.println(failures == 0 ? "PASSED" : "FAILED with " + failures + " errors");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs an operation in a loop on several threads for a given time , plus an optional writer thread.
+     *
+     * @return The sum of the values returned by the reader operations.
+     */
+    private static long runRound(int threads, long millis, Callable<Long> reader, Callable<Long> writer) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(threads + (writer == null ? 0 : 1));
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> loop(reader, stop)));
+        }
+        if (writer != null) {
+            results.add(pool.submit(() -> loop(writer, stop)));
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        pool.shutdown();
+        return total;
+    }
+
+    private static long loop(Callable<Long> operation, AtomicBoolean stop) throws Exception {
+        long total = 0;
+        while (!stop.get()) {
+            total += operation.call();
+        }
+        return total;
+    }
+
+    private static String nameOf(int index) {
+        return "file" + index + ".bin";
+    }
+
+    private static byte[] contentOf(int index) {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(index).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Diff.FileChange;
+import com.Xplr.Forensics.Analysis.Diff.ImageDiffReport;
+import com.Xplr.Forensics.Analysis.Diff.ImageDiffer;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+
+/**
+ * Command line tool comparing two images of the same disk.
+ * <p>
+ * Usage : {@code DiffImages <before> <after>}. The summary of the differences is printed first , then one line per
+ * added , removed , modified or touched file.
+ * </p>
+ */
+public class DiffImages {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: DiffImages <before> <after>");
+            return;
+        }
+
+        try {
+            VirtualDisk before = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                VirtualDisk after = VirtualDiskBuilder.openImageFile(args[1]).build();
+                try {
+                    ImageDiffReport report = new ImageDiffer(before, after).diff();
+                    System.out.println(report);
+                    for (FileChange change : report.getFileChanges()) {
+                        System.out.println(change.getKind() + " " + change.getFileName() + " (" + change.getChangedClusters() + " changed clusters)");
+                    }
+                } finally {
+                    after.close();
+                }
+            } finally {
+                before.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
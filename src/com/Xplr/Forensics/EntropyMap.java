@@ -0,0 +1,96 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Entropy.ClusterEntropyAnalyzer;
+import com.Xplr.Forensics.Analysis.Entropy.ClusterEntropyMap;
+import com.Xplr.Forensics.Analysis.Entropy.ContentClass;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool drawing the entropy map of a disk image and listing its large high entropy runs.
+ * <p>
+ * Usage : {@code EntropyMap <image> [--width N]}. The map is cached in {@code <image>.entropy} and computed again
+ * only when the image changed. A strip of N characters shows the dominant class along the disk ({@code .} zero ,
+ * {@code t} text , {@code #} compressed or encrypted , {@code x} executable , {@code b} binary) , then every run of
+ * compressed clusters of at least 1 MB is printed with the file owning its first cluster , the likely encrypted
+ * containers.
+ * </p>
+ */
+public class EntropyMap {
+
+    private static final long MIN_RUN_BYTES = 1024 * 1024;
+
+    public static void main(String[] args) {
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("--width"))) {
+            System.err.println("Usage: EntropyMap <image> [--width N]");
+            return;
+        }
+
+        try {
+            int width = args.length == 3 ? Integer.parseInt(args[2]) : 64;
+            Path image = Paths.get(args[0]);
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                long start = System.nanoTime();
+                ClusterEntropyMap map = new ClusterEntropyAnalyzer(disk).analyzeCached(Paths.get(args[0] + ".entropy"), Files.getLastModifiedTime(image).toMillis());
+                System.out.printf("%s in %.2f s%n", map, (System.nanoTime() - start) / 1e9);
+
+                StringBuilder strip = new StringBuilder();
+                for (ContentClass contentClass : map.dominantClasses(width)) {
+                    strip.append(switch (contentClass) {
+                        case ZERO -> '.';
+                        case TEXT -> 't';
+                        case COMPRESSED -> '#';
+                        case EXECUTABLE -> 'x';
+                        case BINARY -> 'b';
+                    });
+                }
+                System.out.println("[" + strip + "]");
+
+                int last = DiskGeometry.FIRST_CLUSTER + map.getClusterCount();
+                int runStart = -1;
+                for (int clusterId = DiskGeometry.FIRST_CLUSTER; clusterId <= last; clusterId++) {
+                    boolean compressed = clusterId < last && map.getContentClass(clusterId) == ContentClass.COMPRESSED;
+                    if (compressed && runStart < 0) {
+                        runStart = clusterId;
+                    } else if (!compressed && runStart >= 0) {
+                        long bytes = (long) (clusterId - runStart) * map.getClusterBytes();
+                        if (bytes >= MIN_RUN_BYTES) {
+                            JournalEntry owner = disk.getOwnershipIndex().ownerOf(runStart);
+                            System.out.printf("clusters %d-%d : %d bytes of high entropy , %s%n", runStart, clusterId - 1, bytes,
+                                    owner == null ? "unallocated or orphaned" : "in '" + owner.getFileName() + "'");
+                        }
+                        runStart = -1;
+                    }
+                }
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
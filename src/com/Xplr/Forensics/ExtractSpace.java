@@ -0,0 +1,65 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Models.VirtualDisk.SpaceRegionHandler;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Command line tool streaming the slack or the unallocated space of a disk image into a host file.
+ * <p>
+ * Usage : {@code ExtractSpace <image> <slack|unallocated> <output file> [<region map>]}. The region map , a CSV
+ * file , tells for every region its offset in the output file , its offset in the image , its length , its first
+ * cluster , its number of clusters and the file owning the slack.
+ * </p>
+ */
+public class ExtractSpace {
+
+    public static void main(String[] args) {
+        if ((args.length != 3 && args.length != 4) || !(args[1].equals("slack") || args[1].equals("unallocated"))) {
+            System.err.println("Usage: ExtractSpace <image> <slack|unallocated> <output file> [<region map>]");
+            return;
+        }
+
+        try {
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try (FileChannel output = FileChannel.open(Paths.get(args[2]), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer map = args.length == 4 ? Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8) : Writer.nullWriter()) {
+                map.write("output_offset,image_offset,length,first_cluster,clusters,owner\n");
+                SpaceRegionHandler handler = region -> map.write(region.getOutputOffset() + "," + region.getImageOffset() + "," + region.getLength() + ","
+                        + region.getFirstCluster() + "," + region.getClusterCount() + "," + (region.getOwnerFileName() == null ? "" : region.getOwnerFileName()) + "\n");
+                long start = System.nanoTime();
+                long written = args[1].equals("slack") ? disk.extractSlackSpace(output, handler) : disk.extractUnallocatedSpace(output, handler);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d bytes of %s space extracted in %.2f s (%.1f MB/s)%n", written, args[1], seconds, written / seconds / (1024 * 1024));
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Strings.StringExtractionSummary;
+import com.Xplr.Forensics.Analysis.Strings.StringExtractor;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Command line tool printing the printable strings of a disk image.
+ * <p>
+ * Usage : {@code ExtractStrings <image> [-n <min length>] [--ascii | --utf16]}. Both encodings are extracted unless
+ * one is chosen. One tab separated line is printed per string : its offset , its cluster , the file owning it
+ * ({@code -} for none) , its encoding and its text. The summary goes to the standard error.
+ * </p>
+ */
+public class ExtractStrings {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ExtractStrings <image> [-n <min length>] [--ascii | --utf16]");
+            return;
+        }
+
+        try {
+            int minLength = StringExtractor.DEFAULT_MIN_LENGTH;
+            boolean ascii = true;
+            boolean utf16 = true;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("-n") && i + 1 < args.length) {
+                    minLength = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--ascii")) {
+                    utf16 = false;
+                } else if (args[i].equals("--utf16")) {
+                    ascii = false;
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+                StringExtractor extractor = new StringExtractor(disk, minLength, ascii, utf16, Runtime.getRuntime().availableProcessors());
+                StringExtractionSummary summary = extractor.extract(string -> {
+                    out.write(string.getImageOffset() + "\t" + string.getClusterId() + "\t" + (string.getFileName() == null ? "-" : string.getFileName())
+                            + "\t" + string.getCharset() + "\t" + string.getText());
+                    out.newLine();
+                });
+                out.flush();
+                System.err.println(summary);
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Hashing.DigestSet;
+import com.Xplr.Forensics.Analysis.Hashing.ImageHashResult;
+import com.Xplr.Forensics.Analysis.Hashing.ImageHasher;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line tool hashing a disk image and every file it holds.
+ * <p>
+ * Usage : {@code HashImage <image> [algorithm ...]}. The digests default to MD5 , SHA-1 and SHA-256. The digests of
+ * the image and the root of its Merkle chunk tree are printed first , then one line per file.
+ * </p>
+ */
+public class HashImage {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: HashImage <image> [algorithm ...]");
+            return;
+        }
+
+        try {
+            List<String> algorithms = args.length == 1 ? ImageHasher.DEFAULT_ALGORITHMS : Arrays.asList(args).subList(1, args.length);
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                ImageHasher hasher = new ImageHasher(disk, algorithms, Runtime.getRuntime().availableProcessors());
+                ImageHashResult image = hasher.hashImage();
+                System.out.println(image);
+                for (Map.Entry<String, DigestSet> file : hasher.hashFiles().entrySet()) {
+                    System.out.println(file.getKey() + " : " + file.getValue());
+                }
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
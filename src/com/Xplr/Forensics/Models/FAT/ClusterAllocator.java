@@ -0,0 +1,303 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.FAT;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free free-space map for the clusters of a File Allocation Table.
+ * <p>
+ * The clusters are split into allocation groups of {@link #GROUP_CLUSTERS} clusters. Each cluster is a bit of
+ * a shared bitmap (set means used) and a cluster is claimed by a compare-and-set on the 64 bit word holding it,
+ * so several free bits are taken at once and no lock is ever held. Every thread has a preferred group , picked
+ * round robin the first time it allocates , and stays in it until the group is exhausted : threads ingesting
+ * files in parallel thus work on different words of the bitmap and do not fight over the same cache lines,
+ * and the files of one thread stay close to each other on the disk.
+ * </p>
+ *
+ * <p>
+ * The allocator only knows which clusters are used , the chaining of the clusters is left to the {@link FAT}.
+ * Bit {@code i} of the bitmap stands for the FAT entry {@code i} , that is the cluster {@code i + 2}.
+ * </p>
+ */
+public final class ClusterAllocator {
+
+    /**
+     * The number of clusters of an allocation group , a multiple of 64.
+     */
+    public static final int GROUP_CLUSTERS = 8192;
+
+    private static final int WORDS_PER_GROUP = GROUP_CLUSTERS / 64;
+
+    /**
+     * The bitmap of the used clusters.
+     */
+    private final AtomicLongArray bitmap;
+
+    /**
+     * The number of clusters managed.
+     */
+    private final int clusterCount;
+
+    /**
+     * The number of allocation groups , the last one may be partial.
+     */
+    private final int groupCount;
+
+    /**
+     * For every group , the number of its free clusters and the word where the next search starts.
+     */
+    private final AtomicIntegerArray groupFree;
+    private final AtomicIntegerArray groupCursor;
+
+    /**
+     * The number of free clusters of the whole table.
+     */
+    private final AtomicLong freeClusters;
+
+    /**
+     * Hands the groups out to the threads round robin.
+     */
+    private final AtomicInteger nextGroup = new AtomicInteger();
+
+    /**
+     * The group each thread allocates from.
+     */
+    private final ThreadLocal<Integer> preferredGroup;
+
+    /**
+     * The cluster following the last one handed out , the next free hint of the FSInfo sector.
+     */
+    private final AtomicInteger nextFreeHint = new AtomicInteger(2);
+
+    /**
+     * Constructs an allocator where every cluster is free.
+     *
+     * @param clusterCount The number of clusters , that is the number of entries of the FAT.
+     */
+    public ClusterAllocator(int clusterCount) {
+        this.clusterCount = clusterCount;
+        this.groupCount = Math.max(1, (clusterCount + GROUP_CLUSTERS - 1) / GROUP_CLUSTERS);
+        this.bitmap = new AtomicLongArray(groupCount * WORDS_PER_GROUP);
+        this.groupFree = new AtomicIntegerArray(groupCount);
+        this.groupCursor = new AtomicIntegerArray(groupCount);
+        this.freeClusters = new AtomicLong();
+        this.preferredGroup = ThreadLocal.withInitial(() -> Math.floorMod(nextGroup.getAndIncrement(), groupCount));
+        reset();
+    }
+
+    /**
+     * Marks every cluster as free again. Must not run while other threads allocate.
+     */
+    public void reset() {
+        for (int word = 0; word < bitmap.length(); word++) {
+            // The bits past the last cluster are flagged as used once and for all so that they are never handed out
+            long first = (long) word * 64;
+            long outside = first + 64 <= clusterCount ? 0L : first >= clusterCount ? -1L : -1L << (clusterCount - first);
+            bitmap.set(word, outside);
+        }
+        for (int group = 0; group < groupCount; group++) {
+            int start = group * GROUP_CLUSTERS;
+            groupFree.set(group, Math.max(0, Math.min(GROUP_CLUSTERS, clusterCount - start)));
+            groupCursor.set(group, 0);
+        }
+        freeClusters.set(clusterCount);
+        nextGroup.set(0);
+        nextFreeHint.set(2);
+    }
+
+    /**
+     * Makes the next allocations start at a given cluster , the next free hint of a mounted disk.
+     * The threads that never allocated yet start in the group of the cluster and the search of that group
+     * starts at its word. Must not run while other threads allocate.
+     *
+     * @param clusterId The ID of the cluster where the search starts.
+     * @throws IllegalArgumentException if the cluster is not managed by this allocator.
+     */
+    public void resumeFrom(int clusterId) {
+        int bit = clusterId - 2;
+        if (bit < 0 || bit >= clusterCount) {
+            throw new IllegalArgumentException("Cluster " + clusterId + " is not managed by this allocator.");
+        }
+        int group = bit / GROUP_CLUSTERS;
+        nextGroup.set(group);
+        groupCursor.set(group, (bit % GROUP_CLUSTERS) / 64);
+        nextFreeHint.set(clusterId);
+    }
+
+    /**
+     * Claims a number of free clusters.
+     * The clusters are taken in the preferred group of the calling thread first , the other groups are only
+     * visited once it is exhausted. Either every requested cluster is claimed or none is.
+     *
+     * @param count The number of clusters needed.
+     * @return The IDs of the claimed clusters , in allocation order , or null if there are not enough free clusters.
+     */
+    public ArrayList<Integer> claim(int count) {
+        if (freeClusters.get() < count) {
+            return null; // No need to scan , there is not enough room anyway
+        }
+        ArrayList<Integer> claimed = new ArrayList<>(count);
+        int preferred = preferredGroup.get();
+        for (int visited = 0; visited < groupCount && claimed.size() < count; visited++) {
+            int group = (preferred + visited) % groupCount;
+            if (groupFree.get(group) == 0) {
+                continue;
+            }
+            claimInGroup(group, count - claimed.size(), claimed);
+            if (groupFree.get(group) == 0 && visited == 0) {
+                preferredGroup.set((group + 1) % groupCount); // This group is full , the next allocations of this thread move on
+            }
+        }
+        if (claimed.size() < count) {
+            for (int clusterId : claimed) {
+                release(clusterId); // Another thread took the last free clusters while we were scanning
+            }
+            return null;
+        }
+        return claimed;
+    }
+
+    /**
+     * Claims up to {@code needed} free clusters of a group , starting at its search cursor.
+     */
+    private void claimInGroup(int group, int needed, ArrayList<Integer> claimed) {
+        int firstWord = group * WORDS_PER_GROUP;
+        int cursor = groupCursor.get(group);
+        for (int step = 0; step < WORDS_PER_GROUP && needed > 0; step++) {
+            int word = firstWord + (cursor + step) % WORDS_PER_GROUP;
+            while (needed > 0) {
+                long current = bitmap.get(word);
+                long free = ~current;
+                if (free == 0) {
+                    break; // The word is full
+                }
+                // Let's take as many of the lowest free bits of the word as we need , in one compare-and-set
+                long take = 0;
+                int taken = 0;
+                while (free != 0 && taken < needed) {
+                    long lowest = free & -free;
+                    take |= lowest;
+                    free ^= lowest;
+                    taken++;
+                }
+                if (bitmap.compareAndSet(word, current, current | take)) {
+                    for (long bits = take; bits != 0; bits &= bits - 1) {
+                        claimed.add(word * 64 + Long.numberOfTrailingZeros(bits) + 2);
+                    }
+                    nextFreeHint.set(claimed.get(claimed.size() - 1) + 1); // Only a hint , a racing thread may overwrite it
+                    groupFree.addAndGet(group, -taken);
+                    freeClusters.addAndGet(-taken);
+                    needed -= taken;
+                    groupCursor.set(group, word - firstWord);
+                }
+                // On a failed compare-and-set another thread changed the word , we simply look at it again
+            }
+        }
+    }
+
+    /**
+     * Claims one given cluster.
+     *
+     * @param clusterId The ID of the cluster.
+     * @return True if the cluster was free and is now used , false if it was already used.
+     */
+    public boolean claimCluster(int clusterId) {
+        int bit = clusterId - 2;
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = bitmap.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current | mask)) {
+                groupFree.decrementAndGet(word / WORDS_PER_GROUP);
+                freeClusters.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives a cluster back to the free space.
+     *
+     * @param clusterId The ID of the cluster.
+     * @return True if the cluster was used and is now free , false if it was already free.
+     */
+    public boolean release(int clusterId) {
+        int bit = clusterId - 2;
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        while (true) {
+            long current = bitmap.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current & ~mask)) {
+                int group = word / WORDS_PER_GROUP;
+                groupFree.incrementAndGet(group);
+                freeClusters.incrementAndGet();
+                groupCursor.accumulateAndGet(group, word - group * WORDS_PER_GROUP, Math::min); // The next search sees the hole
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a cluster is used.
+     *
+     * @param clusterId The ID of the cluster.
+     * @return True if the cluster is claimed.
+     */
+    public boolean isUsed(int clusterId) {
+        int bit = clusterId - 2;
+        return (bitmap.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Retrieves the number of free clusters.
+     *
+     * @return The number of clusters not claimed.
+     */
+    public long getFreeClusterCount() {
+        return freeClusters.get();
+    }
+
+    /**
+     * Gives the cluster where the next search for free clusters should start , as stored in the FSInfo sector.
+     *
+     * @return The cluster following the last one handed out , 2 when nothing was allocated yet or past the last cluster.
+     */
+    public int getNextFreeHint() {
+        int hint = nextFreeHint.get();
+        return hint - 2 < clusterCount ? hint : 2;
+    }
+
+    /**
+     * Retrieves the number of allocation groups.
+     *
+     * @return The number of groups.
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+}
@@ -16,18 +16,49 @@
  */
 package com.Xplr.Forensics.Models.FAT;
 
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 
 public class FAT {
 
+    /**
+     * The media descriptor of a fixed disk , kept in the low byte of the reserved entry 0.
+     */
+    public static final int FIXED_DISK_MEDIA = 0xF8;
+
+    /**
+     * The value of the reserved entry 0 on a FAT32 volume : the media descriptor , every other addressing bit set.
+     */
+    public static final int MEDIA_ENTRY = 0x0FFFFF00 | FIXED_DISK_MEDIA;
+
+    /**
+     * The value of the reserved entry 1 on a FAT32 volume : an end of chain marker whose clean shutdown and
+     * no error flags are both set.
+     */
+    public static final int CLEAN_ENTRY = 0x0FFFFFFF;
+
+    /**
+     * The number of reserved entries at the start of the table , the entry of cluster 2 comes right after them.
+     */
+    private static final int RESERVED_ENTRIES = 2;
+
+    /**
+     * The values of the entries 0 and 1 , written before the entry of the first data cluster.
+     */
+    private final int[] reservedEntryValues = {MEDIA_ENTRY, CLEAN_ENTRY};
+
     private long NumberOfClusterPerFAT; // This number also corresponds to the number of FAT entries in the File Allocation Table
     private ArrayList<FATEntry> FATEntries = new ArrayList<FATEntry>(); // This is the list of all the File Allocation Table entries
 
 
 
     private long FATSize; // This refers to the number of sectors per FAT , it can be easily obtained through some computations given the number of cluster per file allocation table
-    private long FreeCluster;
+    private ClusterAllocator allocator = new ClusterAllocator(0); // This keeps track of the free clusters , it is what the allocations go through
     private int location ; // this refers to the  offset positioning  of the File Allocation Table in the Disk; we are going to proceed with the sector LBA
+    private int bytesPerSector = 512; // The size of the sectors FATSize is counted in
     // Concerning the start of the FAT , it is given
 
     // The FAT Backup is going to be handled in the FATBuiler
@@ -55,10 +86,10 @@ public class FAT {
         }
         // After defining File Allocation Entries of the FAT , now let's move on to fill the other fields
         // Now let's set the number of Sectors per FAT , referring to the size of the FAT
-        this.FATSize = (NumberOfClusterPerFAT*4L+511)/512; // The L is to cast the value to a Long
+        this.FATSize = ((NumberOfClusterPerFAT+RESERVED_ENTRIES)*4L+511)/512; // The L is to cast the value to a Long , the entries 0 and 1 are reserved
 
-        // Now let's set the FreeClusterNumber right
-        FreeCluster = NumberOfClusterPerFAT;
+        // Now let's set up the free space map , every cluster starts free
+        allocator = new ClusterAllocator((int) NumberOfClusterPerFAT);
 
         // Now let's specify the location , meaning the offset/Logical Block Address  on the disk , i think this will be at sector 2
         location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
@@ -66,108 +97,75 @@ public class FAT {
 
     /**
      * Constructs a FAT (File Allocation Table) object based on the disk size and sector LBA.
-     * This constructor determines the number of clusters per FAT entry based on the disk size,
-     * initializes the FAT entries, sets the FAT size, the number of free clusters, and the location
-     * (sector LBA) of the FAT on the disk. The cluster size varies based on the disk size, affecting
-     * the calculation of `NumberOfClusterPerFAT`.
+     * The cluster size is the default one for a disk of this size , see {@link DiskGeometry#defaultSectorsPerCluster(long)}.
      *
      * @param disk_size The size of the disk in bytes. This value determines the cluster size.
      * @param SectorLba The Logical Block Address (LBA) of the sector where the FAT is located on the disk.
      */
     public FAT(long disk_size, int SectorLba){
-       if(disk_size<272629760) // In this case the disk size is less than 260 Mb
-       {
-           this.NumberOfClusterPerFAT = NumberOfSectorsOfTheEntireDisk(disk_size)-2;//In this case , a cluster corresponds to a sector , since the cluster size is 512 bytes , it can then be assimilated to a cluster
-           //Each FATEntries id in the list will map a cluster by his id
-
-           // Now let's initialize the File Allocation Table  Entries of this FAT
-           for(int i=0;i<NumberOfClusterPerFAT;i++){
-                // I raised a null pointer exception , because we never know , it can ruin everything i guess
-                   FATEntries.add(new FATEntryBuilder().free().build());
-
-           }
-           // After defining File Allocation Entries of the FAT , now let's move on to fill the other fields
-           // Now let's set the number of Sectors per FAT , referring to the size of the FAT
-           this.FATSize = (NumberOfClusterPerFAT*4L+511)/512;
-
-           // Now let's set the FreeClusterNumber right
-           FreeCluster = NumberOfClusterPerFAT;
-           // Now let's specify the location , meaning the offset/Logical Block Address  on the disk , i think this will be at sector 2
-           location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
-
-
-       }
-       else if(disk_size<8589934592L)
-       {
-           this.NumberOfClusterPerFAT =( NumberOfSectorsOfTheEntireDisk(disk_size)/8)-2; // For this intervalle of less than 8 gb or storage , the cluster size is by default 4 Kb meaning 8 sectors
-
-           //Each FATEntries id in the list will map a cluster by his id
-
-           // Now let's initialize the File Allocation Table  Entries of this FAT
-           for(int i=0;i<NumberOfClusterPerFAT;i++){
-                // I raised a null pointer exception , because we never know , it can ruin everything i guess
-                   FATEntries.add(new FATEntryBuilder().free().build());
-
-           }
-
-           // After defining File Allocation Entries of the FAT , now let's move on to fill the other fields
-           // Now let's set the number of Sectors per FAT , referring to the size of the FAT
-           this.FATSize = (NumberOfClusterPerFAT*4L+511)/512;
-
-           // Now let's set the FreeClusterNumber right
-           FreeCluster = NumberOfClusterPerFAT;
-           // Now let's specify the location , meaning the offset/Logical Block Address  on the disk , i think this will be at sector 2
-           location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
-
-
-       }
-       else if(disk_size<17179869184L)
-       {
-           this.NumberOfClusterPerFAT = (NumberOfSectorsOfTheEntireDisk(disk_size)/16)-2; // For this interval of less than 16 gb or storage , the cluster size is by default 8 Kb meaning 16 sectors
-
-           //Each FATEntries id in the list will map a cluster by his id
-
-           // Now let's initialize the File Allocation Table  Entries of this FAT
-           for(int i=0;i<NumberOfClusterPerFAT;i++){
-                // I raised a null pointer exception , because we never know , it can ruin everything i guess
-                   FATEntries.add(new FATEntryBuilder().free().build());
-
-           }
-
-           // After defining File Allocation Entries of the FAT , now let's move on to fill the other fields
-           // Now let's set the number of Sectors per FAT , referring to the size of the FAT
-           this.FATSize = (NumberOfClusterPerFAT*4L+511)/512;
-
-           // Now let's set the FreeClusterNumber right
-           FreeCluster = NumberOfClusterPerFAT;
-           // Now let's specify the location , meaning the offset/Logical Block Address  on the disk , i think this will be at sector 2
-           location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
-       }
-       else if (disk_size<34359738368L)
-       {
-
-           this.NumberOfClusterPerFAT = (NumberOfSectorsOfTheEntireDisk(disk_size)/32)-2; // For this interval of less than 16 gb or storage , the cluster size is by default 16 Kb meaning 16 sectors
+        this(disk_size, SectorLba, DiskGeometry.defaultSectorsPerCluster(disk_size));
+    }
 
-           //Each FATEntries id in the list will map a cluster by his id
+    /**
+     * Constructs a FAT (File Allocation Table) object based on the disk size , the sector LBA and the cluster size.
+     * This constructor determines the number of clusters per FAT from the disk size and the cluster size,
+     * initializes the FAT entries, sets the FAT size, the number of free clusters, and the location
+     * (sector LBA) of the FAT on the disk.
+     *
+     * @param disk_size         The size of the disk in bytes.
+     * @param SectorLba         The Logical Block Address (LBA) of the sector where the FAT is located on the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     */
+    public FAT(long disk_size, int SectorLba, int sectorsPerCluster){
+        this(disk_size, SectorLba, sectorsPerCluster, DiskGeometry.DEFAULT_SECTOR_SIZE);
+    }
 
-           // Now let's initialize the File Allocation Table  Entries of this FAT
-           for(int i=0;i<NumberOfClusterPerFAT;i++){
-                // I raised a null pointer exception , because we never know , it can ruin everything i guess
-                   FATEntries.add(new FATEntryBuilder().free().build());
+    /**
+     * Constructs a FAT (File Allocation Table) object based on the disk size , the sector LBA , the cluster size
+     * and the sector size. The number of clusters and the size of the FAT in sectors are both counted in sectors
+     * of the given size.
+     *
+     * @param disk_size         The size of the disk in bytes.
+     * @param SectorLba         The Logical Block Address (LBA) of the sector where the FAT is located on the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     * @param bytesPerSector    The size of a sector in bytes , 512 or 4096 for a 4Kn disk.
+     */
+    public FAT(long disk_size, int SectorLba, int sectorsPerCluster, int bytesPerSector){
+        this.bytesPerSector = bytesPerSector;
+        this.NumberOfClusterPerFAT = Math.max(0, NumberOfSectorsOfTheEntireDisk(disk_size) / sectorsPerCluster - 2); // The clusters 0 and 1 are reserved
 
-           }
+        // Now let's initialize the File Allocation Table  Entries of this FAT , each of them maps a cluster by his id
+        for(int i=0;i<NumberOfClusterPerFAT;i++){
+            FATEntries.add(new FATEntryBuilder().free().build());
+        }
 
-           // After defining File Allocation Entries of the FAT , now let's move on to fill the other fields
-           // Now let's set the number of Sectors per FAT , referring to the size of the FAT
-           this.FATSize = (NumberOfClusterPerFAT*4L+511)/512;
+        // Now let's set the number of Sectors per FAT , referring to the size of the FAT
+        this.FATSize = ((NumberOfClusterPerFAT+RESERVED_ENTRIES)*4L+bytesPerSector-1)/bytesPerSector; // The entries 0 and 1 are reserved
 
-           // Now let's set the FreeClusterNumber right
-           FreeCluster = NumberOfClusterPerFAT;
-           // Now let's specify the location , meaning the offset/Logical Block Address  on the disk , i think this will be at sector 2
-           location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
+        // Now let's set up the free space map , every cluster starts free
+        allocator = new ClusterAllocator((int) NumberOfClusterPerFAT);
 
-       }
+        // Now let's specify the location , meaning the offset/Logical Block Address  on the disk
+        location = SectorLba; // SectorLba is the Sector from where the FileAllocation Table can be found
+    }
 
+    /**
+     * Constructs one of the File Allocation Tables of a disk laid out by a {@link DiskGeometry}.
+     * The table holds one entry per data cluster of the geometry and sits at the LBA the geometry gives it.
+     *
+     * @param geometry The layout of the disk.
+     * @param fatIndex 0 for the Main FAT , 1 for the Backup FAT.
+     */
+    public FAT(DiskGeometry geometry, int fatIndex) {
+        this.NumberOfClusterPerFAT = geometry.getClusterCount();
+        this.FATEntries = new ArrayList<>(geometry.getClusterCount());
+        for (int i = 0; i < NumberOfClusterPerFAT; i++) {
+            FATEntries.add(new FATEntryBuilder().free().build()); // Every cluster starts free
+        }
+        this.FATSize = geometry.getFatSizeInSectors();
+        this.bytesPerSector = geometry.getSectorSize();
+        allocator = new ClusterAllocator((int) NumberOfClusterPerFAT);
+        location = (int) geometry.getFatLba(fatIndex);
     }
 
 
@@ -208,44 +206,7 @@ public class FAT {
  */
     public ArrayList<Integer> AllocateFileUsingHisBytes(long fileByteSize){
         // The first step would be to be sure about the size of a cluster for this disk but this method would be the by default meaning less than 8 Gb , therefore its cluster size would be 4096
-        int clusterSize = 4096;
-
-        //Then let's determine the number of cluster needed for the allocation
-        int clusterRequired = (int) fileByteSize/clusterSize;
-        ArrayList<Integer> freeCluster= new ArrayList<>();
-        // Then let's get the address of the free clusters
-        for(int i=0;i<FATEntries.size() && freeCluster.size()<clusterRequired;i++)
-        {
-                if(FATEntries.get(i).isFREE()) // On parcoure la liste des FATEntry et on recueille les clusters qui ne sont pas assignes
-                {
-                    freeCluster.add(i);
-                }
-        }
-
-        //Now let's check if the number of freecluster we got is enough
-        if(freeCluster.size()<clusterRequired-1)
-        {
-            return null; // Since there is not enough space
-        }
-
-        // Now let's properly allocate the clusters
-        for(int i=0;i<freeCluster.size();i++)
-        {
-            int clustId = freeCluster.get(i); // let's store the value of the first free cluster id fetched by the program on the disk to initiate the chain
-            FATEntry entry = FATEntries.get(clustId-2);//With this we can fetch the correct file allocation table entry
-            if(i<freeCluster.size()-1)
-            {
-                int nextClusterInLine = freeCluster.get(i+1);
-                entry.setFatEntryValue(nextClusterInLine); // This method allow us to set which cluster will be the next in the line
-            }
-            else
-            {
-                entry.setEND_OF_CHAIN_MAX();
-            }
-            this.FreeCluster-=1;
-        }
-
-        return freeCluster;
+        return AllocateFileUsingHisBytes(fileByteSize, 4096);
 }
     /**
  * Allocates a  set of clusters on the disk for a file, using the FAT entries.
@@ -255,59 +216,58 @@ public class FAT {
  * @return An ArrayList of Integers representing the cluster IDs that have been allocated to the file.
  *         Returns null if there are not enough free clusters to allocate the file.
  *
- * @implNote This method assumes a default cluster size if the provided cluster size is invalid.
- * It iterates through the FAT entries to find free clusters and allocates them to the file.
- * The method also updates the FAT entries to chain the clusters together and marks the last cluster as the end of the chain.
- * It also decrements the count of free clusters.
+ * @implNote The free clusters are claimed from the {@link ClusterAllocator} , in the allocation group preferred by
+ * the calling thread , so that several threads can allocate at the same time without any lock.
+ * The method then updates the FAT entries to chain the clusters together and marks the last cluster as the end of the chain.
  */
     public ArrayList<Integer> AllocateFileUsingHisBytes(long fileByteSize,int clusterSiz){
         // The first step would be to be sure about the size of a cluster for this disk but this method would be the by default meaning less than 8 Gb , therefore its cluster size would be 4096
         int clusterSize = clusterSiz;
 
-        //Then let's determine the number of cluster needed for the allocation
-        int clusterRequired = (int) fileByteSize/clusterSize;
-        ArrayList<Integer> freeCluster= new ArrayList<>();
-        // Then let's get the address of the free clusters
-        for(int i=0;i<FATEntries.size() && freeCluster.size()<clusterRequired;i++)
-        {
-                if(FATEntries.get(i).isFREE()) // On parcoure la liste des FATEntry et on recueille les clusters qui ne sont pas assignes
-                {
-                    freeCluster.add(i);
-                }
-        }
+        //Then let's determine the number of cluster needed for the allocation , a partially filled cluster is still a whole cluster and even an empty file needs one to start its chain
+        int clusterRequired = (int) Math.max(1, (fileByteSize + clusterSize - 1) / clusterSize);
+
+        // Then let's claim the free clusters , the allocator takes them without any lock so that parallel allocations do not wait on each other
+        ArrayList<Integer> freeCluster = allocator.claim(clusterRequired);
 
-        //Now let's check if the number of freecluster we got is enough
-        if(freeCluster.size()<clusterRequired-1)
+        //Now let's check if we got enough of them
+        if(freeCluster == null)
         {
             return null; // Since there is not enough space
         }
 
-        // Now let's properly allocate the clusters
-        for(int i=0;i<freeCluster.size();i++)
+        // Now let's properly chain the clusters , they belong to us alone so nobody else writes these entries
+        linkChain(freeCluster);
+
+        return freeCluster;
+}
+
+    /**
+     * Writes an allocation chain into the FAT entries of its clusters.
+     *
+     * @param chain the cluster IDs of the chain , in order
+     */
+    private void linkChain(ArrayList<Integer> chain) {
+        for(int i=0;i<chain.size();i++)
         {
-            int clustId = freeCluster.get(i); // let's store the value of the first free cluster id fetched by the program on the disk to initiate the chain
-            FATEntry entry = FATEntries.get(clustId);//With this we can fetch the correct file allocation table entry
-            if(i<freeCluster.size()-1)
+            FATEntry entry = FATEntries.get(chain.get(i)-2);//With this we can fetch the correct file allocation table entry
+            if(i<chain.size()-1)
             {
-                int nextClusterInLine = freeCluster.get(i+1);
-                entry.setFatEntryValue(nextClusterInLine); // This method allow us to set which cluster will be the next in the line
+                entry.setFatEntryValue(chain.get(i+1)); // This method allow us to set which cluster will be the next in the line
             }
             else
             {
                 entry.setEND_OF_CHAIN_MAX();
             }
-            this.FreeCluster-=1;
         }
-
-        return freeCluster;
-}
+    }
 
     /**
      * Frees a chain of clusters in the FAT (File Allocation Table) starting from the specified cluster ID.
      * <p>
      * This method traverses the cluster chain beginning at {@code startClusterId}, marking each cluster
      * in the chain as free until the end of the chain is reached. The method updates the FAT entries
-     * and increments the free cluster counter for each cluster that is freed.
+     * and gives every cluster back to the allocator once its entry is free.
      * </p>
      *
      * @param startClusterId the ID of the first cluster in the chain to be freed; must be >= 2 and within the FAT range
@@ -323,17 +283,18 @@ public class FAT {
 
             if (entry == null) break; // Handle the case where the entry is null
 
+            if (entry.isFREE()) break; // The chain was already freed
+
             // Get the next cluster in the chain (before freeing the current one)
             int nextCluster = entry.getFatEntryValue();
+            boolean lastCluster = entry.isEndOfChain();
 
-            // Mark this cluster as free in the FAT
+            // Mark this cluster as free in the FAT , and only then let the allocator hand it out again
             entry.setFREE_CLUSTER();
-
-            // Increment the free cluster counter
-            FreeCluster++;
+            allocator.release(clusterId);
 
             // If we reach the end of the chain or a loop, stop
-            if (entry.isEndOfChain() || nextCluster == clusterId) {
+            if (lastCluster || nextCluster == clusterId) {
                 break; // End of chain reached
             }
 
@@ -342,12 +303,52 @@ public class FAT {
         }
     }
 
+    /**
+     * Marks a range of clusters as used so that the allocator never hands them out.
+     * <p>
+     * This is used for the clusters that hold the disk own structures (File Allocation Tables , root directory),
+     * they are flagged as single-cluster chains exactly like a one cluster file would be.
+     * </p>
+     *
+     * @param firstClusterId the ID of the first cluster to reserve
+     * @param lastClusterId  the ID of the last cluster to reserve , inclusive
+     */
+    public void reserveClusters(int firstClusterId, int lastClusterId) {
+        for (int clusterId = Math.max(2, firstClusterId); clusterId <= lastClusterId && clusterId - 2 < FATEntries.size(); clusterId++) {
+            if (allocator.claimCluster(clusterId)) {
+                FATEntries.get(clusterId - 2).setEND_OF_CHAIN_MAX();
+            }
+        }
+    }
+
+    /**
+     * Records in this table an allocation chain that was decided by another table.
+     * <p>
+     * The Backup FAT is never asked to search for free clusters on its own : the chain chosen in the Main FAT
+     * is copied here , so the two tables cannot diverge when several files are allocated at the same time.
+     * </p>
+     *
+     * @param chain the cluster IDs of the chain , in order
+     * @throws IllegalStateException if one of the clusters is already used in this table
+     */
+    public void mirrorChain(ArrayList<Integer> chain) {
+        for (int i = 0; i < chain.size(); i++) {
+            if (!allocator.claimCluster(chain.get(i))) {
+                for (int j = 0; j < i; j++) {
+                    allocator.release(chain.get(j)); // Let's leave the table as we found it
+                }
+                throw new IllegalStateException("Cluster " + chain.get(i) + " is already allocated in this File Allocation Table");
+            }
+        }
+        linkChain(chain);
+    }
+
     //Let's create a method to free all the clusters of the FAT mimicking a format
     /**
      * Frees all clusters in the FAT (File Allocation Table), effectively resetting it.
      * <p>
      * This method iterates through all FAT entries, marking each one as free and resetting the
-     * free cluster counter to the total number of clusters available in the FAT.
+     * free space map of the allocator. It must not run while files are being allocated.
      * </p>
      */
     public void formatFileAllocationTable(){
@@ -355,25 +356,28 @@ public class FAT {
         for (FATEntry fatEntry : this.FATEntries) {
             fatEntry.setFREE_CLUSTER(); // With this i am setting the selected FATEntry as free
         }
-        this.FreeCluster = this.NumberOfClusterPerFAT; // I reset the number of free clusters to the total number of clusters in the FAT
+        this.allocator.reset(); // I reset the free space map , every cluster of the FAT can be handed out again
     }
 
 
     /**
- * Gets the number of free clusters in the FAT by iterating through the FAT entries.
+ * Gets the number of free clusters in the FAT , as counted by the allocator.
  *
  * @return The number of free clusters in the FAT.
  */
     public long getFreeClusterNumber() {
-    long freeClusterCount = 0;
-    for (FATEntry entry : FATEntries) {
-        if (entry.isFREE()) {
-            freeClusterCount++;
-        }
-    }
-    return freeClusterCount;
+    return allocator.getFreeClusterCount();
 }
 
+    /**
+     * Retrieves the allocator handing out the clusters of this FAT.
+     *
+     * @return The cluster allocator.
+     */
+    public ClusterAllocator getAllocator() {
+        return allocator;
+    }
+
 
     /**
         * Calculates the size of the allocation chain starting from a given cluster ID.
@@ -407,18 +411,19 @@ public class FAT {
     // Now a method to return the byte representation of the FAT
     /**
      * Converts the FAT (File Allocation Table) entries to a byte array.
-     * Each FAT entry is converted to 4 bytes and stored in the byte array.
+     * Each FAT entry is converted to 4 bytes and stored in the byte array , at 4 times the id of its cluster as on
+     * FAT32 : the reserved entries 0 and 1 come first.
      *
-     * @return A byte array representing the FAT entries. The size of the array is determined by FATSize * 512.
+     * @return A byte array representing the FAT entries. The size of the array is determined by FATSize * bytes per sector.
      */
     public byte[] toBytes(){
-        byte[] fatBytes = new byte[(int) (FATSize * 512)]; // Allocate a byte array for the FAT size in bytes
+        byte[] fatBytes = new byte[(int) getFATSizeInBytes()]; // Allocate a byte array for the FAT size in bytes
         int index = 0;
 
-        // Fill the byte array with FAT entries
-        for (FATEntry entry : FATEntries) {
+        // Fill the byte array with FAT entries , the reserved ones first
+        for (int entryIndex = 0; entryIndex < FATEntries.size() + RESERVED_ENTRIES && index + 4 <= fatBytes.length; entryIndex++) {
             // Convert each FAT entry to bytes (assuming each entry is 4 bytes)
-            int fatEntryValue = entry.getFatEntryValue();
+            int fatEntryValue = entryValue(entryIndex);
             fatBytes[index++] = (byte) (fatEntryValue & 0xFF);
             fatBytes[index++] = (byte) ((fatEntryValue >> 8) & 0xFF);
             fatBytes[index++] = (byte) ((fatEntryValue >> 16) & 0xFF);
@@ -427,27 +432,125 @@ public class FAT {
 
         return fatBytes;
     }
+
+    /**
+     * Writes a part of the byte representation of the FAT into a caller supplied buffer , without allocating.
+     * The bytes are the ones {@link #toBytes()} would give at the same positions , so the table can be
+     * persisted chunk by chunk through a reusable buffer.
+     *
+     * @param tableOffset the position in the byte representation of the first byte to write
+     * @param destination the buffer receiving the bytes
+     * @param offset      the offset in {@code destination} of the first byte to fill
+     * @param length      the largest number of bytes to write
+     * @return the number of bytes written , less than {@code length} at the end of the table
+     */
+    public int toBytes(long tableOffset, byte[] destination, int offset, int length) {
+        int count = (int) Math.max(0, Math.min(length, getFATSizeInBytes() - tableOffset));
+        for (int i = 0; i < count; i++) {
+            long position = tableOffset + i;
+            int entryValue = entryValue((int) (position >>> 2));
+            destination[offset + i] = (byte) (entryValue >> ((position & 3) * 8));
+        }
+        return count;
+    }
+
+    /**
+     * Gives the value of an entry of the byte representation of the table.
+     *
+     * @param entryIndex the index of the entry , which is also the id of its cluster
+     * @return the value of the entry , 0 in the padding of the last sector
+     */
+    private int entryValue(int entryIndex) {
+        if (entryIndex < RESERVED_ENTRIES) {
+            return reservedEntryValues[entryIndex];
+        }
+        int listIndex = entryIndex - RESERVED_ENTRIES;
+        return listIndex < FATEntries.size() ? FATEntries.get(listIndex).getFatEntryValue() : 0; // The table is padded with zeros up to its last sector
+    }
+
+    /**
+     * Retrieves the value of a reserved entry , as written on the disk or loaded back from it.
+     *
+     * @param entryIndex 0 for the media entry , 1 for the entry holding the clean shutdown flags
+     * @return the 32 bits of the entry
+     */
+    public int getReservedEntry(int entryIndex) {
+        return reservedEntryValues[entryIndex];
+    }
     
 
+    /**
+     * Loads a part of the byte representation of the FAT , as {@link #toBytes(long, byte[], int, int)} wrote it ,
+     * back into the entries. The free space map is left untouched , see {@link #rebuildAllocator()}.
+     *
+     * @param tableOffset the position in the byte representation of the first byte , a multiple of 4
+     * @param source      the buffer holding the bytes
+     * @param offset      the offset in {@code source} of the first byte
+     * @param length      the number of bytes to load , a multiple of 4
+     */
+    public void loadFromBytes(long tableOffset, byte[] source, int offset, int length) {
+        ByteBuffer entries = ByteBuffer.wrap(source, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int entryIndex = (int) (tableOffset >>> 2); entries.remaining() >= 4; entryIndex++) {
+            int entryValue = entries.getInt();
+            if (entryIndex < RESERVED_ENTRIES) {
+                reservedEntryValues[entryIndex] = entryValue; // The media descriptor and the volume flags , not a cluster
+            } else if (entryIndex - RESERVED_ENTRIES < FATEntries.size()) { // The padding of the last sector holds no entry
+                FATEntries.get(entryIndex - RESERVED_ENTRIES).setFatEntryValue(entryValue);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the free space map from the entries , every entry that is not free marks its cluster as used.
+     * This walks the whole table , it is only needed once the entries were loaded from a disk. It must not run
+     * while files are being allocated.
+     */
+    public void rebuildAllocator() {
+        allocator.reset();
+        for (int i = 0; i < FATEntries.size(); i++) {
+            if (!FATEntries.get(i).isFREE()) {
+                allocator.claimCluster(i + 2);
+            }
+        }
+    }
+
     /**
      * Calculates the total number of sectors on the entire disk based on its size in bytes.
      *
      * @param siz the size of the disk in bytes
-     * @return the number of 512-byte sectors that fit into the given disk size
+     * @return the number of sectors of the FAT's sector size that fit into the given disk size
      */
     private long NumberOfSectorsOfTheEntireDisk(long siz){
-        long result = siz/512;
+        long result = siz/bytesPerSector;
         return result;
     }
+    /**
+     * Retrieves the location of the File Allocation Table on the disk.
+     *
+     * @return The sector LBA where the FAT starts.
+     */
+    public int getLocation() {
+        return location;
+    }
+
     /**
         * Retrieves the size of the File Allocation Table (FAT).
         *
-        * @return The size of the FAT in bytes.
+        * @return The size of the FAT in sectors.
         */
     public long getFATSize() {
         return FATSize;
     }
 
+    /**
+     * Retrieves the size of the File Allocation Table in bytes , the padding of its last sector included.
+     *
+     * @return The number of bytes the table takes on the disk.
+     */
+    public long getFATSizeInBytes() {
+        return FATSize * bytesPerSector;
+    }
+
     /**
         * Sets the size of the FAT.
         *
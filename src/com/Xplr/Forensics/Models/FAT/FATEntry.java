@@ -88,7 +88,7 @@ public class FATEntry {
      * This value typically represents the next cluster in a file chain or a special marker
      * indicating the end of a file, a free cluster, or a bad cluster, depending on the FAT type.
      */
-    private int FatEntryValue;
+    private volatile int FatEntryValue; // Volatile since readers walk the chains while another thread allocates in the same table
 
     public FATEntry(){
         this.FatEntryValue = FREE_CLUSTER;
@@ -127,7 +127,7 @@ public class FATEntry {
      * @return {@code true} if this FAT entry value is the maximum end-of-chain marker; {@code false} otherwise.
      */
     public boolean isEndOfChain(){
-       return FatEntryValue >= END_OF_CHAIN_MIN && FatEntryValue <= END_OF_CHAIN_MAX;
+       return getFatEntryValue() >= END_OF_CHAIN_MIN; // END_OF_CHAIN_MAX does not fit in a signed int , so we compare on the 28 addressing bits only
     }
 
 
@@ -0,0 +1,394 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Geometry;
+
+import com.Xplr.Forensics.Models.Cluster.Cluster;
+import com.Xplr.Forensics.Models.Cluster.ClusterBuilder;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * The layout of a virtual disk , computed once when the disk is created and never modified afterwards.
+ * <p>
+ * The disk is laid out like a FAT32 volume :
+ * <pre>
+ *   | reserved region (boot sector ...) | Main FAT | Backup FAT | data region : cluster 2 , cluster 3 ... |
+ * </pre>
+ * The data region starts on a cluster boundary of the image , so that a data cluster is also an aligned block
+ * for the change tracker and the deduplicated storage. Every mapping between a cluster , its sectors and its
+ * bytes is plain arithmetic : nothing is stored per cluster or per sector , whatever the size of the disk.
+ * </p>
+ *
+ * <p>
+ * Cluster ids start at 2 as in every FAT , the ids 0 and 1 do not designate any cluster. As on FAT32 , the entry of
+ * a cluster lies at 4 times its id in each table ; the entries 0 and 1 are reserved , the first one holds the media
+ * descriptor and the second one the end of chain marker with the clean shutdown flags.
+ * </p>
+ */
+public final class DiskGeometry {
+
+    /**
+     * The id of the first data cluster.
+     */
+    public static final int FIRST_CLUSTER = 2;
+
+    /**
+     * The number of sectors of the reserved region before it is padded to a cluster boundary , as on a FAT32 volume.
+     */
+    public static final int DEFAULT_RESERVED_SECTORS = 32;
+
+    /**
+     * The number of File Allocation Tables of the disk , the Main one and its Backup.
+     */
+    public static final int FAT_COUNT = 2;
+
+    /**
+     * The largest cluster size in sectors , the boot sector stores it in a single byte.
+     */
+    public static final int MAX_SECTORS_PER_CLUSTER = 128;
+
+    /**
+     * The sector size of a disk when none is requested , the classic 512 bytes sector.
+     */
+    public static final int DEFAULT_SECTOR_SIZE = 512;
+
+    /**
+     * The largest sector size , the 4096 bytes sector of an Advanced Format native (4Kn) drive.
+     */
+    public static final int MAX_SECTOR_SIZE = 4096;
+
+    /**
+     * The size of an entry of a File Allocation Table.
+     */
+    public static final int FAT_ENTRY_BYTES = 4;
+
+    private final int sectorSize;
+    private final int sectorsPerCluster;
+    private final long totalSectors;
+    private final int reservedSectors;
+    private final long fatSizeInSectors;
+    private final int clusterCount;
+
+    /**
+     * Constructs a geometry from its raw fields , as they are read back from a boot sector.
+     *
+     * @param sectorSize        The size of a sector in bytes.
+     * @param sectorsPerCluster The number of sectors of a cluster.
+     * @param totalSectors      The number of sectors of the whole disk.
+     * @param reservedSectors   The number of sectors before the Main FAT.
+     * @param fatSizeInSectors  The number of sectors of one FAT.
+     * @throws IllegalArgumentException if the values do not describe a disk with at least one data cluster.
+     */
+    public DiskGeometry(int sectorSize, int sectorsPerCluster, long totalSectors, int reservedSectors, long fatSizeInSectors) {
+        if (sectorSize < DEFAULT_SECTOR_SIZE || sectorSize > MAX_SECTOR_SIZE || Integer.bitCount(sectorSize) != 1) {
+            throw new IllegalArgumentException("Sector size must be a power of two from " + DEFAULT_SECTOR_SIZE + " to " + MAX_SECTOR_SIZE + " bytes: " + sectorSize);
+        }
+        if (sectorsPerCluster < 1 || sectorsPerCluster > MAX_SECTORS_PER_CLUSTER || Integer.bitCount(sectorsPerCluster) != 1) {
+            throw new IllegalArgumentException("Sectors per cluster must be a power of two up to " + MAX_SECTORS_PER_CLUSTER + ": " + sectorsPerCluster);
+        }
+        if (reservedSectors < 1 || fatSizeInSectors < 1) {
+            throw new IllegalArgumentException("The reserved region and the FATs need at least one sector each.");
+        }
+        long dataSectors = totalSectors - reservedSectors - FAT_COUNT * fatSizeInSectors;
+        long clusters = dataSectors / sectorsPerCluster;
+        if (clusters < 1) {
+            throw new IllegalArgumentException("The disk is too small to hold any data cluster.");
+        }
+        this.sectorSize = sectorSize;
+        this.sectorsPerCluster = sectorsPerCluster;
+        this.totalSectors = totalSectors;
+        this.reservedSectors = reservedSectors;
+        this.fatSizeInSectors = fatSizeInSectors;
+        // A FAT can not describe more clusters than it has entries , the two reserved ones apart , whatever room is left on the disk
+        long entries = fatSizeInSectors * sectorSize / FAT_ENTRY_BYTES - FIRST_CLUSTER;
+        if (entries < 1) {
+            throw new IllegalArgumentException("The FATs are too small to describe any data cluster.");
+        }
+        this.clusterCount = (int) Math.min(Math.min(clusters, entries), Integer.MAX_VALUE - FIRST_CLUSTER);
+    }
+
+    /**
+     * Lays out a new disk : the reserved region , the two FATs sized for the clusters that remain , then the data region.
+     *
+     * @param diskSize          The size of the disk in bytes.
+     * @param sectorSize        The size of a sector in bytes.
+     * @param sectorsPerCluster The number of sectors of a cluster.
+     * @return The geometry of the disk.
+     * @throws IllegalArgumentException if the disk is too small for the requested layout.
+     */
+    public static DiskGeometry layout(long diskSize, int sectorSize, int sectorsPerCluster) {
+        if (sectorSize <= 0 || sectorsPerCluster <= 0) {
+            throw new IllegalArgumentException("Sector size and sectors per cluster must be strictly positive.");
+        }
+        long totalSectors = diskSize / sectorSize;
+
+        // The FATs are sized for every cluster the disk could hold without them , which is a few entries too many at worst
+        long upperClusters = Math.max(1, (totalSectors - DEFAULT_RESERVED_SECTORS) / sectorsPerCluster);
+        long fatSizeInSectors = ((upperClusters + FIRST_CLUSTER) * FAT_ENTRY_BYTES + sectorSize - 1) / sectorSize; // The entries 0 and 1 are reserved
+
+        // Then the reserved region grows until the data region starts on a cluster boundary
+        long metadataSectors = DEFAULT_RESERVED_SECTORS + FAT_COUNT * fatSizeInSectors;
+        int padding = (int) ((sectorsPerCluster - metadataSectors % sectorsPerCluster) % sectorsPerCluster);
+        return new DiskGeometry(sectorSize, sectorsPerCluster, totalSectors, DEFAULT_RESERVED_SECTORS + padding, fatSizeInSectors);
+    }
+
+    /**
+     * Gives the cluster size used when none is requested , it grows with the disk so that the FATs stay small :
+     * 512 bytes under 260 MB , 4 KB under 8 GB , 8 KB under 16 GB , 16 KB under 32 GB and 32 KB above.
+     *
+     * @param diskSize The size of the disk in bytes.
+     * @return The default number of 512 bytes sectors per cluster.
+     */
+    public static int defaultSectorsPerCluster(long diskSize) {
+        if (diskSize < 272629760L) {
+            return 1;
+        } else if (diskSize < 8589934592L) {
+            return 8;
+        } else if (diskSize < 17179869184L) {
+            return 16;
+        } else if (diskSize < 34359738368L) {
+            return 32;
+        }
+        return 64;
+    }
+
+    /**
+     * Gives the cluster size used when none is requested for a disk with the given sector size. The cluster keeps
+     * the size in bytes it would have with 512 bytes sectors , but never gets smaller than one sector : a 4Kn disk
+     * under 260 MB thus gets 4 KB clusters.
+     *
+     * @param diskSize   The size of the disk in bytes.
+     * @param sectorSize The size of a sector in bytes.
+     * @return The default number of sectors per cluster.
+     */
+    public static int defaultSectorsPerCluster(long diskSize, int sectorSize) {
+        return Math.max(1, defaultSectorsPerCluster(diskSize) * DEFAULT_SECTOR_SIZE / sectorSize);
+    }
+
+    /**
+     * Computes the sector LBA of the first sector of a data cluster.
+     *
+     * @param clusterId The id of the cluster.
+     * @return The LBA of its first sector.
+     */
+    public long clusterToLba(int clusterId) {
+        return getDataStartLba() + (long) (clusterId - FIRST_CLUSTER) * sectorsPerCluster;
+    }
+
+    /**
+     * Computes the byte offset in the disk of the first byte of a data cluster.
+     *
+     * @param clusterId The id of the cluster.
+     * @return The byte offset of the cluster in the disk image.
+     */
+    public long clusterToByteOffset(int clusterId) {
+        return clusterToLba(clusterId) * sectorSize;
+    }
+
+    /**
+     * Finds the data cluster holding a sector.
+     *
+     * @param lba The LBA of the sector.
+     * @return The id of the cluster , or -1 if the sector is not in the data region.
+     */
+    public int lbaToCluster(long lba) {
+        long dataLba = lba - getDataStartLba();
+        if (dataLba < 0 || dataLba >= (long) clusterCount * sectorsPerCluster) {
+            return -1;
+        }
+        return (int) (dataLba / sectorsPerCluster) + FIRST_CLUSTER;
+    }
+
+    /**
+     * Finds the data cluster holding a byte of the disk.
+     *
+     * @param byteOffset The byte offset in the disk image.
+     * @return The id of the cluster , or -1 if the byte is not in the data region.
+     */
+    public int byteOffsetToCluster(long byteOffset) {
+        return byteOffset < 0 ? -1 : lbaToCluster(byteOffset / sectorSize);
+    }
+
+    /**
+     * Computes the byte offset of a sector.
+     *
+     * @param lba The LBA of the sector.
+     * @return The byte offset of the sector in the disk image.
+     */
+    public long lbaToByteOffset(long lba) {
+        return lba * sectorSize;
+    }
+
+    /**
+     * Tells whether an id designates a cluster of the data region.
+     *
+     * @param clusterId The id to check.
+     * @return True if the cluster exists on the disk.
+     */
+    public boolean isDataCluster(int clusterId) {
+        return clusterId >= FIRST_CLUSTER && clusterId - FIRST_CLUSTER < clusterCount;
+    }
+
+    /**
+     * Computes the sector LBA of a File Allocation Table.
+     *
+     * @param fatIndex 0 for the Main FAT , 1 for the Backup FAT.
+     * @return The LBA of the first sector of the table.
+     */
+    public long getFatLba(int fatIndex) {
+        return reservedSectors + fatIndex * fatSizeInSectors;
+    }
+
+    /**
+     * Computes the byte offset of the entry of a cluster in a File Allocation Table. As on FAT32 , the entry of a
+     * cluster lies at 4 times its id , after the reserved entries 0 and 1.
+     *
+     * @param fatIndex  0 for the Main FAT , 1 for the Backup FAT.
+     * @param clusterId The id of the cluster.
+     * @return The byte offset of the 4 bytes of the entry in the disk image.
+     */
+    public long fatEntryOffset(int fatIndex, int clusterId) {
+        return getFatLba(fatIndex) * sectorSize + (long) clusterId * FAT_ENTRY_BYTES;
+    }
+
+    /**
+     * Builds a {@link Cluster} describing a data cluster and the LBAs of its sectors. The object is created on
+     * demand , the disk itself never keeps one.
+     *
+     * @param clusterId The id of the cluster.
+     * @return A new view of the cluster.
+     * @throws IllegalArgumentException if the id is not a cluster of the data region.
+     */
+    public Cluster clusterView(int clusterId) {
+        if (!isDataCluster(clusterId)) {
+            throw new IllegalArgumentException("Cluster " + clusterId + " is not in the data region.");
+        }
+        ArrayList<Integer> sectors = new ArrayList<>(sectorsPerCluster);
+        long first = clusterToLba(clusterId);
+        for (int i = 0; i < sectorsPerCluster; i++) {
+            sectors.add((int) (first + i));
+        }
+        return new ClusterBuilder(clusterId, sectors).Build();
+    }
+
+    /**
+     * Retrieves the size of a sector.
+     *
+     * @return The number of bytes of a sector.
+     */
+    public int getSectorSize() {
+        return sectorSize;
+    }
+
+    /**
+     * Retrieves the size of a cluster in sectors.
+     *
+     * @return The number of sectors of a cluster.
+     */
+    public int getSectorsPerCluster() {
+        return sectorsPerCluster;
+    }
+
+    /**
+     * Retrieves the size of a cluster.
+     *
+     * @return The number of bytes of a cluster.
+     */
+    public int getClusterBytes() {
+        return sectorsPerCluster * sectorSize;
+    }
+
+    /**
+     * Retrieves the size of the disk in sectors.
+     *
+     * @return The number of sectors of the whole disk , the reserved region and the FATs included.
+     */
+    public long getTotalSectors() {
+        return totalSectors;
+    }
+
+    /**
+     * Retrieves the size of the reserved region , which is also the LBA of the Main FAT.
+     *
+     * @return The number of sectors before the Main FAT.
+     */
+    public int getReservedSectors() {
+        return reservedSectors;
+    }
+
+    /**
+     * Retrieves the size of one File Allocation Table.
+     *
+     * @return The number of sectors of the table.
+     */
+    public long getFatSizeInSectors() {
+        return fatSizeInSectors;
+    }
+
+    /**
+     * Retrieves the size of one File Allocation Table.
+     *
+     * @return The number of bytes of the table , padding of its last sector included.
+     */
+    public long getFatSizeInBytes() {
+        return fatSizeInSectors * sectorSize;
+    }
+
+    /**
+     * Retrieves the first sector of the data region.
+     *
+     * @return The LBA of the first sector of cluster 2.
+     */
+    public long getDataStartLba() {
+        return reservedSectors + FAT_COUNT * fatSizeInSectors;
+    }
+
+    /**
+     * Retrieves the number of clusters of the data region , which is also the number of entries of a FAT.
+     *
+     * @return The number of data clusters , their ids go from 2 to {@code getClusterCount() + 1}.
+     */
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DiskGeometry)) {
+            return false;
+        }
+        DiskGeometry that = (DiskGeometry) other;
+        return sectorSize == that.sectorSize && sectorsPerCluster == that.sectorsPerCluster && totalSectors == that.totalSectors
+                && reservedSectors == that.reservedSectors && fatSizeInSectors == that.fatSizeInSectors;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sectorSize, sectorsPerCluster, totalSectors, reservedSectors, fatSizeInSectors);
+    }
+
+    @Override
+    public String toString() {
+        return "DiskGeometry{sectorSize=" + sectorSize + ", sectorsPerCluster=" + sectorsPerCluster + ", totalSectors=" + totalSectors
+                + ", reservedSectors=" + reservedSectors + ", fatSizeInSectors=" + fatSizeInSectors + ", dataStartLba=" + getDataStartLba()
+                + ", clusterCount=" + clusterCount + "}";
+    }
+}
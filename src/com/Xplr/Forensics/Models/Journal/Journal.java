@@ -17,7 +17,15 @@
 package com.Xplr.Forensics.Models.Journal;
 
 import java.io.FileWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.nio.file.*;
 
 /**
@@ -40,12 +48,39 @@ import java.nio.file.*;
  *   <li>Returning a string representation of the journal, including all its entries.</li>
  * </ul>
  *
+ * <p>Every method is synchronized on the journal , the entries can be added , searched and removed
+ * by several threads at once.
+ *
+ * <p>A deleted file leaves a tombstone : its entry is kept apart and written before the live ones , each line
+ * starting with {@link #DELETED_MARKER} , the way a FAT directory marks the first byte of a deleted entry.
+ * At most {@link #MAX_DELETED_ENTRIES} tombstones are kept , the oldest ones are dropped first , and they also
+ * give their room to the live entries when the disk is too full for the journal to grow.
+ *
+ * <p>The bytes of the journal are kept between two writes to the disk. The live entries come last , so a new
+ * entry only appends its line and only the clusters from the first changed byte on need to be written again.
+ * Removing an entry or adding a tombstone rebuilds the bytes as a whole.
+ *
  * <p>This class is designed to be a core component in forensic applications that require
  * the analysis and management of journal data extracted from disk images.
  *
  * @see JournalEntry
  */
 public class Journal {
+
+    /**
+     * The marker written in front of the line of a deleted entry.
+     */
+    public static final String DELETED_MARKER = "Deleted";
+
+    /**
+     * The line the journal starts with on the disk.
+     */
+    public static final String HEADER = "Journal Entries:\n";
+
+    /**
+     * The number of tombstones the journal keeps , so that deleting files does not grow it without bound.
+     */
+    public static final int MAX_DELETED_ENTRIES = 1024;
     
     // This will hold a list of journal entries     
 
@@ -57,6 +92,32 @@ public class Journal {
         */
     private ArrayList<JournalEntry> entries;
 
+    /**
+        * The entries indexed by file name , so that a lookup does not walk the whole journal.
+        */
+    private HashMap<String, JournalEntry> entriesByName;
+
+    /**
+        * The entries of the deleted files , oldest first.
+        */
+    private ArrayList<JournalEntry> deletedEntries;
+
+    /**
+        * The bytes of the journal as written on the disk , kept between two writes so that a new entry only appends
+        * its own line. Only the first {@link #serializedLength} bytes are used.
+        */
+    private byte[] serialized;
+
+    /**
+        * The number of bytes of {@link #serialized} in use , -1 when the serialization must be rebuilt.
+        */
+    private int serializedLength = -1;
+
+    /**
+        * The offset of the first byte of the serialization changed since {@link #markPersisted()}.
+        */
+    private int changedFrom = 0;
+
 
 
     /**
@@ -74,17 +135,20 @@ public class Journal {
         */
     public Journal() {
         this.entries = new ArrayList<>();
+        this.entriesByName = new HashMap<>();
+        this.deletedEntries = new ArrayList<>();
         this.JournalLba = new byte[1]; // This is considering the size of the LBA to be 1 byte
     }
 
 
     /**
         * Retrieves the list of journal entries.
+        * The list returned is a snapshot , it can be walked safely while other threads add or remove entries.
         *
         * @return An ArrayList containing the journal entries.
         */
-    public ArrayList<JournalEntry> getEntries() {
-        return entries;
+    public synchronized ArrayList<JournalEntry> getEntries() {
+        return new ArrayList<>(entries);
     }
 
     /**
@@ -92,8 +156,13 @@ public class Journal {
         *
         * @param entries The new list of journal entries to set.
         */
-    public void setEntries(ArrayList<JournalEntry> entries) {
+    public synchronized void setEntries(ArrayList<JournalEntry> entries) {
         this.entries = entries;
+        invalidateSerialization();
+        this.entriesByName = new HashMap<>();
+        for (JournalEntry entry : entries) {
+            this.entriesByName.putIfAbsent(entry.getFileName(), entry);
+        }
     }
 
     /**
@@ -122,14 +191,102 @@ public class Journal {
         * @param entry The journal entry to add.
         * @throws IllegalArgumentException if the provided entry is null.
         */
-    public void newEntry(JournalEntry entry){
+    public synchronized void newEntry(JournalEntry entry){
         if (entry != null) {
             this.entries.add(entry);
+            this.entriesByName.putIfAbsent(entry.getFileName(), entry);
+            if (serializedLength >= 0) {
+                appendSerialized((entry.toString() + "\n").getBytes()); // The live lines come last , the new one is just added at the end
+            }
         } else {
             throw new IllegalArgumentException("Entry cannot be null");
         }
     }
 
+    /**
+        * Searches the journal for the entry of a file.
+        * The entries are found by the name they had when they were added , a name missing from the index is not
+        * searched any further , so that checking a new name stays cheap however large the journal grows.
+        *
+        * @param fileName The name of the file.
+        * @return The journal entry of the file , or null if there is none.
+        */
+    public synchronized JournalEntry findEntry(String fileName) {
+        JournalEntry indexed = entriesByName.get(fileName);
+        if (indexed == null || indexed.getFileName().equals(fileName)) {
+            return indexed;
+        }
+        // The indexed entry was renamed after it was added , another entry may still carry the name
+        for (JournalEntry entry : entries) {
+            if (entry.getFileName().equals(fileName)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+        * Removes an entry from the journal.
+        *
+        * @param entry The journal entry to remove.
+        * @return True if the entry was in the journal , false otherwise.
+        */
+    public synchronized boolean removeEntry(JournalEntry entry) {
+        if (!this.entries.remove(entry)) {
+            return false;
+        }
+        invalidateSerialization();
+        if (!this.entriesByName.remove(entry.getFileName(), entry)) {
+            return true; // The entry was not the indexed one , the index is still right
+        }
+        for (JournalEntry other : entries) {
+            if (other.getFileName().equals(entry.getFileName())) {
+                this.entriesByName.putIfAbsent(other.getFileName(), other); // Another entry of the same name takes its place
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+        * Removes several entries from the journal in one walk , as a rolled back batch of files does.
+        *
+        * @param removed The journal entries to remove.
+        */
+    public synchronized void removeEntries(Collection<JournalEntry> removed) {
+        Set<JournalEntry> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        gone.addAll(removed);
+        this.entries.removeIf(gone::contains);
+        setEntries(this.entries); // The index is rebuilt from the entries left
+    }
+
+    /**
+        * Keeps the entry of a deleted file as a tombstone , once it was removed from the live entries.
+        * Beyond {@link #MAX_DELETED_ENTRIES} tombstones the oldest one is dropped.
+        *
+        * @param entry The entry of the deleted file.
+        * @throws IllegalArgumentException if the provided entry is null.
+        */
+    public synchronized void newDeletedEntry(JournalEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("Entry cannot be null");
+        }
+        this.deletedEntries.add(entry);
+        invalidateSerialization();
+        if (this.deletedEntries.size() > MAX_DELETED_ENTRIES) {
+            this.deletedEntries.remove(0);
+        }
+    }
+
+    /**
+        * Retrieves the entries of the deleted files still recorded in the journal.
+        *
+        * @return A snapshot of the tombstones , oldest first.
+        */
+    public synchronized ArrayList<JournalEntry> getDeletedEntries() {
+        return new ArrayList<>(deletedEntries);
+    }
+
     // Now let's create a method to export the journal by creating a new text file at a desired path
     /**
  * Exports the content of the Journal object to a specified file path.
@@ -161,24 +318,195 @@ public void exportJournal(String filePath) {
      * @return A string representation of the journal.
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("Journal Entries:\n");
+        sb.append(HEADER);
         for (JournalEntry entry : entries) {
             sb.append(entry.toString()).append("\n");
         }
         return sb.toString();
     }
 
-    public byte[] toByteArray() {
-         // This method converts the entire journal into a byte array and then returns it 
+    /**
+     * Converts the journal into the bytes written on the disk.
+     * The header comes first , then the tombstones and then the live entries in the order they were added.
+     *
+     * @return A copy of the bytes of the journal.
+     */
+    public synchronized byte[] toByteArray() {
+        return Arrays.copyOf(getSerializedBytes(), serializedLength);
+    }
+
+    /**
+     * Converts the journal into the bytes written on the disk , dropping the oldest tombstones until they fit.
+     *
+     * @param capacity The number of bytes available for the journal.
+     * @return The bytes of the journal , longer than the capacity only if the live entries alone do not fit.
+     */
+    public synchronized byte[] toByteArray(int capacity) {
+        dropDeletedEntriesToFit(capacity);
+        return toByteArray();
+    }
+
+    /**
+     * Drops the oldest tombstones until the journal fits in the given number of bytes , or no tombstone is left.
+     *
+     * @param capacity The number of bytes available for the journal.
+     * @return The number of bytes of the journal once the tombstones were dropped.
+     */
+    public synchronized int dropDeletedEntriesToFit(int capacity) {
+        int length = getSerializedLength();
+        int dropped = 0;
+        while (length > capacity && dropped < deletedEntries.size()) {
+            // A new file takes the room of the oldest deleted ones
+            length -= (DELETED_MARKER + deletedEntries.get(dropped) + "\n").getBytes().length;
+            dropped++;
+        }
+        if (dropped > 0) {
+            deletedEntries.subList(0, dropped).clear();
+            invalidateSerialization();
+        }
+        return getSerializedLength();
+    }
+
+    /**
+     * Retrieves the bytes of the journal as written on the disk , without copying them.
+     * The array is the journal's own , only its first {@link #getSerializedLength()} bytes are used and it is only
+     * valid until the journal changes. The caller must keep other threads from changing the journal meanwhile.
+     *
+     * @return The serialization buffer of the journal.
+     */
+    public synchronized byte[] getSerializedBytes() {
+        if (serializedLength < 0) {
+            serialize();
+        }
+        return serialized;
+    }
+
+    /**
+     * Retrieves the number of bytes of the journal as written on the disk.
+     *
+     * @return The length of the serialization.
+     */
+    public synchronized int getSerializedLength() {
+        if (serializedLength < 0) {
+            serialize();
+        }
+        return serializedLength;
+    }
+
+    /**
+     * Retrieves the offset of the first byte of the serialization changed since it was last written on the disk.
+     *
+     * @return The offset , equal to the length if nothing changed.
+     */
+    public synchronized int getChangedFrom() {
+        return Math.min(changedFrom, getSerializedLength());
+    }
+
+    /**
+     * Records that the current serialization is the one on the disk , only the bytes changed after this call
+     * need to be written again.
+     */
+    public synchronized void markPersisted() {
+        changedFrom = getSerializedLength();
+    }
+
+    /**
+     * Rebuilds the serialization of the journal from its entries.
+     */
+    private void serialize() {
         StringBuilder sb = new StringBuilder();
-        sb.append("Journal Entries:\n");
+        sb.append(HEADER);
+        for (JournalEntry entry : deletedEntries) {
+            sb.append(DELETED_MARKER).append(entry.toString()).append("\n");
+        }
         for (JournalEntry entry : entries) {
             sb.append(entry.toString()).append("\n");
         }
-        String journalContent = sb.toString();
-        return journalContent.getBytes(); // Convert the string to bytes using the default charset
+        byte[] bytes = sb.toString().getBytes(); // Convert the string to bytes using the default charset
+        serialized = Arrays.copyOf(bytes, bytes.length + bytes.length / 2); // Room for the entries added next
+        serializedLength = bytes.length;
+        changedFrom = 0;
+    }
+
+    /**
+     * Appends a line at the end of the serialization , growing its buffer by half when it is full.
+     *
+     * @param line The bytes of the line.
+     */
+    private void appendSerialized(byte[] line) {
+        if (serializedLength + line.length > serialized.length) {
+            serialized = Arrays.copyOf(serialized, Math.max(serializedLength + line.length, serialized.length + serialized.length / 2));
+        }
+        System.arraycopy(line, 0, serialized, serializedLength, line.length);
+        changedFrom = Math.min(changedFrom, serializedLength);
+        serializedLength += line.length;
+    }
+
+    /**
+     * Marks the serialization as stale , the next use rebuilds it and the whole journal is written again.
+     */
+    private void invalidateSerialization() {
+        serializedLength = -1;
+        serialized = null;
+        changedFrom = 0;
+    }
+
+    /**
+     * Rebuilds a journal from the bytes {@link #toByteArray()} wrote on a disk.
+     * The bytes end at the first 0x00 , the rest of the cluster holding the journal. A line starting with
+     * {@link #DELETED_MARKER} is a tombstone , a line that is not a journal entry is skipped. The tombstones may come
+     * before or after the live entries , older disks wrote them last.
+     *
+     * @param bytes The bytes read from the disk.
+     * @return The journal holding the entries found.
+     */
+    public static Journal fromByteArray(byte[] bytes) {
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0x00) {
+            length++;
+        }
+        Journal journal = new Journal();
+        for (String line : new String(bytes, 0, length).split("\n")) {
+            boolean deleted = line.startsWith(DELETED_MARKER);
+            JournalEntry entry = parseEntry(deleted ? line.substring(DELETED_MARKER.length()) : line);
+            if (entry != null && deleted) {
+                journal.newDeletedEntry(entry);
+            } else if (entry != null) {
+                journal.newEntry(entry);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Parses one line written by {@link JournalEntry#toString()}.
+     *
+     * @return The entry , null if the line is not a journal entry.
+     */
+    private static JournalEntry parseEntry(String line) {
+        int cluster = line.indexOf(", cluster_id=");
+        int name = line.indexOf(", FileName='");
+        int creation = line.lastIndexOf("', CreationDateAndTime=");
+        int access = line.lastIndexOf(", AccessDate=");
+        int modified = line.lastIndexOf(", Modified=");
+        int size = line.lastIndexOf(", filesize=");
+        if (!line.startsWith("JournalEntry{") || !line.endsWith("}") || cluster < 0 || name < cluster || creation < name || access < creation || modified < access || size < modified) {
+            return null;
+        }
+        try {
+            // The file name comes first among the free text fields , the dates and the size are searched from the end of the line
+            LocalDateTime modifiedTime = LocalDateTime.parse(line.substring(modified + ", Modified=".length(), size));
+            String creationText = line.substring(creation + "', CreationDateAndTime=".length(), access);
+            return new JournalEntry(line.substring(name + ", FileName='".length(), creation), "A",
+                    creationText.equals("null") ? modifiedTime : LocalDateTime.parse(creationText),
+                    LocalDate.parse(line.substring(access + ", AccessDate=".length(), modified)), modifiedTime,
+                    Integer.parseInt(line.substring(cluster + ", cluster_id=".length(), name)),
+                    Long.parseLong(line.substring(size + ", filesize=".length(), line.length() - 1)));
+        } catch (RuntimeException e) {
+            return null; // A damaged line , the entry is lost but the rest of the journal is kept
+        }
     }
 
 
@@ -32,7 +32,13 @@ public class JournalEntry {
      * Represents a single entry in the journal.
      * It holds the data for the journal entry as a byte array.
      */
-    private byte[] Entry; // The size of a journal entry is up to 32 bytes
+    private byte[] Entry; // The size of a journal entry is the length of the file name plus ENTRY_FIXED_SIZE bytes
+
+    /**
+     * The number of bytes of an entry after the file name : 8 for the attribute , 5 for the times and dates,
+     * 4 for the cluster id and 8 for the file size.
+     */
+    private static final int ENTRY_FIXED_SIZE = 8 + 5 + 4 + 8;
 
     // Let's create those fields so that we can manage them here not only let them in their bytes form
     /**
@@ -64,7 +70,7 @@ public class JournalEntry {
 
     // Now the Journal Entry has a set of fields that are assigned when one is created
     public JournalEntry() {
-        this.Entry = new byte[4096];
+        this.Entry = new byte[ENTRY_FIXED_SIZE];
     }
 
     /**
@@ -90,7 +96,7 @@ public class JournalEntry {
      *                      representation and storage in the Entry array.
      */
     public JournalEntry(String filename, String attribute, LocalDateTime creationTime, LocalDate LastAccessDate, LocalDateTime modified, int cluster_id, Long filesize) {
-        this.Entry = new byte[4096]; // Initialize Entry here
+        this.Entry = new byte[filename.length() + ENTRY_FIXED_SIZE]; // Initialize Entry here , exactly as large as the fields it holds
         // Let's start with the name of the file , we should make sure that the filename is registered upon file allocation
         for (int i = 0; i < filename.length(); i++)// We are going to go through each character and allocate their bytes values in the Journal Entry
         {
@@ -105,26 +111,26 @@ public class JournalEntry {
         current_offset += 8; // since the attribute is supposed to be an 8 bits value
 
         // Now let's allocate the file creation time
-        this.Entry[(byte) current_offset] = (byte) creationTime.getHour(); // This will allow us to store the hour at which the file was created
+        this.Entry[current_offset] = (byte) creationTime.getHour(); // This will allow us to store the hour at which the file was created
         current_offset++; // Since the hour is 8 bits , which means it is 1 byte we can now increase the current offset by 1
 
         // Now let's allocate the file creation date
 
-        this.Entry[(byte) current_offset] = (byte) creationTime.getDayOfYear(); // this is going to store the day of the year when the file was created
+        this.Entry[current_offset] = (byte) creationTime.getDayOfYear(); // this is going to store the day of the year when the file was created
 
         current_offset++; // Since the day of the year is 8 bits , which means it is 1 byte we can now increase the current offset by 1
 
         // Now let's allocate the last access date , we are still going to use the day in the year when the file was last accessed
-        this.Entry[(byte) current_offset] = (byte) LastAccessDate.getDayOfYear(); // This value is 8 bits long , meaning it is 1 byte long
+        this.Entry[current_offset] = (byte) LastAccessDate.getDayOfYear(); // This value is 8 bits long , meaning it is 1 byte long
 
         current_offset += 1; // As always , after allocating a new byte , to be at the right address for the others we need to increase the value of the current offset
         // Now let's allocate the Last modified time
 
-        this.Entry[(byte) current_offset] = (byte) modified.getHour(); // This will allow us to store the last modified date of the file , how am i going to do this ? 😩 i guess we will never know 😂, i am joking , i have to 😭
+        this.Entry[current_offset] = (byte) modified.getHour(); // This will allow us to store the last modified date of the file , how am i going to do this ? 😩 i guess we will never know 😂, i am joking , i have to 😭
 
         current_offset += 1; // We should not forget to increment the current offset , if not we might overwrite something by error
 
-        this.Entry[(byte) current_offset] = (byte) modified.getDayOfYear();//With this i am going to know also the day , someone , somehow modified this disk file , not somehow , he/she will be able to ... at his own risk 😂
+        this.Entry[current_offset] = (byte) modified.getDayOfYear();//With this i am going to know also the day , someone , somehow modified this disk file , not somehow , he/she will be able to ... at his own risk 😂
 
         current_offset += 1; // Let's not forget 😁
 
@@ -0,0 +1,614 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Sector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A typed view over the BIOS Parameter Block of a FAT32 boot sector.
+ * <p>
+ * Every field of the FAT32 BPB and of its extended boot record has a getter and a setter working directly on
+ * the bytes of the sector , through a little endian {@link ByteBuffer} : nothing is copied , a value set here is
+ * in the sector right away and a value read here is exactly what the image holds. The unsigned fields are
+ * returned as {@code int} or {@code long} so that no value of the image ever reads as negative.
+ * </p>
+ */
+public class BiosParameterBlock {
+
+    // The offsets of the fields in the sector , as laid out by the FAT32 specification
+    public static final int JUMP_BOOT = 0x00;
+    public static final int OEM_NAME = 0x03;
+    public static final int BYTES_PER_SECTOR = 0x0B;
+    public static final int SECTORS_PER_CLUSTER = 0x0D;
+    public static final int RESERVED_SECTORS = 0x0E;
+    public static final int FAT_COUNT = 0x10;
+    public static final int ROOT_ENTRY_COUNT = 0x11;
+    public static final int TOTAL_SECTORS_16 = 0x13;
+    public static final int MEDIA = 0x15;
+    public static final int FAT_SIZE_16 = 0x16;
+    public static final int SECTORS_PER_TRACK = 0x18;
+    public static final int HEAD_COUNT = 0x1A;
+    public static final int HIDDEN_SECTORS = 0x1C;
+    public static final int TOTAL_SECTORS_32 = 0x20;
+    public static final int FAT_SIZE_32 = 0x24;
+    public static final int EXTENDED_FLAGS = 0x28;
+    public static final int FILE_SYSTEM_VERSION = 0x2A;
+    public static final int ROOT_CLUSTER = 0x2C;
+    public static final int FSINFO_SECTOR = 0x30;
+    public static final int BACKUP_BOOT_SECTOR = 0x32;
+    public static final int DRIVE_NUMBER = 0x40;
+    public static final int BOOT_SIGNATURE = 0x42;
+    public static final int VOLUME_ID = 0x43;
+    public static final int VOLUME_LABEL = 0x47;
+    public static final int FILE_SYSTEM_TYPE = 0x52;
+    public static final int BOOT_CODE = 0x5A;
+    public static final int SECTOR_SIGNATURE = 0x1FE;
+
+    /**
+     * The value of the extended boot signature , telling that the volume id , label and type follow.
+     */
+    public static final int EXTENDED_BOOT_SIGNATURE = 0x29;
+
+    /**
+     * The signature closing a boot sector , the bytes 0x55 0xAA read as a little endian short.
+     */
+    public static final int BOOT_SECTOR_SIGNATURE = 0xAA55;
+
+    /**
+     * The smallest boot sector , the BPB and its signature always lie in the first 512 bytes.
+     */
+    public static final int MIN_SECTOR_SIZE = 512;
+
+    private static final int OEM_NAME_LENGTH = 8;
+    private static final int VOLUME_LABEL_LENGTH = 11;
+    private static final int FILE_SYSTEM_TYPE_LENGTH = 8;
+
+    private final ByteBuffer fields;
+
+    /**
+     * Constructs a view over the bytes of a boot sector.
+     *
+     * @param sector The bytes of the sector , they are not copied.
+     * @throws IllegalArgumentException if the sector is smaller than 512 bytes.
+     */
+    public BiosParameterBlock(byte[] sector) {
+        if (sector.length < MIN_SECTOR_SIZE) {
+            throw new IllegalArgumentException("A boot sector holds at least " + MIN_SECTOR_SIZE + " bytes.");
+        }
+        this.fields = ByteBuffer.wrap(sector).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Retrieves the three bytes of the jump instruction.
+     *
+     * @return A copy of the jump instruction.
+     */
+    public byte[] getJumpBoot() {
+        byte[] jump = new byte[3];
+        fields.get(JUMP_BOOT, jump);
+        return jump;
+    }
+
+    /**
+     * Sets the jump instruction over the BPB.
+     *
+     * @param jump The three bytes of the instruction.
+     */
+    public void setJumpBoot(byte[] jump) {
+        fields.put(JUMP_BOOT, jump, 0, 3);
+    }
+
+    /**
+     * Retrieves the name of the system that formatted the volume.
+     *
+     * @return The OEM name , without its padding.
+     */
+    public String getOemName() {
+        return getText(OEM_NAME, OEM_NAME_LENGTH);
+    }
+
+    /**
+     * Sets the name of the system that formatted the volume.
+     *
+     * @param oemName The OEM name , cut or padded with spaces to 8 characters.
+     */
+    public void setOemName(String oemName) {
+        putText(OEM_NAME, OEM_NAME_LENGTH, oemName);
+    }
+
+    /**
+     * Retrieves the size of a sector.
+     *
+     * @return The number of bytes per sector.
+     */
+    public int getBytesPerSector() {
+        return Short.toUnsignedInt(fields.getShort(BYTES_PER_SECTOR));
+    }
+
+    /**
+     * Sets the size of a sector.
+     *
+     * @param bytesPerSector The number of bytes per sector.
+     */
+    public void setBytesPerSector(int bytesPerSector) {
+        fields.putShort(BYTES_PER_SECTOR, (short) bytesPerSector);
+    }
+
+    /**
+     * Retrieves the size of a cluster.
+     *
+     * @return The number of sectors per cluster.
+     */
+    public int getSectorsPerCluster() {
+        return Byte.toUnsignedInt(fields.get(SECTORS_PER_CLUSTER));
+    }
+
+    /**
+     * Sets the size of a cluster.
+     *
+     * @param sectorsPerCluster The number of sectors per cluster , up to 128.
+     */
+    public void setSectorsPerCluster(int sectorsPerCluster) {
+        fields.put(SECTORS_PER_CLUSTER, (byte) sectorsPerCluster);
+    }
+
+    /**
+     * Retrieves the size of the reserved region , which starts with the boot sector.
+     *
+     * @return The number of reserved sectors.
+     */
+    public int getReservedSectors() {
+        return Short.toUnsignedInt(fields.getShort(RESERVED_SECTORS));
+    }
+
+    /**
+     * Sets the size of the reserved region.
+     *
+     * @param reservedSectors The number of reserved sectors.
+     */
+    public void setReservedSectors(int reservedSectors) {
+        fields.putShort(RESERVED_SECTORS, (short) reservedSectors);
+    }
+
+    /**
+     * Retrieves the number of File Allocation Tables.
+     *
+     * @return The number of FATs.
+     */
+    public int getFatCount() {
+        return Byte.toUnsignedInt(fields.get(FAT_COUNT));
+    }
+
+    /**
+     * Sets the number of File Allocation Tables.
+     *
+     * @param fatCount The number of FATs.
+     */
+    public void setFatCount(int fatCount) {
+        fields.put(FAT_COUNT, (byte) fatCount);
+    }
+
+    /**
+     * Retrieves the number of entries of a FAT12/16 root directory.
+     *
+     * @return The root entry count , 0 on a FAT32 volume.
+     */
+    public int getRootEntryCount() {
+        return Short.toUnsignedInt(fields.getShort(ROOT_ENTRY_COUNT));
+    }
+
+    /**
+     * Sets the number of entries of a FAT12/16 root directory.
+     *
+     * @param rootEntryCount The root entry count , 0 on a FAT32 volume.
+     */
+    public void setRootEntryCount(int rootEntryCount) {
+        fields.putShort(ROOT_ENTRY_COUNT, (short) rootEntryCount);
+    }
+
+    /**
+     * Retrieves the 16 bit count of the sectors of the volume.
+     *
+     * @return The sector count , 0 when the 32 bit field is used.
+     */
+    public int getTotalSectors16() {
+        return Short.toUnsignedInt(fields.getShort(TOTAL_SECTORS_16));
+    }
+
+    /**
+     * Sets the 16 bit count of the sectors of the volume.
+     *
+     * @param totalSectors The sector count , 0 when the 32 bit field is used.
+     */
+    public void setTotalSectors16(int totalSectors) {
+        fields.putShort(TOTAL_SECTORS_16, (short) totalSectors);
+    }
+
+    /**
+     * Retrieves the media descriptor.
+     *
+     * @return The media byte , 0xF8 for a fixed disk.
+     */
+    public int getMedia() {
+        return Byte.toUnsignedInt(fields.get(MEDIA));
+    }
+
+    /**
+     * Sets the media descriptor.
+     *
+     * @param media The media byte , 0xF8 for a fixed disk.
+     */
+    public void setMedia(int media) {
+        fields.put(MEDIA, (byte) media);
+    }
+
+    /**
+     * Retrieves the 16 bit size of a FAT12/16 table.
+     *
+     * @return The number of sectors of a FAT , 0 on a FAT32 volume.
+     */
+    public int getFatSize16() {
+        return Short.toUnsignedInt(fields.getShort(FAT_SIZE_16));
+    }
+
+    /**
+     * Sets the 16 bit size of a FAT12/16 table.
+     *
+     * @param fatSize The number of sectors of a FAT , 0 on a FAT32 volume.
+     */
+    public void setFatSize16(int fatSize) {
+        fields.putShort(FAT_SIZE_16, (short) fatSize);
+    }
+
+    /**
+     * Retrieves the number of sectors of a track , for the CHS addressing.
+     *
+     * @return The sectors per track.
+     */
+    public int getSectorsPerTrack() {
+        return Short.toUnsignedInt(fields.getShort(SECTORS_PER_TRACK));
+    }
+
+    /**
+     * Sets the number of sectors of a track.
+     *
+     * @param sectorsPerTrack The sectors per track.
+     */
+    public void setSectorsPerTrack(int sectorsPerTrack) {
+        fields.putShort(SECTORS_PER_TRACK, (short) sectorsPerTrack);
+    }
+
+    /**
+     * Retrieves the number of heads , for the CHS addressing.
+     *
+     * @return The head count.
+     */
+    public int getHeadCount() {
+        return Short.toUnsignedInt(fields.getShort(HEAD_COUNT));
+    }
+
+    /**
+     * Sets the number of heads.
+     *
+     * @param headCount The head count.
+     */
+    public void setHeadCount(int headCount) {
+        fields.putShort(HEAD_COUNT, (short) headCount);
+    }
+
+    /**
+     * Retrieves the number of sectors preceding the volume on its drive.
+     *
+     * @return The hidden sectors.
+     */
+    public long getHiddenSectors() {
+        return Integer.toUnsignedLong(fields.getInt(HIDDEN_SECTORS));
+    }
+
+    /**
+     * Sets the number of sectors preceding the volume on its drive.
+     *
+     * @param hiddenSectors The hidden sectors.
+     */
+    public void setHiddenSectors(long hiddenSectors) {
+        fields.putInt(HIDDEN_SECTORS, (int) hiddenSectors);
+    }
+
+    /**
+     * Retrieves the 32 bit count of the sectors of the volume.
+     *
+     * @return The sector count.
+     */
+    public long getTotalSectors32() {
+        return Integer.toUnsignedLong(fields.getInt(TOTAL_SECTORS_32));
+    }
+
+    /**
+     * Sets the 32 bit count of the sectors of the volume.
+     *
+     * @param totalSectors The sector count.
+     */
+    public void setTotalSectors32(long totalSectors) {
+        fields.putInt(TOTAL_SECTORS_32, (int) totalSectors);
+    }
+
+    /**
+     * Retrieves the count of the sectors of the volume , from whichever of the two fields is used.
+     *
+     * @return The sector count.
+     */
+    public long getTotalSectors() {
+        int small = getTotalSectors16();
+        return small != 0 ? small : getTotalSectors32();
+    }
+
+    /**
+     * Retrieves the size of one FAT32 table.
+     *
+     * @return The number of sectors of a FAT.
+     */
+    public long getFatSize32() {
+        return Integer.toUnsignedLong(fields.getInt(FAT_SIZE_32));
+    }
+
+    /**
+     * Sets the size of one FAT32 table.
+     *
+     * @param fatSize The number of sectors of a FAT.
+     */
+    public void setFatSize32(long fatSize) {
+        fields.putInt(FAT_SIZE_32, (int) fatSize);
+    }
+
+    /**
+     * Retrieves the mirroring flags of the FATs.
+     *
+     * @return The extended flags , 0 when every FAT mirrors the first one.
+     */
+    public int getExtendedFlags() {
+        return Short.toUnsignedInt(fields.getShort(EXTENDED_FLAGS));
+    }
+
+    /**
+     * Sets the mirroring flags of the FATs.
+     *
+     * @param extendedFlags The extended flags , 0 when every FAT mirrors the first one.
+     */
+    public void setExtendedFlags(int extendedFlags) {
+        fields.putShort(EXTENDED_FLAGS, (short) extendedFlags);
+    }
+
+    /**
+     * Retrieves the version of the FAT32 structures.
+     *
+     * @return The version , major in the high byte.
+     */
+    public int getFileSystemVersion() {
+        return Short.toUnsignedInt(fields.getShort(FILE_SYSTEM_VERSION));
+    }
+
+    /**
+     * Sets the version of the FAT32 structures.
+     *
+     * @param version The version , major in the high byte.
+     */
+    public void setFileSystemVersion(int version) {
+        fields.putShort(FILE_SYSTEM_VERSION, (short) version);
+    }
+
+    /**
+     * Retrieves the first cluster of the root directory.
+     *
+     * @return The cluster id , usually 2.
+     */
+    public long getRootCluster() {
+        return Integer.toUnsignedLong(fields.getInt(ROOT_CLUSTER));
+    }
+
+    /**
+     * Sets the first cluster of the root directory.
+     *
+     * @param rootCluster The cluster id.
+     */
+    public void setRootCluster(long rootCluster) {
+        fields.putInt(ROOT_CLUSTER, (int) rootCluster);
+    }
+
+    /**
+     * Retrieves the LBA of the FSInfo sector.
+     *
+     * @return The sector , usually 1.
+     */
+    public int getFSInfoSector() {
+        return Short.toUnsignedInt(fields.getShort(FSINFO_SECTOR));
+    }
+
+    /**
+     * Sets the LBA of the FSInfo sector.
+     *
+     * @param sector The sector.
+     */
+    public void setFSInfoSector(int sector) {
+        fields.putShort(FSINFO_SECTOR, (short) sector);
+    }
+
+    /**
+     * Retrieves the LBA of the copy of the boot sector.
+     *
+     * @return The sector , usually 6.
+     */
+    public int getBackupBootSector() {
+        return Short.toUnsignedInt(fields.getShort(BACKUP_BOOT_SECTOR));
+    }
+
+    /**
+     * Sets the LBA of the copy of the boot sector.
+     *
+     * @param sector The sector.
+     */
+    public void setBackupBootSector(int sector) {
+        fields.putShort(BACKUP_BOOT_SECTOR, (short) sector);
+    }
+
+    /**
+     * Retrieves the BIOS drive number.
+     *
+     * @return The drive number , 0x80 for a fixed disk.
+     */
+    public int getDriveNumber() {
+        return Byte.toUnsignedInt(fields.get(DRIVE_NUMBER));
+    }
+
+    /**
+     * Sets the BIOS drive number.
+     *
+     * @param driveNumber The drive number , 0x80 for a fixed disk.
+     */
+    public void setDriveNumber(int driveNumber) {
+        fields.put(DRIVE_NUMBER, (byte) driveNumber);
+    }
+
+    /**
+     * Retrieves the extended boot signature.
+     *
+     * @return 0x29 when the volume id , label and type are present.
+     */
+    public int getBootSignature() {
+        return Byte.toUnsignedInt(fields.get(BOOT_SIGNATURE));
+    }
+
+    /**
+     * Sets the extended boot signature.
+     *
+     * @param signature 0x29 when the volume id , label and type are present.
+     */
+    public void setBootSignature(int signature) {
+        fields.put(BOOT_SIGNATURE, (byte) signature);
+    }
+
+    /**
+     * Retrieves the serial number of the volume.
+     *
+     * @return The volume id.
+     */
+    public long getVolumeId() {
+        return Integer.toUnsignedLong(fields.getInt(VOLUME_ID));
+    }
+
+    /**
+     * Sets the serial number of the volume.
+     *
+     * @param volumeId The volume id.
+     */
+    public void setVolumeId(long volumeId) {
+        fields.putInt(VOLUME_ID, (int) volumeId);
+    }
+
+    /**
+     * Retrieves the label of the volume.
+     *
+     * @return The label , without its padding.
+     */
+    public String getVolumeLabel() {
+        return getText(VOLUME_LABEL, VOLUME_LABEL_LENGTH);
+    }
+
+    /**
+     * Sets the label of the volume.
+     *
+     * @param label The label , cut or padded with spaces to 11 characters.
+     */
+    public void setVolumeLabel(String label) {
+        putText(VOLUME_LABEL, VOLUME_LABEL_LENGTH, label);
+    }
+
+    /**
+     * Retrieves the informative type of the file system.
+     *
+     * @return The type , "FAT32" for this disk.
+     */
+    public String getFileSystemType() {
+        return getText(FILE_SYSTEM_TYPE, FILE_SYSTEM_TYPE_LENGTH);
+    }
+
+    /**
+     * Sets the informative type of the file system.
+     *
+     * @param type The type , cut or padded with spaces to 8 characters.
+     */
+    public void setFileSystemType(String type) {
+        putText(FILE_SYSTEM_TYPE, FILE_SYSTEM_TYPE_LENGTH, type);
+    }
+
+    /**
+     * Retrieves the signature closing the boot sector.
+     *
+     * @return {@link #BOOT_SECTOR_SIGNATURE} for a valid boot sector.
+     */
+    public int getSectorSignature() {
+        return Short.toUnsignedInt(fields.getShort(SECTOR_SIGNATURE));
+    }
+
+    /**
+     * Sets the signature closing the boot sector.
+     *
+     * @param signature {@link #BOOT_SECTOR_SIGNATURE} for a valid boot sector.
+     */
+    public void setSectorSignature(int signature) {
+        fields.putShort(SECTOR_SIGNATURE, (short) signature);
+    }
+
+    /**
+     * Tells whether the sector ends with the 0x55 0xAA signature.
+     *
+     * @return True if the sector is signed as a boot sector.
+     */
+    public boolean hasSectorSignature() {
+        return getSectorSignature() == BOOT_SECTOR_SIGNATURE;
+    }
+
+    /**
+     * Reads a space padded ASCII field.
+     */
+    private String getText(int offset, int length) {
+        byte[] text = new byte[length];
+        fields.get(offset, text);
+        return new String(text, StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Writes a space padded ASCII field.
+     */
+    private void putText(int offset, int length, String value) {
+        byte[] text = new byte[length];
+        Arrays.fill(text, (byte) ' ');
+        byte[] ascii = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, text, 0, Math.min(length, ascii.length));
+        fields.put(offset, text);
+    }
+
+    @Override
+    public String toString() {
+        return "BiosParameterBlock{oem=" + getOemName() + ", bytesPerSector=" + getBytesPerSector() + ", sectorsPerCluster=" + getSectorsPerCluster()
+                + ", reservedSectors=" + getReservedSectors() + ", fats=" + getFatCount() + ", totalSectors=" + getTotalSectors()
+                + ", fatSize=" + getFatSize32() + ", rootCluster=" + getRootCluster() + ", fsInfo=" + getFSInfoSector()
+                + ", backupBoot=" + getBackupBootSector() + ", label=" + getVolumeLabel() + ", type=" + getFileSystemType() + "}";
+    }
+}
@@ -17,17 +17,26 @@
 package com.Xplr.Forensics.Models.Sector;
 
 
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
 
 public class BootSector  {
 
+    /**
+     * The LBA of the copy of the boot sector , as on a FAT32 volume.
+     */
+    public static final int BACKUP_BOOT_LBA = 6;
+
     /**
      * Represents the boot sector of a storage device.
      * <p>
-     * This array holds the raw bytes of the boot sector, which is typically 512 bytes in size.
+     * This array holds the raw bytes of the boot sector, which takes a whole sector of the disk.
      * The boot sector contains important information required to boot and identify the file system.
      */
-    private byte[] bootSecto = new byte[512]; // The size of the boot sector is 512 bytes
+    private byte[] bootSecto = new byte[512]; // The size of the boot sector is the size of a sector
     /**
      * Logical Block Address (LBA) representing the starting sector of the boot sector.
      * This value is typically used to identify the position of a sector on a storage device.
@@ -35,6 +44,11 @@ public class BootSector  {
      */
     private final int Lba=0;// This stand for the Logical Block Address
 
+    /**
+     * The typed view over the fields of the boot sector , every field goes through it in little endian.
+     */
+    private BiosParameterBlock bpb;
+
     /**
      * 
      * @category Boot sector
@@ -42,320 +56,116 @@ public class BootSector  {
      * 
      */
     public BootSector() {
-        // First let's fill the sectors with 0x00 and fill those that need to be filled 
-        
-        for(int i=0; i<512;i++){
-
-            bootSecto[0x00+i] = 0x00; // This will fill all the sectors of the boot sectors , then we  will only modify the one we need
-        }
-
-        // Let's correctly initialize the boot sector with all the required fields 
-        bootSecto[0x00] = (byte) 0xEB;
-        
-        bootSecto[0x01] = 0x58;
-        
-        bootSecto[0x02] = (byte) 0x90;
-        // Now We are done with the Jump instruction 
-        // Let's set the OEM Name 
-        String OEMName  = "MSWIN4.1"; // Original Equipment Manufacturer Name , it also help know the system used for formating the disk
-        
-        for(int i = 0;i<OEMName.length();i++){
-         
-            bootSecto[0x03 + i] = (byte) OEMName.charAt(i);
-        
-        } /* It will get the byte value for each character that composes the OEMName variable and then will convert them to byte , then is going  to store it in the appropriate offset */  
-        
-        // now we are done with the OEM , let's jump to the number of bytes per sector , the values of 512 is 0x0200 but since we use big endian we will store it has it is 
-        
-        bootSecto[0x0B] = (byte) 0x02;
-        
-        bootSecto[0x0C] = (byte) 0x00;
-        
-        // Now let's address the number of sectors per cluster 
-        
-        // This constructor is the constructor for clusters of 4 KB , meaning a cluster will contain 8 sectors 
-        
-        bootSecto[0x0D] = 0x08; // Here we define the number of sectors per cluster , and we didn't use the cast since the value  can be represented in the range of a byte
-        
-        // Now let's address all the reserved sectors  , meaning the number of sectors that are reserved for the boot sector, here we are going to use the little endian format 
-        
-        bootSecto[0x0E] = 0x00;
-        
-        bootSecto[0x0F] = 0x02;
-        
-        // After this we are done with the reserved sectors , or should i say it is the size of the reserved  sectors area of the disk  and it  takes obviously 32 sectors 
-        
-        //Now let's specify the number of File Allocation Table for the disk 
-        
-        bootSecto[0x10] = 0x02;
-        
-        // In the following code there might be some offset that are not going to be initialized , we will initialize the bytes that the system uses to recognize the boot Sector 
-        
-        // Now let's set the root entries 
-        bootSecto[0x11] =  0x00;
-        
-        bootSecto[0x12] = 0x00;
-        
-        // Now this is the Small Sectors size 
-        bootSecto[0x13] = 0x00;
-        
-        bootSecto[0x14] = 0x00;
-        
-        //Now let's set the Media Descriptor , the one  to tell the system which disk it is , we are going with the classical one which is 0xF8
-        
-        bootSecto[0x15] = (byte) 0xF8;
-        
-        // Now let's set the size of the sectors per track  which is information that defines how many sectors are present in each track of the disk
-        bootSecto[0x18] = 0x3F;
-        bootSecto[0x19] = 0x00;
-
-        // Now let's specify the number of heads 
-        bootSecto[0x1A] = (byte) 0xFF;
-        bootSecto[0x1B] = 0x00;
-
-        // Now let's specify the total numbers of sectors of the entire disk 
-        bootSecto[0x20] = 0x00;
-        bootSecto[0x21] = 0x00;
-        bootSecto[0x22] = 0x20; // The number of sectors for this 1 Gb is 2 097 152 sectors , converted to hexadecimal is 200000 , and we are going to store it in little endian format , but since we filled the array of the sectors with 0x00 , we only make changes to meaningful bytes
-        bootSecto[0x23] = 0x00;
-
-        //Now let's specify the size of the file allocation table , which corresponds to the number of sectors pers FAT, which is 2048 sectors per FAT 
-        bootSecto[0x24] = 0x00;
-        bootSecto[0x25] = 0x08;
-
-
-        // Since we have setted all the empty bytes to 0x00 it covers the following fields 
-        // the FAT Flag
-        // the FAT version 
-        // 
-
-        // Now let's set the File System Information bytes 
-        bootSecto[0x30] = 0x00;
-        bootSecto[0x31] = 0x01;
-
-        // Now let's set the Backup Boot Sector responsible for the backup of the boot sector when the system is corrupted
-        bootSecto[0x32] = 0x00;
-        bootSecto[0x33] = 0x06;
-
-        // We can get over with the reserved bytes since we already set them to 0x00
-        // Now let's set the Drive Number , which represents a kinda like id to say that the disk is a fixed disk or floppy disk
-        bootSecto[0x42] = (byte) 0x80;
-
-        // Now let's set the Extended Boot signature , which is a byte that is used to identify the boot sector
-        bootSecto[0x44] = (byte) 0x29;
-
-        //Now let's set the Volume Identifier , which is unique for each produced disk regardless of the system used to format it
-        // We will set it to find the hexadecimal sequence of bytes that the RandomUniqueVolumeIDGenerator method will generate
-        byte[] VolumeID = RandomUniqueVolumeIDGenerator(); 
-        bootSecto[0x45] = VolumeID[0];
-        bootSecto[0x46] = VolumeID[1];
-        bootSecto[0x47] = VolumeID[2];
-        bootSecto[0x48] = VolumeID[3];
-        // Now let's specify the Volume label , the label will be called "Xplr"
-        String VolumeLabel = "Xplr Disk"; // The label of the disk , it is used to name the disk
-        for(int i=0 ; i<VolumeLabel.length();i++){ // we are going to convert each character of the  labale seaquence and store it in  
-            bootSecto[0x49+i] = (byte) VolumeLabel.charAt(i);
-        }
-
-        // Now let's set the File System Type , which is the type of file system used to format the disk
-        String FileSysstemType  = "FAT32   "; 
-        for(int i=0 ; i<FileSysstemType.length();i++){ // we are going to convert each character of the  labale seaquence and store it in  
-            bootSecto[0x54+i] = (byte) FileSysstemType.charAt(i);
-        }
-
-        //  Now let's attack the boot code , which is the code that is executed when the system boots up
-        // we have to replace the 0x00 bytes with 0x86 for each concerned bytes in the offset of the BootCode 
-       bootSecto[0x5A] = (byte) 0xFA;// this is the CLI instruction that is going to clears the interrupt flag by disabling the hardware interrupts
-       bootSecto[0x5B] = (byte) 0xF4;// this is the HLT instruction that is going to halt the CPU until the next external interrupt is received
-
-        // Now let's conclude with the Boot Signature 
-        bootSecto[0x1FE] = (byte) 0x55;
-        bootSecto[0x1FF] = (byte) 0xAA;
-
+        this(1073741824L, "Xplr Disk", 8); // A 1 Gb disk with clusters of 4 KB , meaning a cluster will contain 8 sectors
     }
 
+    /**
+     * Builds the boot sector of a disk whose cluster size is the default one for its size ,
+     * see {@link DiskGeometry#defaultSectorsPerCluster(long)}.
+     *
+     * @param disk_size The size of the disk in bytes.
+     * @param disk_name The label of the disk.
+     */
     public BootSector(long disk_size, String disk_name){
-        // First let's fill the sectors with 0x00 and fill those that need to be filled
-
-        for(int i=0; i<512;i++){
-
-            bootSecto[0x00+i] = 0x00; // This will fill all the sectors of the boot sectors , then we will will only modify the one we need
-        }
-
-        // Let's correctly initialize the boot sector with all the required fields
-        bootSecto[0x00] = (byte) 0xEB;
-
-        bootSecto[0x01] = 0x58;
-
-        bootSecto[0x02] = (byte) 0x90;
-        // Now We are done with the Jump instruction
-        // Let's set the OEM Name
-        String OEMName  = "MSWIN4.1"; // Original Equipment Manufacturer Name , it also help know the system used for formating the disk
-
-        for(int i = 0;i<OEMName.length();i++){
-
-            bootSecto[0x03 + i] = (byte) OEMName.charAt(i);
-
-        } /* It will get the byte value for each character that composes the OEMName variable and then will convert them to byte , then is going  to store it in the appropriate offset */
-
-        // now we are done with the OEM , let's jump to the number of bytes per sector , the values of 512 is 0x0200 but since we use big endian we will store it has it is
-
-        bootSecto[0x0B] = (byte) 0x02;
-
-        bootSecto[0x0C] = (byte) 0x00;
-
-
-
-        if(disk_size<272629760){// Meaning if the disk_size is less than 256 MB
-
-            bootSecto[0x0D] = 0x01; // Meaning 1  sector of 512 bytes per cluster
-
-            // Now let's change some  parameters of the disk depending on the size of the disk , such as the number of sectors of the entire disk , the number of cluster of the entire disk , the number of sectors per FAT
-
-            // Let's start with the number of sectors of the entire disk
-            LittleEndianAssignment((byte) 0x20, NumberOfSectorsOfTheEntireDisk(disk_size));
-
-            //Now let's specify the size of the file allocation table , which corresponds to the number of sectors per FAT
-            // In this case , the number of Sectors considering our disk size  is
-            long NbSector = disk_size/512;
-
-            //This is the number of Clusters per File Allocation Table
-
-            LittleEndianAssignment((byte) 0x24 , NbSector);
-
-
-
-
-        }else if(disk_size <8589934592L) { // The L is because the value is too big for an int , so we need to specify to the jvm that we will use that number as a long
-
-            // meaning we will have 8 sectors per cluster
-
-            bootSecto[0x0D] = 0x08;// Here we define the number of sectors per cluster , and we didn't use the cast since the value  can be represented in the range of a byte
-
-            // Now let's change some  parameters of the disk depending on the size of the disk , such as the number of sectors of the entire disk , the number of cluster of the entire disk , the number of sectors per FAT
-
-            // Let's start with the number of sectors of the entire disk
-            LittleEndianAssignment((byte) 0x20, NumberOfSectorsOfTheEntireDisk(disk_size));
-
-            //Now let's specify the size of the file allocation table , which corresponds to the number of sectors per FAT
-            long NbCluster = disk_size / (8*512) ;
-            LittleEndianAssignment((byte) 0x24 , NbCluster);
-
-
-
-
-        } else if (disk_size<17179869184L) {
-
-            // In this case we will have 16 sectors per cluster 
-            bootSecto[0x0D] = 0x10;
-            // Now let's change some  parameters of the disk depending on the size of the disk , such as the number of sectors of the entire disk , the number of cluster of the entire disk , the number of sectors per FAT
+        this(disk_size, disk_name, DiskGeometry.defaultSectorsPerCluster(disk_size));
+    }
 
-            // Let's start with the number of sectors of the entire disk
-            LittleEndianAssignment((byte) 0x20, NumberOfSectorsOfTheEntireDisk(disk_size));
+    /**
+     * Builds the boot sector of a disk with the given cluster size.
+     *
+     * @param disk_size         The size of the disk in bytes.
+     * @param disk_name         The label of the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     */
+    public BootSector(long disk_size, String disk_name, int sectorsPerCluster){
+        this(disk_size, disk_name, sectorsPerCluster, DiskGeometry.DEFAULT_SECTOR_SIZE);
+    }
 
-            //Now let's specify the size of the file allocation table , which corresponds to the number of sectors per FAT
-            long NbCluster = disk_size / (16*512) ;
-            LittleEndianAssignment((byte) 0x24 , NbCluster);
+    /**
+     * Builds the boot sector of a disk with the given cluster and sector sizes , laid out by {@link DiskGeometry#layout(long, int, int)}.
+     *
+     * @param disk_size         The size of the disk in bytes.
+     * @param disk_name         The label of the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     * @param bytesPerSector    The size of a sector in bytes , 512 or 4096 for a 4Kn disk.
+     * @throws IllegalArgumentException if the disk is too small for the requested layout.
+     */
+    public BootSector(long disk_size, String disk_name, int sectorsPerCluster, int bytesPerSector){
+        this(DiskGeometry.layout(disk_size, bytesPerSector, sectorsPerCluster), disk_name);
+    }
 
-        }else if(disk_size<34359738368L){
+    /**
+     * Builds the boot sector of a disk laid out by a geometry. The BIOS Parameter Block records the geometry
+     * exactly , so that the disk can later be mounted from this sector alone , see {@link #getGeometry()}.
+     * The boot sector takes a whole sector , the BPB still lies in its first 512 bytes and the signature stays at 0x1FE.
+     *
+     * @param geometry  The layout of the disk.
+     * @param disk_name The label of the disk , up to 11 characters.
+     */
+    public BootSector(DiskGeometry geometry, String disk_name) {
+        // A new array is filled with 0x00 , we only set the fields that need a value
+        this.bootSecto = new byte[geometry.getSectorSize()];
+        this.bpb = new BiosParameterBlock(bootSecto);
+
+        // Let's correctly initialize the boot sector with all the required fields , starting with the Jump instruction
+        bpb.setJumpBoot(new byte[]{(byte) 0xEB, 0x58, (byte) 0x90});
+        bpb.setOemName("MSWIN4.1"); // Original Equipment Manufacturer Name , it also help know the system used for formating the disk
+
+        // Now the layout of the disk , every value comes from the geometry so that a mount finds the very same regions
+        bpb.setBytesPerSector(geometry.getSectorSize());
+        bpb.setSectorsPerCluster(geometry.getSectorsPerCluster());
+        bpb.setReservedSectors(geometry.getReservedSectors()); // The boot sector , the FSInfo sector and the padding up to the Main FAT
+        bpb.setFatCount(DiskGeometry.FAT_COUNT);
+        bpb.setRootEntryCount(0); // A FAT32 root directory is a cluster chain , it has no fixed size
+        bpb.setTotalSectors16(0); // FAT32 always uses the 32 bits field
+        bpb.setMedia(0xF8); // The media descriptor of a fixed disk
+        bpb.setFatSize16(0);
+        bpb.setSectorsPerTrack(0x3F); // How many sectors are present in each track of the disk
+        bpb.setHeadCount(0xFF);
+        bpb.setHiddenSectors(0);
+        bpb.setTotalSectors32(geometry.getTotalSectors());
+        bpb.setFatSize32(geometry.getFatSizeInSectors());
+
+        // Then the FAT32 fields , the FATs are mirrored and the journal lives in the first data cluster
+        bpb.setExtendedFlags(0);
+        bpb.setFileSystemVersion(0);
+        bpb.setRootCluster(DiskGeometry.FIRST_CLUSTER);
+        bpb.setFSInfoSector(FSInfoSector.FSINFO_LBA);
+        bpb.setBackupBootSector(BACKUP_BOOT_LBA);
+
+        // Now the extended boot record , telling which disk it is
+        bpb.setDriveNumber(0x80); // A kinda like id to say that the disk is a fixed disk and not a floppy disk
+        bpb.setBootSignature(BiosParameterBlock.EXTENDED_BOOT_SIGNATURE);
+        bpb.setVolumeId(Integer.toUnsignedLong(ByteBuffer.wrap(RandomUniqueVolumeIDGenerator()).order(ByteOrder.LITTLE_ENDIAN).getInt())); // Unique for each produced disk
+        bpb.setVolumeLabel(disk_name);
+        bpb.setFileSystemType("FAT32");
 
-            //Here we will have to go with 32 sectors per cluster
-            bootSecto[0x0D] = 0x20; // Meaning we will have 32 sectors per cluster
-            // Now let's change some  parameters of the disk depending on the size of the disk , such as the number of sectors of the entire disk , the number of cluster of the entire disk , the number of sectors per FAT
+        //  Now let's attack the boot code , which is the code that is executed when the system boots up
+        bootSecto[BiosParameterBlock.BOOT_CODE] = (byte) 0xFA;// this is the CLI instruction that is going to clears the interrupt flag by disabling the hardware interrupts
+        bootSecto[BiosParameterBlock.BOOT_CODE + 1] = (byte) 0xF4;// this is the HLT instruction that is going to halt the CPU until the next external interrupt is received
 
-            // Let's start with the number of sectors of the entire disk
-            LittleEndianAssignment((byte) 0x20, NumberOfSectorsOfTheEntireDisk(disk_size));
+        // Now let's conclude with the Boot Signature
+        bpb.setSectorSignature(BiosParameterBlock.BOOT_SECTOR_SIGNATURE);
+    }
 
-            //Now let's specify the size of the file allocation table , which corresponds to the number of sectors per FAT
-            long NbCluster = disk_size / (32*512) ;
-            LittleEndianAssignment((byte) 0x24 , NbCluster);
+    /**
+     * Wraps the bytes of a boot sector read back from a disk.
+     *
+     * @param sector The bytes of the sector , they are not copied.
+     * @throws IllegalArgumentException if the bytes are not a signed FAT32 boot sector of a supported sector size.
+     */
+    public BootSector(byte[] sector) {
+        this.bpb = new BiosParameterBlock(sector);
+        if (!bpb.hasSectorSignature()) {
+            throw new IllegalArgumentException("Sector 0 does not end with the 0x55AA boot signature.");
         }
-        // Now let's address all the reserved sectors  , meaning the number of sectors that are reserved for the boot sector, here we are going to use the little endian format
-
-        bootSecto[0x0E] = 0x00;
-
-        bootSecto[0x0F] = 0x02;
-
-        // After this we are done with the reserved sectors , or should i say it is the size of the reserved  sectors area of the disk  and it  takes obviously 32 sectors
-
-        //Now let's specify the number of File Allocation Table for the disk
-
-        bootSecto[0x10] = 0x02;
-
-        // In the following code there might be some offset that are not going to be initialized , we will initialize the bytes that the system uses to recognize the boot Sector
-
-        // Now let's set the root entries
-        bootSecto[0x11] =  0x00;
-
-        bootSecto[0x12] = 0x00;
-
-        // Now this is the Small Sectors size
-        bootSecto[0x13] = 0x00;
-
-        bootSecto[0x14] = 0x00;
-
-        //Now let's set the Media Descriptor , the one  to tell the system which disk it is , we are going with the classical one which is 0xF8
-
-        bootSecto[0x15] = (byte) 0xF8;
-
-        // Now let's set the size of the sectors per track  which is information that defines how many sectors are present in each track of the disk
-        bootSecto[0x18] = 0x3F;
-        bootSecto[0x19] = 0x00;
-
-        // Now let's specify the number of heads
-        bootSecto[0x1A] = (byte) 0xFF;
-        bootSecto[0x1B] = 0x00;
-
-
-
-
-        // Since we have setted all the empty bytes to 0x00 it covers the following fields
-        // the FAT Flag
-        // the FAT version
-        //
-
-        // Now let's set the File System Information bytes
-        bootSecto[0x30] = 0x00;
-        bootSecto[0x31] = 0x01;
-
-        // Now let's set the Backup Boot Sector responsible for the backup of the boot sector when the system is corrupted
-        bootSecto[0x32] = 0x00;
-        bootSecto[0x33] = 0x06;
-
-        // We can get over with the reserved bytes since we already set them to 0x00
-        // Now let's set the Drive Number , which represents a kinda like id to say that the disk is a fixed disk or floppy disk
-        bootSecto[0x42] = (byte) 0x80;
-
-        // Now let's set the Extended Boot signature , which is a byte that is used to identify the boot sector
-        bootSecto[0x44] = (byte) 0x29;
-
-        //Now let's set the Volume Identifier , which is unique for each produced disk regardless of the system used to format it
-        // We will set it to find the hexadecimal sequence of bytes that the RandomUniqueVolumeIDGenerator method will generate
-        byte[] VolumeID = RandomUniqueVolumeIDGenerator();
-        bootSecto[0x45] = VolumeID[0];
-        bootSecto[0x46] = VolumeID[1];
-        bootSecto[0x47] = VolumeID[2];
-        bootSecto[0x48] = VolumeID[3];
-        // Now let's specify the Volume label , the label will be called whatever the value of disk_name is to a maximum of 8 bytes , so 8 character
-        String VolumeLabel = disk_name; // The label of the disk , it is used to name the disk
-        for(int i=0 ; i<VolumeLabel.length();i++){ // we are going to convert each character of the  labale seaquence and store it in
-            bootSecto[0x49+i] = (byte) VolumeLabel.charAt(i);
+        if (bpb.getFatSize32() == 0 || bpb.getRootEntryCount() != 0) {
+            throw new IllegalArgumentException("Sector 0 is not the boot sector of a FAT32 volume.");
         }
-
-        // Now let's set the File System Type , which is the type of file system used to format the disk
-        String FileSysstemType  = "FAT32   ";
-        for(int i=0 ; i<FileSysstemType.length();i++){ // we are going to convert each character of the  labale seaquence and store it in
-            bootSecto[0x54+i] = (byte) FileSysstemType.charAt(i);
+        if (sector.length < bpb.getBytesPerSector()) {
+            throw new IllegalArgumentException("The boot sector is shorter than the sector size it declares.");
         }
-
-        //  Now let's attack the boot code , which is the code that is executed when the system boots up
-        // we have to replace the 0x00 bytes with 0x86 for each concerned bytes in the offset of the BootCode
-        bootSecto[0x5A] = (byte) 0xFA;// this is the CLI instruction that is going to clears the interrupt flag by disabling the hardware interrupts
-        bootSecto[0x5B] = (byte) 0xF4;// this is the HLT instruction that is going to halt the CPU until the next external interrupt is received
-
-        // Now let's conclude with the Boot Signature
-        bootSecto[0x1FE] = (byte) 0x55;
-        bootSecto[0x1FF] = (byte) 0xAA;
+        this.bootSecto = sector;
     }
 
 
@@ -383,118 +193,33 @@ public class BootSector  {
 }
 
     /**
-     * Calculates the total number of sectors on the entire disk based on its size in bytes.
+     * Retrieves the typed view over the fields of the boot sector.
      *
-     * @param siz the size of the disk in bytes
-     * @return the number of 512-byte sectors that fit into the given disk size
+     * @return The BIOS Parameter Block , changing it changes the sector.
      */
-    private long NumberOfSectorsOfTheEntireDisk(long siz){
-        long result = siz/512;   
-        return result;
+    public BiosParameterBlock getBiosParameterBlock() {
+        return bpb;
     }
 
     /**
-     * Assigns a long value to the BootSector array in little-endian format between the specified offsets.
+     * Retrieves the size of a sector of the disk , as the BIOS Parameter Block encodes it at offset 0x0B.
      *
-     * @param offsetStart the starting byte offset within the BootSector array
-     * @param siz         the value to assign, which will be split into bytes
+     * @return The number of bytes per sector.
      */
-    private void LittleEndianAssignment(byte offsetStart, long siz) {
-        byte[] valueToAssign = Long.toString(siz).getBytes(); 
-        int byteArraySize = valueToAssign.length - 1;
-        int maxBytes = 9;
-        byte StartOfByteArray = offsetStart;
+    public int getBytesPerSector() {
+        return bpb.getBytesPerSector();
+    }
 
-        for (int i = 0; i < maxBytes; i++) {
-            if (byteArraySize >= 0) {
-                bootSecto[StartOfByteArray] = valueToAssign[byteArraySize];
-                byteArraySize--;
-            } else {
-                bootSecto[StartOfByteArray] = (byte) '0';
-            }
-            StartOfByteArray += 1;
+    /**
+     * Rebuilds the layout of the disk from the BIOS Parameter Block alone.
+     *
+     * @return The geometry recorded in the boot sector.
+     * @throws IllegalArgumentException if the recorded values do not describe a valid disk.
+     */
+    public DiskGeometry getGeometry() {
+        if (bpb.getFatCount() != DiskGeometry.FAT_COUNT) {
+            throw new IllegalArgumentException("The volume has " + bpb.getFatCount() + " FATs , " + DiskGeometry.FAT_COUNT + " are expected.");
         }
+        return new DiskGeometry(bpb.getBytesPerSector(), bpb.getSectorsPerCluster(), bpb.getTotalSectors(), bpb.getReservedSectors(), bpb.getFatSize32());
     }
-
-//    public static BootSector fromByteArray(byte[] data, int offset) {
-//        BootSector bootSector = new BootSector();
-//
-//        // Read the OEM ID (3 bytes)
-//        bootSector.oemID = new String(data, offset, 8).trim();
-//        offset += 8;
-//
-//        // Read the bytesPerSector (2 bytes)
-//        bootSector.bytesPerSector = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the sectorsPerCluster (1 byte)
-//        bootSector.sectorsPerCluster = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the reservedSectors (2 bytes)
-//        bootSector.reservedSectors = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the numFATs (1 byte)
-//        bootSector.numFATs = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the rootEntries (2 bytes)
-//        bootSector.rootEntries = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the totalSectorsSmall (2 bytes)
-//        bootSector.totalSectorsSmall = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the mediaType (1 byte)
-//        bootSector.mediaType = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the sectorsPerFAT (2 bytes)
-//        bootSector.sectorsPerFAT = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the sectorsPerTrack (2 bytes)
-//        bootSector.sectorsPerTrack = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the numHeads (2 bytes)
-//        bootSector.numHeads = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8));
-//        offset += 2;
-//
-//        // Read the hiddenSectors (4 bytes)
-//        bootSector.hiddenSectors = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24));
-//        offset += 4;
-//
-//        // Read the totalSectorsLarge (4 bytes)
-//        bootSector.totalSectorsLarge = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24));
-//        offset += 4;
-//
-//        // Read the driveNumber (1 byte)
-//        bootSector.driveNumber = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the reserved1 (1 byte)
-//        bootSector.reserved1 = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the bootSignature (1 byte)
-//        bootSector.bootSignature = data[offset] & 0xFF;
-//        offset += 1;
-//
-//        // Read the volumeID (4 bytes)
-//        bootSector.volumeID = ((data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24));
-//        offset += 4;
-//
-//        // Read the volumeLabel (11 bytes)
-//        bootSector.volumeLabel = new String(data, offset, 11).trim();
-//        offset += 11;
-//
-//        // Read the fileSystemType (8 bytes)
-//        bootSector.fileSystemType = new String(data, offset, 8).trim();
-//        offset += 8;
-//
-//        return bootSector;
-//    }
 }
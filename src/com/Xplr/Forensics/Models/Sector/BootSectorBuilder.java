@@ -16,6 +16,8 @@
  */
 package com.Xplr.Forensics.Models.Sector;
 
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,6 +30,39 @@ public class BootSectorBuilder {
         bootSector = new BootSector(byt,disk_name);
     }
 
+    /**
+     * Constructs the builder of the boot sector of a disk with the given cluster size.
+     *
+     * @param byt               The size of the disk in bytes.
+     * @param disk_name         The label of the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     */
+    public BootSectorBuilder(long byt, String disk_name, int sectorsPerCluster){
+        bootSector = new BootSector(byt, disk_name, sectorsPerCluster);
+    }
+
+    /**
+     * Constructs the builder of the boot sector of a disk with the given cluster and sector sizes.
+     *
+     * @param byt               The size of the disk in bytes.
+     * @param disk_name         The label of the disk.
+     * @param sectorsPerCluster The size of a cluster in sectors.
+     * @param bytesPerSector    The size of a sector in bytes.
+     */
+    public BootSectorBuilder(long byt, String disk_name, int sectorsPerCluster, int bytesPerSector){
+        bootSector = new BootSector(byt, disk_name, sectorsPerCluster, bytesPerSector);
+    }
+
+    /**
+     * Constructs the builder of the boot sector of a disk laid out by a geometry.
+     *
+     * @param geometry  The layout of the disk.
+     * @param disk_name The label of the disk.
+     */
+    public BootSectorBuilder(DiskGeometry geometry, String disk_name){
+        bootSector = new BootSector(geometry, disk_name);
+    }
+
     public void PrintBootSectorBinaryFile(String path) throws FileNotFoundException {
        // Let's access the data of the Boot Sector
         byte[] SectorData = this.bootSector.getBootSectorBytes();
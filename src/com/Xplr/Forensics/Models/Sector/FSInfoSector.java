@@ -0,0 +1,194 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Sector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The FSInfo sector of a FAT32 disk , stored right after the boot sector.
+ * <p>
+ * It remembers the number of free clusters and the cluster where the last allocation stopped , so that the free
+ * space of a mounted disk is known without walking the FAT and the allocations resume where they were instead of
+ * searching from the first cluster again. Both values are only hints : a reader must check them against the
+ * disk , {@link #UNKNOWN} meaning the value was never computed.
+ * </p>
+ *
+ * <p>
+ * The sector is recognized by three signatures : 0x41615252 at offset 0x000 , 0x61417272 at offset 0x1E4 and
+ * 0xAA550000 at offset 0x1FC. Every field is little endian.
+ * </p>
+ */
+public final class FSInfoSector {
+
+    /**
+     * The LBA of the FSInfo sector , the boot sector points at it at offset 0x30.
+     */
+    public static final int FSINFO_LBA = 1;
+
+    /**
+     * The lead signature , at offset 0x000.
+     */
+    public static final int LEAD_SIGNATURE = 0x41615252;
+
+    /**
+     * The structure signature , at offset 0x1E4.
+     */
+    public static final int STRUCT_SIGNATURE = 0x61417272;
+
+    /**
+     * The trail signature , at offset 0x1FC.
+     */
+    public static final int TRAIL_SIGNATURE = 0xAA550000;
+
+    /**
+     * The value of a field that was never computed.
+     */
+    public static final long UNKNOWN = 0xFFFFFFFFL;
+
+    /**
+     * The offset of the free cluster count.
+     */
+    public static final int FREE_COUNT_OFFSET = 0x1E8;
+
+    /**
+     * The offset of the next free cluster hint.
+     */
+    public static final int NEXT_FREE_OFFSET = 0x1EC;
+
+    private static final int LEAD_SIGNATURE_OFFSET = 0x000;
+    private static final int STRUCT_SIGNATURE_OFFSET = 0x1E4;
+    private static final int TRAIL_SIGNATURE_OFFSET = 0x1FC;
+
+    /**
+     * The raw bytes of the sector.
+     */
+    private final byte[] fsInfo;
+
+    /**
+     * Builds the FSInfo sector of a disk.
+     *
+     * @param bytesPerSector  The size of a sector in bytes , at least 512.
+     * @param freeClusters    The number of free clusters , {@link #UNKNOWN} if not known.
+     * @param nextFreeCluster The cluster where the search for free clusters should start , {@link #UNKNOWN} if not known.
+     */
+    public FSInfoSector(int bytesPerSector, long freeClusters, long nextFreeCluster) {
+        this.fsInfo = new byte[bytesPerSector]; // Everything that is not set below stays 0x00 , as the reserved bytes must be
+        ByteBuffer fields = buffer();
+        fields.putInt(LEAD_SIGNATURE_OFFSET, LEAD_SIGNATURE);
+        fields.putInt(STRUCT_SIGNATURE_OFFSET, STRUCT_SIGNATURE);
+        fields.putInt(TRAIL_SIGNATURE_OFFSET, TRAIL_SIGNATURE);
+        setFreeClusterCount(freeClusters);
+        setNextFreeCluster(nextFreeCluster);
+    }
+
+    /**
+     * Wraps the raw bytes of an FSInfo sector read from a disk.
+     *
+     * @param bytes The bytes of the sector , they are not copied.
+     * @throws IllegalArgumentException if the array is smaller than 512 bytes.
+     */
+    public FSInfoSector(byte[] bytes) {
+        if (bytes.length < 512) {
+            throw new IllegalArgumentException("An FSInfo sector holds at least 512 bytes.");
+        }
+        this.fsInfo = bytes;
+    }
+
+    /**
+     * Tells whether the three signatures are in place , a disk without them has no FSInfo sector.
+     *
+     * @return True if the sector is an FSInfo sector.
+     */
+    public boolean hasValidSignatures() {
+        ByteBuffer fields = buffer();
+        return fields.getInt(LEAD_SIGNATURE_OFFSET) == LEAD_SIGNATURE
+                && fields.getInt(STRUCT_SIGNATURE_OFFSET) == STRUCT_SIGNATURE
+                && fields.getInt(TRAIL_SIGNATURE_OFFSET) == TRAIL_SIGNATURE;
+    }
+
+    /**
+     * Tells whether the hints can be trusted for a disk : the signatures are there , the free count is known and
+     * not larger than the disk , and the next free hint is a cluster of the data region.
+     *
+     * @param clusterCount The number of data clusters of the disk , their ids start at 2.
+     * @return False if the sector is missing , never computed or out of range , and must then be rebuilt.
+     */
+    public boolean isConsistentWith(long clusterCount) {
+        long next = getNextFreeCluster();
+        return hasValidSignatures()
+                && getFreeClusterCount() <= clusterCount
+                && next >= 2 && next < clusterCount + 2;
+    }
+
+    /**
+     * Retrieves the number of free clusters.
+     *
+     * @return The free cluster count , {@link #UNKNOWN} if it was never computed.
+     */
+    public long getFreeClusterCount() {
+        return Integer.toUnsignedLong(buffer().getInt(FREE_COUNT_OFFSET));
+    }
+
+    /**
+     * Sets the number of free clusters.
+     *
+     * @param freeClusters The free cluster count , {@link #UNKNOWN} if not known.
+     */
+    public void setFreeClusterCount(long freeClusters) {
+        buffer().putInt(FREE_COUNT_OFFSET, (int) freeClusters);
+    }
+
+    /**
+     * Retrieves the cluster where the search for free clusters should start.
+     *
+     * @return The cluster id , {@link #UNKNOWN} if it was never computed.
+     */
+    public long getNextFreeCluster() {
+        return Integer.toUnsignedLong(buffer().getInt(NEXT_FREE_OFFSET));
+    }
+
+    /**
+     * Sets the cluster where the search for free clusters should start.
+     *
+     * @param nextFreeCluster The cluster id , {@link #UNKNOWN} if not known.
+     */
+    public void setNextFreeCluster(long nextFreeCluster) {
+        buffer().putInt(NEXT_FREE_OFFSET, (int) nextFreeCluster);
+    }
+
+    /**
+     * Retrieves the raw bytes of the sector.
+     *
+     * @return The bytes of the sector , changing them changes the sector.
+     */
+    public byte[] getFSInfoBytes() {
+        return fsInfo;
+    }
+
+    /**
+     * Views the sector as a little endian buffer.
+     */
+    private ByteBuffer buffer() {
+        return ByteBuffer.wrap(fsInfo).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public String toString() {
+        return "FSInfoSector{valid=" + hasValidSignatures() + ", freeClusters=" + getFreeClusterCount() + ", nextFreeCluster=" + getNextFreeCluster() + "}";
+    }
+}
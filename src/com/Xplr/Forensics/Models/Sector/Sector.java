@@ -34,7 +34,8 @@ package com.Xplr.Forensics.Models.Sector;
 public class Sector {
     /**
      * Represents the data contained within a single sector.
-     * Each sector is 512 bytes in size, which is a common sector size for storage devices.
+     * A sector is 512 bytes in size by default, which is a common sector size for storage devices,
+     * a disk with 4096 bytes sectors (4Kn) builds its sectors with {@link #Sector(int, int)}.
      */
     private byte[] sector = new byte[512] ;
 
@@ -58,6 +59,21 @@ public class Sector {
         this.Lba = lba;
     }
 
+    /**
+     * Constructs a new zero filled Sector of a given size.
+     *
+     * @param lba        The LBA of the sector.
+     * @param sectorSize The size of the sector in bytes , 512 or 4096 for instance.
+     * @throws IllegalArgumentException if the size is not strictly positive.
+     */
+    public Sector(int lba, int sectorSize){
+        if (sectorSize <= 0) {
+            throw new IllegalArgumentException("Sector size must be strictly positive.");
+        }
+        this.sector = new byte[sectorSize]; // A new array is already filled with 0x00
+        this.Lba = lba;
+    }
+
     public Sector() {
         for(int i=0;i<512;i++){// Nous allons initialiser tout le secteur avec du vide
             sector[0x00+i] = 0x00;
@@ -83,16 +99,25 @@ public class Sector {
     }
 
     /**
-     * Empties the sector by setting all 512 bytes to zero.
+     * Empties the sector by setting all its bytes to zero.
      * This method initializes each byte in the sector array to 0x00,
      * effectively clearing any existing data in the sector.
      */
     public void emptyTheSector(){
-        for(int i=0;i<512;i++){// Nous allons initialiser tout le secteur avec du vide
+        for(int i=0;i<sector.length;i++){// Nous allons initialiser tout le secteur avec du vide
             sector[0x00+i] = 0x00;
         }
     }
 
+    /**
+     * Retrieves the size of the sector.
+     *
+     * @return The number of bytes of the sector.
+     */
+    public int getSectorSize() {
+        return sector.length;
+    }
+
     public int getLba() {
         return Lba;
     }
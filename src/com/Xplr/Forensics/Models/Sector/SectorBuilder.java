@@ -55,6 +55,16 @@ public class SectorBuilder {
         this.sector = new Sector(pos);
     }
 
+    /**
+     * Constructs a new SectorBuilder instance whose Sector has the given size.
+     *
+     * @param pos        The LBA of the sector.
+     * @param sectorSize The size of the sector in bytes.
+     */
+    public SectorBuilder(int pos, int sectorSize) {
+        this.sector = new Sector(pos, sectorSize);
+    }
+
     /**
      * Sets the bytes of the sector using the provided byte array.
      *
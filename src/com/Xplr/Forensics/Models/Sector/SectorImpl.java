@@ -18,6 +18,10 @@ package com.Xplr.Forensics.Models.Sector;
 
 public interface SectorImpl {
 
+    /**
+     * The blank template of a 512 bytes sector , a disk with another sector size builds its
+     * sectors with {@link Sector#Sector(int, int)}.
+     */
     public final static byte[] BytePerSector = new byte[512];
 
     // Now let's write the functions that are goind to be implemented by all of the sectors of the disk 
@@ -0,0 +1,150 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Sector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The tracking sector of a disk , stored in the reserved region after the FSInfo sector.
+ * <p>
+ * It tells which disk an image was taken from and at which checkpoint , so that an incremental image can check its
+ * base by reading this one sector instead of the whole image. Every disk gets a random identifier when it is
+ * formatted. A disk that is mounted marks its image as open : until it is closed , the image may hold writes made
+ * after the checkpoint recorded here , and the changed-block map saved next to it no longer describes it.
+ * </p>
+ *
+ * <p>Layout (every number is little-endian , the rest of the sector stays 0x00) :</p>
+ * <pre>
+ * 0x00  8 bytes  signature "XPLRTRK1"
+ * 0x08 16 bytes  identifier of the disk , most significant half first
+ * 0x18  8 bytes  checkpoint the image holds
+ * 0x20  4 bytes  1 while a mounted disk may be writing the image , 0 once it was closed
+ * </pre>
+ */
+public final class TrackingSector {
+
+    /**
+     * The LBA of the tracking sector , between the FSInfo sector and the copy of the boot sector.
+     */
+    public static final int TRACKING_LBA = 2;
+
+    /**
+     * The signature found at the very beginning of the sector.
+     */
+    public static final byte[] SIGNATURE = {'X', 'P', 'L', 'R', 'T', 'R', 'K', '1'};
+
+    private static final int DISK_ID_OFFSET = 0x08;
+    private static final int CHECKPOINT_OFFSET = 0x18;
+    private static final int OPEN_OFFSET = 0x20;
+
+    /**
+     * The raw bytes of the sector.
+     */
+    private final byte[] tracking;
+
+    /**
+     * Builds the tracking sector of a disk.
+     *
+     * @param bytesPerSector The size of a sector in bytes , at least 512.
+     * @param diskId         The identifier of the disk.
+     * @param checkpoint     The checkpoint the image holds.
+     * @param open           True if a mounted disk may still write the image.
+     */
+    public TrackingSector(int bytesPerSector, UUID diskId, long checkpoint, boolean open) {
+        this.tracking = new byte[bytesPerSector];
+        System.arraycopy(SIGNATURE, 0, tracking, 0, SIGNATURE.length);
+        ByteBuffer fields = buffer();
+        fields.putLong(DISK_ID_OFFSET, diskId.getMostSignificantBits());
+        fields.putLong(DISK_ID_OFFSET + 8, diskId.getLeastSignificantBits());
+        fields.putLong(CHECKPOINT_OFFSET, checkpoint);
+        fields.putInt(OPEN_OFFSET, open ? 1 : 0);
+    }
+
+    /**
+     * Wraps the raw bytes of a tracking sector read from an image.
+     *
+     * @param bytes The bytes of the sector , they are not copied.
+     * @throws IllegalArgumentException if the array is smaller than 512 bytes.
+     */
+    public TrackingSector(byte[] bytes) {
+        if (bytes.length < 512) {
+            throw new IllegalArgumentException("A tracking sector holds at least 512 bytes.");
+        }
+        this.tracking = bytes;
+    }
+
+    /**
+     * Tells whether the signature is in place , an image written before disks were tracked has none.
+     *
+     * @return True if the sector is a tracking sector.
+     */
+    public boolean hasValidSignature() {
+        return Arrays.equals(tracking, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length);
+    }
+
+    /**
+     * Retrieves the identifier of the disk the image was taken from.
+     *
+     * @return The identifier of the disk.
+     */
+    public UUID getDiskId() {
+        ByteBuffer fields = buffer();
+        return new UUID(fields.getLong(DISK_ID_OFFSET), fields.getLong(DISK_ID_OFFSET + 8));
+    }
+
+    /**
+     * Retrieves the checkpoint the image holds.
+     *
+     * @return The checkpoint identifier , only meaningful once the image was closed.
+     */
+    public long getCheckpoint() {
+        return buffer().getLong(CHECKPOINT_OFFSET);
+    }
+
+    /**
+     * Tells whether a mounted disk may be writing the image.
+     *
+     * @return True if the image is mounted , or was not closed cleanly.
+     */
+    public boolean isOpen() {
+        return buffer().getInt(OPEN_OFFSET) != 0;
+    }
+
+    /**
+     * Retrieves the raw bytes of the sector.
+     *
+     * @return The bytes of the sector.
+     */
+    public byte[] getTrackingBytes() {
+        return tracking;
+    }
+
+    /**
+     * Views the sector as a little endian buffer.
+     */
+    private ByteBuffer buffer() {
+        return ByteBuffer.wrap(tracking).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingSector{valid=" + hasValidSignature() + ", diskId=" + getDiskId() + ", checkpoint=" + getCheckpoint() + ", open=" + isOpen() + "}";
+    }
+}
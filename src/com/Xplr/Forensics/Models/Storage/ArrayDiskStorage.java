@@ -0,0 +1,93 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The default backend of a virtual disk : the whole image held in a single byte array on the heap.
+ */
+public class ArrayDiskStorage implements DiskStorage {
+
+    /**
+     * The byte array holding the whole image.
+     */
+    private final byte[] content;
+
+    /**
+     * Constructs a zero filled in-memory image.
+     *
+     * @param size The size of the image in bytes , at most {@link Integer#MAX_VALUE}.
+     * @throws IllegalArgumentException if the size does not fit in a Java array.
+     */
+    public ArrayDiskStorage(long size) {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("An in-memory disk cannot hold " + size + " bytes.");
+        }
+        this.content = new byte[(int) size];
+    }
+
+    /**
+     * Constructs a backend over an existing image , the array is used as is and not copied.
+     *
+     * @param content The bytes of the image.
+     */
+    public ArrayDiskStorage(byte[] content) {
+        this.content = content;
+    }
+
+    @Override
+    public long size() {
+        return content.length;
+    }
+
+    @Override
+    public void read(long position, byte[] destination, int offset, int length) {
+        System.arraycopy(content, (int) position, destination, offset, length);
+    }
+
+    @Override
+    public void write(long position, byte[] source, int offset, int length) {
+        System.arraycopy(source, offset, content, (int) position, length);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        // The channel reads straight from the image array
+        ByteBuffer buffer = ByteBuffer.wrap(content, (int) position, (int) count);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return count;
+    }
+
+    @Override
+    public ByteBuffer map(long position, int length) {
+        return ByteBuffer.wrap(content, (int) position, length).slice().asReadOnlyBuffer(); // A view over the array itself
+    }
+
+    /**
+     * Gives access to the array backing the image , without copying it.
+     *
+     * @return The byte array holding the image.
+     */
+    public byte[] array() {
+        return content;
+    }
+}
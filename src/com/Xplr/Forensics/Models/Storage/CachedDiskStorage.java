@@ -0,0 +1,606 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded write-back cache of cluster sized blocks in front of another backend.
+ * <p>
+ * Reads and writes are served from RAM , a write only marks its block dirty. Dirty blocks reach the backend
+ * when they are evicted , when {@link #flush()} or {@link #close()} is called , or periodically through a
+ * background flusher. Flushes always write the dirty blocks in ascending block order , so the backend sees
+ * a sequential sweep instead of the random order the writes came in.
+ * </p>
+ *
+ * <p>
+ * The slots are split in sets , a block always lives in the set its number falls in , and every set has its own
+ * lock : threads working on blocks of different sets never wait on each other. A miss does not hold the lock of
+ * its set while the backend is accessed , the slot is marked pending instead , the threads asking for the block
+ * it is loading or for the dirty block it is writing back wait until it is ready while the other slots of the
+ * set keep being served.
+ * </p>
+ *
+ * <p>
+ * Eviction follows the CLOCK algorithm within each set : every slot has a reference bit set on access , the clock
+ * hand clears the bits as it turns and evicts the first slot it finds with a cleared bit. This approximates LRU
+ * without having to reorder a list on every hit.
+ * </p>
+ */
+public final class CachedDiskStorage implements DiskStorage {
+
+    /**
+     * The block number of a slot that holds nothing.
+     */
+    private static final long EMPTY_SLOT = -1L;
+
+    /**
+     * The largest number of sets the slots are split in.
+     */
+    private static final int MAX_SETS = 64;
+
+    /**
+     * The backend the cache sits in front of.
+     */
+    private final DiskStorage backend;
+
+    /**
+     * The size of a cached block in bytes , usually the cluster size of the disk.
+     */
+    private final int blockSize;
+
+    /**
+     * For every slot , the block it holds or {@link #EMPTY_SLOT}.
+     */
+    private final long[] slotBlock;
+
+    /**
+     * For every slot , the bytes of the block it holds.
+     */
+    private final byte[][] slotData;
+
+    /**
+     * For every slot , the CLOCK reference bit.
+     */
+    private final boolean[] referenced;
+
+    /**
+     * For every slot , whether it holds bytes the backend does not have yet.
+     */
+    private final boolean[] dirty;
+
+    /**
+     * For every slot , whether a miss is accessing the backend for it , only the thread of that miss touches its bytes.
+     */
+    private final boolean[] pending;
+
+    /**
+     * The sets of slots , the block {@code b} lives in the set {@code b % sets.length}.
+     */
+    private final CacheSet[] sets;
+
+    /**
+     * The background flusher , null when periodic flushing is disabled.
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * The threads loading prefetched blocks from the backend , created on the first prefetch request.
+     */
+    private ExecutorService prefetcher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong writeBacks = new AtomicLong();
+    private final AtomicLong prefetches = new AtomicLong();
+
+    /**
+     * A set of slots with its own lock , the slots {@code [firstSlot, endSlot)} are only read or changed under it.
+     */
+    private static final class CacheSet {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition(); // Signalled when a pending slot of the set is ready
+        private final HashMap<Long, Integer> blockToSlot = new HashMap<>(); // The slot holding each block of the set , pending ones included
+        private final int firstSlot;
+        private final int endSlot;
+        private int clockHand;
+
+        private CacheSet(int firstSlot, int endSlot) {
+            this.firstSlot = firstSlot;
+            this.endSlot = endSlot;
+            this.clockHand = firstSlot;
+        }
+    }
+
+    /**
+     * Constructs a cache without background flusher , dirty blocks then only move on eviction and explicit flushes.
+     *
+     * @param backend        The backend to cache.
+     * @param blockSize      The size of a block in bytes , usually the cluster size of the disk.
+     * @param capacityBlocks The number of blocks the cache can hold.
+     */
+    public CachedDiskStorage(DiskStorage backend, int blockSize, int capacityBlocks) {
+        this(backend, blockSize, capacityBlocks, 0);
+    }
+
+    /**
+     * Constructs a cache with a background flusher.
+     *
+     * @param backend              The backend to cache.
+     * @param blockSize            The size of a block in bytes , usually the cluster size of the disk.
+     * @param capacityBlocks       The number of blocks the cache can hold.
+     * @param flushIntervalMillis  The period of the background flusher in milliseconds , 0 to disable it.
+     * @throws IllegalArgumentException if the block size or the capacity is not strictly positive.
+     */
+    public CachedDiskStorage(DiskStorage backend, int blockSize, int capacityBlocks, long flushIntervalMillis) {
+        if (blockSize <= 0 || capacityBlocks <= 0) {
+            throw new IllegalArgumentException("Block size and capacity must be strictly positive.");
+        }
+        this.backend = backend;
+        this.blockSize = blockSize;
+        this.slotBlock = new long[capacityBlocks];
+        this.slotData = new byte[capacityBlocks][];
+        this.referenced = new boolean[capacityBlocks];
+        this.dirty = new boolean[capacityBlocks];
+        this.pending = new boolean[capacityBlocks];
+        Arrays.fill(slotBlock, EMPTY_SLOT);
+        this.sets = new CacheSet[Math.min(MAX_SETS, capacityBlocks)];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = new CacheSet((int) ((long) capacityBlocks * i / sets.length), (int) ((long) capacityBlocks * (i + 1) / sets.length));
+        }
+
+        if (flushIntervalMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "xplr-cache-flusher");
+                thread.setDaemon(true); // The flusher must never keep the application alive
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::backgroundFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    @Override
+    public long size() {
+        return backend.size();
+    }
+
+    @Override
+    public void read(long position, byte[] destination, int offset, int length) {
+        while (length > 0) {
+            long block = position / blockSize;
+            int inBlock = (int) (position % blockSize);
+            int chunk = Math.min(length, blockLength(block) - inBlock);
+
+            CacheSet set = setOf(block);
+            set.lock.lock();
+            try {
+                int slot = slotFor(set, block, true);
+                System.arraycopy(slotData[slot], inBlock, destination, offset, chunk);
+            } finally {
+                set.lock.unlock();
+            }
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void write(long position, byte[] source, int offset, int length) {
+        while (length > 0) {
+            long block = position / blockSize;
+            int inBlock = (int) (position % blockSize);
+            int chunk = Math.min(length, blockLength(block) - inBlock);
+
+            CacheSet set = setOf(block);
+            set.lock.lock();
+            try {
+                // A block overwritten as a whole does not need to be read from the backend first
+                int slot = slotFor(set, block, chunk < blockLength(block));
+                System.arraycopy(source, offset, slotData[slot], inBlock, chunk);
+                dirty[slot] = true;
+            } finally {
+                set.lock.unlock();
+            }
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Loads the blocks of a range into the cache in the background. The backend is read outside of the cache
+     * locks , so readers of cached blocks are never held up by a prefetch in progress. Prefetched blocks enter
+     * the cache with their reference bit cleared , a prefetch that turns out useless is the first to be evicted.
+     * A prefetched block only takes the place of a clean block , it never forces a write back.
+     *
+     * @param position The byte offset in the image of the first byte that will be read.
+     * @param length   The number of bytes that will be read.
+     */
+    @Override
+    public void prefetch(long position, long length) {
+        if (length <= 0) {
+            return;
+        }
+        long firstBlock = position / blockSize;
+        long lastBlock = Math.min((position + length - 1) / blockSize, (backend.size() - 1) / blockSize);
+        prefetcher().execute(() -> {
+            // Let's find the first and last blocks not cached yet , only that part is worth a backend read
+            long epoch = writeBacks.get();
+            long from = firstBlock;
+            long to = lastBlock;
+            while (from <= to && isCached(from)) {
+                from++;
+            }
+            while (to >= from && isCached(to)) {
+                to--;
+            }
+            if (from > to) {
+                return;
+            }
+            long start = from * blockSize;
+            int span = (int) Math.min((to - from + 1) * blockSize, backend.size() - start);
+            byte[] bytes = new byte[span];
+            try {
+                backend.read(start, bytes, 0, span); // One large read for the whole run
+            } catch (UncheckedIOException e) {
+                return; // A prefetch is only a hint , the real read will report the error
+            }
+            for (long block = from; block <= to; block++) {
+                CacheSet set = setOf(block);
+                set.lock.lock();
+                try {
+                    if (writeBacks.get() != epoch) {
+                        return; // A block was written back while we were reading , our copy may predate it
+                    }
+                    int slot = set.blockToSlot.containsKey(block) ? -1 : victimSlot(set);
+                    if (slot >= 0 && (slotBlock[slot] == EMPTY_SLOT || !dirty[slot])) {
+                        if (slotBlock[slot] != EMPTY_SLOT) {
+                            set.blockToSlot.remove(slotBlock[slot]);
+                            evictions.incrementAndGet();
+                        }
+                        if (slotData[slot] == null) {
+                            slotData[slot] = new byte[blockSize];
+                        }
+                        System.arraycopy(bytes, (int) ((block - from) * blockSize), slotData[slot], 0, blockLength(block));
+                        slotBlock[slot] = block;
+                        referenced[slot] = false;
+                        set.blockToSlot.put(block, slot);
+                        prefetches.incrementAndGet();
+                    }
+                } finally {
+                    set.lock.unlock();
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newFixedThreadPool(2, task -> {
+                Thread thread = new Thread(task, "xplr-cache-prefetcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetcher;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        // The backend must hold the latest bytes of the range before it hands them out
+        writeBackRange(position / blockSize, (position + count - 1) / blockSize);
+        return backend.transferTo(position, count, target);
+    }
+
+    /**
+     * Writes the dirty blocks of the range back , then maps the range of the backend.
+     * Writes made through the cache afterwards only show through the view once they are written back.
+     *
+     * @param position The byte offset in the image of the first byte of the view.
+     * @param length   The number of bytes of the view.
+     * @return The view given by the backend.
+     * @throws IOException If the range cannot be mapped.
+     */
+    @Override
+    public ByteBuffer map(long position, int length) throws IOException {
+        writeBackRange(position / blockSize, (position + length - 1) / blockSize);
+        return backend.map(position, length);
+    }
+
+    /**
+     * Writes every dirty block to the backend in ascending block order , then flushes the backend.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBackRange(0, Long.MAX_VALUE);
+        backend.flush();
+    }
+
+    /**
+     * Stops the background flusher , flushes every dirty block and closes the backend.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (this) {
+            if (prefetcher != null) {
+                prefetcher.shutdownNow();
+            }
+        }
+        flush();
+        backend.close();
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Background flush of the disk cache failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes back the dirty blocks whose number lies in {@code [firstBlock, lastBlock]} , in ascending order.
+     * Each block is written under the lock of its own set only , the blocks of the other sets stay available.
+     */
+    private void writeBackRange(long firstBlock, long lastBlock) {
+        int dirtyCount = 0;
+        long[] order = new long[slotBlock.length];
+        for (CacheSet set : sets) {
+            set.lock.lock();
+            try {
+                for (int slot = set.firstSlot; slot < set.endSlot; slot++) {
+                    if (dirty[slot] && !pending[slot] && slotBlock[slot] >= firstBlock && slotBlock[slot] <= lastBlock) {
+                        // The block number goes in the high bits and the slot in the low ones , so a plain sort orders by block
+                        order[dirtyCount++] = (slotBlock[slot] << 32) | slot;
+                    }
+                }
+            } finally {
+                set.lock.unlock();
+            }
+        }
+        Arrays.sort(order, 0, dirtyCount);
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = (int) order[i];
+            long block = order[i] >>> 32;
+            CacheSet set = setOf(block);
+            set.lock.lock();
+            try {
+                // A pending miss writes its dirty victim back itself
+                if (slotBlock[slot] == block && dirty[slot] && !pending[slot]) {
+                    backend.write(block * blockSize, slotData[slot], 0, blockLength(block));
+                    dirty[slot] = false;
+                    writeBacks.incrementAndGet();
+                }
+            } finally {
+                set.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the slot holding a block , bringing the block in the cache if needed. The caller holds the lock of the set ,
+     * it is released while a miss accesses the backend and held again when the slot is returned.
+     *
+     * @param set   The set of the block.
+     * @param block The block number.
+     * @param load  Whether the bytes of the block must be read from the backend on a miss.
+     * @return The slot holding the block.
+     */
+    private int slotFor(CacheSet set, long block, boolean load) {
+        while (true) {
+            Integer cached = set.blockToSlot.get(block);
+            if (cached != null && pending[cached]) {
+                set.ready.awaitUninterruptibly(); // Another miss is loading the block , or writing it back
+                continue;
+            }
+            if (cached != null) {
+                hits.incrementAndGet();
+                referenced[cached] = true;
+                return cached;
+            }
+            int slot = victimSlot(set);
+            if (slot < 0) {
+                set.ready.awaitUninterruptibly(); // Every slot of the set is pending
+                continue;
+            }
+            misses.incrementAndGet();
+            return fill(set, slot, block, load);
+        }
+    }
+
+    /**
+     * Gives a slot to a block , writing back the block it held if it is dirty and reading the new one if asked.
+     * The backend is accessed without the lock of the set , the slot is pending meanwhile.
+     */
+    private int fill(CacheSet set, int slot, long block, boolean load) {
+        long evicted = slotBlock[slot];
+        boolean writeBack = evicted != EMPTY_SLOT && dirty[slot];
+        if (evicted != EMPTY_SLOT && !writeBack) {
+            set.blockToSlot.remove(evicted);
+            evictions.incrementAndGet();
+        }
+        if (slotData[slot] == null) {
+            slotData[slot] = new byte[blockSize];
+        }
+        if (writeBack || load) {
+            pending[slot] = true;
+            set.blockToSlot.put(block, slot); // The evicted block stays mapped until it is written back
+            boolean written = false;
+            set.lock.unlock();
+            try {
+                if (writeBack) {
+                    backend.write(evicted * blockSize, slotData[slot], 0, blockLength(evicted));
+                    written = true;
+                }
+                if (load) {
+                    backend.read(block * blockSize, slotData[slot], 0, blockLength(block));
+                }
+            } catch (RuntimeException e) {
+                set.lock.lock();
+                set.blockToSlot.remove(block);
+                if (writeBack && written) {
+                    set.blockToSlot.remove(evicted); // The backend has the evicted block , the slot is simply empty now
+                    slotBlock[slot] = EMPTY_SLOT;
+                    dirty[slot] = false;
+                }
+                pending[slot] = false;
+                set.ready.signalAll();
+                throw e;
+            }
+            set.lock.lock();
+            if (writeBack) {
+                set.blockToSlot.remove(evicted);
+                writeBacks.incrementAndGet();
+                evictions.incrementAndGet();
+            }
+            pending[slot] = false;
+            set.ready.signalAll();
+        }
+        slotBlock[slot] = block;
+        referenced[slot] = true;
+        dirty[slot] = false;
+        set.blockToSlot.put(block, slot);
+        return slot;
+    }
+
+    /**
+     * Turns the CLOCK hand of a set until it meets a free slot or a slot whose reference bit is cleared , pending slots aside.
+     *
+     * @return The slot , -1 if every slot of the set is pending.
+     */
+    private int victimSlot(CacheSet set) {
+        int size = set.endSlot - set.firstSlot;
+        for (int turns = 0; turns < 2 * size + 1; turns++) {
+            int slot = set.clockHand;
+            set.clockHand = slot + 1 == set.endSlot ? set.firstSlot : slot + 1;
+            if (pending[slot]) {
+                continue;
+            }
+            if (slotBlock[slot] == EMPTY_SLOT || !referenced[slot]) {
+                return slot;
+            }
+            referenced[slot] = false; // Second chance
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether a block is in the cache or being loaded into it.
+     */
+    private boolean isCached(long block) {
+        CacheSet set = setOf(block);
+        set.lock.lock();
+        try {
+            return set.blockToSlot.containsKey(block);
+        } finally {
+            set.lock.unlock();
+        }
+    }
+
+    private CacheSet setOf(long block) {
+        return sets[(int) (block % sets.length)];
+    }
+
+    private int blockLength(long block) {
+        return (int) Math.min(blockSize, backend.size() - block * blockSize);
+    }
+
+    /**
+     * Retrieves the number of block lookups served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Retrieves the number of block lookups that had to go to the backend.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Retrieves the number of blocks evicted to make room for others.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Retrieves the number of dirty blocks written to the backend.
+     *
+     * @return The number of write backs.
+     */
+    public long getWriteBacks() {
+        return writeBacks.get();
+    }
+
+    /**
+     * Retrieves the number of blocks brought in the cache by prefetch requests.
+     *
+     * @return The number of prefetched blocks.
+     */
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+
+    /**
+     * Retrieves the backend the cache sits in front of.
+     *
+     * @return The cached backend.
+     */
+    public DiskStorage getBackend() {
+        return backend;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedDiskStorage{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", writeBacks=" + writeBacks + ", prefetches=" + prefetches + '}';
+    }
+}
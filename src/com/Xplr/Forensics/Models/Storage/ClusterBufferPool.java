@@ -0,0 +1,224 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of reusable buffers of one cluster each.
+ * <p>
+ * The internal I/O paths of the disk borrow their scratch buffers here instead of allocating a new array on
+ * every call. Every platform thread keeps a few returned buffers for itself , so that borrowing and returning is
+ * usually just a push and a pop on a thread-local stack ; the other buffers wait in a shared queue. Virtual
+ * threads are short lived and numerous , they go straight to the shared queue.
+ * </p>
+ *
+ * <p>
+ * Buffers are handed out as they were returned , they are <em>not</em> zeroed. A buffer must be returned exactly
+ * once with {@link #release(byte[])} and must not be used afterwards.
+ * </p>
+ *
+ * <p>
+ * When the system property {@value #DEBUG_PROPERTY} is {@code true} the pool records where every buffer was
+ * borrowed , refuses a buffer returned twice or coming from elsewhere , and {@link #reportLeaks()} lists the
+ * buffers never returned along with the stack trace of their borrower.
+ * </p>
+ */
+public class ClusterBufferPool {
+
+    /**
+     * The system property turning the leak detection on.
+     */
+    public static final String DEBUG_PROPERTY = "xplr.bufferpool.debug";
+
+    /**
+     * The number of buffers a thread keeps for itself.
+     */
+    private static final int THREAD_CACHE_SIZE = 8;
+
+    private final int bufferSize;
+    private final int maxShared;
+    private final ConcurrentLinkedQueue<byte[]> shared = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sharedCount = new AtomicInteger();
+    private final ThreadLocal<ArrayDeque<byte[]>> threadCache = ThreadLocal.withInitial(() -> new ArrayDeque<>(THREAD_CACHE_SIZE));
+
+    /**
+     * In debug mode , the buffers currently borrowed and where they were borrowed.
+     */
+    private final Map<byte[], Throwable> outstanding;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+
+    /**
+     * Constructs a pool , the leak detection follows the {@value #DEBUG_PROPERTY} system property.
+     *
+     * @param bufferSize The size of a buffer in bytes , the cluster size of the disk.
+     * @param maxShared  The largest number of idle buffers kept in the shared queue , the extra ones are dropped.
+     */
+    public ClusterBufferPool(int bufferSize, int maxShared) {
+        this(bufferSize, maxShared, Boolean.getBoolean(DEBUG_PROPERTY));
+    }
+
+    /**
+     * Constructs a pool.
+     *
+     * @param bufferSize The size of a buffer in bytes , the cluster size of the disk.
+     * @param maxShared  The largest number of idle buffers kept in the shared queue , the extra ones are dropped.
+     * @param debug      Whether the borrowed buffers are tracked to detect leaks.
+     * @throws IllegalArgumentException if the buffer size is not strictly positive.
+     */
+    public ClusterBufferPool(int bufferSize, int maxShared, boolean debug) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be strictly positive.");
+        }
+        this.bufferSize = bufferSize;
+        this.maxShared = maxShared;
+        this.outstanding = debug ? new IdentityHashMap<>() : null;
+    }
+
+    /**
+     * Borrows a buffer.
+     *
+     * @return A buffer of {@link #getBufferSize()} bytes , holding whatever its previous borrower left in it.
+     */
+    public byte[] acquire() {
+        byte[] buffer = null;
+        if (!Thread.currentThread().isVirtual()) {
+            buffer = threadCache.get().pollFirst();
+        }
+        if (buffer == null) {
+            buffer = shared.poll();
+            if (buffer != null) {
+                sharedCount.decrementAndGet();
+            }
+        }
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+            allocations.increment();
+        } else {
+            reuses.increment();
+        }
+        if (outstanding != null) {
+            synchronized (outstanding) {
+                outstanding.put(buffer, new Throwable("Buffer borrowed here"));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Gives a borrowed buffer back to the pool.
+     *
+     * @param buffer The buffer , it must not be used afterwards.
+     * @throws IllegalArgumentException if the buffer does not have the size of the pool.
+     * @throws IllegalStateException    in debug mode , if the buffer is not currently borrowed from this pool.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            throw new IllegalArgumentException("The buffer does not come from this pool.");
+        }
+        if (outstanding != null) {
+            synchronized (outstanding) {
+                if (outstanding.remove(buffer) == null) {
+                    throw new IllegalStateException("The buffer was returned twice or does not come from this pool.");
+                }
+            }
+        }
+        if (!Thread.currentThread().isVirtual()) {
+            ArrayDeque<byte[]> cache = threadCache.get();
+            if (cache.size() < THREAD_CACHE_SIZE) {
+                cache.push(buffer);
+                return;
+            }
+        }
+        if (sharedCount.incrementAndGet() <= maxShared) {
+            shared.offer(buffer);
+        } else {
+            sharedCount.decrementAndGet(); // The pool is full , the buffer is left to the garbage collector
+        }
+    }
+
+    /**
+     * Lists the buffers borrowed and not returned yet , printing where each of them was borrowed.
+     * Only available in debug mode.
+     *
+     * @return The stack traces of the borrowers , empty when the pool is not in debug mode.
+     */
+    public List<Throwable> reportLeaks() {
+        if (outstanding == null) {
+            return new ArrayList<>();
+        }
+        List<Throwable> leaks;
+        synchronized (outstanding) {
+            leaks = new ArrayList<>(outstanding.values());
+        }
+        for (Throwable leak : leaks) {
+            System.err.println("Buffer pool leak: a buffer of " + bufferSize + " bytes was never returned");
+            leak.printStackTrace();
+        }
+        return leaks;
+    }
+
+    /**
+     * Tells whether the pool tracks the borrowed buffers.
+     *
+     * @return True in debug mode.
+     */
+    public boolean isDebug() {
+        return outstanding != null;
+    }
+
+    /**
+     * Retrieves the size of the buffers.
+     *
+     * @return The size of a buffer in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Retrieves the number of buffers the pool had to allocate.
+     *
+     * @return The number of allocations.
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * Retrieves the number of borrowings served with a returned buffer.
+     *
+     * @return The number of reuses.
+     */
+    public long getReuses() {
+        return reuses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterBufferPool{bufferSize=" + bufferSize + ", allocations=" + getAllocations() + ", reuses=" + getReuses() + ", shared=" + sharedCount.get() + "}";
+    }
+}
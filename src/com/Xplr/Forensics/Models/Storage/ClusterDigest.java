@@ -0,0 +1,74 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.util.Arrays;
+
+/**
+ * The SHA-256 digest of a cluster content , used as the address of the cluster in a {@link ClusterPool}.
+ */
+public final class ClusterDigest {
+
+    /**
+     * The 32 bytes of the SHA-256 digest.
+     */
+    private final byte[] digest;
+
+    /**
+     * The hash code , computed once since digests are used as map keys all the time.
+     */
+    private final int hash;
+
+    /**
+     * Constructs a digest over the given bytes , the array is owned by the digest afterwards.
+     *
+     * @param digest The raw digest bytes.
+     */
+    public ClusterDigest(byte[] digest) {
+        this.digest = digest;
+        // The digest is already uniformly distributed , its first 4 bytes are as good as any hash
+        this.hash = ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
+    }
+
+    /**
+     * Returns a copy of the raw digest bytes.
+     *
+     * @return The digest bytes.
+     */
+    public byte[] getBytes() {
+        return digest.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ClusterDigest && Arrays.equals(digest, ((ClusterDigest) other).digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed pool of cluster contents with reference counts.
+ * <p>
+ * Every distinct cluster content is stored exactly once , addressed by its {@link ClusterDigest}. Each
+ * {@link DedupDiskStorage} mapping a cluster onto a content holds one reference on it , and the content is
+ * dropped from the pool when the last reference is released. A single pool can be shared by any number of
+ * disks , storing dozens of near-identical images then costs about the size of their differences.
+ * </p>
+ *
+ * <p>
+ * The contents are never changed once stored , reads copy them without any lock. Taking and dropping a reference
+ * is atomic for each digest only , the disks sharing the pool never wait on each other for different contents.
+ * </p>
+ */
+public class ClusterPool {
+
+    /**
+     * A stored cluster content along with the number of clusters referencing it.
+     */
+    private static final class PoolEntry {
+        private final byte[] data;
+        private long references; // Only changed inside a compute of the map , under the lock of its bin
+
+        private PoolEntry(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * The stored contents , addressed by their digest.
+     */
+    private final ConcurrentHashMap<ClusterDigest, PoolEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The number of bytes physically held by the pool.
+     */
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /**
+     * The number of bytes the disks using the pool logically hold , meaning every reference counts.
+     */
+    private final AtomicLong referencedBytes = new AtomicLong();
+
+    /**
+     * Takes a reference on a cluster content , storing a copy of it if the pool does not know it yet.
+     *
+     * @param digest The digest of the content.
+     * @param source The array holding the content.
+     * @param offset The offset of the content in {@code source}.
+     * @param length The length of the content.
+     */
+    public void acquire(ClusterDigest digest, byte[] source, int offset, int length) {
+        entries.compute(digest, (key, entry) -> {
+            if (entry == null) {
+                // First time we see this content , let's keep our own copy of it
+                byte[] copy = new byte[length];
+                System.arraycopy(source, offset, copy, 0, length);
+                entry = new PoolEntry(copy);
+                storedBytes.addAndGet(length);
+            }
+            entry.references++;
+            referencedBytes.addAndGet(entry.data.length);
+            return entry;
+        });
+    }
+
+    /**
+     * Drops a reference on a cluster content , the content leaves the pool with its last reference.
+     *
+     * @param digest The digest of the content.
+     * @throws IllegalStateException if the pool does not hold this content.
+     */
+    public void release(ClusterDigest digest) {
+        entries.compute(digest, (key, entry) -> {
+            if (entry == null) {
+                throw new IllegalStateException("Releasing a cluster the pool does not hold: " + digest);
+            }
+            entry.references--;
+            referencedBytes.addAndGet(-entry.data.length);
+            if (entry.references == 0) {
+                storedBytes.addAndGet(-entry.data.length);
+                return null; // The content leaves the pool
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Copies a stored cluster content into a destination array. The caller must hold a reference on the content ,
+     * or otherwise make sure it is not released during the copy.
+     *
+     * @param digest      The digest of the content.
+     * @param from        The offset in the content of the first byte to copy.
+     * @param destination The array receiving the bytes.
+     * @param offset      The offset in {@code destination} of the first byte to fill.
+     * @param length      The number of bytes to copy.
+     * @throws IllegalStateException if the pool does not hold this content.
+     */
+    public void read(ClusterDigest digest, int from, byte[] destination, int offset, int length) {
+        PoolEntry entry = entries.get(digest);
+        if (entry == null) {
+            throw new IllegalStateException("Reading a cluster the pool does not hold: " + digest);
+        }
+        System.arraycopy(entry.data, from, destination, offset, length);
+    }
+
+    /**
+     * Retrieves the number of distinct cluster contents held by the pool.
+     *
+     * @return The number of unique clusters.
+     */
+    public int getUniqueClusterCount() {
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the number of bytes physically held by the pool.
+     *
+     * @return The stored bytes.
+     */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Retrieves the number of bytes logically referenced by all the disks using the pool.
+     *
+     * @return The referenced bytes.
+     */
+    public long getReferencedBytes() {
+        return referencedBytes.get();
+    }
+
+    /**
+     * Computes the deduplication ratio of the pool , meaning how many logical bytes one stored byte serves.
+     *
+     * @return The ratio between referenced and stored bytes , 1.0 for an empty pool.
+     */
+    public double getDedupRatio() {
+        long stored = storedBytes.get();
+        return stored == 0 ? 1.0 : (double) referencedBytes.get() / stored;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ClusterPool{uniqueClusters=%d, storedBytes=%d, referencedBytes=%d, dedupRatio=%.2f}",
+                entries.size(), storedBytes.get(), referencedBytes.get(), getDedupRatio());
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A deduplicating backend : the image is a map from cluster index to the digest of its content,
+ * and the contents themselves live once in a shared {@link ClusterPool}.
+ * <p>
+ * Every written cluster is hashed with SHA-256. Zero filled clusters are never stored at all , they are
+ * represented by an empty slot in the map , which makes a freshly created disk cost nothing. Writes smaller
+ * than a cluster are turned into a read-modify-write of the whole cluster.
+ * </p>
+ *
+ * <p>
+ * The clusters are guarded by read-write locks striped over the cluster index. A read only takes the read lock of
+ * the clusters it copies , so reads run in parallel. A write hashes its cluster before taking any lock , the write
+ * lock is only held to swap the digest in the map ; a partial write that finds its cluster changed while it was
+ * hashing merges its bytes again into the new content.
+ * </p>
+ *
+ * <p>
+ * The pool only lives in memory : the image is kept as long as the storage is open , and writing it to a file
+ * rehydrates every cluster. Closing the storage gives its references back to the pool , so that the contents only
+ * this image used are dropped from a pool shared with other disks.
+ * </p>
+ */
+public class DedupDiskStorage implements DiskStorage {
+
+    /**
+     * The number of read-write locks the clusters are spread over.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * The number of idle scratch buffers kept for the partial writes besides the ones cached by each thread.
+     */
+    private static final int SCRATCH_SHARED_BUFFERS = 16;
+
+    /**
+     * The size of the image in bytes.
+     */
+    private final long size;
+
+    /**
+     * The size of a deduplication unit , it should match the cluster size of the disk.
+     */
+    private final int clusterSize;
+
+    /**
+     * The logical content of the image : for each cluster the digest of its content , null for a zero cluster.
+     */
+    private final AtomicReferenceArray<ClusterDigest> clusterMap;
+
+    /**
+     * The locks guarding the clusters , the cluster {@code c} uses the stripe {@code c % LOCK_STRIPES}.
+     */
+    private final ReentrantReadWriteLock[] clusterLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+
+    /**
+     * The pool holding the cluster contents , possibly shared with other disks.
+     */
+    private final ClusterPool pool;
+
+    /**
+     * The hash function used to address the contents , one instance per thread since a digest holds its state.
+     */
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(DedupDiskStorage::newSha256);
+
+    /**
+     * The cluster sized scratch buffers used for the read-modify-write of partial clusters.
+     */
+    private final ClusterBufferPool scratch;
+
+    /**
+     * Constructs a zero filled deduplicated image.
+     *
+     * @param size        The size of the image in bytes.
+     * @param clusterSize The size of a deduplication unit in bytes , usually the cluster size of the disk.
+     * @param pool        The pool storing the cluster contents.
+     */
+    public DedupDiskStorage(long size, int clusterSize, ClusterPool pool) {
+        this.size = size;
+        this.clusterSize = clusterSize;
+        this.clusterMap = new AtomicReferenceArray<>((int) ((size + clusterSize - 1) / clusterSize));
+        this.pool = pool;
+        this.scratch = new ClusterBufferPool(clusterSize, SCRATCH_SHARED_BUFFERS);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            clusterLocks[i] = new ReentrantReadWriteLock();
+        }
+        newSha256(); // Fails right away if the platform does not have it
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available on this platform", e);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void read(long position, byte[] destination, int offset, int length) {
+        while (length > 0) {
+            int cluster = (int) (position / clusterSize);
+            int inCluster = (int) (position % clusterSize);
+            int chunk = Math.min(length, clusterLength(cluster) - inCluster);
+
+            Lock lock = lockOf(cluster).readLock(); // The content cannot leave the pool while we copy it
+            lock.lock();
+            try {
+                ClusterDigest digest = clusterMap.get(cluster);
+                if (digest == null) {
+                    Arrays.fill(destination, offset, offset + chunk, (byte) 0); // A cluster never written is zero filled
+                } else {
+                    pool.read(digest, inCluster, destination, offset, chunk);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void write(long position, byte[] source, int offset, int length) {
+        while (length > 0) {
+            int cluster = (int) (position / clusterSize);
+            int inCluster = (int) (position % clusterSize);
+            int clusterLength = clusterLength(cluster);
+            int chunk = Math.min(length, clusterLength - inCluster);
+
+            if (chunk == clusterLength) {
+                // The whole cluster is overwritten , it can be hashed straight from the source , before any lock
+                ClusterDigest digest = digestOf(source, offset, clusterLength);
+                Lock lock = lockOf(cluster).writeLock();
+                lock.lock();
+                try {
+                    mapCluster(cluster, digest, source, offset, clusterLength);
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                writePartialCluster(cluster, inCluster, source, offset, chunk);
+            }
+
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes a part of a cluster : the full cluster is rebuilt and hashed outside the write lock , then mapped
+     * if nobody changed the cluster meanwhile , or rebuilt again from the new content otherwise.
+     */
+    private void writePartialCluster(int cluster, int inCluster, byte[] source, int offset, int chunk) {
+        int clusterLength = clusterLength(cluster);
+        byte[] merged = scratch.acquire();
+        try {
+            while (true) {
+                ClusterDigest previous;
+                Lock readLock = lockOf(cluster).readLock();
+                readLock.lock();
+                try {
+                    previous = clusterMap.get(cluster);
+                    if (previous == null && isZero(source, offset, chunk)) {
+                        return; // Zeros are written over a zero cluster , nothing changes
+                    }
+                    if (previous == null) {
+                        Arrays.fill(merged, 0, clusterLength, (byte) 0);
+                    } else {
+                        pool.read(previous, 0, merged, 0, clusterLength);
+                    }
+                } finally {
+                    readLock.unlock();
+                }
+                System.arraycopy(source, offset, merged, inCluster, chunk);
+                ClusterDigest digest = digestOf(merged, 0, clusterLength);
+
+                Lock writeLock = lockOf(cluster).writeLock();
+                writeLock.lock();
+                try {
+                    if (Objects.equals(clusterMap.get(cluster), previous)) {
+                        mapCluster(cluster, digest, merged, 0, clusterLength);
+                        return;
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+                // Another write changed the cluster while we were hashing , our bytes go over its content
+            }
+        } finally {
+            scratch.release(merged);
+        }
+    }
+
+    /**
+     * Points a cluster of the image to a new content , taking a reference on it and releasing the previous one.
+     * The caller holds the write lock of the cluster.
+     */
+    private void mapCluster(int cluster, ClusterDigest digest, byte[] source, int offset, int length) {
+        ClusterDigest previous = clusterMap.get(cluster);
+        if (Objects.equals(digest, previous)) {
+            return; // Same content as before
+        }
+        if (digest != null) {
+            pool.acquire(digest, source, offset, length); // Acquire first , the previous content may be the same pool entry
+        }
+        if (previous != null) {
+            pool.release(previous);
+        }
+        clusterMap.set(cluster, digest);
+    }
+
+    /**
+     * Releases the reference the image holds on every content of the pool , the image reads as zeros afterwards.
+     * Every cluster lock is held meanwhile , so that no read copies a content that leaves the pool.
+     */
+    @Override
+    public void close() {
+        for (ReentrantReadWriteLock stripe : clusterLocks) {
+            stripe.writeLock().lock();
+        }
+        try {
+            for (int cluster = 0; cluster < clusterMap.length(); cluster++) {
+                ClusterDigest digest = clusterMap.getAndSet(cluster, null);
+                if (digest != null) {
+                    pool.release(digest);
+                }
+            }
+        } finally {
+            for (ReentrantReadWriteLock stripe : clusterLocks) {
+                stripe.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Hashes a cluster content.
+     *
+     * @return The digest , null for a zero filled content.
+     */
+    private ClusterDigest digestOf(byte[] source, int offset, int length) {
+        if (isZero(source, offset, length)) {
+            return null;
+        }
+        MessageDigest digest = sha256.get();
+        digest.update(source, offset, length);
+        return new ClusterDigest(digest.digest());
+    }
+
+    private ReentrantReadWriteLock lockOf(int cluster) {
+        return clusterLocks[cluster % LOCK_STRIPES];
+    }
+
+    private int clusterLength(int cluster) {
+        return (int) Math.min(clusterSize, size - (long) cluster * clusterSize);
+    }
+
+    private static boolean isZero(byte[] source, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (source[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the digest of the content of a cluster of the image.
+     *
+     * @param cluster The index of the cluster in the image (byte offset divided by the cluster size).
+     * @return The digest of its content , or null if the cluster is zero filled.
+     */
+    public ClusterDigest getClusterDigest(int cluster) {
+        return clusterMap.get(cluster);
+    }
+
+    /**
+     * Retrieves the number of clusters of the image holding something else than zeros.
+     *
+     * @return The number of mapped clusters.
+     */
+    public int getMappedClusterCount() {
+        int mapped = 0;
+        for (int cluster = 0; cluster < clusterMap.length(); cluster++) {
+            if (clusterMap.get(cluster) != null) {
+                mapped++;
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Computes the deduplication ratio inside this image only : mapped clusters over distinct contents.
+     *
+     * @return The ratio , 1.0 when no cluster is mapped.
+     */
+    public double getDedupRatio() {
+        HashSet<ClusterDigest> distinct = new HashSet<>();
+        int mapped = 0;
+        for (int cluster = 0; cluster < clusterMap.length(); cluster++) {
+            ClusterDigest digest = clusterMap.get(cluster);
+            if (digest != null) {
+                distinct.add(digest);
+                mapped++;
+            }
+        }
+        return distinct.isEmpty() ? 1.0 : (double) mapped / distinct.size();
+    }
+
+    /**
+     * Retrieves the pool holding the contents of this image.
+     *
+     * @return The cluster pool.
+     */
+    public ClusterPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Retrieves the size of a deduplication unit.
+     *
+     * @return The cluster size in bytes.
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DedupDiskStorage{size=%d, mappedClusters=%d, dedupRatio=%.2f, pool=%s}",
+                size, getMappedClusterCount(), getDedupRatio(), pool);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The block backend holding the raw bytes of a virtual disk.
+ * <p>
+ * The {@code VirtualDisk} never touches the bytes of the image directly , it reads and writes them through
+ * this interface , addressing them by their byte offset in the image. This is what allows the same disk model
+ * to live in a heap array , in a deduplicated cluster pool or in a file on the host.
+ * </p>
+ *
+ * <p>
+ * Read and write failures of file based backends are reported as {@link java.io.UncheckedIOException} so that
+ * the disk model can keep its signatures , only {@link #flush()} and {@link #close()} declare {@link IOException}.
+ * </p>
+ */
+public interface DiskStorage {
+
+    /**
+     * Returns the size of the stored image.
+     *
+     * @return The size of the image in bytes.
+     */
+    long size();
+
+    /**
+     * Copies bytes of the image into a destination array.
+     *
+     * @param position    The byte offset in the image of the first byte to read.
+     * @param destination The array receiving the bytes.
+     * @param offset      The offset in {@code destination} of the first byte to fill.
+     * @param length      The number of bytes to read.
+     */
+    void read(long position, byte[] destination, int offset, int length);
+
+    /**
+     * Copies bytes from a source array into the image.
+     *
+     * @param position The byte offset in the image of the first byte to write.
+     * @param source   The array holding the bytes.
+     * @param offset   The offset in {@code source} of the first byte to write.
+     * @param length   The number of bytes to write.
+     */
+    void write(long position, byte[] source, int offset, int length);
+
+    /**
+     * Sends a range of the image to a channel.
+     * <p>
+     * The default implementation goes through a bounded intermediate buffer , backends able to hand their
+     * bytes to the channel without copying them override it.
+     * </p>
+     *
+     * @param position The byte offset in the image of the first byte to send.
+     * @param count    The number of bytes to send.
+     * @param target   The channel receiving the bytes.
+     * @return The number of bytes sent.
+     * @throws IOException If an I/O error occurs while writing to the channel.
+     */
+    default long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        byte[] chunk = new byte[(int) Math.min(count, 1 << 20)];
+        long sent = 0;
+        while (sent < count) {
+            int length = (int) Math.min(chunk.length, count - sent);
+            read(position + sent, chunk, 0, length);
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            sent += length;
+        }
+        return sent;
+    }
+
+    /**
+     * Gives a read-only view over a range of the image.
+     * <p>
+     * Backends able to expose their bytes in place (a heap array , a memory mapped file) return a view over them,
+     * the range is then read without any copy and later writes to the image show through the view. The default
+     * implementation has no such bytes to expose and returns a read-only copy of the range.
+     * </p>
+     *
+     * @param position The byte offset in the image of the first byte of the view.
+     * @param length   The number of bytes of the view.
+     * @return A read-only buffer whose position is 0 and whose limit is {@code length}.
+     * @throws IOException If the range cannot be mapped.
+     */
+    default ByteBuffer map(long position, int length) throws IOException {
+        byte[] copy = new byte[length];
+        read(position, copy, 0, length);
+        return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+    }
+
+    /**
+     * Hints that a range of the image is about to be read. Backends in front of a slow medium may start
+     * fetching it in the background , the call itself must return immediately. Does nothing by default.
+     *
+     * @param position The byte offset in the image of the first byte that will be read.
+     * @param length   The number of bytes that will be read.
+     */
+    default void prefetch(long position, long length) {
+    }
+
+    /**
+     * Makes sure every byte written so far reached the underlying medium. Does nothing for memory backends.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Flushes and releases the resources held by the backend.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    default void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.Storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A backend keeping the image in a file of the host , every read and write is a positional I/O on the file.
+ * <p>
+ * Disks of any size can be stored this way , they are not limited to the 2 GB of a Java array. Since every
+ * call reaches the file , this backend is meant to be used behind a {@link CachedDiskStorage}.
+ * </p>
+ */
+public class FileDiskStorage implements DiskStorage {
+
+    /**
+     * The channel over the image file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the image in bytes.
+     */
+    private final long size;
+
+    /**
+     * Opens , or creates , an image file of the given size.
+     * A file shorter than the size is extended with zeros , a new file is thus a zero filled image.
+     *
+     * @param path The path of the image file.
+     * @param size The size of the image in bytes.
+     * @throws IOException If the file cannot be opened or extended.
+     */
+    public FileDiskStorage(Path path, long size) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = size;
+        if (channel.size() < size) {
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1); // The file system fills the gap with zeros
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void read(long position, byte[] destination, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(destination, offset, length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position() - offset) < 0) {
+                    throw new IOException("Unexpected end of image file at offset " + (position + buffer.position() - offset));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(long position, byte[] source, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(source, offset, length);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position() - offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        // The kernel moves the bytes from the image file to the target , they never reach the heap
+        long sent = 0;
+        while (sent < count) {
+            long moved = channel.transferTo(position + sent, count - sent, target);
+            if (moved <= 0) {
+                throw new IOException("Unexpected end of image file at offset " + (position + sent));
+            }
+            sent += moved;
+        }
+        return sent;
+    }
+
+    @Override
+    public ByteBuffer map(long position, int length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length); // The pages of the image file , shared with the host page cache
+    }
+
+    @Override
+    public void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Gives access to the channel over the image file.
+     *
+     * @return The file channel.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+}
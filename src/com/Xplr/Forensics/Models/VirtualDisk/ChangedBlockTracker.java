@@ -0,0 +1,380 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps track of which cluster-sized blocks of a virtual disk image have been modified.
+ * <p>
+ * The disk image is split into blocks of {@code blockSize} bytes (the cluster size of the disk).
+ * Every block remembers the checkpoint generation in which it was last written, so that a caller
+ * can ask for the blocks changed since <em>any</em> earlier checkpoint, not only the last one.
+ * This is what makes incremental exports of the image possible : only the blocks whose generation
+ * is newer than the requested checkpoint have to be shipped.
+ * </p>
+ *
+ * <p>Checkpoint identifiers start at 0 , which stands for the freshly created disk.</p>
+ *
+ * <p>The tracker is thread-safe , files written in parallel all report their clusters to the same instance.
+ * Writers never take a lock : every block is stamped atomically and a stamp only ever moves forward , so a
+ * writer that read an older generation cannot hide the newer stamp of a concurrent writer.</p>
+ *
+ * <p>The stamps outlive the disk in a sidecar file saved next to its image , see {@link #save} and {@link #load}.
+ * Layout of the sidecar file (every number is little-endian) :</p>
+ * <pre>
+ * 0x00  8 bytes  magic "XPLRCBT1"
+ * 0x08  8 bytes  size of the disk image in bytes
+ * 0x10  4 bytes  block size in bytes
+ * 0x14  4 bytes  number of blocks
+ * 0x18 16 bytes  identifier of the disk , most significant half first
+ * 0x28  8 bytes  checkpoint the image holds
+ * 0x30  4 bytes  generation that was open when the stamps were saved
+ * 0x34  4 bytes  reserved , 0
+ * then the 4 byte stamp of every block
+ * </pre>
+ */
+public class ChangedBlockTracker {
+
+    /**
+     * The signature found at the very beginning of every sidecar file.
+     */
+    public static final byte[] MAGIC = {'X', 'P', 'L', 'R', 'C', 'B', 'T', '1'};
+
+    /**
+     * The size in bytes of the fixed header of the sidecar file.
+     */
+    public static final int HEADER_SIZE = 0x38;
+
+    /**
+     * The number of stamps moved between the tracker and the sidecar file at once.
+     */
+    private static final int STAMPS_PER_CHUNK = 1 << 16;
+
+    /**
+     * The size in bytes of a tracked block , it corresponds to the cluster size of the disk.
+     */
+    private final int blockSize;
+
+    /**
+     * The size in bytes of the tracked image.
+     */
+    private final long imageSize;
+
+    /**
+     * For every block , the generation in which it was last written. 0 means never written since creation.
+     */
+    private final AtomicIntegerArray blockGeneration;
+
+    /**
+     * The generation that is currently open , every write is stamped with this value.
+     */
+    private volatile int currentGeneration;
+
+    /**
+     * Constructs a tracker for an image of the given size.
+     *
+     * @param imageSize The size of the image in bytes.
+     * @param blockSize The size of a tracked block in bytes , usually the cluster size.
+     * @throws IllegalArgumentException if the block size is not strictly positive.
+     */
+    public ChangedBlockTracker(long imageSize, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be strictly positive.");
+        }
+        this.blockSize = blockSize;
+        this.imageSize = imageSize;
+        this.blockGeneration = new AtomicIntegerArray((int) ((imageSize + blockSize - 1) / blockSize));
+        this.currentGeneration = 1; // Generation 0 is reserved for the content the disk was created with
+    }
+
+    /**
+     * Marks every block overlapping the byte range {@code [position, position + length)} as changed.
+     *
+     * @param position The byte offset of the first modified byte in the image.
+     * @param length   The number of modified bytes.
+     */
+    public void markRange(long position, long length) {
+        if (length <= 0) {
+            return; // Nothing was written , nothing to track
+        }
+        int first = (int) (position / blockSize);
+        int last = (int) Math.min(blockGeneration.length() - 1, (position + length - 1) / blockSize);
+        int generation = currentGeneration;
+        while (true) {
+            for (int block = first; block <= last; block++) {
+                stamp(block, generation);
+            }
+            int now = currentGeneration;
+            if (now == generation) {
+                return;
+            }
+            // A checkpoint was sealed while stamping , stamp again so the write also lands in the new generation
+            generation = now;
+        }
+    }
+
+    /**
+     * Marks the whole image as changed , used when the content is replaced at once.
+     */
+    public void markAll() {
+        int generation = currentGeneration;
+        for (int block = 0; block < blockGeneration.length(); block++) {
+            stamp(block, generation);
+        }
+    }
+
+    /**
+     * Raises the stamp of a block to the given generation , keeping it if it is already newer.
+     *
+     * @param block      The index of the block.
+     * @param generation The generation the block was written in.
+     */
+    private void stamp(int block, int generation) {
+        int previous = blockGeneration.get(block);
+        while (previous < generation && !blockGeneration.compareAndSet(block, previous, generation)) {
+            previous = blockGeneration.get(block);
+        }
+    }
+
+    /**
+     * Seals the current generation and opens a new one.
+     *
+     * @return The identifier of the checkpoint that was just sealed ; writes made after this call are
+     *         reported by {@link #changedSince(long)} when given this identifier.
+     */
+    public synchronized long checkpoint() {
+        return currentGeneration++; // Only checkpoints move the generation , the monitor keeps them ordered
+    }
+
+    /**
+     * Seals the current generation if a block was written in it , see {@link #checkpoint()}. Writing an image of a
+     * disk nothing was written to since the last checkpoint then keeps it at that checkpoint , so a disk that was
+     * only read does not move away from the images taken of it.
+     *
+     * @return The identifier of the checkpoint the content now corresponds to.
+     */
+    public synchronized long checkpointIfChanged() {
+        int generation = currentGeneration;
+        for (int block = 0; block < blockGeneration.length(); block++) {
+            if (blockGeneration.get(block) == generation) {
+                return currentGeneration++;
+            }
+        }
+        return generation - 1L;
+    }
+
+    /**
+     * Returns the identifier of the last sealed checkpoint.
+     *
+     * @return The last checkpoint identifier , 0 if no checkpoint was ever taken.
+     */
+    public long getLastCheckpoint() {
+        return currentGeneration - 1L;
+    }
+
+    /**
+     * Finds the oldest checkpoint a base image can be at for an increment since a given checkpoint : the blocks an
+     * increment does not hold were last written at that checkpoint or before , so a base taken at any checkpoint from
+     * it to {@code sinceCheckpoint} already holds them as they are now.
+     *
+     * @param sinceCheckpoint The checkpoint the increment starts from.
+     * @return The latest generation , up to {@code sinceCheckpoint} , in which a block that kept its stamp was written ;
+     *         0 if none was , an empty base is then enough.
+     * @throws IllegalArgumentException if the checkpoint identifier does not exist yet.
+     */
+    public long oldestBaseFor(long sinceCheckpoint) {
+        if (sinceCheckpoint < 0 || sinceCheckpoint >= currentGeneration) {
+            throw new IllegalArgumentException("Unknown checkpoint: " + sinceCheckpoint);
+        }
+        int oldest = 0;
+        for (int block = 0; block < blockGeneration.length(); block++) {
+            int generation = blockGeneration.get(block);
+            if (generation <= sinceCheckpoint && generation > oldest) {
+                oldest = generation;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Computes the bitmap of blocks written after the given checkpoint.
+     *
+     * @param sinceCheckpoint The checkpoint identifier to compare against.
+     * @return A bitmap where bit {@code i} is set if block {@code i} changed after {@code sinceCheckpoint}.
+     * @throws IllegalArgumentException if the checkpoint identifier does not exist yet.
+     */
+    public BitSet changedSince(long sinceCheckpoint) {
+        if (sinceCheckpoint < 0 || sinceCheckpoint >= currentGeneration) {
+            throw new IllegalArgumentException("Unknown checkpoint: " + sinceCheckpoint);
+        }
+        BitSet changed = new BitSet(blockGeneration.length());
+        for (int block = 0; block < blockGeneration.length(); block++) {
+            if (blockGeneration.get(block) > sinceCheckpoint) {
+                changed.set(block);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Saves the stamps in a sidecar file. The file is written aside and moved in place , so that a crash leaves
+     * either the previous file or the new one. Nothing may be written to the disk meanwhile.
+     *
+     * @param sidecar         The file to create (replaced if it exists).
+     * @param diskId          The identifier of the disk , checked by {@link #load}.
+     * @param imageCheckpoint The checkpoint the image holds , checked by {@link #load}.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path sidecar, UUID diskId, long imageCheckpoint) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putLong(imageSize);
+        header.putInt(blockSize);
+        header.putInt(blockGeneration.length());
+        header.putLong(diskId.getMostSignificantBits());
+        header.putLong(diskId.getLeastSignificantBits());
+        header.putLong(imageCheckpoint);
+        header.putInt(currentGeneration);
+        header.putInt(0);
+        header.flip();
+
+        Path pending = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(pending, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            ByteBuffer chunk = ByteBuffer.allocate(STAMPS_PER_CHUNK * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer stamps = chunk.asIntBuffer();
+            for (int block = 0; block < blockGeneration.length(); ) {
+                stamps.clear();
+                int end = Math.min(blockGeneration.length(), block + STAMPS_PER_CHUNK);
+                for (; block < end; block++) {
+                    stamps.put(blockGeneration.get(block));
+                }
+                chunk.clear().limit(stamps.position() * Integer.BYTES);
+                writeFully(channel, chunk);
+            }
+            channel.force(true); // The stamps must be on disk before the image says they describe it
+        }
+        Files.move(pending, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the stamps saved by {@link #save} , if they still describe the image.
+     *
+     * @param sidecar         The sidecar file.
+     * @param diskId          The identifier of the disk the image holds.
+     * @param imageCheckpoint The checkpoint the image holds.
+     * @param imageSize       The size of the image in bytes.
+     * @param blockSize       The size of a tracked block in bytes.
+     * @return The tracker , null if the file does not exist or was saved for another disk , another checkpoint or another geometry.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static ChangedBlockTracker load(Path sidecar, UUID diskId, long imageCheckpoint, long imageSize, int blockSize) throws IOException {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        ChangedBlockTracker tracker = new ChangedBlockTracker(imageSize, blockSize);
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getLong() != imageSize || header.getInt() != blockSize
+                    || header.getInt() != tracker.getBlockCount()
+                    || header.getLong() != diskId.getMostSignificantBits() || header.getLong() != diskId.getLeastSignificantBits()
+                    || header.getLong() != imageCheckpoint
+                    || channel.size() != HEADER_SIZE + (long) Integer.BYTES * tracker.getBlockCount()) {
+                return null; // The image moved on without these stamps , they would miss some of its writes
+            }
+            int generation = header.getInt();
+            if (generation <= imageCheckpoint) {
+                return null;
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(STAMPS_PER_CHUNK * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int block = 0; block < tracker.getBlockCount(); ) {
+                int count = Math.min(tracker.getBlockCount() - block, STAMPS_PER_CHUNK);
+                chunk.clear().limit(count * Integer.BYTES);
+                readFully(channel, chunk);
+                chunk.flip();
+                IntBuffer stamps = chunk.asIntBuffer();
+                for (int i = 0; i < count; i++, block++) {
+                    int stamp = stamps.get(i);
+                    if (stamp < 0 || stamp >= generation) {
+                        return null;
+                    }
+                    tracker.blockGeneration.set(block, stamp);
+                }
+            }
+            tracker.currentGeneration = generation;
+        }
+        return tracker;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of changed-block map.");
+            }
+        }
+    }
+
+    /**
+     * Retrieves the size of a tracked block.
+     *
+     * @return The block size in bytes.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Retrieves the number of tracked blocks.
+     *
+     * @return The number of blocks covering the image.
+     */
+    public int getBlockCount() {
+        return blockGeneration.length();
+    }
+
+    /**
+     * Retrieves the size of the tracked image.
+     *
+     * @return The image size in bytes.
+     */
+    public long getImageSize() {
+        return imageSize;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import com.Xplr.Forensics.Models.FAT.FAT;
+import com.Xplr.Forensics.Models.FAT.FATEntry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An input stream over the content of a file of a {@link VirtualDisk}.
+ * <p>
+ * The stream follows the allocation chain of the file cluster after cluster , so a file of any size can be read
+ * with a bounded buffer instead of being loaded at once like {@link VirtualDisk#readFile(String)} does.
+ * Every cluster consumed is reported to a {@link ReadAheadEngine} which prefetches the next ones.
+ * </p>
+ *
+ * <p>
+ * A stream opened on a journal entry takes the read lock of the file for every call and checks the entry is
+ * still live , so that it never returns the bytes of clusters handed to another file after a deletion.
+ * A stream instance itself is not meant to be shared between threads.
+ * </p>
+ */
+public class ClusterChainInputStream extends InputStream {
+
+    private final VirtualDisk disk;
+    private final FAT fat;
+    private final DiskStorage storage;
+    private final ReadAheadEngine readAhead;
+    private final int clusterBytes;
+
+    /**
+     * The journal entry of the file , null when the stream was opened on a raw chain.
+     */
+    private final JournalEntry entry;
+
+    /**
+     * The buffer of the single byte reads , kept so that {@link #read()} does not allocate.
+     */
+    private final byte[] single = new byte[1];
+
+    /**
+     * The number of bytes of the file not read yet.
+     */
+    private long remaining;
+
+    /**
+     * The cluster being read , its position in the chain , and the position of the next byte inside it.
+     */
+    private int currentCluster;
+    private long chainIndex;
+    private int offsetInCluster;
+
+    /**
+     * Opens a stream over a file given its first cluster and its size.
+     *
+     * @param disk         The disk holding the file.
+     * @param startCluster The first cluster of the allocation chain of the file.
+     * @param fileSize     The size of the file in bytes.
+     */
+    public ClusterChainInputStream(VirtualDisk disk, int startCluster, long fileSize) {
+        this(disk, null, startCluster, fileSize);
+    }
+
+    /**
+     * Opens a stream over a file given its journal entry.
+     *
+     * @param disk  The disk holding the file.
+     * @param entry The journal entry of the file.
+     */
+    public ClusterChainInputStream(VirtualDisk disk, JournalEntry entry) {
+        this(disk, entry, entry.getCluster_id(), entry.getFileSize());
+    }
+
+    private ClusterChainInputStream(VirtualDisk disk, JournalEntry entry, int startCluster, long fileSize) {
+        this.disk = disk;
+        this.entry = entry;
+        this.fat = disk.getMain();
+        this.storage = disk.getStorage();
+        this.readAhead = new ReadAheadEngine(disk, fat, storage);
+        this.clusterBytes = disk.getClusterSizeInSectors() * disk.getSectorSize();
+        this.remaining = fileSize;
+        this.currentCluster = startCluster;
+        this.chainIndex = 0;
+        this.offsetInCluster = 0;
+        if (fileSize > 0) {
+            readAhead.onClusterRead(0, startCluster);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] destination, int offset, int length) throws IOException {
+        Lock fileLock = lockFile();
+        try {
+            return readLocked(destination, offset, length);
+        } finally {
+            if (fileLock != null) {
+                fileLock.unlock();
+            }
+        }
+    }
+
+    private int readLocked(byte[] destination, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1; // End of file
+        }
+        if (offsetInCluster == clusterBytes && !moveToNextCluster()) {
+            remaining = 0; // The chain is shorter than the file size says , we stop here
+            return -1;
+        }
+
+        // We never read across a cluster boundary in one call , the next cluster may be anywhere on the disk
+        int chunk = (int) Math.min(Math.min(length, clusterBytes - offsetInCluster), remaining);
+        storage.read(disk.clusterToByteOffset(currentCluster) + offsetInCluster, destination, offset, chunk);
+        offsetInCluster += chunk;
+        remaining -= chunk;
+        return chunk;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        Lock fileLock = lockFile();
+        try {
+            return skipLocked(n);
+        } finally {
+            if (fileLock != null) {
+                fileLock.unlock();
+            }
+        }
+    }
+
+    private long skipLocked(long n) {
+        long skipped = 0;
+        while (skipped < n && remaining > 0) {
+            if (offsetInCluster == clusterBytes && !moveToNextCluster()) {
+                remaining = 0;
+                break;
+            }
+            int step = (int) Math.min(Math.min(n - skipped, clusterBytes - offsetInCluster), remaining);
+            offsetInCluster += step;
+            remaining -= step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    /**
+     * Takes the read lock of the file and makes sure it still exists.
+     *
+     * @return The lock taken , null for a stream opened on a raw chain.
+     * @throws IOException If the file was deleted since the stream was opened.
+     */
+    private Lock lockFile() throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        Lock fileLock = disk.fileLockFor(entry.getFileName()).readLock();
+        fileLock.lock();
+        if (!disk.isLiveEntry(entry)) {
+            fileLock.unlock();
+            throw new IOException("File '" + entry.getFileName() + "' was deleted while being read.");
+        }
+        return fileLock;
+    }
+
+    /**
+     * Follows the FAT to the next cluster of the chain.
+     *
+     * @return False if the chain ends here.
+     */
+    private boolean moveToNextCluster() {
+        FATEntry entry = fat.findFATEntryUsingClusterIdentification(currentCluster);
+        if (entry == null || entry.isEndOfChain() || entry.isFREE()) {
+            return false;
+        }
+        currentCluster = entry.getFatEntryValue();
+        chainIndex++;
+        offsetInCluster = 0;
+        readAhead.onClusterRead(chainIndex, currentCluster);
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells which file owns each cluster of a disk , the reverse of the allocation chains.
+ * <p>
+ * Every journal entry gets a small integer id , and a plain int array maps every data cluster to the id of the
+ * entry owning it , {@link #NO_OWNER} for the free clusters and the orphaned ones (allocated in the FAT but
+ * reached by no chain of the journal). Finding the file behind a byte offset is then two array reads instead
+ * of a walk through every chain of the journal. The ids of deleted entries are handed out again.
+ * </p>
+ *
+ * <p>
+ * The {@code VirtualDisk} updates the index under its metadata write lock , as it publishes and deletes files.
+ * Lookups take no lock : a lookup racing with an update sees either the old or the new owner of the cluster.
+ * </p>
+ */
+public class ClusterOwnershipIndex {
+
+    /**
+     * The owner of the clusters no file owns.
+     */
+    public static final int NO_OWNER = -1;
+
+    private final DiskGeometry geometry;
+
+    /**
+     * The id of the entry owning each data cluster , cluster 2 being at index 0.
+     */
+    private final int[] owners;
+
+    /**
+     * The entry of each id , null for the ids not in use. The array is replaced , never resized , when it grows.
+     */
+    private volatile JournalEntry[] entries = new JournalEntry[64];
+
+    private final Map<JournalEntry, Integer> idsOfEntries = new IdentityHashMap<>();
+
+    /**
+     * The ids freed by deleted entries , as a stack.
+     */
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+    private int nextId;
+
+    /**
+     * Constructs an index where no cluster has an owner.
+     *
+     * @param geometry The layout of the disk.
+     */
+    public ClusterOwnershipIndex(DiskGeometry geometry) {
+        this.geometry = geometry;
+        this.owners = new int[geometry.getClusterCount()];
+        Arrays.fill(owners, NO_OWNER);
+    }
+
+    /**
+     * Records a new file and the clusters of its chain.
+     *
+     * @param entry The journal entry of the file.
+     * @param chain The clusters of the file.
+     * @return The id given to the entry.
+     */
+    public synchronized int add(JournalEntry entry, List<Integer> chain) {
+        int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+        if (id >= entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[id] = entry;
+        idsOfEntries.put(entry, id);
+        for (int clusterId : chain) {
+            if (geometry.isDataCluster(clusterId)) {
+                owners[clusterId - DiskGeometry.FIRST_CLUSTER] = id;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Forgets a deleted file. Its clusters must be released with {@link #release(List)} in the same update , before
+     * the id of the entry is handed out again.
+     *
+     * @param entry The journal entry of the file.
+     */
+    public synchronized void remove(JournalEntry entry) {
+        Integer id = idsOfEntries.remove(entry);
+        if (id == null) {
+            return;
+        }
+        entries[id] = null;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    /**
+     * Releases freed clusters , those of a deleted file as well as those freed under a file that stays.
+     *
+     * @param chain The freed clusters.
+     */
+    public synchronized void release(List<Integer> chain) {
+        for (int clusterId : chain) {
+            if (geometry.isDataCluster(clusterId)) {
+                owners[clusterId - DiskGeometry.FIRST_CLUSTER] = NO_OWNER;
+            }
+        }
+    }
+
+    /**
+     * Forgets every file , before the index is rebuilt from a new journal.
+     */
+    public synchronized void clear() {
+        Arrays.fill(owners, NO_OWNER);
+        entries = new JournalEntry[64];
+        idsOfEntries.clear();
+        freeIdCount = 0;
+        nextId = 0;
+    }
+
+    /**
+     * Finds the id of the entry owning a cluster.
+     *
+     * @param clusterId The ID of the cluster.
+     * @return The id of the entry , {@link #NO_OWNER} if the cluster is free , orphaned or not a data cluster.
+     */
+    public int ownerIdOf(int clusterId) {
+        return geometry.isDataCluster(clusterId) ? owners[clusterId - DiskGeometry.FIRST_CLUSTER] : NO_OWNER;
+    }
+
+    /**
+     * Finds the file owning a cluster.
+     *
+     * @param clusterId The ID of the cluster.
+     * @return The journal entry of the file , null if no file owns the cluster.
+     */
+    public JournalEntry ownerOf(int clusterId) {
+        int id = ownerIdOf(clusterId);
+        return id == NO_OWNER ? null : entryOf(id);
+    }
+
+    /**
+     * Finds the file owning a byte of the image.
+     *
+     * @param byteOffset The byte offset in the image.
+     * @return The journal entry of the file , null for the reserved region , the FATs and the clusters of no file.
+     */
+    public JournalEntry ownerOfByteOffset(long byteOffset) {
+        return ownerOf(geometry.byteOffsetToCluster(byteOffset));
+    }
+
+    /**
+     * Retrieves the entry holding an id.
+     *
+     * @param id The id of the entry.
+     * @return The journal entry , null if the id is not in use.
+     */
+    public JournalEntry entryOf(int id) {
+        JournalEntry[] current = entries;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Retrieves the number of files in the index.
+     *
+     * @return The number of entries with an id.
+     */
+    public synchronized int getEntryCount() {
+        return idsOfEntries.size();
+    }
+}
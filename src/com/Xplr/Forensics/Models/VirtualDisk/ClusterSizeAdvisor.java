@@ -0,0 +1,257 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Storage.ClusterPool;
+import com.Xplr.Forensics.Models.Storage.DedupDiskStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Helps choosing the cluster size of a disk for a given mix of files.
+ * <p>
+ * The sizes of a sample of files are replayed on a fresh disk for every candidate cluster size : each file is
+ * allocated and written exactly as a real import would. The disk lives in a {@link DedupDiskStorage} and the
+ * files are zero filled , so the replay of a large disk only needs the memory of its FATs. Every candidate is
+ * then described by a {@link ClusterSizeReport} : slack , chain lengths , fragmentation , FAT sizes and
+ * write throughput.
+ * </p>
+ */
+public class ClusterSizeAdvisor {
+
+    /**
+     * The cluster sizes tried by default , in sectors : from 512 bytes to 64 KB with 512 bytes sectors.
+     */
+    public static final int[] DEFAULT_CANDIDATES = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    /**
+     * The estimated heap taken by one FAT entry : a small object holding an int , plus the reference to it.
+     */
+    private static final long FAT_ENTRY_HEAP_BYTES = 20;
+
+    /**
+     * The largest buffer a replayed file goes through.
+     */
+    private static final int REPLAY_BUFFER_BYTES = 1 << 20;
+
+    private final long diskSize;
+    private final int sectorSize;
+
+    /**
+     * Constructs an advisor for disks of a given size , with 512 bytes sectors.
+     *
+     * @param diskSize The size of the disk in bytes.
+     */
+    public ClusterSizeAdvisor(long diskSize) {
+        this(diskSize, DiskGeometry.DEFAULT_SECTOR_SIZE);
+    }
+
+    /**
+     * Constructs an advisor for disks of a given size and sector size. The candidates are still given in sectors ,
+     * with 4096 bytes sectors the default ones go from 4 KB to 512 KB.
+     *
+     * @param diskSize   The size of the disk in bytes.
+     * @param sectorSize The size of a sector in bytes.
+     */
+    public ClusterSizeAdvisor(long diskSize, int sectorSize) {
+        this.diskSize = diskSize;
+        this.sectorSize = sectorSize;
+    }
+
+    /**
+     * Replays a sample with every default candidate cluster size.
+     *
+     * @param fileSizes The sizes of the files of the sample , in bytes.
+     * @return One report per candidate , in the order of {@link #DEFAULT_CANDIDATES}.
+     */
+    public List<ClusterSizeReport> evaluate(long[] fileSizes) {
+        return evaluate(fileSizes, DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Replays a sample with each of the given cluster sizes.
+     *
+     * @param fileSizes  The sizes of the files of the sample , in bytes.
+     * @param candidates The cluster sizes to try , in sectors.
+     * @return One report per candidate , in the same order.
+     */
+    public List<ClusterSizeReport> evaluate(long[] fileSizes, int[] candidates) {
+        // A first short replay warms the write path up , so that the first candidate is not timed on cold code
+        replay(Arrays.copyOf(fileSizes, Math.min(fileSizes.length, 256)), candidates[0]);
+
+        List<ClusterSizeReport> reports = new ArrayList<>();
+        for (int candidate : candidates) {
+            reports.add(replay(fileSizes, candidate));
+        }
+        return reports;
+    }
+
+    /**
+     * Replays a sample on a fresh disk with one cluster size.
+     *
+     * @param fileSizes         The sizes of the files of the sample , in bytes.
+     * @param sectorsPerCluster The cluster size to try , in sectors.
+     * @return The report of the candidate.
+     */
+    public ClusterSizeReport replay(long[] fileSizes, int sectorsPerCluster) {
+        int clusterBytes = sectorsPerCluster * sectorSize;
+        DiskGeometry geometry;
+        try {
+            geometry = DiskGeometry.layout(diskSize, sectorSize, sectorsPerCluster);
+        } catch (IllegalArgumentException e) {
+            return new ClusterSizeReport(sectorsPerCluster, clusterBytes, 0, 0, e.getMessage());
+        }
+        long fatBytesOnDisk = DiskGeometry.FAT_COUNT * geometry.getFatSizeInBytes();
+        long fatHeapBytes = DiskGeometry.FAT_COUNT * (geometry.getClusterCount() * FAT_ENTRY_HEAP_BYTES + geometry.getClusterCount() / 8);
+        if (fatHeapBytes > Runtime.getRuntime().maxMemory() / 2) {
+            return new ClusterSizeReport(sectorsPerCluster, clusterBytes, fatBytesOnDisk, fatHeapBytes, "the FATs would not fit in memory");
+        }
+
+        VirtualDisk disk = new VirtualDisk("ADVISOR", diskSize, new DedupDiskStorage(diskSize, clusterBytes, new ClusterPool()), sectorsPerCluster, sectorSize);
+        byte[] buffer = new byte[Math.max(clusterBytes, REPLAY_BUFFER_BYTES / clusterBytes * clusterBytes)];
+        long filesWritten = 0;
+        long filesFailed = 0;
+        long bytesWritten = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < fileSizes.length; i++) {
+            try {
+                disk.writeStreamInDisk("f" + i, new ZeroInputStream(fileSizes[i]), fileSizes[i], buffer, false);
+                filesWritten++;
+                bytesWritten += fileSizes[i];
+            } catch (IOException e) {
+                filesFailed++; // The disk is full for this cluster size
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        // Now let's look at how the files were laid out
+        long chainTotal = 0;
+        long maxChain = 0;
+        long extentsTotal = 0;
+        ArrayList<JournalEntry> entries = disk.getRootDirectory().getEntries();
+        for (JournalEntry entry : entries) {
+            long chain = disk.getMain().FindSizeOfAllocationChain(entry.getCluster_id());
+            chainTotal += chain;
+            maxChain = Math.max(maxChain, chain);
+            extentsTotal += disk.getFileExtents(entry.getFileName()).size();
+        }
+        int files = Math.max(1, entries.size());
+        return new ClusterSizeReport(sectorsPerCluster, clusterBytes, filesWritten, filesFailed, bytesWritten, disk.calculateTotalSlackSpace(),
+                (double) chainTotal / files, maxChain, (double) extentsTotal / files, fatBytesOnDisk, fatHeapBytes, elapsedNanos);
+    }
+
+    /**
+     * Picks the candidate that wrote the sample the fastest among the ones that held all of it.
+     * When no candidate held the whole sample , the one that held the most files is picked.
+     *
+     * @param reports The reports of the candidates.
+     * @return The recommended candidate , null if none was replayed.
+     */
+    public static ClusterSizeReport recommend(List<ClusterSizeReport> reports) {
+        ClusterSizeReport best = null;
+        for (ClusterSizeReport report : reports) {
+            if (!report.isReplayed()) {
+                continue;
+            }
+            if (best == null || (report.isFitting() && !best.isFitting())
+                    || (report.isFitting() == best.isFitting() && (report.isFitting()
+                    ? report.getBytesPerSecond() > best.getBytesPerSecond()
+                    : report.getFilesWritten() > best.getFilesWritten()))) {
+                best = report;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Collects the sizes of the regular files under a host directory , to be used as a sample.
+     *
+     * @param directory The root of the host tree.
+     * @return The size of every regular file of the tree.
+     * @throws IOException If the tree cannot be walked.
+     */
+    public static long[] fileSizesOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    return -1; // The file vanished while we walked
+                }
+            }).filter(size -> size >= 0).toArray();
+        }
+    }
+
+    /**
+     * Retrieves the size of the replayed disks.
+     *
+     * @return The size of the disk in bytes.
+     */
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Retrieves the sector size of the replayed disks.
+     *
+     * @return The size of a sector in bytes.
+     */
+    public int getSectorSize() {
+        return sectorSize;
+    }
+
+    /**
+     * A stream of zeros of a given length , the content of a replayed file.
+     */
+    private static final class ZeroInputStream extends InputStream {
+
+        private long remaining;
+
+        private ZeroInputStream(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) {
+                return len == 0 ? 0 : -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            Arrays.fill(b, off, off + count, (byte) 0);
+            remaining -= count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+/**
+ * The outcome of the replay of a sample of files on a disk with one cluster size , as produced by
+ * {@link ClusterSizeAdvisor} : the space lost in slack , the length of the allocation chains , the memory the
+ * FATs need and the throughput of the writes.
+ * <p>
+ * A candidate whose layout is impossible or whose FATs would not fit in memory is not replayed , the report
+ * then only holds the reason and the FAT sizes.
+ * </p>
+ */
+public class ClusterSizeReport {
+
+    private final int sectorsPerCluster;
+    private final int clusterBytes;
+    private final String skipReason;
+    private final long filesWritten;
+    private final long filesFailed;
+    private final long bytesWritten;
+    private final long slackBytes;
+    private final double averageChainLength;
+    private final long maxChainLength;
+    private final double averageExtents;
+    private final long fatBytesOnDisk;
+    private final long fatHeapBytes;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs the report of a replayed candidate.
+     *
+     * @param sectorsPerCluster  The cluster size of the candidate in sectors.
+     * @param clusterBytes       The cluster size of the candidate in bytes.
+     * @param filesWritten       The number of files of the sample written to the disk.
+     * @param filesFailed        The number of files that did not fit on the disk.
+     * @param bytesWritten       The total size of the files written.
+     * @param slackBytes         The bytes allocated to the files but not used by them.
+     * @param averageChainLength The average number of clusters of a file.
+     * @param maxChainLength     The number of clusters of the largest file.
+     * @param averageExtents     The average number of extents of a file , 1 when no file is fragmented.
+     * @param fatBytesOnDisk     The size of both FATs on the disk.
+     * @param fatHeapBytes       The estimated memory the FATs of an open disk take.
+     * @param elapsedNanos       The duration of the replay in nanoseconds.
+     */
+    public ClusterSizeReport(int sectorsPerCluster, int clusterBytes, long filesWritten, long filesFailed, long bytesWritten, long slackBytes,
+                             double averageChainLength, long maxChainLength, double averageExtents, long fatBytesOnDisk, long fatHeapBytes, long elapsedNanos) {
+        this.sectorsPerCluster = sectorsPerCluster;
+        this.clusterBytes = clusterBytes;
+        this.skipReason = null;
+        this.filesWritten = filesWritten;
+        this.filesFailed = filesFailed;
+        this.bytesWritten = bytesWritten;
+        this.slackBytes = slackBytes;
+        this.averageChainLength = averageChainLength;
+        this.maxChainLength = maxChainLength;
+        this.averageExtents = averageExtents;
+        this.fatBytesOnDisk = fatBytesOnDisk;
+        this.fatHeapBytes = fatHeapBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Constructs the report of a candidate that was not replayed.
+     *
+     * @param sectorsPerCluster The cluster size of the candidate in sectors.
+     * @param clusterBytes      The cluster size of the candidate in bytes.
+     * @param fatBytesOnDisk    The size of both FATs on the disk , 0 if the layout is impossible.
+     * @param fatHeapBytes      The estimated memory the FATs would take , 0 if the layout is impossible.
+     * @param skipReason        Why the candidate was not replayed.
+     */
+    public ClusterSizeReport(int sectorsPerCluster, int clusterBytes, long fatBytesOnDisk, long fatHeapBytes, String skipReason) {
+        this.sectorsPerCluster = sectorsPerCluster;
+        this.clusterBytes = clusterBytes;
+        this.skipReason = skipReason;
+        this.filesWritten = 0;
+        this.filesFailed = 0;
+        this.bytesWritten = 0;
+        this.slackBytes = 0;
+        this.averageChainLength = 0;
+        this.maxChainLength = 0;
+        this.averageExtents = 0;
+        this.fatBytesOnDisk = fatBytesOnDisk;
+        this.fatHeapBytes = fatHeapBytes;
+        this.elapsedNanos = 0;
+    }
+
+    /**
+     * Tells whether the sample was replayed with this cluster size.
+     *
+     * @return False if the candidate was skipped , see {@link #getSkipReason()}.
+     */
+    public boolean isReplayed() {
+        return skipReason == null;
+    }
+
+    /**
+     * Tells whether the whole sample fitted on the disk.
+     *
+     * @return True if the candidate was replayed and no file failed.
+     */
+    public boolean isFitting() {
+        return isReplayed() && filesFailed == 0;
+    }
+
+    /**
+     * Retrieves the cluster size of the candidate.
+     *
+     * @return The number of sectors of a cluster.
+     */
+    public int getSectorsPerCluster() {
+        return sectorsPerCluster;
+    }
+
+    /**
+     * Retrieves the cluster size of the candidate in bytes.
+     *
+     * @return The number of bytes of a cluster.
+     */
+    public int getClusterBytes() {
+        return clusterBytes;
+    }
+
+    /**
+     * Retrieves why the candidate was not replayed.
+     *
+     * @return The reason , null if the candidate was replayed.
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+
+    /**
+     * Retrieves the number of files of the sample written to the disk.
+     *
+     * @return The number of files written.
+     */
+    public long getFilesWritten() {
+        return filesWritten;
+    }
+
+    /**
+     * Retrieves the number of files of the sample that did not fit on the disk.
+     *
+     * @return The number of failed files.
+     */
+    public long getFilesFailed() {
+        return filesFailed;
+    }
+
+    /**
+     * Retrieves the size of the files written.
+     *
+     * @return The total number of bytes of the files written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Retrieves the slack of the sample , as {@link VirtualDisk#calculateTotalSlackSpace()} measured it.
+     *
+     * @return The bytes allocated to the files but not used by them.
+     */
+    public long getSlackBytes() {
+        return slackBytes;
+    }
+
+    /**
+     * Computes the share of the allocated space lost in slack.
+     *
+     * @return The slack divided by the allocated bytes , between 0 and 1.
+     */
+    public double getSlackRatio() {
+        long allocated = bytesWritten + slackBytes;
+        return allocated == 0 ? 0 : (double) slackBytes / allocated;
+    }
+
+    /**
+     * Retrieves the average length of the allocation chains.
+     *
+     * @return The average number of clusters of a file.
+     */
+    public double getAverageChainLength() {
+        return averageChainLength;
+    }
+
+    /**
+     * Retrieves the length of the longest allocation chain.
+     *
+     * @return The number of clusters of the largest file.
+     */
+    public long getMaxChainLength() {
+        return maxChainLength;
+    }
+
+    /**
+     * Retrieves the average fragmentation of the files.
+     *
+     * @return The average number of extents of a file.
+     */
+    public double getAverageExtents() {
+        return averageExtents;
+    }
+
+    /**
+     * Retrieves the space both FATs take on the disk.
+     *
+     * @return The number of bytes of the Main and Backup FATs.
+     */
+    public long getFatBytesOnDisk() {
+        return fatBytesOnDisk;
+    }
+
+    /**
+     * Retrieves the estimated memory both FATs take once the disk is open.
+     *
+     * @return The estimated number of heap bytes.
+     */
+    public long getFatHeapBytes() {
+        return fatHeapBytes;
+    }
+
+    /**
+     * Retrieves the duration of the replay.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Computes the write throughput of the replay.
+     *
+     * @return The number of bytes written per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesWritten * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Computes the file creation rate of the replay.
+     *
+     * @return The number of files written per second.
+     */
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : filesWritten * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (!isReplayed()) {
+            return String.format("ClusterSizeReport{cluster=%d, skipped=%s}", clusterBytes, skipReason);
+        }
+        return String.format("ClusterSizeReport{cluster=%d, files=%d, failed=%d, slack=%d (%.1f%%), chain=%.1f/%d, extents=%.2f, fatDisk=%d, fatHeap=%d, files/s=%.0f, MB/s=%.1f}",
+                clusterBytes, filesWritten, filesFailed, slackBytes, getSlackRatio() * 100, averageChainLength, maxChainLength, averageExtents,
+                fatBytesOnDisk, fatHeapBytes, getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link VirtualDisk#exportAll(java.nio.file.Path)} : how many files were exported to the host,
+ * how many bytes they held , how long it took , and why the others failed.
+ */
+public class ExportSummary {
+
+    private final long filesExported;
+    private final long bytesExported;
+    private final long elapsedNanos;
+    private final List<String> failures;
+
+    /**
+     * Constructs the summary of an export.
+     *
+     * @param filesExported The number of files written to the host.
+     * @param bytesExported The total size of the files written.
+     * @param elapsedNanos  The duration of the whole export in nanoseconds.
+     * @param failures      One line per file that could not be exported , its name on the disk followed by the reason.
+     */
+    public ExportSummary(long filesExported, long bytesExported, long elapsedNanos, List<String> failures) {
+        this.filesExported = filesExported;
+        this.bytesExported = bytesExported;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Retrieves the number of files exported.
+     *
+     * @return The number of files written to the host.
+     */
+    public long getFilesExported() {
+        return filesExported;
+    }
+
+    /**
+     * Retrieves the number of files that could not be exported.
+     *
+     * @return The number of failed files.
+     */
+    public long getFilesFailed() {
+        return failures.size();
+    }
+
+    /**
+     * Retrieves the number of bytes exported.
+     *
+     * @return The total size of the files written to the host.
+     */
+    public long getBytesExported() {
+        return bytesExported;
+    }
+
+    /**
+     * Retrieves the duration of the export.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the reasons of the failures.
+     *
+     * @return One line per failed file , its name on the disk followed by the reason.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Computes the export throughput.
+     *
+     * @return The number of bytes exported per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesExported * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExportSummary{files=%d, failed=%d, bytes=%d, seconds=%.2f, MB/s=%.1f}",
+                filesExported, getFilesFailed(), bytesExported, elapsedNanos / 1e9, getBytesPerSecond() / (1024 * 1024));
+    }
+}
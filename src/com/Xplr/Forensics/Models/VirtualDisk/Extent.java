@@ -0,0 +1,61 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+/**
+ * A run of bytes of a file that lie one after the other in the disk image , that is a run of clusters
+ * following each other in the allocation chain and on the disk.
+ */
+public final class Extent {
+
+    private final long diskOffset;
+    private final long length;
+
+    /**
+     * Constructs an extent.
+     *
+     * @param diskOffset The byte offset of the extent in the disk image.
+     * @param length     The number of bytes of the file held by the extent.
+     */
+    public Extent(long diskOffset, long length) {
+        this.diskOffset = diskOffset;
+        this.length = length;
+    }
+
+    /**
+     * Retrieves the position of the extent.
+     *
+     * @return The byte offset of the extent in the disk image.
+     */
+    public long getDiskOffset() {
+        return diskOffset;
+    }
+
+    /**
+     * Retrieves the size of the extent.
+     *
+     * @return The number of bytes of the file held by the extent.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "Extent{offset=" + diskOffset + ", length=" + length + "}";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Decides which host files {@link VirtualDisk#importTree(Path, ImportFilter)} writes to the disk. The filter is
+ * called from the thread importing the file , many files at once , so it must be thread safe.
+ */
+@FunctionalInterface
+public interface ImportFilter {
+
+    /**
+     * The filter importing every file.
+     */
+    ImportFilter ALL = (hostFile, name) -> true;
+
+    /**
+     * Tells whether a host file is to be imported.
+     *
+     * @param hostFile The host file , it may be read.
+     * @param name     The name the file would have on the disk.
+     * @return True to import the file , false to skip it.
+     * @throws IOException If the file cannot be examined , it is then reported as failed.
+     */
+    boolean accept(Path hostFile, String name) throws IOException;
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link VirtualDisk#importTree(java.nio.file.Path)} : how many host files were imported,
+ * how many were skipped by the import filter , how many bytes they held , how long it took , and why the others failed.
+ */
+public class ImportSummary {
+
+    private final long filesImported;
+    private final long filesSkipped;
+    private final long bytesImported;
+    private final long elapsedNanos;
+    private final List<String> failures;
+
+    /**
+     * Constructs the summary of an import.
+     *
+     * @param filesImported The number of files written to the disk.
+     * @param filesSkipped  The number of files rejected by the import filter.
+     * @param bytesImported The total size of the files written.
+     * @param elapsedNanos  The duration of the whole import in nanoseconds.
+     * @param failures      One line per file that could not be imported , its host path followed by the reason.
+     */
+    public ImportSummary(long filesImported, long filesSkipped, long bytesImported, long elapsedNanos, List<String> failures) {
+        this.filesImported = filesImported;
+        this.filesSkipped = filesSkipped;
+        this.bytesImported = bytesImported;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Retrieves the number of files imported.
+     *
+     * @return The number of files written to the disk.
+     */
+    public long getFilesImported() {
+        return filesImported;
+    }
+
+    /**
+     * Retrieves the number of files skipped.
+     *
+     * @return The number of files rejected by the import filter.
+     */
+    public long getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    /**
+     * Retrieves the number of files that could not be imported.
+     *
+     * @return The number of failed files.
+     */
+    public long getFilesFailed() {
+        return failures.size();
+    }
+
+    /**
+     * Retrieves the number of bytes imported.
+     *
+     * @return The total size of the files written to the disk.
+     */
+    public long getBytesImported() {
+        return bytesImported;
+    }
+
+    /**
+     * Retrieves the duration of the import.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the reasons of the failures.
+     *
+     * @return One line per failed file , its host path followed by the reason.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Computes the import throughput.
+     *
+     * @return The number of bytes imported per second.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesImported * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Computes the import rate.
+     *
+     * @return The number of files imported per second.
+     */
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : filesImported * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportSummary{files=%d, skipped=%d, failed=%d, bytes=%d, seconds=%.2f, files/s=%.0f, MB/s=%.1f}",
+                filesImported, filesSkipped, getFilesFailed(), bytesImported, elapsedNanos / 1e9, getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import com.Xplr.Forensics.Models.Sector.TrackingSector;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Reads and writes incremental disk images.
+ * <p>
+ * An incremental image only holds the cluster-sized blocks that changed between two checkpoints of a
+ * {@link VirtualDisk}, preceded by a small header. Contiguous changed blocks are coalesced into runs so
+ * that applying the increment onto a base image is a handful of large positional writes.
+ * </p>
+ *
+ * <p>An increment only makes sense on an image of the disk it was taken from , at a checkpoint its blocks bring up
+ * to date. The blocks it does not hold were last written at some checkpoint up to the one it starts from , the header
+ * records the latest of them : a base taken from that checkpoint up to the one the increment leads to is brought to
+ * the latter. Every image records its disk and its checkpoint in its {@link TrackingSector} , so {@link #apply} only
+ * reads that sector of the base to reject an image of another disk , one an increment was skipped on , or one that is
+ * mounted. It then records the checkpoint the increment leads to in the same sector.</p>
+ *
+ * <p>Layout (every number is little-endian) :</p>
+ * <pre>
+ * 0x00  8 bytes  magic "XPLRINC3"
+ * 0x08  8 bytes  size of the disk image in bytes
+ * 0x10  4 bytes  block size in bytes
+ * 0x14  4 bytes  sector size in bytes
+ * 0x18 16 bytes  identifier of the disk , most significant half first
+ * 0x28  8 bytes  checkpoint the increment starts from
+ * 0x30  8 bytes  oldest checkpoint a base can be at
+ * 0x38  8 bytes  checkpoint the increment leads to
+ * 0x40  4 bytes  number of runs
+ * then for every run : 4 bytes first block , 4 bytes block count , followed by the raw block bytes
+ * </pre>
+ */
+public final class IncrementalImage {
+
+    /**
+     * The signature found at the very beginning of every incremental image.
+     */
+    public static final byte[] MAGIC = {'X', 'P', 'L', 'R', 'I', 'N', 'C', '3'};
+
+    /**
+     * The signatures of the increments written before the header recorded the disk they were taken from.
+     */
+    private static final byte[][] UNCHECKED_MAGICS = {{'X', 'P', 'L', 'R', 'I', 'N', 'C', '1'}, {'X', 'P', 'L', 'R', 'I', 'N', 'C', '2'}};
+
+    /**
+     * The size in bytes of the fixed header.
+     */
+    public static final int HEADER_SIZE = 0x44;
+
+    private IncrementalImage() {
+        // Only static helpers here
+    }
+
+    /**
+     * Writes the changed blocks of an image into an incremental image file.
+     * The content must not change while the blocks are copied.
+     *
+     * @param path            The path of the incremental image to create (overwritten if it exists).
+     * @param content         The storage holding the current content of the disk image.
+     * @param blockSize       The size of a block in bytes.
+     * @param sectorSize      The size of a sector of the disk in bytes , it locates the tracking sector of a base.
+     * @param diskId          The identifier of the disk.
+     * @param changedBlocks   The bitmap of blocks to export.
+     * @param sinceCheckpoint The checkpoint the increment starts from.
+     * @param oldestBase      The oldest checkpoint a base can be at , see {@link ChangedBlockTracker#oldestBaseFor(long)}.
+     * @param toCheckpoint    The checkpoint the increment leads to.
+     * @return The number of bytes of block data written , the header excluded.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public static long write(Path path, DiskStorage content, int blockSize, int sectorSize, UUID diskId, BitSet changedBlocks,
+                             long sinceCheckpoint, long oldestBase, long toCheckpoint) throws IOException {
+        // First let's count the runs so that the header is complete before any block is written
+        int runCount = 0;
+        for (int block = changedBlocks.nextSetBit(0); block >= 0; block = changedBlocks.nextSetBit(changedBlocks.nextClearBit(block))) {
+            runCount++;
+        }
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC);
+            header.putLong(content.size());
+            header.putInt(blockSize);
+            header.putInt(sectorSize);
+            header.putLong(diskId.getMostSignificantBits());
+            header.putLong(diskId.getLeastSignificantBits());
+            header.putLong(sinceCheckpoint);
+            header.putLong(oldestBase);
+            header.putLong(toCheckpoint);
+            header.putInt(runCount);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer runHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            int block = changedBlocks.nextSetBit(0);
+            while (block >= 0) {
+                int end = changedBlocks.nextClearBit(block); // The run covers [block, end)
+                long start = (long) block * blockSize;
+                long length = Math.min((long) (end - block) * blockSize, content.size() - start);
+
+                runHeader.clear();
+                runHeader.putInt(block).putInt(end - block).flip();
+                writeFully(channel, runHeader);
+                // The run is handed straight from the disk storage to the file
+                content.transferTo(start, length, channel);
+                written += length;
+
+                block = changedBlocks.nextSetBit(end);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Applies an incremental image onto a base image file.
+     * <p>
+     * The base image must be a closed image of the disk the increment was taken from , at a checkpoint from the
+     * oldest one the increment accepts to the one it leads to. An empty base is extended to the disk size , which
+     * means an increment holding every block written since the disk was created can be applied onto an empty file
+     * to rebuild the written part of the disk. A series of increments is applied in the order it was exported in ,
+     * every one of them finds the base where the previous one left it.
+     * </p>
+     *
+     * @param baseImage        The full image to update in place.
+     * @param incrementalImage The incremental image to apply.
+     * @return The checkpoint the base image now corresponds to.
+     * @throws IOException If an I/O error occurs , if the incremental image is malformed or if the base image is not
+     *                     one the increment can bring up to date. The base is left untouched when the header or the base
+     *                     is rejected , and left marked open when the runs turn out to be truncated or malformed.
+     */
+    public static long apply(Path baseImage, Path incrementalImage) throws IOException {
+        try (FileChannel increment = FileChannel.open(incrementalImage, StandardOpenOption.READ);
+             FileChannel base = FileChannel.open(baseImage, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(increment, header);
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            for (byte[] unchecked : UNCHECKED_MAGICS) {
+                if (Arrays.equals(magic, unchecked)) {
+                    throw new IOException("The incremental image " + incrementalImage + " was written by an older version and does not record the disk it was taken from , export it again.");
+                }
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an incremental image: " + incrementalImage);
+            }
+            long imageSize = header.getLong();
+            int blockSize = header.getInt();
+            int sectorSize = header.getInt();
+            UUID diskId = new UUID(header.getLong(), header.getLong());
+            long sinceCheckpoint = header.getLong();
+            long oldestBase = header.getLong();
+            long toCheckpoint = header.getLong();
+            int runCount = header.getInt();
+            long trackingOffset = (long) TrackingSector.TRACKING_LBA * sectorSize;
+            if (imageSize < 0 || blockSize <= 0 || sectorSize < 512 || trackingOffset + sectorSize > imageSize || runCount < 0
+                    || oldestBase < 0 || oldestBase > sinceCheckpoint || sinceCheckpoint >= toCheckpoint) {
+                throw new IOException("Malformed incremental image header: " + incrementalImage);
+            }
+
+            // Nothing is written before we know the base is one the increment brings up to date
+            if (base.size() == 0) {
+                if (oldestBase != 0) {
+                    throw new IOException("The increment " + incrementalImage + " only holds the blocks written since checkpoint " + sinceCheckpoint
+                            + " , it needs a base image at checkpoint " + oldestBase + " or later , not an empty file.");
+                }
+            } else {
+                if (base.size() != imageSize) {
+                    throw new IOException("The base image holds " + base.size() + " bytes but the increment " + incrementalImage
+                            + " was taken from a disk of " + imageSize + " bytes.");
+                }
+                ByteBuffer sector = ByteBuffer.allocate(sectorSize);
+                readFully(base, sector, trackingOffset);
+                TrackingSector tracking = new TrackingSector(sector.array());
+                if (!tracking.hasValidSignature()) {
+                    throw new IOException("The base image does not record the disk it was taken from , the increment " + incrementalImage + " cannot be applied safely.");
+                }
+                if (!tracking.getDiskId().equals(diskId)) {
+                    throw new IOException("The base image was taken from the disk " + tracking.getDiskId() + " but the increment "
+                            + incrementalImage + " from the disk " + diskId + ".");
+                }
+                if (tracking.isOpen()) {
+                    throw new IOException("The base image is mounted or was not closed cleanly , it may hold writes made after checkpoint " + tracking.getCheckpoint() + ".");
+                }
+                if (tracking.getCheckpoint() < oldestBase || tracking.getCheckpoint() > toCheckpoint) {
+                    throw new IOException("The base image is at checkpoint " + tracking.getCheckpoint() + " but the increment " + incrementalImage
+                            + " brings up to date the images from checkpoint " + oldestBase + " to " + toCheckpoint + ".");
+                }
+            }
+
+            if (base.size() < imageSize) {
+                // We make sure the base is as large as the disk so that every run lands inside it
+                base.write(ByteBuffer.wrap(new byte[1]), imageSize - 1);
+            }
+            // The base is marked open while the runs land , so that an apply cut short leaves an image nobody trusts
+            writeFully(base, ByteBuffer.wrap(new TrackingSector(sectorSize, diskId, toCheckpoint, true).getTrackingBytes()), trackingOffset);
+
+            ByteBuffer runHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int run = 0; run < runCount; run++) {
+                runHeader.clear();
+                readFully(increment, runHeader);
+                runHeader.flip();
+                int first = runHeader.getInt();
+                int count = runHeader.getInt();
+                long start = (long) first * blockSize;
+                if (first < 0 || count <= 0 || start >= imageSize) {
+                    throw new IOException("Malformed run in incremental image " + incrementalImage + " at offset " + (increment.position() - 8) + ".");
+                }
+                long length = Math.min((long) count * blockSize, imageSize - start);
+
+                // The run is moved between the two files by the kernel , it never lands on the heap
+                long transferred = 0;
+                while (transferred < length) {
+                    long moved = increment.transferTo(increment.position(), length - transferred, base.position(start + transferred));
+                    if (moved <= 0) {
+                        throw new IOException("Truncated incremental image: " + incrementalImage);
+                    }
+                    increment.position(increment.position() + moved);
+                    transferred += moved;
+                }
+            }
+
+            // Last , the base records where it now is , a run holding the tracking sector of the live disk included
+            writeFully(base, ByteBuffer.wrap(new TrackingSector(sectorSize, diskId, toCheckpoint, false).getTrackingBytes()), trackingOffset);
+            return toCheckpoint;
+        }
+    }
+
+    /**
+     * Records in an image file the disk and the checkpoint it holds , once it was written entirely.
+     *
+     * @param image      The image file.
+     * @param sectorSize The size of a sector of the disk in bytes.
+     * @param diskId     The identifier of the disk.
+     * @param checkpoint The checkpoint the image holds.
+     * @throws IOException If the sector cannot be written.
+     */
+    static void seal(FileChannel image, int sectorSize, UUID diskId, long checkpoint) throws IOException {
+        writeFully(image, ByteBuffer.wrap(new TrackingSector(sectorSize, diskId, checkpoint, false).getTrackingBytes()),
+                (long) TrackingSector.TRACKING_LBA * sectorSize);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of incremental image.");
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of image.");
+            }
+            position += read;
+        }
+    }
+}
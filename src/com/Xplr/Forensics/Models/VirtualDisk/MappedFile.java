@@ -0,0 +1,174 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A read-only view over the content of a file of a {@link VirtualDisk} , returned by {@link VirtualDisk#mapFile(String)}.
+ * <p>
+ * The view is made of one buffer per extent of the file , each one given by the storage of the disk over the
+ * image itself : nothing of the file is copied for an in-memory or a file backed disk. A file held in a single
+ * extent is available as one plain {@link ByteBuffer} through {@link #getBuffer()} ; a fragmented file is read
+ * through the absolute accessors of this class , which find the extent holding the requested position.
+ * </p>
+ *
+ * <p>
+ * The view is not locked : it keeps showing the clusters the file had when it was mapped , if the file is
+ * deleted the bytes seen through it belong to whatever file gets these clusters next.
+ * </p>
+ */
+public class MappedFile {
+
+    /**
+     * The buffers of the extents , in file order.
+     */
+    private final ByteBuffer[] extents;
+
+    /**
+     * The position in the file of the first byte of every extent , plus the file size as a last element.
+     */
+    private final long[] extentStarts;
+
+    /**
+     * Constructs a view over the given extent buffers.
+     *
+     * @param extents The read-only buffers of the extents , in file order.
+     */
+    MappedFile(ByteBuffer[] extents) {
+        this.extents = extents;
+        this.extentStarts = new long[extents.length + 1];
+        for (int i = 0; i < extents.length; i++) {
+            extentStarts[i + 1] = extentStarts[i] + extents[i].limit();
+        }
+    }
+
+    /**
+     * Retrieves the size of the file.
+     *
+     * @return The number of bytes of the view.
+     */
+    public long size() {
+        return extentStarts[extents.length];
+    }
+
+    /**
+     * Tells whether the whole file lies in one extent , and can thus be used as a single buffer.
+     *
+     * @return True if the file is not fragmented.
+     */
+    public boolean isContiguous() {
+        return extents.length <= 1;
+    }
+
+    /**
+     * Retrieves the file as a single read-only buffer.
+     *
+     * @return A buffer over the whole file , a new independent view on every call.
+     * @throws IllegalStateException If the file is fragmented , see {@link #isContiguous()}.
+     */
+    public ByteBuffer getBuffer() {
+        if (!isContiguous()) {
+            throw new IllegalStateException("The file is fragmented in " + extents.length + " extents.");
+        }
+        return extents.length == 0 ? ByteBuffer.allocate(0).asReadOnlyBuffer() : extents[0].duplicate();
+    }
+
+    /**
+     * Retrieves the buffers of the extents.
+     *
+     * @return A new independent view of every extent , in file order.
+     */
+    public ByteBuffer[] getExtentBuffers() {
+        ByteBuffer[] views = new ByteBuffer[extents.length];
+        for (int i = 0; i < extents.length; i++) {
+            views[i] = extents[i].duplicate();
+        }
+        return views;
+    }
+
+    /**
+     * Reads one byte of the file.
+     *
+     * @param position The position of the byte in the file.
+     * @return The byte.
+     * @throws IndexOutOfBoundsException If the position is outside the file.
+     */
+    public byte get(long position) {
+        int extent = extentOf(position);
+        return extents[extent].get((int) (position - extentStarts[extent]));
+    }
+
+    /**
+     * Copies bytes of the file into an array , across as many extents as needed.
+     *
+     * @param position    The position in the file of the first byte to copy.
+     * @param destination The array receiving the bytes.
+     * @param offset      The offset in {@code destination} of the first byte to fill.
+     * @param length      The number of bytes to copy.
+     * @throws IndexOutOfBoundsException If the range goes past the end of the file.
+     */
+    public void get(long position, byte[] destination, int offset, int length) {
+        if (position < 0 || position + length > size()) {
+            throw new IndexOutOfBoundsException("Range " + position + "+" + length + " is outside a file of " + size() + " bytes.");
+        }
+        int done = 0;
+        while (done < length) {
+            long current = position + done;
+            int extent = extentOf(current);
+            int inExtent = (int) (current - extentStarts[extent]);
+            int chunk = Math.min(length - done, extents[extent].limit() - inExtent);
+            extents[extent].get(inExtent, destination, offset + done, chunk);
+            done += chunk;
+        }
+    }
+
+    /**
+     * Gives a read-only buffer over a range of the file. When the range lies in one extent the buffer is a view
+     * over the storage , otherwise the range is copied into a new buffer.
+     *
+     * @param position The position in the file of the first byte of the range.
+     * @param length   The number of bytes of the range.
+     * @return A buffer over the range , in little-endian order like every structure of the disk.
+     */
+    public ByteBuffer slice(long position, int length) {
+        int extent = extentOf(position);
+        long inExtent = position - extentStarts[extent];
+        ByteBuffer slice;
+        if (inExtent + length <= extents[extent].limit()) {
+            slice = extents[extent].slice((int) inExtent, length);
+        } else {
+            byte[] copy = new byte[length];
+            get(position, copy, 0, length);
+            slice = ByteBuffer.wrap(copy).asReadOnlyBuffer();
+        }
+        return slice.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Finds the extent holding a position of the file.
+     */
+    private int extentOf(long position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " is outside a file of " + size() + " bytes.");
+        }
+        int found = Arrays.binarySearch(extentStarts, position);
+        return found >= 0 ? found : -found - 2; // Not an extent start : the extent before the insertion point holds it
+    }
+}
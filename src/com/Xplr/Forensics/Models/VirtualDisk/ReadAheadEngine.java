@@ -0,0 +1,156 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import com.Xplr.Forensics.Models.FAT.FAT;
+import com.Xplr.Forensics.Models.FAT.FATEntry;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+
+/**
+ * Sequential read-ahead over the allocation chain of one open file.
+ * <p>
+ * The engine is told about every cluster the reader consumes. As long as the reader moves forward one cluster
+ * at a time , the engine walks the FAT chain ahead of it and asks the storage to prefetch the upcoming clusters,
+ * merging physically contiguous clusters into a single request. The window starts small and doubles on every
+ * refill while the access stays sequential , up to {@link #MAX_WINDOW} clusters ; a jump resets it.
+ * A refill is triggered once the reader has consumed half of what was prefetched , so the next window is
+ * already on its way before the reader needs it.
+ * </p>
+ */
+public class ReadAheadEngine {
+
+    /**
+     * The number of clusters prefetched when a sequential access is first detected.
+     */
+    public static final int INITIAL_WINDOW = 4;
+
+    /**
+     * The largest number of clusters kept in flight ahead of the reader.
+     */
+    public static final int MAX_WINDOW = 256;
+
+    private final FAT fat;
+    private final DiskStorage storage;
+    private final VirtualDisk disk;
+
+    /**
+     * The current window size in clusters.
+     */
+    private int window = INITIAL_WINDOW;
+
+    /**
+     * The chain index of the last cluster the reader consumed , -1 before the first read.
+     */
+    private long lastIndex = -1;
+
+    /**
+     * The chain index and the cluster id up to which the prefetch requests were issued.
+     */
+    private long prefetchedIndex = -1;
+    private int prefetchedCluster;
+
+    /**
+     * Whether the end of the chain was met while walking ahead.
+     */
+    private boolean chainEnded;
+
+    /**
+     * Constructs a read-ahead engine for a file.
+     *
+     * @param disk    The disk holding the file , used for the cluster geometry.
+     * @param fat     The FAT holding the allocation chain of the file.
+     * @param storage The storage receiving the prefetch requests.
+     */
+    public ReadAheadEngine(VirtualDisk disk, FAT fat, DiskStorage storage) {
+        this.disk = disk;
+        this.fat = fat;
+        this.storage = storage;
+    }
+
+    /**
+     * Notifies the engine that the reader is consuming a cluster of the chain.
+     *
+     * @param chainIndex The position of the cluster in the allocation chain , 0 for the first cluster.
+     * @param clusterId  The id of the cluster.
+     */
+    public void onClusterRead(long chainIndex, int clusterId) {
+        boolean sequential = chainIndex == lastIndex + 1;
+        lastIndex = chainIndex;
+        if (!sequential || chainIndex > prefetchedIndex) {
+            // Random access , or the reader outran us : let's restart from where the reader is
+            if (!sequential) {
+                window = INITIAL_WINDOW;
+            }
+            prefetchedIndex = chainIndex;
+            prefetchedCluster = clusterId;
+            chainEnded = false;
+            if (!sequential) {
+                return; // We wait for a second sequential read before spending I/O on a guess
+            }
+        }
+
+        long ahead = prefetchedIndex - chainIndex;
+        if (!chainEnded && ahead <= window / 2) {
+            issuePrefetch(chainIndex + window);
+            window = Math.min(MAX_WINDOW, window * 2); // The access is still sequential , let's go further next time
+        }
+    }
+
+    /**
+     * Walks the chain from the last prefetched cluster up to the given chain index , issuing one prefetch
+     * request per physically contiguous run of clusters.
+     */
+    private void issuePrefetch(long targetIndex) {
+        int clusterBytes = disk.getClusterSizeInSectors() * disk.getSectorSize();
+        long runStart = -1;
+        long runLength = 0;
+        int cluster = prefetchedCluster;
+        while (prefetchedIndex < targetIndex) {
+            FATEntry entry = fat.findFATEntryUsingClusterIdentification(cluster);
+            if (entry == null || entry.isEndOfChain() || entry.isFREE()) {
+                chainEnded = true;
+                break;
+            }
+            int next = entry.getFatEntryValue();
+            long offset = disk.clusterToByteOffset(next);
+            if (runStart >= 0 && offset == runStart + runLength) {
+                runLength += clusterBytes; // Contiguous with the current run
+            } else {
+                if (runStart >= 0) {
+                    storage.prefetch(runStart, runLength);
+                }
+                runStart = offset;
+                runLength = clusterBytes;
+            }
+            cluster = next;
+            prefetchedIndex++;
+        }
+        prefetchedCluster = cluster;
+        if (runStart >= 0) {
+            storage.prefetch(runStart, runLength);
+        }
+    }
+
+    /**
+     * Retrieves the current window size.
+     *
+     * @return The number of clusters the next refill will prefetch.
+     */
+    public int getWindow() {
+        return window;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+/**
+ * A run of slack or unallocated bytes streamed out of a {@link VirtualDisk} , with where it comes from in the
+ * image and where it went in the extracted stream.
+ */
+public final class SpaceRegion {
+
+    private final long imageOffset;
+    private final long length;
+    private final int firstCluster;
+    private final int clusterCount;
+    private final String ownerFileName;
+    private final long outputOffset;
+
+    /**
+     * Constructs a region.
+     *
+     * @param imageOffset   The byte offset of the region in the disk image.
+     * @param length        The number of bytes of the region.
+     * @param firstCluster  The cluster holding the first byte of the region.
+     * @param clusterCount  The number of clusters the region spans.
+     * @param ownerFileName The file whose last cluster holds the slack , null for unallocated space.
+     * @param outputOffset  The position of the first byte of the region in the extracted stream.
+     */
+    public SpaceRegion(long imageOffset, long length, int firstCluster, int clusterCount, String ownerFileName, long outputOffset) {
+        this.imageOffset = imageOffset;
+        this.length = length;
+        this.firstCluster = firstCluster;
+        this.clusterCount = clusterCount;
+        this.ownerFileName = ownerFileName;
+        this.outputOffset = outputOffset;
+    }
+
+    /**
+     * Retrieves the position of the region in the image.
+     *
+     * @return The byte offset of the region in the disk image.
+     */
+    public long getImageOffset() {
+        return imageOffset;
+    }
+
+    /**
+     * Retrieves the size of the region.
+     *
+     * @return The number of bytes of the region.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Retrieves the first cluster of the region.
+     *
+     * @return The ID of the cluster holding the first byte.
+     */
+    public int getFirstCluster() {
+        return firstCluster;
+    }
+
+    /**
+     * Retrieves the number of clusters of the region.
+     *
+     * @return The number of clusters , always 1 for slack.
+     */
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    /**
+     * Retrieves the file the slack belongs to.
+     *
+     * @return The name of the file , null for unallocated space.
+     */
+    public String getOwnerFileName() {
+        return ownerFileName;
+    }
+
+    /**
+     * Retrieves the position of the region in the extracted stream.
+     *
+     * @return The number of bytes extracted before the region.
+     */
+    public long getOutputOffset() {
+        return outputOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "SpaceRegion{offset=" + imageOffset + ", length=" + length + ", cluster=" + firstCluster
+                + ", clusters=" + clusterCount + ", owner=" + ownerFileName + ", output=" + outputOffset + "}";
+    }
+}
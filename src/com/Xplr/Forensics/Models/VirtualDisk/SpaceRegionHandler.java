@@ -0,0 +1,36 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics.Models.VirtualDisk;
+
+import java.io.IOException;
+
+/**
+ * Receives the regions streamed by {@link VirtualDisk#extractSlackSpace} and {@link VirtualDisk#extractUnallocatedSpace} ,
+ * in image order , each one once its bytes were written to the target. The handler is called from the extracting
+ * thread , so it needs no synchronization of its own.
+ */
+@FunctionalInterface
+public interface SpaceRegionHandler {
+
+    /**
+     * Handles a region , usually by recording it in a map of the extracted stream.
+     *
+     * @param region The region just extracted.
+     * @throws IOException If the region cannot be handled , the extraction is then stopped.
+     */
+    void handle(SpaceRegion region) throws IOException;
+}
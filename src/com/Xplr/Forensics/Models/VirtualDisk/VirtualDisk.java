@@ -17,25 +17,53 @@
 package com.Xplr.Forensics.Models.VirtualDisk;
 
 import com.Xplr.Forensics.Models.Cluster.Cluster;
-import com.Xplr.Forensics.Models.Cluster.ClusterBuilder;
+import com.Xplr.Forensics.Models.FAT.ClusterAllocator;
 import com.Xplr.Forensics.Models.FAT.FAT;
 import com.Xplr.Forensics.Models.FAT.FATEntry;
+import com.Xplr.Forensics.Models.Geometry.DiskGeometry;
 import com.Xplr.Forensics.Models.Journal.Journal;
 import com.Xplr.Forensics.Models.Journal.JournalBuilder;
 import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.Sector.BiosParameterBlock;
 import com.Xplr.Forensics.Models.Sector.BootSector;
 import com.Xplr.Forensics.Models.Sector.BootSectorBuilder;
+import com.Xplr.Forensics.Models.Sector.FSInfoSector;
 import com.Xplr.Forensics.Models.Sector.Sector;
 import com.Xplr.Forensics.Models.Sector.SectorBuilder;
+import com.Xplr.Forensics.Models.Sector.TrackingSector;
+import com.Xplr.Forensics.Models.Storage.ArrayDiskStorage;
+import com.Xplr.Forensics.Models.Storage.ClusterBufferPool;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Represents a virtual disk with functionalities for file storage, retrieval, and deletion.
@@ -43,21 +71,70 @@ import java.util.List;
  * root directory, and data content. It provides methods for creating, reading, writing, and deleting
  * files on the virtual disk, as well as calculating slack space and persisting the disk's state to an
  * image file.
+ *
+ * <p>
+ * The disk can be used by several threads at once. The directory and the allocation tables are guarded by a
+ * read-write lock : lookups run in parallel , while creations and deletions update them one at a time.
+ * The data of the files is guarded by per-file locks , striped over a fixed number of read-write locks ,
+ * so reading different files never serializes and the metadata lock is not held while data is copied.
+ * A thread always takes the file lock before the metadata lock.
+ * </p>
  */
 public class VirtualDisk {
 
+    /**
+     * The number of read-write locks the files are spread over , two files sharing a stripe simply share their lock.
+     */
+    private static final int FILE_LOCK_STRIPES = 64;
+
+    /**
+     * The largest buffer a file import streams through , and the bound of the buffers of all imports in flight.
+     */
+    private static final int IMPORT_CHUNK_BYTES = 1 << 20;
+    private static final long IMPORT_MAX_IN_FLIGHT_BYTES = 64L << 20;
+
+    /**
+     * The number of idle cluster buffers the buffer pool of a disk keeps besides the ones cached by each thread.
+     */
+    private static final int BUFFER_POOL_SHARED_BUFFERS = 256;
+
+    /**
+     * The data cluster holding the root directory journal , the first one of the data region as on a FAT32 volume.
+     */
+    public static final int JOURNAL_CLUSTER = DiskGeometry.FIRST_CLUSTER;
+
+    /**
+     * The number of clusters the slack extraction scans under one hold of the metadata lock.
+     */
+    private static final int SPACE_SCAN_WINDOW_CLUSTERS = 65536;
+
+    /**
+     * The suffix of the sidecar file holding the changed-block map of an image , next to the image.
+     */
+    public static final String TRACKER_SUFFIX = ".cbt";
+
     private Long disk_size; // This value corresponds to the value in bytes of the disk size
     private String disk_name; // This corresponds to the label of the disk
     private BootSector bootSector;
     private FAT Main; // This corresponds to the Main file Allocation table
     private FAT Backup; // This corresponds to the Backup file Allocation table
     private Journal rootDirectory;
-    private byte[] Content; // This is the variable that actually hold the byte array of the whole disk
+    private DiskStorage Content; // This is the backend that actually hold the bytes of the whole disk , a plain byte array by default
     private long totalSectorsOnDisk;
     private long totalClustersOnDisk;
     private int ClusterSizeInSectors; // This is the size of a cluster in terms of number of sectors it is supposed to hold
-    private int sectorSize = 512; // This corresponds to the size of a sector on the disk
-    private  ArrayList<Cluster> clusters; // This is the list of clusters that are formed on the disk based on the allocation of sectors
+    private int sectorSize = DiskGeometry.DEFAULT_SECTOR_SIZE; // This corresponds to the size of a sector on the disk , 512 bytes unless the disk was created with 4Kn sectors
+    private DiskGeometry geometry; // This is the layout of the disk , every cluster , sector and byte offset is computed from it
+    private ChangedBlockTracker changeTracker; // This keeps track of the clusters of the image that were modified since a given checkpoint
+    private UUID diskId; // This tells the images and increments of this disk from those of any other , the checkpoints only make sense within one disk
+    private Path imageFile; // The image file the disk writes in place , if any , its changed-block map is saved next to it on close
+    private ClusterOwnershipIndex ownershipIndex; // This tells which file owns each cluster , without walking the chains
+    private ClusterBufferPool bufferPool; // The cluster sized scratch buffers of the internal I/O paths are borrowed here
+    private ArrayList<Integer> journalClusters = new ArrayList<>(List.of(JOURNAL_CLUSTER)); // The chain holding the journal , it grows with the journal
+    private boolean fsInfoRebuilt; // Whether the FSInfo sector of the loaded image was missing or stale and had to be rewritten
+    private final byte[] fsInfoFields = new byte[8]; // The two FSInfo fields refreshed after every change , guarded by the metadata write lock
+    private final ReentrantReadWriteLock metadataLock = new ReentrantReadWriteLock(); // This guards the root directory and both FATs
+    private final ReentrantReadWriteLock[] fileLocks = newFileLocks(); // These guard the data of the files , a file uses the stripe its name hashes to
     /**
      * Constructor for creating a VirtualDisk with a specified disk name and size.
      *
@@ -65,21 +142,84 @@ public class VirtualDisk {
      * @param disk_size The size of the virtual disk in bytes.
      */
     public VirtualDisk(String disk_name, Long disk_size) {
+        this(disk_name, disk_size, new ArrayDiskStorage(disk_size)); // By default the whole disk lives in a byte array
+    }
+
+    /**
+     * Constructor for creating a VirtualDisk with a specified disk name , size and cluster size.
+     *
+     * @param disk_name            The name of the virtual disk.
+     * @param disk_size            The size of the virtual disk in bytes.
+     * @param clusterSizeInSectors The size of a cluster in sectors , a power of two up to 128.
+     * @throws IllegalArgumentException if the cluster size is not valid for this disk.
+     */
+    public VirtualDisk(String disk_name, Long disk_size, int clusterSizeInSectors) {
+        this(disk_name, disk_size, new ArrayDiskStorage(disk_size), clusterSizeInSectors);
+    }
+
+    /**
+     * Constructor for creating a VirtualDisk with a specified disk name and size , on top of a given storage backend.
+     * This allows the disk to live in a deduplicated cluster pool or in a host file instead of a heap array.
+     *
+     * @param disk_name The name of the virtual disk.
+     * @param disk_size The size of the virtual disk in bytes.
+     * @param storage   The backend holding the bytes of the disk , it must be zero filled and of the disk size.
+     * @throws IllegalArgumentException if the storage size does not match the disk size.
+     */
+    public VirtualDisk(String disk_name, Long disk_size, DiskStorage storage) {
+        this(disk_name, disk_size, storage, DiskGeometry.defaultSectorsPerCluster(disk_size)); // The cluster size grows with the disk size
+    }
+
+    /**
+     * Constructor for creating a VirtualDisk with a specified disk name , size and cluster size , on top of a given storage backend.
+     * The cluster size is used by the boot sector , both FATs and every offset computation of the disk.
+     *
+     * @param disk_name            The name of the virtual disk.
+     * @param disk_size            The size of the virtual disk in bytes.
+     * @param storage              The backend holding the bytes of the disk , it must be zero filled and of the disk size.
+     * @param clusterSizeInSectors The size of a cluster in sectors , a power of two up to 128.
+     * @throws IllegalArgumentException if the storage size does not match the disk size , or the cluster size is not valid for this disk.
+     */
+    public VirtualDisk(String disk_name, Long disk_size, DiskStorage storage, int clusterSizeInSectors) {
+        this(disk_name, disk_size, storage, clusterSizeInSectors, DiskGeometry.DEFAULT_SECTOR_SIZE);
+    }
+
+    /**
+     * Constructor for creating a VirtualDisk with a specified disk name , size , cluster size and sector size , on top of a given storage backend.
+     * The sector size is encoded in the boot sector and drives the FAT sizing and every offset computation of the disk ,
+     * a 4Kn disk (4096 bytes logical sectors) keeps its FATs , its journal and its clusters aligned on 4 KB pages.
+     *
+     * @param disk_name            The name of the virtual disk.
+     * @param disk_size            The size of the virtual disk in bytes.
+     * @param storage              The backend holding the bytes of the disk , it must be zero filled and of the disk size.
+     * @param clusterSizeInSectors The size of a cluster in sectors , a power of two up to 128.
+     * @param sectorSize           The size of a sector in bytes , a power of two from 512 to 4096.
+     * @throws IllegalArgumentException if the storage size does not match the disk size , or the cluster or sector size is not valid for this disk.
+     */
+    public VirtualDisk(String disk_name, Long disk_size, DiskStorage storage, int clusterSizeInSectors, int sectorSize) {
+        if (storage.size() != disk_size) {
+            throw new IllegalArgumentException("Storage size does not match the disk size.");
+        }
         this.disk_size = disk_size;
         this.disk_name = disk_name;
-        
-        if(disk_size<272629760) { this.ClusterSizeInSectors=1;} else if(disk_size<8589934592L) { this.ClusterSizeInSectors=8;} else if(disk_size<17179869184L){ this.ClusterSizeInSectors=16;} else if (disk_size<34359738368L) {this.ClusterSizeInSectors=32;};
-        this.Content = new byte[disk_size.intValue()]; // This is the size of the entire disk
-        this.bootSector = new BootSectorBuilder(disk_size, disk_name).Build(); // With this we hold the value of the bootsector
+
+        this.ClusterSizeInSectors = clusterSizeInSectors;
+        this.sectorSize = sectorSize;
+        this.geometry = DiskGeometry.layout(disk_size, sectorSize, ClusterSizeInSectors); // The reserved region , the FATs and the data region , it also checks the cluster and sector sizes
+        this.Content = storage; // This is the backend holding the entire disk
+        this.bootSector = new BootSectorBuilder(geometry, disk_name).Build(); // With this we hold the value of the bootsector , it records the geometry
         this.rootDirectory = new JournalBuilder().getRootDirectory(); // With this we actually initialize the root directory right
-        this.totalSectorsOnDisk = NumberOfSectorsOfTheEntireDisk(disk_size); // With this we know the exact number of sectors of the entire disk regardless of whether it is in the reserved region or not
-        this.totalClustersOnDisk = (disk_size / (ClusterSizeInSectors * sectorSize)); // This is the total number of clusters on the disk regardless of whether it is reserved or not , of course we will reserve the cluster 0 and 1 later
+        this.totalSectorsOnDisk = geometry.getTotalSectors(); // With this we know the exact number of sectors of the entire disk regardless of whether it is in the reserved region or not
+        this.totalClustersOnDisk = geometry.getClusterCount(); // This is the number of clusters of the data region , their ids start at 2
 
         DiskSectorsInitialization(); // With this i initialized the byte array of  the entire disk
-        Main = new FAT(this.disk_size, ClusterSizeInSectors * sectorSize);
-        Backup = new FAT(this.disk_size, 1 + (int) Main.getFATSize() + ClusterSizeInSectors * sectorSize); // Backup FAT after Main FAT, also making sure that the offset on the disk correspond to the cluster1
-        ArrayList<ArrayList<Integer>> ListOfSectorsClustersLba = FetchSectorsLbaForClusters(ClusterSizeInSectors, disk_size);
-        ArrayList<Cluster> clusters = GiveClusterFormationOnDisk(ListOfSectorsClustersLba, disk_size);
+        this.changeTracker = new ChangedBlockTracker(disk_size, ClusterSizeInSectors * sectorSize); // The freshly initialized disk is the checkpoint 0
+        this.bufferPool = new ClusterBufferPool(ClusterSizeInSectors * sectorSize, BUFFER_POOL_SHARED_BUFFERS);
+        this.ownershipIndex = new ClusterOwnershipIndex(geometry); // No file owns a cluster yet
+        this.diskId = UUID.randomUUID();
+        Main = new FAT(geometry, 0);
+        Backup = new FAT(geometry, 1); // Backup FAT right after the Main FAT
+        reserveMetadataClusters(); // The cluster holding the journal must never be handed out to a file
     }
 
 
@@ -91,397 +231,1557 @@ public class VirtualDisk {
      */
     public VirtualDisk(String disk_name) // This constructor is the one for a classic 1 Gb disk
     {
-        this.disk_size = 1073741824L; // 1GB
-        this.disk_name = disk_name;
-        this.ClusterSizeInSectors = 8; // Example: 8 sectors per cluster
-        this.Content = new byte[1073741824]; // This is the size of the entire disk
-        this.bootSector = new BootSectorBuilder(disk_size, disk_name).Build(); // With this we hold the value of the bootsector
-        this.rootDirectory = new JournalBuilder().getRootDirectory();// With this we actually initialize the root directory right
-        this.totalSectorsOnDisk = NumberOfSectorsOfTheEntireDisk(1073741824L); // With this we know the exact number of sectors of the entire disk regardless of whether it is in the reserved region r not
-        this.totalClustersOnDisk = 262144; // This is the total number of clusters on the disk regardless of whether it is reserved or not , of course we will reserve the cluster 0 and 1 later
+        this(disk_name, 1073741824L); // 1GB , its default cluster size is 8 sectors
+    }
+
+    /**
+     * Mounts an existing image. Everything about the layout comes from the boot sector , the FATs , the FSInfo
+     * sector and the journal are then read back from the storage ; nothing is formatted.
+     * The changed-block map saved next to the image file is reloaded when the image was closed at the checkpoint it
+     * records ; otherwise every cluster counts as changed and the disk starts a new history under a new identifier ,
+     * since the checkpoints of the image can no longer be told apart.
+     *
+     * @param storage    The backend holding the image.
+     * @param bootSector The boot sector read from sector 0 of the image.
+     * @param imageFile  The image file the storage was read from , null if there is none.
+     * @throws IllegalArgumentException if the boot sector does not describe a valid disk , or a disk larger than the image ,
+     *                                  or if the FATs or the root directory are not laid out the way this program writes them.
+     */
+    VirtualDisk(DiskStorage storage, BootSector bootSector, Path imageFile) {
+        this.geometry = bootSector.getGeometry();
+        if (geometry.lbaToByteOffset(geometry.getTotalSectors()) > storage.size()) {
+            throw new IllegalArgumentException("The image is smaller than the volume its boot sector describes.");
+        }
+        checkMountable(storage, bootSector); // Before anything , the FSInfo sector included , is written back to the image
+        this.disk_size = storage.size();
+        this.disk_name = bootSector.getBiosParameterBlock().getVolumeLabel();
+        this.ClusterSizeInSectors = geometry.getSectorsPerCluster();
+        this.sectorSize = geometry.getSectorSize();
+        this.Content = storage;
+        this.bootSector = bootSector;
+        this.rootDirectory = new JournalBuilder().getRootDirectory();
+        this.totalSectorsOnDisk = geometry.getTotalSectors();
+        this.totalClustersOnDisk = geometry.getClusterCount();
+
+        TrackingSector tracking = readTrackingSector();
+        this.changeTracker = reloadChangeTracker(tracking, imageFile);
+        if (changeTracker != null) {
+            this.diskId = tracking.getDiskId();
+        } else {
+            this.changeTracker = new ChangedBlockTracker(disk_size, ClusterSizeInSectors * sectorSize);
+            this.changeTracker.markAll(); // The whole content came from the image , an export since the checkpoint 0 must carry all of it
+            this.diskId = UUID.randomUUID();
+        }
+        this.bufferPool = new ClusterBufferPool(ClusterSizeInSectors * sectorSize, BUFFER_POOL_SHARED_BUFFERS);
+        this.ownershipIndex = new ClusterOwnershipIndex(geometry); // No file owns a cluster yet
+        Main = new FAT(geometry, 0);
+        Backup = new FAT(geometry, 1);
+        loadFATsFromDisk();
+        loadJournalFromDisk();
+        rebuildOwnershipIndex();
+    }
+
+    /**
+     * Reloads the changed-block map saved next to an image file , if it still describes the image.
+     *
+     * @param tracking  The tracking sector of the image.
+     * @param imageFile The image file , null if there is none.
+     * @return The tracker , null if the map is missing , stale or unreadable , or if the image was not closed cleanly.
+     */
+    private ChangedBlockTracker reloadChangeTracker(TrackingSector tracking, Path imageFile) {
+        if (imageFile == null || !tracking.hasValidSignature() || tracking.isOpen()) {
+            return null;
+        }
+        try {
+            return ChangedBlockTracker.load(trackerFileOf(imageFile), tracking.getDiskId(), tracking.getCheckpoint(), disk_size, ClusterSizeInSectors * sectorSize);
+        } catch (IOException e) {
+            return null; // An unreadable map is no better than a missing one , every cluster counts as changed
+        }
+    }
+
+    /**
+     * Locates the sidecar file holding the changed-block map of an image.
+     *
+     * @param imageFile The image file.
+     * @return The sidecar file , next to the image.
+     */
+    static Path trackerFileOf(Path imageFile) {
+        return imageFile.resolveSibling(imageFile.getFileName() + TRACKER_SUFFIX);
+    }
+
+    /**
+     * Reads the tracking sector of the disk content.
+     *
+     * @return The tracking sector , without a valid signature if the image was written before disks were tracked.
+     */
+    private TrackingSector readTrackingSector() {
+        byte[] bytes = new byte[sectorSize];
+        Content.read(geometry.lbaToByteOffset(TrackingSector.TRACKING_LBA), bytes, 0, sectorSize);
+        return new TrackingSector(bytes);
+    }
+
+    /**
+     * Writes the tracking sector of a disk in use : its content moves past every checkpoint it is written after.
+     * The sector bypasses the changed-block map , it describes how an image relates to the checkpoints and every image
+     * or base records its own. A mounted image is left as it is unless the disk writes it in place.
+     */
+    private void writeOpenTrackingSector() {
+        TrackingSector tracking = new TrackingSector(sectorSize, diskId, changeTracker.getLastCheckpoint(), true);
+        Content.write(geometry.lbaToByteOffset(TrackingSector.TRACKING_LBA), tracking.getTrackingBytes(), 0, sectorSize);
+    }
+
+    /**
+     * Checks that an image holds the structures this program writes , so that a volume formatted by another tool
+     * is rejected instead of being mounted with a wrong chain or an empty directory. Nothing is written.
+     *
+     * @param storage    The backend holding the image.
+     * @param bootSector The boot sector read from sector 0 of the image.
+     * @throws IllegalArgumentException if the image cannot be mounted , with the reason.
+     */
+    private static void checkMountable(DiskStorage storage, BootSector bootSector) {
+        DiskGeometry geometry = bootSector.getGeometry();
+        long rootCluster = bootSector.getBiosParameterBlock().getRootCluster();
+        if (rootCluster != JOURNAL_CLUSTER) {
+            throw new IllegalArgumentException("The root directory starts at cluster " + rootCluster + " , this program only mounts volumes whose journal starts at cluster " + JOURNAL_CLUSTER + ".");
+        }
+
+        // The entry 0 of a FAT32 table repeats the media descriptor , an image written with the older layout holds the entry of cluster 2 there
+        byte[] mediaEntry = new byte[DiskGeometry.FAT_ENTRY_BYTES];
+        storage.read(geometry.fatEntryOffset(0, 0), mediaEntry, 0, mediaEntry.length);
+        int entry = ByteBuffer.wrap(mediaEntry).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0x0FFFFFFF;
+        int media = bootSector.getBiosParameterBlock().getMedia();
+        if (entry != (0x0FFFFF00 | media)) {
+            throw new IllegalArgumentException(String.format("The first FAT entry is 0x%08X instead of 0x%08X for the media descriptor 0x%02X , "
+                    + "the FATs were written by an older version of this program or by another tool.", entry, 0x0FFFFF00 | media, media));
+        }
+
+        // The root directory of another FAT32 volume holds 32 byte directory entries , ours holds the text journal
+        byte[] header = Journal.HEADER.getBytes();
+        byte[] onDisk = new byte[header.length];
+        storage.read(geometry.clusterToByteOffset(JOURNAL_CLUSTER), onDisk, 0, onDisk.length);
+        if (!Arrays.equals(onDisk, header) && !isBlank(onDisk)) {
+            throw new IllegalArgumentException("Cluster " + JOURNAL_CLUSTER + " does not hold a journal , the root directory was written by another tool.");
+        }
+    }
+
+    /**
+     * Reserves , in both File Allocation Tables , the data cluster holding the root directory journal , then writes
+     * the structures of the reserved region : the boot sector and its copy , both FATs , the FSInfo sector and the tracking sector.
+     * The FATs themselves lie before the data region , no cluster ever overlaps them.
+     */
+    private void reserveMetadataClusters() {
+        for (FAT fat : new FAT[]{Main, Backup}) {
+            fat.reserveClusters(JOURNAL_CLUSTER, JOURNAL_CLUSTER);
+        }
+        writeMetadataToContent(0, bootSector.getBootSectorBytes()); // Sector 0 is all a mount needs to find everything else
+        writeMetadataToContent(geometry.lbaToByteOffset(BootSector.BACKUP_BOOT_LBA), bootSector.getBootSectorBytes());
+        persistFATsToDisk(); // From now on the tables are only updated on disk entry by entry
+        writeFSInfoSector(); // Right after the boot sector , like on a FAT32 volume
+        writeOpenTrackingSector(); // Then the identity of the disk , in the next sector
+    }
+
+    // Let's create a method that is going to initialize the byte array of the disk with free sectos
+    /**
+     * Initializes the disk sectors by filling the disk content with sector data.
+     * This method iterates through the disk content, dividing it into sectors of the sector size of the disk.
+     * For each sector, it copies the bytes from a pre-built sector (obtained from SectorBuilder) into the corresponding
+     * location in the disk content. If the remaining space in the disk content is less than the sector size, it copies
+     * only the remaining bytes. Every storage backend starts zero filled , so a blank sector template has nothing to write,
+     * which spares a file backed disk from rewriting its whole image on creation.
+     */
+    public void DiskSectorsInitialization() {
+        byte[] sectorBytes = new SectorBuilder(1, sectorSize).GetSector().getSectorBytes(); // Let's get the bytes of a sector of the disk's size
+        if (isBlank(sectorBytes)) {
+            return; // The backend already holds exactly these bytes
+        }
+        long diskLength = this.Content.size();
+        //With this initialize each one of the disk sector
+        for (long i = 0; i < diskLength; i += sectorSize) {
+            //Let's check if there's enough space for the allocation
+            if (i + sectorSize <= diskLength) // There is enough space
+            {
+                this.Content.write(i, sectorBytes, 0, sectorSize);
+            } else {
+                // In the case there is not enough space for a whole sector
+                int restBytes = (int) (diskLength - i);
+                this.Content.write(i, sectorBytes, 0, restBytes);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a byte array only holds zeros.
+     *
+     * @param bytes The bytes to check.
+     * @return True if every byte is 0x00 , false otherwise.
+     */
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0x00) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a view of a data cluster with the LBAs of its sectors. The disk does not keep any {@link Cluster}
+     * object , the view is computed from the geometry on every call.
+     *
+     * @param clusterId The id of the cluster , 2 being the first data cluster.
+     * @return A new Cluster describing the cluster.
+     * @throws IllegalArgumentException if the id is not a cluster of the data region.
+     */
+    public Cluster getClusterView(int clusterId) {
+        return geometry.clusterView(clusterId);
+    }
+
+    /**
+     * Reads a sector of the disk into a new {@link Sector}.
+     *
+     * @param lba The LBA of the sector.
+     * @return A copy of the sector , changing it does not change the disk.
+     * @throws IllegalArgumentException if the sector is outside the disk.
+     */
+    public Sector readSector(long lba) {
+        if (lba < 0 || lba >= geometry.getTotalSectors()) {
+            throw new IllegalArgumentException("Sector " + lba + " is outside the disk.");
+        }
+        byte[] bytes = new byte[sectorSize];
+        this.Content.read(geometry.lbaToByteOffset(lba), bytes, 0, sectorSize);
+        Sector sector = new Sector((int) lba);
+        sector.setSectorBytes(bytes);
+        return sector;
+    }
+
+
+
+    /**
+     * Checks if a file exists on the virtual disk.
+     *
+     * @param filename The name of the file to check.
+     * @return True if the file exists, false otherwise.
+     */
+    public boolean fileExists(String filename) {
+        metadataLock.readLock().lock();
+        try {
+            return findJournalEntryUsingFilename(filename) != null;
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for a journal entry within the root directory based on the provided filename.
+     * The caller must hold the metadata lock.
+     *
+     * @param filename The filename to search for within the journal entries.
+     * @return The JournalEntry object if a match is found, otherwise null.
+     */
+    private JournalEntry findJournalEntryUsingFilename(String filename) {
+        return rootDirectory.findEntry(filename);
+    }
+
+    /**
+     * Creates the striped locks guarding the data of the files.
+     *
+     * @return The array of file locks.
+     */
+    private static ReentrantReadWriteLock[] newFileLocks() {
+        ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[FILE_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        return locks;
+    }
+
+    /**
+     * Retrieves the lock guarding the data of a file.
+     *
+     * @param filename The name of the file.
+     * @return The read-write lock of the stripe the file belongs to.
+     */
+    ReentrantReadWriteLock fileLockFor(String filename) {
+        return fileLocks[Math.floorMod(filename.hashCode(), FILE_LOCK_STRIPES)];
+    }
+
+    /**
+     * Checks whether a journal entry is still the one the directory holds for its file ,
+     * that is the file was neither deleted nor replaced since the entry was fetched.
+     *
+     * @param entry The journal entry to check.
+     * @return True if the entry is still live.
+     */
+    boolean isLiveEntry(JournalEntry entry) {
+        metadataLock.readLock().lock();
+        try {
+            return findJournalEntryUsingFilename(entry.getFileName()) == entry;
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the lock of every file stripe , in a fixed order so that two threads doing it cannot deadlock.
+     *
+     * @param exclusive True for the write locks , false for the read locks.
+     */
+    private void lockAllFiles(boolean exclusive) {
+        for (ReentrantReadWriteLock lock : fileLocks) {
+            (exclusive ? lock.writeLock() : lock.readLock()).lock();
+        }
+    }
+
+    /**
+     * Releases the locks taken by {@link #lockAllFiles(boolean)}.
+     *
+     * @param exclusive True for the write locks , false for the read locks.
+     */
+    private void unlockAllFiles(boolean exclusive) {
+        for (int i = fileLocks.length - 1; i >= 0; i--) {
+            (exclusive ? fileLocks[i].writeLock() : fileLocks[i].readLock()).unlock();
+        }
+    }
+
+    /**
+     * Frees a chain of clusters in both the main and backup FAT tables, starting from a given cluster ID.
+     * This method iterates through a chain of clusters linked in the File Allocation Tables (FATs).
+     * For each cluster in the chain, it marks the corresponding FAT entries in both the main and backup FATs as free.
+     * The iteration continues until the end of the cluster chain is reached (indicated by a cluster ID of 0) or if a FAT entry is not found.
+     *
+     * @param StartCluster_id The ID of the starting cluster in the chain to be freed.
+     */
+    public void freeClustersInBothFat(int StartCluster_id) {
+        metadataLock.writeLock().lock();
+        try {
+            freeChainInBothFat(StartCluster_id);
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Frees a chain of clusters in both FATs , the caller must hold the metadata write lock.
+     *
+     * @param StartCluster_id The ID of the starting cluster in the chain to be freed.
+     */
+    private void freeChainInBothFat(int StartCluster_id) {
+        // The freed entries are written on the disk while the clusters are still ours , once they are back in the
+        // allocator another thread may allocate them and persist its own chain over the same entries
+        ArrayList<Integer> chain = chainOf(StartCluster_id);
+        persistFATEntries(chain, true);
+        ownershipIndex.release(chain); // Whoever owned them , the clusters are free now
+        Main.freeClusterChain(StartCluster_id); // We set the FATEntries of the chain to be free in the Main File allocation table
+        Backup.freeClusterChain(StartCluster_id); // And the same in the Backup File allocation table
+    }
+
+    /**
+     * Collects the clusters of an allocation chain.
+     *
+     * @param StartCluster_id The ID of the first cluster of the chain.
+     * @return The cluster IDs of the chain , in order.
+     */
+    private ArrayList<Integer> chainOf(int StartCluster_id) {
+        ArrayList<Integer> chain = new ArrayList<>();
+        int current_Cluster_id = StartCluster_id;
+        while (geometry.isDataCluster(current_Cluster_id)) {
+            FATEntry fatEntry = Main.findFATEntryUsingClusterIdentification(current_Cluster_id);
+            // Now let's ensure that the entry exist and is part of a chain
+            if (fatEntry == null || fatEntry.isFREE()) break;
+
+            chain.add(current_Cluster_id);
+            if (fatEntry.isEndOfChain()) break; // The end of chain marker is not a cluster
+            current_Cluster_id = fatEntry.getFatEntryValue(); // We update the variable inside the loop right
+        }
+        return chain;
+    }
+
+    /**
+     * Writes a file's content to the disk, updating the FAT, Journal and disk content.
+     *
+     * @param filename The name of the file being written.
+     * @param fileContent             Byte array containing the file's content.
+     * @param ClusterSizeinSector The size of each cluster in sectors.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeFileInDisk(String filename, byte[] fileContent, int ClusterSizeinSector) throws IOException {
+        Lock fileLock = fileLockFor(filename).writeLock();
+        fileLock.lock(); // Nobody reads or writes a file of this name while we write it
+        try {
+            ArrayList<Integer> allocated_Cluster_Chain = allocateClusterChain(filename, fileContent.length, ClusterSizeinSector);
+            if (allocated_Cluster_Chain == null) {
+                return;
+            }
+            writeClusterChain(filename, fileContent, ClusterSizeinSector, allocated_Cluster_Chain);
+        } finally {
+            fileLock.unlock();
+        }
+    }
 
-        DiskSectorsInitialization();// With this i initialized the byte array of  the entire disk
-        Main = new FAT(this.disk_size, ClusterSizeInSectors*512);
-        Backup = new FAT(this.disk_size, 1 + (int) Main.getFATSize() + ClusterSizeInSectors*512); // Backup FAT after Main FAT, also making sure that the offset on the disk correspond to the cluster1
-        ArrayList<ArrayList<Integer>> ListOfSectorsClustersLba = FetchSectorsLbaForClusters(ClusterSizeInSectors, disk_size);
-        ArrayList<Cluster> clusters = GiveClusterFormationOnDisk(ListOfSectorsClustersLba, disk_size);
+    /**
+     * Allocates the clusters of a new file in both FATs and persists the tables , under the metadata write lock.
+     *
+     * @param filename            The name of the file being written.
+     * @param fileSize            The size of the file in bytes.
+     * @param ClusterSizeinSector The size of each cluster in sectors.
+     * @return The allocated chain , or null if the file already exists or the disk is full.
+     */
+    private ArrayList<Integer> allocateClusterChain(String filename, long fileSize, int ClusterSizeinSector) {
+        try {
+            ArrayList<Integer> allocated_Cluster_Chain = claimClusterChain(filename, fileSize, ClusterSizeinSector);
+            return allocated_Cluster_Chain;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
     }
 
+    /**
+     * Tells whether a file name can be recorded in the journal , which holds one entry per line : a line break would
+     * split the entry , and the next mount would lose the file while its clusters stay allocated.
+     *
+     * @param filename The name of the file.
+     * @return False if the name holds a control character.
+     */
+    private static boolean isJournalSafeName(String filename) {
+        return filename.chars().noneMatch(Character::isISOControl);
+    }
 
+    /**
+     * Allocates the clusters of a new file in both FATs and persists their entries , reporting failures as exceptions.
+     * The caller must hold the write lock of the file.
+     *
+     * @param filename            The name of the file being written.
+     * @param fileSize            The size of the file in bytes.
+     * @param ClusterSizeinSector The size of each cluster in sectors.
+     * @return The allocated chain.
+     * @throws IOException If the name holds a control character , if the file already exists or the disk is full.
+     */
+    private ArrayList<Integer> claimClusterChain(String filename, long fileSize, int ClusterSizeinSector) throws IOException {
+        if (!isJournalSafeName(filename)) {
+            throw new IOException("The file name '" + filename.replaceAll("\\p{Cc}", "?") + "' holds a control character , the journal cannot record it.");
+        }
+        // The caller holds the lock of the file , so nobody else can create a file of this name in between
+        if (fileExists(filename)) {
+            throw new IOException("File '" + filename + "' already exists.");
+        }
 
+        //  Allocate clusters for the file , the allocator is lock-free so parallel creations do not queue here
+        ArrayList<Integer> allocated_Cluster_Chain = this.Main.AllocateFileUsingHisBytes(fileSize, ClusterSizeinSector * sectorSize);
+        if (allocated_Cluster_Chain == null) {
+            throw new IOException("The allocation was not successful");
+        }
+        this.Backup.mirrorChain(allocated_Cluster_Chain); // The Backup FAT records the very same chain so the two tables stay synchronized
 
+        persistFATEntries(allocated_Cluster_Chain, false); // The allocation chain has to be on the disk as well , not only in memory
+        return allocated_Cluster_Chain;
+    }
 
+    /**
+     * Copies the content of a file into its allocated clusters , then publishes its journal entry.
+     * The data is copied without the metadata lock , the clusters belong to this file alone.
+     *
+     * @param filename                The name of the file being written.
+     * @param fileContent             Byte array containing the file's content.
+     * @param ClusterSizeinSector     The size of each cluster in sectors.
+     * @param allocated_Cluster_Chain The clusters allocated to the file.
+     * @throws IOException If the journal no longer fits on the disk.
+     */
+    private void writeClusterChain(String filename, byte[] fileContent, int ClusterSizeinSector, ArrayList<Integer> allocated_Cluster_Chain) throws IOException {
+
+        int clusterBytes = ClusterSizeinSector * sectorSize;
+        int writtenBytes = 0; // The number of bytes already written in the disk
+
+        // Clusters following each other in the chain and on the disk are written in a single copy
+        int index = 0;
+        while (index < allocated_Cluster_Chain.size() && writtenBytes < fileContent.length) {
+            int runClusters = 1;
+            while (index + runClusters < allocated_Cluster_Chain.size()
+                    && allocated_Cluster_Chain.get(index + runClusters) == allocated_Cluster_Chain.get(index + runClusters - 1) + 1) {
+                runClusters++;
+            }
+            int bytesToWrite = (int) Math.min((long) runClusters * clusterBytes, fileContent.length - writtenBytes);
+            writeToContent(clusterToByteOffset(allocated_Cluster_Chain.get(index)), fileContent, writtenBytes, bytesToWrite);
+            writtenBytes += bytesToWrite;
+            index += runClusters;
+        }
+        // Create a journal entry , the file becomes visible only once its content is on the disk
+        publishJournalEntry(filename, allocated_Cluster_Chain.get(0), fileContent.length, true);
+    }
+
+    /**
+     * Adds the journal entry of a file whose content is on the disk , which makes the file visible.
+     *
+     * @param filename     The name of the file.
+     * @param startCluster The first cluster of the file.
+     * @param fileSize     The size of the file in bytes.
+     * @param persist      Whether the journal is written to the disk right away , a batch of files persists it once at the end.
+     * @throws IOException If the journal no longer fits on the disk , the file is then removed and its clusters freed.
+     */
+    private void publishJournalEntry(String filename, int startCluster, long fileSize, boolean persist) throws IOException {
+        JournalEntry entry = new JournalEntry(filename, "A", LocalDateTime.now(), LocalDate.now(), LocalDateTime.now(), startCluster, fileSize);
+        metadataLock.writeLock().lock();
+        try {
+            rootDirectory.newEntry(entry);
+            ownershipIndex.add(entry, chainOf(startCluster)); // The chain is already in the FAT , it was persisted before the data
+
+            // Now let's make sure the content of the rootDirectory is saved in the byte array of the disk
+            if (persist) {
+                try {
+                    persistJournalToDisk(); // Now we are sure the Updated journal is in the disk and can be accessible at any time
+                } catch (IOException e) {
+                    rootDirectory.removeEntry(entry); // A file the journal on the disk does not know would be lost at the next mount
+                    ownershipIndex.remove(entry);
+                    freeChainInBothFat(startCluster);
+                    throw e;
+                } finally {
+                    persistFSInfoToDisk();
+                }
+            }
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a new file on the virtual disk.
+     *
+     * @param filename The name of the file to create.
+     * @param content  The content of the file as a byte array.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void createFile(String filename, byte[] content) throws IOException {
+
+        writeFileInDisk(filename, content,this.ClusterSizeInSectors); // The journal and the FSInfo sector are persisted with the entry
+    }
+
+    /**
+     * Creates a new file on the virtual disk from a stream , without ever holding the whole file in memory.
+     * The clusters are allocated once for the announced size , then the content is copied cluster run after
+     * cluster run straight into the disk storage.
+     *
+     * @param filename The name of the file to create.
+     * @param content  The stream of the file content , it is read but not closed.
+     * @param size     The size of the file in bytes , the stream must hold at least that many bytes.
+     * @throws IOException If the file already exists , the disk is full or the stream ends too early.
+     */
+    public void createFile(String filename, InputStream content, long size) throws IOException {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        if (size <= clusterBytes) {
+            byte[] buffer = bufferPool.acquire(); // A single cluster file goes through a pooled buffer
+            try {
+                writeStreamInDisk(filename, content, size, buffer, true);
+            } finally {
+                bufferPool.release(buffer);
+            }
+            return;
+        }
+        byte[] buffer = new byte[(int) Math.min(IMPORT_CHUNK_BYTES, roundUp(size, clusterBytes))];
+        writeStreamInDisk(filename, content, size, buffer, true);
+    }
 
+    /**
+     * Imports every regular file of a host directory tree into the virtual disk.
+     * <p>
+     * Each host file is read on its own virtual thread and streamed into the disk through a buffer of at most
+     * 1 MB , the buffers of all the files in flight never exceed 64 MB together , so trees of any size can be
+     * imported without loading them in memory. The files are named after their path relative to the root , with
+     * '/' as separator. The journal is persisted once , after the last file. A file that cannot be imported
+     * does not stop the others , it is reported in the summary. If the journal of the imported files does not
+     * fit on the disk , the whole import is rolled back and fails.
+     * </p>
+     *
+     * @param hostRoot The host directory to import , or a single host file.
+     * @return The summary of the import.
+     * @throws IOException If the host root cannot be walked at all , or if the disk is too full for the journal.
+     */
+    public ImportSummary importTree(Path hostRoot) throws IOException {
+        return importTree(hostRoot, ImportFilter.ALL);
+    }
 
+    /**
+     * Imports the regular files of a host directory tree accepted by a filter , as {@link #importTree(Path)} does.
+     * <p>
+     * The filter is asked on the virtual thread of each file , before any buffer is taken for it , so that a
+     * filter reading the host file , to hash it for instance , runs for many files at once.
+     * </p>
+     *
+     * @param hostRoot The host directory to import , or a single host file.
+     * @param filter   The filter deciding which files are written to the disk.
+     * @return The summary of the import , the rejected files are counted as skipped.
+     * @throws IOException If the host root cannot be walked at all , or if the disk is too full for the journal ;
+     *                     the files imported are then removed again.
+     */
+    public ImportSummary importTree(Path hostRoot, ImportFilter filter) throws IOException {
+        long start = System.nanoTime();
+        LongAdder filesImported = new LongAdder();
+        LongAdder filesSkipped = new LongAdder();
+        LongAdder bytesImported = new LongAdder();
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> imported = new ConcurrentLinkedQueue<>(); // The files to remove again if the journal cannot be persisted
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        Semaphore inFlightBytes = new Semaphore((int) (IMPORT_MAX_IN_FLIGHT_BYTES / clusterBytes)); // One permit per cluster of buffer
+        Path root = hostRoot.toAbsolutePath().normalize();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (!attributes.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    Path relative = root.relativize(file);
+                    String name = relative.toString().isEmpty() ? file.getFileName().toString() : relative.toString().replace(file.getFileSystem().getSeparator(), "/");
+                    long size = attributes.size();
+                    executor.execute(() -> {
+                        try {
+                            if (!filter.accept(file, name)) {
+                                filesSkipped.increment();
+                                return;
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            failures.add(file + ": " + e.getMessage());
+                            return;
+                        }
+                        int bufferBytes = (int) Math.min(IMPORT_CHUNK_BYTES, Math.max(clusterBytes, roundUp(size, clusterBytes)));
+                        int permits = bufferBytes / clusterBytes;
+                        try {
+                            inFlightBytes.acquire(permits);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            failures.add(file + ": interrupted");
+                            return;
+                        }
+                        // A file of one cluster , the most common case , goes through a pooled buffer
+                        byte[] buffer = bufferBytes == clusterBytes ? bufferPool.acquire() : new byte[bufferBytes];
+                        try (InputStream in = Files.newInputStream(file)) {
+                            writeStreamInDisk(name, in, size, buffer, false);
+                            imported.add(name);
+                            filesImported.increment();
+                            bytesImported.add(size);
+                        } catch (IOException | RuntimeException e) {
+                            failures.add(file + ": " + e.getMessage());
+                        } finally {
+                            if (bufferBytes == clusterBytes) {
+                                bufferPool.release(buffer);
+                            }
+                            inFlightBytes.release(permits);
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
 
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    failures.add(file + ": " + e.getMessage()); // An unreadable directory or file does not stop the walk
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } // Closing the executor waits for every file in flight
+
+        metadataLock.writeLock().lock();
+        try {
+            persistJournalToDisk();
+        } catch (IOException e) {
+            // The files are in the journal of the memory only , the next mount would lose them and keep their clusters allocated
+            ArrayList<JournalEntry> rolledBack = new ArrayList<>();
+            for (String name : imported) {
+                JournalEntry entry = rootDirectory.findEntry(name);
+                if (entry != null) {
+                    rolledBack.add(entry);
+                    ownershipIndex.remove(entry);
+                    freeChainInBothFat(entry.getCluster_id());
+                }
+            }
+            rootDirectory.removeEntries(rolledBack);
+            persistJournalToDisk(); // The journal is back to what it was before the import , it fitted then
+            throw new IOException("The import of " + imported.size() + " files was rolled back : " + e.getMessage(), e);
+        } finally {
+            persistFSInfoToDisk();
+            metadataLock.writeLock().unlock();
+        }
+        return new ImportSummary(filesImported.sum(), filesSkipped.sum(), bytesImported.sum(), System.nanoTime() - start, new ArrayList<>(failures));
+    }
 
+    /**
+     * Writes a file from a stream : allocates its whole chain at once , copies the content run of contiguous
+     * clusters after run , then publishes the journal entry. On failure the clusters are given back.
+     *
+     * @param filename       The name of the file to create.
+     * @param content        The stream of the file content.
+     * @param size           The size of the file in bytes.
+     * @param buffer         The buffer the content goes through , a multiple of the cluster size.
+     * @param persistJournal Whether the journal is written to the disk once the file is published.
+     * @throws IOException If the file already exists , the disk is full or the stream ends too early.
+     * @implNote Package-private so that {@link ClusterSizeAdvisor} can replay many files without persisting the journal after each one.
+     */
+    void writeStreamInDisk(String filename, InputStream content, long size, byte[] buffer, boolean persistJournal) throws IOException {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        Lock fileLock = fileLockFor(filename).writeLock();
+        fileLock.lock();
+        try {
+            ArrayList<Integer> chain = claimClusterChain(filename, size, ClusterSizeInSectors);
+            try {
+                long written = 0;
+                int index = 0;
+                while (written < size) {
+                    // Let's gather the clusters of the chain that follow each other on the disk , up to the buffer size
+                    int runClusters = 1;
+                    while (index + runClusters < chain.size() && (runClusters + 1) * clusterBytes <= buffer.length
+                            && chain.get(index + runClusters) == chain.get(index + runClusters - 1) + 1) {
+                        runClusters++;
+                    }
+                    int length = (int) Math.min((long) runClusters * clusterBytes, size - written);
+                    int read = content.readNBytes(buffer, 0, length);
+                    if (read < length) {
+                        throw new IOException("The content of '" + filename + "' ended after " + (written + read) + " of its " + size + " bytes.");
+                    }
+                    writeToContent(clusterToByteOffset(chain.get(index)), buffer, 0, length);
+                    written += length;
+                    index += runClusters;
+                }
+            } catch (IOException | RuntimeException e) {
+                metadataLock.writeLock().lock();
+                try {
+                    freeChainInBothFat(chain.get(0)); // The file never became visible , its clusters go back to the free space
+                } finally {
+                    metadataLock.writeLock().unlock();
+                }
+                throw e;
+            }
+            publishJournalEntry(filename, chain.get(0), size, persistJournal);
+        } finally {
+            fileLock.unlock();
+        }
+    }
 
+    /**
+     * Rounds a size up to a multiple of a unit.
+     */
+    private static long roundUp(long size, long unit) {
+        return (size + unit - 1) / unit * unit;
+    }
 
+    /**
+     * Deletes a file from the virtual disk.
+     *
+     * @param filename The name of the file to delete.
+     */
+    public void deleteFile(String filename) {
+        Lock fileLock = fileLockFor(filename).writeLock();
+        fileLock.lock(); // We wait for the readers of the file to be done before its clusters can be handed out again
+        metadataLock.writeLock().lock();
+        try {
+            // Let's find the journal entry for the file to be deleted
+            JournalEntry entry = findJournalEntryUsingFilename(filename);
+            if (entry == null) {
+                System.out.println("File '" + filename + "' not found.");
+                return;
+            }
 
+            // We are simply going to mark the FATEntries that map those clusters in the allocation chain to free so that new content can be write into it
+            rootDirectory.removeEntry(entry); // The entry would otherwise keep pointing at clusters another file may now own
+            rootDirectory.newDeletedEntry(entry); // Its tombstone tells where the content was , until the clusters are reused
+            ownershipIndex.remove(entry); // Its clusters are released below , as the chain is freed
+            freeChainInBothFat(entry.getCluster_id()); // The freed clusters are made visible in the image as well
+            try {
+                persistJournalToDisk();
+            } catch (IOException e) {
+                // The live entries only got fewer , they fit in the clusters the journal already holds once the tombstones are dropped
+                throw new IllegalStateException("The journal no longer fits in its own clusters : " + e.getMessage(), e);
+            }
+            persistFSInfoToDisk();
+        } finally {
+            metadataLock.writeLock().unlock();
+            fileLock.unlock();
+        }
 
+        System.out.println("File '" + filename + "' deleted successfully.");
+    }
 
+    /**
+     * Calculates the total slack space on the virtual disk.
+     * <p>
+     * The slack is found by one pass over the clusters , as {@link #extractSlackSpace} does , instead of walking
+     * the chain of every file.
+     * </p>
+     *
+     * @return The total slack space in bytes.
+     */
+    public long calculateTotalSlackSpace() {
+        long totalSlackSpace = 0;
+        int end = DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount();
+        for (int from = DiskGeometry.FIRST_CLUSTER; from < end; from += SPACE_SCAN_WINDOW_CLUSTERS) {
+            metadataLock.readLock().lock();
+            try {
+                for (SpaceRegion region : slackRegionsIn(from, Math.min(end, from + SPACE_SCAN_WINDOW_CLUSTERS))) {
+                    totalSlackSpace += region.getLength();
+                }
+            } finally {
+                metadataLock.readLock().unlock();
+            }
+        }
+        return totalSlackSpace;
+    }
+
+    /**
+     * Streams the slack space of every file , the bytes of its last cluster past its end , into a channel.
+     * <p>
+     * The clusters are scanned in image order , a window at a time under the metadata read lock : the last cluster
+     * of a file is the end of its chain in the FAT , its owner is given by the {@link ClusterOwnershipIndex}. The
+     * lock is released before the bytes of the window are handed to the storage , which sends them to the target
+     * without an intermediate copy when it can. Whatever the size of the disk , the memory used is bounded by the
+     * window.
+     * </p>
+     *
+     * @param target  The channel receiving the slack bytes , region after region.
+     * @param handler The handler told of every region once its bytes were written.
+     * @return The number of bytes written to the target.
+     * @throws IOException If the target or the handler fails.
+     */
+    public long extractSlackSpace(WritableByteChannel target, SpaceRegionHandler handler) throws IOException {
+        long written = 0;
+        int end = DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount();
+        for (int from = DiskGeometry.FIRST_CLUSTER; from < end; from += SPACE_SCAN_WINDOW_CLUSTERS) {
+            List<SpaceRegion> regions;
+            metadataLock.readLock().lock();
+            try {
+                regions = slackRegionsIn(from, Math.min(end, from + SPACE_SCAN_WINDOW_CLUSTERS));
+            } finally {
+                metadataLock.readLock().unlock();
+            }
+            for (SpaceRegion region : regions) {
+                Content.transferTo(region.getImageOffset(), region.getLength(), target);
+                handler.handle(new SpaceRegion(region.getImageOffset(), region.getLength(), region.getFirstCluster(), 1, region.getOwnerFileName(), written));
+                written += region.getLength();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Streams every unallocated cluster of the disk into a channel.
+     * <p>
+     * The free clusters are taken from the free map of the Main FAT , in image order , and the clusters following
+     * each other are coalesced into one region read in a single transfer. The disk should not be written during
+     * the extraction : a cluster allocated meanwhile may be extracted with its new content.
+     * </p>
+     *
+     * @param target  The channel receiving the unallocated bytes , region after region.
+     * @param handler The handler told of every region once its bytes were written.
+     * @return The number of bytes written to the target.
+     * @throws IOException If the target or the handler fails.
+     */
+    public long extractUnallocatedSpace(WritableByteChannel target, SpaceRegionHandler handler) throws IOException {
+        ClusterAllocator allocator = Main.getAllocator();
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        int end = DiskGeometry.FIRST_CLUSTER + geometry.getClusterCount();
+        long written = 0;
+        int runStart = -1;
+        for (int clusterId = DiskGeometry.FIRST_CLUSTER; clusterId <= end; clusterId++) {
+            boolean free = clusterId < end && !allocator.isUsed(clusterId);
+            if (free && runStart < 0) {
+                runStart = clusterId;
+            } else if (!free && runStart >= 0) {
+                // The run of free clusters ends here , let's send it in one go
+                long offset = clusterToByteOffset(runStart);
+                long length = (long) (clusterId - runStart) * clusterBytes;
+                Content.transferTo(offset, length, target);
+                handler.handle(new SpaceRegion(offset, length, runStart, clusterId - runStart, null, written));
+                written += length;
+                runStart = -1;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Lists the slack regions of the last clusters found in a window of clusters , the caller must hold the
+     * metadata read lock.
+     *
+     * @param fromCluster The first cluster of the window.
+     * @param toCluster   The cluster following the window.
+     * @return The slack regions , in image order , their output offset is not set.
+     */
+    private List<SpaceRegion> slackRegionsIn(int fromCluster, int toCluster) {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        List<SpaceRegion> regions = new ArrayList<>();
+        for (int clusterId = fromCluster; clusterId < toCluster; clusterId++) {
+            JournalEntry owner = ownershipIndex.ownerOf(clusterId);
+            if (owner == null) continue; // Free , reserved or not published yet
+            FATEntry fatEntry = Main.findFATEntryUsingClusterIdentification(clusterId);
+            if (fatEntry == null || !fatEntry.isEndOfChain()) continue;
+
+            // The file fills its chain up to its last cluster , which holds between 1 and a whole cluster of it
+            long used = owner.getFileSize() == 0 ? 0 : (owner.getFileSize() - 1) % clusterBytes + 1;
+            if (used < clusterBytes) {
+                regions.add(new SpaceRegion(clusterToByteOffset(clusterId) + used, clusterBytes - used, clusterId, 1, owner.getFileName(), -1));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Reads a file's content from the disk.
+     *
+     * @param filename The name of the file to read.
+     * @return A byte array containing the file's content, or null if the file is not found.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] readFile(String filename) throws IOException {
+        Lock fileLock = fileLockFor(filename).readLock();
+        fileLock.lock(); // The file can be read by many threads , but not deleted or written while we read it
+        try {
+            //  Find the journal entry for the file
+            JournalEntry entry = lookupEntry(filename);
+            if (entry == null) {
+                System.out.println("File '" + filename + "' not found.");
+                return null;
+            }
+
+            // Then get the starting cluster ID and file size from the journal entry
+            int startCluster = entry.getCluster_id();
+            long fileSize = entry.getFileSize();
+
+            // Finally read the file content from the disk , the chain cannot change while we hold the file lock
+            return readFileContent(startCluster, fileSize);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Reads a file's content from the disk, given the starting cluster and file size.
+     *
+     * @param startCluster The starting cluster ID of the file.
+     * @param fileSize     The size of the file in bytes.
+     * @return A byte array containing the file's content.
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] readFileContent(int startCluster, long fileSize) throws IOException {
+        // First let's determine the number of clusters needed to hold the file content 
+        int numClustersNeeded = (int) Math.ceil((double) fileSize / (ClusterSizeInSectors * sectorSize));
+
+        // Le'ts create a byte array to hold the file content 
+        byte[] fileContent = new byte[(int) fileSize];
+
+        // Now we read the title content from the disk starting from the given cluster 
+        int bytesRead = 0;
+        int currentCluster = startCluster;
+        ReadAheadEngine readAhead = new ReadAheadEngine(this, Main, Content); // While we walk the chain , the next clusters are fetched ahead of us
+        for (int i = 0; i < numClustersNeeded; i++) {
+            readAhead.onClusterRead(i, currentCluster);
+            // Calculate the offset in the disk's byte array for the current cluster
+            long clusterOffset = clusterToByteOffset(currentCluster);
+
+            // Read the part of the file held by this cluster in one go
+            int bytesInCluster = (int) Math.min(ClusterSizeInSectors * sectorSize, fileSize - bytesRead);
+            Content.read(clusterOffset, fileContent, bytesRead, bytesInCluster);
+            bytesRead += bytesInCluster;
+
+            // Get the next cluster in the chain
+            FATEntry entry = Main.findFATEntryUsingClusterIdentification(currentCluster);
+            if (entry == null) break;
+            currentCluster = entry.getFatEntryValue();
+        }
+
+        return fileContent;
+    }
+
+    /**
+     * Opens a stream over the content of a file , reading it cluster after cluster with read-ahead
+     * instead of loading it entirely in memory like {@link #readFile(String)}.
+     *
+     * The stream takes the lock of the file for every read , a read made after the file was deleted fails.
+     *
+     * @param filename The name of the file to open.
+     * @return An input stream over the file content , or null if the file is not found.
+     */
+    public InputStream openFile(String filename) {
+        JournalEntry entry = lookupEntry(filename);
+        if (entry == null) {
+            System.out.println("File '" + filename + "' not found.");
+            return null;
+        }
+        return new ClusterChainInputStream(this, entry);
+    }
+
+    /**
+     * Lists the extents of a file , the runs of its bytes that are contiguous in the disk image , in file order.
+     *
+     * @param filename The name of the file.
+     * @return The extents of the file , or null if the file is not found.
+     */
+    public List<Extent> getFileExtents(String filename) {
+        Lock fileLock = fileLockFor(filename).readLock();
+        fileLock.lock();
+        try {
+            JournalEntry entry = lookupEntry(filename);
+            return entry == null ? null : extentsOf(entry.getCluster_id(), entry.getFileSize());
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Walks the allocation chain of a file and merges the clusters that follow each other on the disk.
+     * The caller must hold the lock of the file.
+     *
+     * @param startCluster The first cluster of the file.
+     * @param fileSize     The size of the file in bytes , the last extent stops at the end of the file.
+     * @return The extents of the file.
+     */
+    private List<Extent> extentsOf(int startCluster, long fileSize) {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        List<Extent> extents = new ArrayList<>();
+        long remaining = fileSize;
+        long runStart = -1;
+        long runLength = 0;
+        int currentCluster = startCluster;
+        while (remaining > 0) {
+            long offset = clusterToByteOffset(currentCluster);
+            long bytesInCluster = Math.min(clusterBytes, remaining);
+            if (runStart >= 0 && offset == runStart + runLength) {
+                runLength += bytesInCluster; // The cluster continues the current extent
+            } else {
+                if (runStart >= 0) {
+                    extents.add(new Extent(runStart, runLength));
+                }
+                runStart = offset;
+                runLength = bytesInCluster;
+            }
+            remaining -= bytesInCluster;
+
+            FATEntry entry = Main.findFATEntryUsingClusterIdentification(currentCluster);
+            if (entry == null || entry.isEndOfChain() || entry.isFREE()) break;
+            currentCluster = entry.getFatEntryValue();
+        }
+        if (runStart >= 0) {
+            extents.add(new Extent(runStart, runLength));
+        }
+        return extents;
+    }
+
+    /**
+     * Looks a file up in the root directory under the metadata read lock.
+     *
+     * @param filename The name of the file.
+     * @return The journal entry of the file , or null if there is none.
+     */
+    private JournalEntry lookupEntry(String filename) {
+        metadataLock.readLock().lock();
+        try {
+            return findJournalEntryUsingFilename(filename);
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
 
-    // Let's create a method that is going to initialize the byte array of the disk with free sectos
     /**
-     * Initializes the disk sectors by filling the disk content with sector data.
-     * This method iterates through the disk content, dividing it into sectors of a predefined size (512 bytes).
-     * For each sector, it copies the bytes from a pre-built sector (obtained from SectorBuilder) into the corresponding
-     * location in the disk content. If the remaining space in the disk content is less than the sector size, it copies
-     * only the remaining bytes.
+     * Maps a file of the virtual disk as a read-only view , without copying its content.
+     * Every extent of the file is mapped by the storage of the disk : an in-memory disk exposes its array , a file
+     * backed disk maps the image file. Parsers can then work over the file in place instead of over a copy
+     * made by {@link #readFile(String)}.
+     *
+     * @param filename The name of the file to map.
+     * @return A read-only view over the file.
+     * @throws NoSuchFileException If the file is not on the disk.
+     * @throws IOException         If the storage cannot map one of the extents.
      */
-    public void DiskSectorsInitialization() {
-        byte[] sectorBytes = new SectorBuilder(1).GetSector().getSectorBytes(); // Let's get the bytes of the sector
-        //With this initialize each one of the disk sector
-        for (int i = 0; i < this.Content.length; i += sectorSize) {
-            //Let's check if there's enough space for the allocation
-            if (i + sectorSize <= this.Content.length) // There is enough space
-            {
-                System.arraycopy(sectorBytes, 0, this.Content, i, sectorSize);
-            } else {
-                // In the case there is not enough space for an array of 512 bytes
-                int restBytes = this.Content.length - i;
-                System.arraycopy(sectorBytes, 0, this.Content, i, restBytes);
+    public MappedFile mapFile(String filename) throws IOException {
+        Lock fileLock = fileLockFor(filename).readLock();
+        fileLock.lock();
+        try {
+            JournalEntry entry = lookupEntry(filename);
+            if (entry == null) {
+                throw new NoSuchFileException(filename, null, "not found on disk " + disk_name);
+            }
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (Extent extent : extentsOf(entry.getCluster_id(), entry.getFileSize())) {
+                // A buffer cannot go past 2 GB , a longer extent is cut in several buffers
+                for (long done = 0; done < extent.getLength(); done += Integer.MAX_VALUE) {
+                    int length = (int) Math.min(Integer.MAX_VALUE, extent.getLength() - done);
+                    buffers.add(Content.map(extent.getDiskOffset() + done, length));
+                }
             }
+            return new MappedFile(buffers.toArray(new ByteBuffer[0]));
+        } finally {
+            fileLock.unlock();
         }
     }
 
     /**
-     * Fetches the sector LBA (Logical Block Address) for each cluster on the disk.
+     * Exports a file of the virtual disk to the host.
+     * Each extent of the file is handed to the storage as a whole , which sends it to the target file with
+     * {@link FileChannel#transferTo} for a file backed disk or straight from the array of an in-memory disk,
+     * the content of the file never goes through an intermediate buffer of its size.
      *
-     * @param ClusterSizeInSector The number of sectors per cluster.
-     * @param disk_size           The size of the disk in bytes.
-     * @return An ArrayList of ArrayLists, where each inner ArrayList contains the
-     * sector LBAs for a single cluster.
+     * @param filename The name of the file to export.
+     * @param target   The host file to create or overwrite.
+     * @return The number of bytes exported.
+     * @throws NoSuchFileException If the file is not on the disk.
+     * @throws IOException         If an I/O error occurs while writing the host file.
      */
-    public ArrayList<ArrayList<Integer>> FetchSectorsLbaForClusters(int ClusterSizeInSector, long disk_size) {
-        ArrayList<ArrayList<Integer>> result = new ArrayList<>();
-        long SectorsOnDisk = NumberOfSectorsOfTheEntireDisk(disk_size);
-
-        for (int i = 0; i < SectorsOnDisk; i += ClusterSizeInSector) {
-            ArrayList<Integer> clusterSectors = new ArrayList<>();
-            for (int j = 0; j < ClusterSizeInSector; j++) {
-                int sectorLba = i + j; // Calculate the sector LBA
-
-                // Check if the sector LBA is within the bounds of the disk
-                if (sectorLba < SectorsOnDisk) {
-                    clusterSectors.add(sectorLba);
-                } else {
-                    // If the sector LBA is out of bounds, break the inner loop
-                    break;
+    public long exportFile(String filename, Path target) throws IOException {
+        Lock fileLock = fileLockFor(filename).readLock();
+        fileLock.lock(); // The file cannot be deleted or rewritten while it is being exported
+        try {
+            JournalEntry entry = lookupEntry(filename);
+            if (entry == null) {
+                throw new NoSuchFileException(filename, null, "not found on disk " + disk_name);
+            }
+            long exported = 0;
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Extent extent : extentsOf(entry.getCluster_id(), entry.getFileSize())) {
+                    exported += Content.transferTo(extent.getDiskOffset(), extent.getLength(), channel);
                 }
             }
-            result.add(clusterSectors);
+            return exported;
+        } finally {
+            fileLock.unlock();
         }
-        return result;
     }
 
-    // A method that will return a list of clusters that matches the allocation of the entire disk
     /**
-     * Creates a list of Cluster objects based on a list of sector LBA lists.
+     * Exports every file of the virtual disk into a host directory.
+     * The files are exported in the order of their first cluster so that the image is read front to back.
+     * A name holding '/' is recreated as sub directories , a name escaping the directory is refused.
+     * A file that cannot be exported does not stop the others , the summary tells why it failed.
      *
-     * @param listOfSectorsLba A list of ArrayLists, where each inner ArrayList contains the LBA (Logical Block Address) of sectors belonging to a cluster.
-     * @param disk_size The size of the disk (not directly used in the cluster formation logic, but potentially relevant for overall disk context).
-     * @return An ArrayList of Cluster objects, where each Cluster represents a formed cluster from the input sector LBA lists.  Cluster IDs start from 2 (0 and 1 are reserved).
+     * @param directory The host directory receiving the files , created if needed.
+     * @return The summary of the export : files and bytes exported , duration , and the failures.
+     * @throws IOException If the directory cannot be created.
      */
-    public ArrayList<Cluster> GiveClusterFormationOnDisk(ArrayList<ArrayList<Integer>> listOfSectorsLba, long disk_size) {
-        ArrayList<Cluster> Clusteri = new ArrayList<>();
-        int i = 0;
-        for (ArrayList<Integer> sectorsLba : listOfSectorsLba) {
-            ClusterBuilder clusterBuilder = new ClusterBuilder(i + 2, sectorsLba); // We start from 2 because 0 and 1 are reserved
-            Cluster cluster = clusterBuilder.Build();
-            Clusteri.add(cluster);
-            i++;
+    public ExportSummary exportAll(Path directory) throws IOException {
+        long start = System.nanoTime();
+        Path root = directory.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        List<JournalEntry> entries;
+        metadataLock.readLock().lock();
+        try {
+            entries = rootDirectory.getEntries();
+        } finally {
+            metadataLock.readLock().unlock();
         }
-        return Clusteri;
+        entries.sort(Comparator.comparingInt(JournalEntry::getCluster_id));
+
+        long exported = 0;
+        long bytes = 0;
+        ArrayList<String> failures = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            Path target = root.resolve(entry.getFileName()).normalize();
+            if (!target.startsWith(root) || target.equals(root)) {
+                failures.add(entry.getFileName() + ": the name escapes " + root);
+                continue;
+            }
+            try {
+                Files.createDirectories(target.getParent());
+                bytes += exportFile(entry.getFileName(), target);
+                exported++;
+            } catch (IOException e) {
+                failures.add(entry.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return new ExportSummary(exported, bytes, System.nanoTime() - start, failures);
     }
 
-
-
     /**
-     * Checks if a file exists on the virtual disk.
+     * Computes the byte offset in the disk of the first byte of a data cluster.
      *
-     * @param filename The name of the file to check.
-     * @return True if the file exists, false otherwise.
+     * @param clusterId The id of the cluster , 2 being the first data cluster.
+     * @return The byte offset of the cluster in the disk image.
      */
-    public boolean fileExists(String filename) {
-        return findJournalEntryUsingFilename(filename) != null;
+    public long clusterToByteOffset(int clusterId) {
+        return geometry.clusterToByteOffset(clusterId);
     }
 
+
+
     /**
-     * Searches for a journal entry within the root directory based on the provided filename.
-     * This method iterates through all entries in the root directory, comparing the filename of each
-     * journal entry with the given filename. If a match is found, the corresponding journal entry is returned.
-     * If no match is found after iterating through all entries, the method returns null.
+     * Persists the journal (represented by the root directory) to the virtual disk.
+     * The journal starts at cluster 2 , the first cluster of the data region , and goes on in a chain of clusters
+     * recorded in both FATs like the chain of a file. The chain grows when the journal needs more room and gives
+     * back its last clusters when the journal shrinks , the unused end of its last cluster is zeroed.
+     * The caller must hold the metadata write lock.
      *
-     * @param filename The filename to search for within the journal entries.
-     * @return The JournalEntry object if a match is found, otherwise null.
+     * @throws IOException If the disk is too full for the live entries of the journal , the oldest tombstones
+     *                     having already been dropped. Nothing was written in that case.
      */
-    private JournalEntry findJournalEntryUsingFilename(String filename) {
-        for (JournalEntry entry : rootDirectory.getEntries()) { // We just go through the entire root directory to find the journal entry that has a filename attribute value that corresponds to what we are searching for
-            if (entry.getFileName().equals(filename)) {
-                return entry;
+    private void persistJournalToDisk() throws IOException {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+
+        // The journal keeps its bytes between two writes , a new entry only appended its line to them
+        int journalLength = rootDirectory.getSerializedLength();
+        int clustersNeeded = Math.max(1, (journalLength + clusterBytes - 1) / clusterBytes);
+        if (clustersNeeded > journalClusters.size() && !growJournalChain(clustersNeeded - journalClusters.size())) {
+            // The disk is full , the oldest tombstones make room for the live entries in the clusters we already have
+            journalLength = rootDirectory.dropDeletedEntriesToFit(journalClusters.size() * clusterBytes);
+            if (journalLength > journalClusters.size() * clusterBytes) {
+                throw new IOException("The disk is full , the journal needs " + journalLength + " bytes but only "
+                        + journalClusters.size() * clusterBytes + " could be allocated for it.");
             }
+            clustersNeeded = Math.max(1, (journalLength + clusterBytes - 1) / clusterBytes);
         }
-        return null;
+        if (clustersNeeded < journalClusters.size()) {
+            shrinkJournalChain(clustersNeeded);
+        }
+
+        // Now let's copy the journal content cluster after cluster , the chain is not contiguous on the disk.
+        // The clusters before the first changed byte already hold the right bytes
+        byte[] journalBytes = rootDirectory.getSerializedBytes();
+        int first = Math.min(rootDirectory.getChangedFrom() / clusterBytes, clustersNeeded - 1);
+        for (int i = first; i < clustersNeeded - 1; i++) {
+            writeMetadataToContent(clusterToByteOffset(journalClusters.get(i)), journalBytes, i * clusterBytes, clusterBytes);
+        }
+        // The rest of the last cluster is zeroed , a shorter journal must not leave the lines of the previous one after its end
+        int tail = (clustersNeeded - 1) * clusterBytes;
+        byte[] lastCluster = bufferPool.acquire();
+        try {
+            System.arraycopy(journalBytes, tail, lastCluster, 0, journalLength - tail);
+            Arrays.fill(lastCluster, journalLength - tail, clusterBytes, (byte) 0);
+            writeMetadataToContent(clusterToByteOffset(journalClusters.get(clustersNeeded - 1)), lastCluster, clusterBytes);
+        } finally {
+            bufferPool.release(lastCluster);
+        }
+        rootDirectory.markPersisted();
     }
 
     /**
-     * Frees a chain of clusters in both the main and backup FAT tables, starting from a given cluster ID.
-     * This method iterates through a chain of clusters linked in the File Allocation Tables (FATs).
-     * For each cluster in the chain, it marks the corresponding FAT entries in both the main and backup FATs as free.
-     * The iteration continues until the end of the cluster chain is reached (indicated by a cluster ID of 0) or if a FAT entry is not found.
+     * Appends free clusters at the end of the journal chain , in both FATs and on the disk.
+     * The caller must hold the metadata write lock.
      *
-     * @param StartCluster_id The ID of the starting cluster in the chain to be freed.
+     * @param count The number of clusters to add.
+     * @return False if the disk does not have that many free clusters , the chain is then left as it was.
      */
-    public void freeClustersInBothFat(int StartCluster_id) {
-        int current_Cluster_id = StartCluster_id;
-        while (current_Cluster_id != 0) {
-            FATEntry fatEntry = Main.findFATEntryUsingClusterIdentification(current_Cluster_id);
-            // Now let's ensure that the entry exist
-            if (fatEntry == null) break;
-
-            int nextCluster_id = fatEntry.getFatEntryValue();// We read the value of the next cluster in the allcoation chain
-            Main.findFATEntryUsingClusterIdentification(current_Cluster_id).setFREE_CLUSTER();// We set the FATEntry that points to the cluster to be free in the Main File allocation table
-            Backup.findFATEntryUsingClusterIdentification(current_Cluster_id).setFREE_CLUSTER(); // We set the FATEntry value pointing on the cluster to be considered free in the Backup File allocation table
-            current_Cluster_id = nextCluster_id; // We update the variable inside the loop right
+    private boolean growJournalChain(int count) {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        ArrayList<Integer> added = this.Main.AllocateFileUsingHisBytes((long) count * clusterBytes, clusterBytes);
+        if (added == null) {
+            return false;
+        }
+        this.Backup.mirrorChain(added);
+        int last = journalClusters.get(journalClusters.size() - 1);
+        for (FAT fat : new FAT[]{Main, Backup}) {
+            fat.findFATEntryUsingClusterIdentification(last).setFatEntryValue(added.get(0)); // The old end of the chain now leads to the new clusters
         }
+        ArrayList<Integer> changed = new ArrayList<>(added);
+        changed.add(last);
+        persistFATEntries(changed, false);
+        journalClusters.addAll(added);
+        return true;
     }
 
     /**
-     * Writes a file's content to the disk, updating the FAT, Journal and disk content.
+     * Gives the clusters at the end of the journal chain back to the free space , in both FATs and on the disk.
+     * The caller must hold the metadata write lock.
      *
-     * @param filename The name of the file being written.
-     * @param fileContent             Byte array containing the file's content.
-     * @param ClusterSizeinSector The size of each cluster in sectors.
-     * @throws IOException If an I/O error occurs.
+     * @param keep The number of clusters the chain keeps , at least one.
      */
-    public void writeFileInDisk(String filename, byte[] fileContent, int ClusterSizeinSector) throws IOException {
-        //  Allocate clusters for the file
-        ArrayList<Integer> allocated_Cluster_Chain = this.Main.AllocateFileUsingHisBytes( fileContent.length, ClusterSizeinSector);
-        ArrayList<Integer> allocated_Cluster_Chain_test = this.Backup.AllocateFileUsingHisBytes(fileContent.length, ClusterSizeinSector);
+    private void shrinkJournalChain(int keep) {
+        int last = journalClusters.get(keep - 1);
+        int firstFreed = journalClusters.get(keep);
+        for (FAT fat : new FAT[]{Main, Backup}) {
+            fat.findFATEntryUsingClusterIdentification(last).setEND_OF_CHAIN_MAX();
+        }
+        freeChainInBothFat(firstFreed); // The freed chain is cut from the journal , so only its own clusters are released
+        persistFATEntries(new ArrayList<>(List.of(last)), false);
+        journalClusters.subList(keep, journalClusters.size()).clear();
+    }
 
-        //  Check if the allocation was successful and if the two FATs are synchronized
-        if (!allocated_Cluster_Chain_test.equals(allocated_Cluster_Chain)) {
-            System.out.println("The allocation was not successful");
-            return;
-        } else {
-            // If the allocation was successful, we proceed to write the file content to the disk
-            System.out.println("The allocation was successful");
+    /**
+     * Retrieves the clusters holding the root directory journal , in the order of its chain.
+     *
+     * @return A copy of the chain , starting with {@link #JOURNAL_CLUSTER}.
+     */
+    public ArrayList<Integer> getJournalClusters() {
+        metadataLock.readLock().lock();
+        try {
+            return new ArrayList<>(journalClusters);
+        } finally {
+            metadataLock.readLock().unlock();
         }
+    }
 
-        //  Get the list of clusters
-        ArrayList<Cluster> clusters = GiveClusterFormationOnDisk(FetchSectorsLbaForClusters(ClusterSizeinSector, disk_size), disk_size);
+    /**
+     * Refreshes the free cluster count and the next free hint of the FSInfo sector , from the allocator of the Main FAT.
+     * Only the 8 bytes of the two fields are compared and written. The caller must hold the metadata write lock ,
+     * so that the last refresh on the disk is also the most recent one.
+     */
+    private void persistFSInfoToDisk() {
+        byte[] fields = fsInfoFields;
+        ByteBuffer.wrap(fields).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt((int) Main.getFreeClusterNumber())
+                .putInt(Main.getAllocator().getNextFreeHint());
+        writeMetadataToContent(geometry.lbaToByteOffset(FSInfoSector.FSINFO_LBA) + FSInfoSector.FREE_COUNT_OFFSET, fields);
+    }
 
-        int writtenBytes = 0; // The number of bytes already written in the disk
+    /**
+     * Writes the whole FSInfo sector , signatures included , from the allocator of the Main FAT.
+     */
+    private void writeFSInfoSector() {
+        FSInfoSector fsInfo = new FSInfoSector(sectorSize, Main.getFreeClusterNumber(), Main.getAllocator().getNextFreeHint());
+        writeMetadataToContent(geometry.lbaToByteOffset(FSInfoSector.FSINFO_LBA), fsInfo.getFSInfoBytes());
+    }
 
-        //  Iterate through the allocated clusters
-        for (int i = 0; i < allocated_Cluster_Chain.size(); i++) {
-            int clusterId = allocated_Cluster_Chain.get(i);
+    /**
+     * Reads the FSInfo sector of the disk.
+     *
+     * @return A copy of the sector , changing it does not change the disk.
+     */
+    public FSInfoSector readFSInfo() {
+        byte[] bytes = new byte[sectorSize];
+        this.Content.read(geometry.lbaToByteOffset(FSInfoSector.FSINFO_LBA), bytes, 0, sectorSize);
+        return new FSInfoSector(bytes);
+    }
 
-            //  Find the cluster object corresponding to the cluster ID
-            Cluster currentCluster = null;
-            for (Cluster cluster : clusters) {
-                if (cluster.getCluster_Id() == clusterId) {
-                    currentCluster = cluster;
-                    break;
+    /**
+     * Loads both File Allocation Tables back from the disk content , then checks the FSInfo sector against them.
+     * When the FSInfo sector is consistent with the tables , the allocations resume from its next free hint ;
+     * when it is missing or stale , it is rewritten from the free space counted while loading the tables , which
+     * {@link #isFSInfoRebuilt()} reports. The caller must hold every lock of the disk.
+     */
+    private void loadFATsFromDisk() {
+        byte[] chunk = bufferPool.acquire();
+        try {
+            for (FAT fat : new FAT[]{Main, Backup}) {
+                long fatOffset = geometry.lbaToByteOffset(fat.getLocation());
+                long fatLength = fat.getFATSizeInBytes();
+                for (long done = 0; done < fatLength; ) {
+                    int length = (int) Math.min(chunk.length, fatLength - done);
+                    this.Content.read(fatOffset + done, chunk, 0, length);
+                    fat.loadFromBytes(done, chunk, 0, length);
+                    done += length;
                 }
+                fat.rebuildAllocator();
+                fat.reserveClusters(JOURNAL_CLUSTER, JOURNAL_CLUSTER); // In case the image did not flag it
             }
+        } finally {
+            bufferPool.release(chunk);
+        }
 
-            //  Check if the cluster object was found
-            if (currentCluster == null) {
-                System.out.println("Cluster object not found for cluster ID: " + clusterId);
-                continue; // Skip to the next cluster
-            }
-
-            //  Get the list of sector LBAs for the current cluster
-            ArrayList<Integer> sectorLBAs = currentCluster.getSectorsLbasHoldByCluster();
-
-            // Iterate through the sector LBAs and write the file content
-            for (int j = 0; j < sectorLBAs.size(); j++) {
-                int sectorLBA = sectorLBAs.get(j);
-
-                //  Calculate the offset in the disk's byte array for the current sector
-                int sectorOffset = sectorLBA * sectorSize;
-
-                //  Calculate the number of bytes to write to the current sector
-                int bytesToWrite = Math.min(sectorSize, fileContent.length - writtenBytes);
+        FSInfoSector fsInfo = readFSInfo();
+        if (fsInfo.isConsistentWith(geometry.getClusterCount()) && fsInfo.getFreeClusterCount() == Main.getFreeClusterNumber()) {
+            Main.getAllocator().resumeFrom((int) fsInfo.getNextFreeCluster()); // Only the Main FAT searches for free clusters
+            fsInfoRebuilt = false;
+        } else {
+            writeFSInfoSector();
+            fsInfoRebuilt = true;
+        }
+    }
 
-                //  Write the file content to the disk
-                System.arraycopy(fileContent, writtenBytes, Content, sectorOffset, bytesToWrite);
+    /**
+     * Rebuilds the cluster ownership index from the journal , in one walk over the chain of every file.
+     * The caller must hold the metadata write lock , or be the constructor.
+     */
+    private void rebuildOwnershipIndex() {
+        ownershipIndex.clear();
+        for (JournalEntry entry : rootDirectory.getEntries()) {
+            ownershipIndex.add(entry, chainOf(entry.getCluster_id()));
+        }
+    }
 
-                // Let's  update the number of bytes written
-                writtenBytes += bytesToWrite;
+    /**
+     * Reads the root directory journal back from its chain of clusters. The caller must hold every lock of the disk.
+     */
+    private void loadJournalFromDisk() {
+        int clusterBytes = ClusterSizeInSectors * sectorSize;
+        ArrayList<Integer> chain = chainOf(JOURNAL_CLUSTER);
+        if (chain.isEmpty()) {
+            chain.add(JOURNAL_CLUSTER); // The cluster is reserved by loadFATsFromDisk , an image that did not flag it has an empty journal
+        }
+        byte[] journalBytes = new byte[chain.size() * clusterBytes];
+        for (int i = 0; i < chain.size(); i++) {
+            this.Content.read(clusterToByteOffset(chain.get(i)), journalBytes, i * clusterBytes, clusterBytes);
+        }
+        this.rootDirectory = Journal.fromByteArray(journalBytes);
+        this.journalClusters = chain;
+    }
 
-                // Let's check if all file content has been written so that we can break the loop and rest assured
-                if (writtenBytes >= fileContent.length) {
-                    break; // Here the part of the file content that correspond to a cluster
+    /**
+     * Persists both File Allocation Tables to the virtual disk at their respective sector LBA.
+     * Only the clusters of the FAT region whose bytes actually changed are rewritten , so that a
+     * single allocation does not flag the whole table as modified for the incremental exports.
+     *
+     * @throws IllegalStateException if a table does not fit on the disk , which the geometry of the disk rules out.
+     */
+    private void persistFATsToDisk() {
+        byte[] chunk = bufferPool.acquire(); // The tables go through one cluster buffer instead of a copy of each whole table
+        try {
+            for (FAT fat : new FAT[]{Main, Backup}) {
+                long fatOffset = geometry.lbaToByteOffset(fat.getLocation());
+                long fatLength = fat.getFATSizeInBytes();
+                if (fatOffset + fatLength > this.Content.size()) {
+                    throw new IllegalStateException("The File Allocation Table at LBA " + fat.getLocation() + " does not fit on the disk of " + this.Content.size() + " bytes.");
+                }
+                for (long done = 0; done < fatLength; ) {
+                    int length = fat.toBytes(done, chunk, 0, chunk.length);
+                    writeMetadataToContent(fatOffset + done, chunk, length);
+                    done += length;
                 }
             }
-
-            //  Check if all file content has been written
-            if (writtenBytes >= fileContent.length) {
-                break; // All file content has been written
-            }
+        } finally {
+            bufferPool.release(chunk);
         }
-        // Create a journal entry
-        JournalEntry entry = new JournalEntry(filename, "A", LocalDateTime.now(), LocalDate.now(), LocalDateTime.now(), allocated_Cluster_Chain.get(0), (long) fileContent.length);
-        rootDirectory.newEntry(entry);
-
-        // Now let's make sure the content of the rootDirectory is saved in the byte array of the disk 
-        persistJournalToDisk(); // Now we are sure the Updated journal is in the disk and can be accessible at any time 
     }
 
     /**
-     * Creates a new file on the virtual disk.
+     * Writes the entries of the given clusters into both File Allocation Tables on the disk.
+     * Only the 4 bytes of each entry are written , runs of consecutive clusters in a single write , so that
+     * allocations made in parallel never rewrite each other's entries.
      *
-     * @param filename The name of the file to create.
-     * @param content  The content of the file as a byte array.
-     * @throws IOException If an I/O error occurs.
+     * @param chain The IDs of the clusters whose entries changed.
+     * @param free  True to write the entries as free , false to write their current value.
+     * @throws IllegalStateException if a table does not fit on the disk , which the geometry of the disk rules out.
      */
-    public void createFile(String filename, byte[] content) throws IOException {
-
-        writeFileInDisk(filename, content,this.ClusterSizeInSectors);
-
-       persistJournalToDisk();
+    private void persistFATEntries(ArrayList<Integer> chain, boolean free) {
+        List<Integer> sorted = chain;
+        for (int i = 1; i < chain.size(); i++) {
+            if (chain.get(i) < chain.get(i - 1)) {
+                // A fragmented chain is sorted apart , its order is the order of the file and the caller still needs it
+                ArrayList<Integer> copy = new ArrayList<>(chain);
+                copy.sort(null);
+                sorted = copy;
+                break;
+            }
+        }
+        byte[] buffer = bufferPool.acquire();
+        try {
+            ByteBuffer entries = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+            int maxRun = Math.max(1, buffer.length / 4); // A run longer than the buffer is written in several pieces
+            for (FAT fat : new FAT[]{Main, Backup}) {
+                int fatIndex = fat == Main ? 0 : 1;
+                if (geometry.lbaToByteOffset(fat.getLocation()) + fat.getFATSizeInBytes() > this.Content.size()) {
+                    throw new IllegalStateException("The File Allocation Table at LBA " + fat.getLocation() + " does not fit on the disk of " + this.Content.size() + " bytes.");
+                }
+                int runStart = 0;
+                while (runStart < sorted.size()) {
+                    int runEnd = runStart + 1;
+                    while (runEnd < sorted.size() && runEnd - runStart < maxRun && sorted.get(runEnd) == sorted.get(runEnd - 1) + 1) {
+                        runEnd++;
+                    }
+                    entries.clear();
+                    for (int i = runStart; i < runEnd; i++) {
+                        entries.putInt(free ? 0 : fat.findFATEntryUsingClusterIdentification(sorted.get(i)).getFatEntryValue());
+                    }
+                    writeToContent(geometry.fatEntryOffset(fatIndex, sorted.get(runStart)), buffer, 0, entries.position());
+                    runStart = runEnd;
+                }
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
     }
 
     /**
-     * Deletes a file from the virtual disk.
+     * Copies bytes into the disk content and records the touched clusters as changed.
+     * Every write path of the disk goes through this method so that the changed-block tracking stays exact.
      *
-     * @param filename The name of the file to delete.
+     * @param position The byte offset in the disk where the copy starts.
+     * @param source   The bytes to copy.
+     * @param offset   The offset of the first byte to copy in {@code source}.
+     * @param length   The number of bytes to copy.
      */
-    public void deleteFile(String filename) {
-        // Let's find the journal entry for the file to be deleted 
-        JournalEntry entry = findJournalEntryUsingFilename(filename);
-        if (entry == null) {
-            System.out.println("File '" + filename + "' not found.");
-            return;
-        }
-
-        // We are simply going to mark the FATEntries that map those clusters in the allocation chain to free so that new content can be write into it 
-        freeClustersInBothFat(entry.getCluster_id());
-
-        System.out.println("File '" + filename + "' deleted successfully.");
+    private void writeToContent(long position, byte[] source, int offset, int length) {
+        this.Content.write(position, source, offset, length);
+        changeTracker.markRange(position, length);
     }
 
     /**
-     * Calculates the total slack space on the virtual disk.
+     * Writes a metadata structure (journal , FAT) into the disk content , one cluster at a time,
+     * skipping the clusters whose content is already identical. Metadata is rewritten entirely on every
+     * update but usually only changes in a few places , this keeps the changed-block map tight.
      *
-     * @return The total slack space in bytes.
+     * @param position The byte offset in the disk where the structure lives.
+     * @param source   The serialized structure.
      */
-    public long calculateTotalSlackSpace() {
-        long totalSlackSpace = 0;
-        for (JournalEntry entry : rootDirectory.getEntries()) {
-            int startCluster = entry.getCluster_id();
-            long fileSize = entry.getFileSize();
-            int clusterCount = Main.FindSizeOfAllocationChain(startCluster);
-            totalSlackSpace += (long) clusterCount * ClusterSizeInSectors * sectorSize - fileSize;
-        }
-        return totalSlackSpace;
+    private void writeMetadataToContent(long position, byte[] source) {
+        writeMetadataToContent(position, source, source.length);
     }
 
     /**
-     * Reads a file's content from the disk.
+     * Writes the first bytes of a buffer as a metadata structure , see {@link #writeMetadataToContent(long, byte[])}.
      *
-     * @param filename The name of the file to read.
-     * @return A byte array containing the file's content, or null if the file is not found.
-     * @throws IOException If an I/O error occurs.
+     * @param position The byte offset in the disk where the bytes go.
+     * @param source   The buffer holding the bytes.
+     * @param length   The number of bytes of the buffer to write.
      */
-    public byte[] readFile(String filename) throws IOException {
-        //  Find the journal entry for the file
-        JournalEntry entry = findJournalEntryUsingFilename(filename);
-        if (entry == null) {
-            System.out.println("File '" + filename + "' not found.");
-            return null;
-        }
-
-        // Then get the starting cluster ID and file size from the journal entry
-        int startCluster = entry.getCluster_id();
-        long fileSize = entry.getFileSize();
-
-        // Finally read the file content from the disk
-        byte[] fileContent = readFileContent(startCluster, fileSize);
-
-        return fileContent;
+    private void writeMetadataToContent(long position, byte[] source, int length) {
+        writeMetadataToContent(position, source, 0, length);
     }
 
     /**
-     * Reads a file's content from the disk, given the starting cluster and file size.
+     * Writes a slice of a buffer as a metadata structure , see {@link #writeMetadataToContent(long, byte[])}.
      *
-     * @param startCluster The starting cluster ID of the file.
-     * @param fileSize     The size of the file in bytes.
-     * @return A byte array containing the file's content.
-     * @throws IOException If an I/O error occurs.
+     * @param position The byte offset in the disk where the bytes go.
+     * @param source   The buffer holding the bytes.
+     * @param offset   The offset of the first byte to write in {@code source}.
+     * @param length   The number of bytes of the buffer to write.
      */
-    private byte[] readFileContent(int startCluster, long fileSize) throws IOException {
-        // First let's determine the number of clusters needed to hold the file content 
-        int numClustersNeeded = (int) Math.ceil((double) fileSize / (ClusterSizeInSectors * sectorSize));
-
-        // Le'ts create a byte array to hold the file content 
-        byte[] fileContent = new byte[(int) fileSize];
-
-        // Now we read the title content from the disk starting from the given cluster 
-        int bytesRead = 0;
-        int currentCluster = startCluster;
-        for (int i = 0; i < numClustersNeeded; i++) {
-            // Calculate the offset in the disk's byte array for the current cluster
-            int clusterOffset = (currentCluster - 2) * ClusterSizeInSectors * sectorSize;
-
-            // Iterate through each byte in the cluster and read the file content
-            for (int j = 0; j < ClusterSizeInSectors * sectorSize; j++) {
-                // Check if there are more bytes to read , this is seriously a hazzle 
-                if (bytesRead < fileSize) {
-                    // Read the current byte from the disk
-                    fileContent[bytesRead++] = Content[clusterOffset + j];
-                } else {
-                    // If all file content has been read, break the inner loop
-                    break;
+    private void writeMetadataToContent(long position, byte[] source, int offset, int length) {
+        int blockSize = changeTracker.getBlockSize();
+        byte[] onDisk = bufferPool.acquire(); // What the disk currently holds for the cluster being compared
+        try {
+            int done = 0;
+            while (done < length) {
+                // We cut on the cluster boundaries of the disk so that a cluster is compared as a whole
+                long current = position + done;
+                int chunk = (int) Math.min(length - done, blockSize - current % blockSize);
+                this.Content.read(current, onDisk, 0, chunk);
+                if (!Arrays.equals(source, offset + done, offset + done + chunk, onDisk, 0, chunk)) {
+                    writeToContent(current, source, offset + done, chunk);
                 }
+                done += chunk;
             }
-
-            // Get the next cluster in the chain
-            FATEntry entry = Main.findFATEntryUsingClusterIdentification(currentCluster);
-            if (entry == null) break;
-            currentCluster = entry.getFatEntryValue();
+        } finally {
+            bufferPool.release(onDisk);
         }
-
-        return fileContent;
     }
 
     /**
-        * Calculates the number of sectors in the entire virtual disk.
-        *
-        * @param siz The size of the virtual disk in bytes.
-        * @return The total number of sectors in the virtual disk.
-        */
-    private long NumberOfSectorsOfTheEntireDisk(long siz) {
-        long result = siz / 512;
-        return result;
+     * Seals the current state of the disk as a checkpoint.
+     * The identifier returned can later be given to {@link #exportIncremental(long, String)} to export
+     * only the clusters written after this call.
+     *
+     * @return The identifier of the checkpoint.
+     */
+    public long checkpoint() {
+        return changeTracker.checkpoint();
     }
 
-
-
     /**
-     * Persists the journal (represented by the root directory) to the virtual disk.
-     * This method converts the root directory to a byte array and writes it to cluster 2
-     * of the virtual disk. It checks if the journal data fits within the cluster's capacity
-     * and handles the error if it exceeds the limit.
+     * Returns the bitmap of clusters of the image modified after the given checkpoint.
+     *
+     * @param sinceCheckpoint The checkpoint identifier , 0 being the freshly created disk.
+     * @return A bitmap where bit {@code i} is set if the cluster-sized block {@code i} of the image changed.
      */
-    private void persistJournalToDisk() {
-        //  Let's convert the journal to a byte array using the designated method 
-        byte[] journalBytes = rootDirectory.toByteArray();
-
-        // Then we determine the offset for the cluster 2 on the disk , so that we can write the journal data there 
-        int cluster2Offset = 2 * ClusterSizeInSectors * sectorSize;
+    public BitSet getChangedBlocks(long sinceCheckpoint) {
+        return changeTracker.changedSince(sinceCheckpoint);
+    }
 
-        // We first see if the Journal Data fits within the cluster no 2 capacity 
-        if (journalBytes.length > ClusterSizeInSectors * sectorSize) {
-            System.out.println("Error: Journal size exceeds cluster 2 capacity.");
-            return; 
+    /**
+     * Exports only the clusters changed since a checkpoint into an incremental image file.
+     * A new checkpoint is taken right after , its identifier is the one to give to the next incremental export.
+     * The increment can be applied with {@link IncrementalImage#apply} onto an image of this disk written at that
+     * checkpoint , or at an earlier one when nothing was written in between.
+     *
+     * @param sinceCheckpoint The checkpoint the increment starts from.
+     * @param path            The path of the incremental image file.
+     * @return The checkpoint identifier the exported increment leads to.
+     * @throws IOException If an I/O error occurs during file writing.
+     */
+    public long exportIncremental(long sinceCheckpoint, String path) throws IOException {
+        lockAllFiles(false); // Files can still be read , but nothing is written while the increment is taken
+        metadataLock.readLock().lock();
+        try {
+            BitSet changed = changeTracker.changedSince(sinceCheckpoint);
+            long oldestBase = changeTracker.oldestBaseFor(sinceCheckpoint);
+            long toCheckpoint = changeTracker.checkpoint();
+            IncrementalImage.write(Paths.get(path), this.Content, changeTracker.getBlockSize(), sectorSize, diskId, changed, sinceCheckpoint, oldestBase, toCheckpoint);
+            return toCheckpoint;
+        } finally {
+            metadataLock.readLock().unlock();
+            unlockAllFiles(false);
         }
-
-       // The case it doesn't have enough space is not yet implemented , but for now let's copy the journal content in the Content 
-        System.arraycopy(journalBytes, 0, this.Content, cluster2Offset, journalBytes.length);
     }
 
 
@@ -496,10 +1796,26 @@ public class VirtualDisk {
 
     /**
         * Retrieves the content of the virtual disk.
+        * For the default in-memory backend this is the live array of the disk , for any other backend
+        * the whole image is copied into a new array , which only works for disks smaller than 2 GB.
         *
         * @return A byte array representing the content of the virtual disk.
         */
     public byte[] getContent() {
+        if (Content instanceof ArrayDiskStorage) {
+            return ((ArrayDiskStorage) Content).array();
+        }
+        byte[] copy = new byte[Math.toIntExact(Content.size())];
+        Content.read(0, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Retrieves the storage backend holding the bytes of the virtual disk.
+     *
+     * @return The storage backend.
+     */
+    public DiskStorage getStorage() {
         return Content;
     }
 
@@ -542,7 +1858,7 @@ public class VirtualDisk {
     /**
         * Retrieves the total number of clusters on the virtual disk.
         *
-        * @return The total number of clusters as a long value.
+        * @return The number of clusters of the data region as a long value.
         */
     public long getTotalClustersOnDisk() {
         return totalClustersOnDisk;
@@ -557,6 +1873,24 @@ public class VirtualDisk {
         return ClusterSizeInSectors;
     }
 
+    /**
+     * Retrieves the layout of the virtual disk.
+     *
+     * @return The geometry of the disk.
+     */
+    public DiskGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Retrieves the size of a sector of the virtual disk.
+     *
+     * @return The sector size in bytes.
+     */
+    public int getSectorSize() {
+        return sectorSize;
+    }
+
     /**
         * Retrieves the name of the virtual disk.
         *
@@ -581,32 +1915,188 @@ public class VirtualDisk {
      * @return A byte array containing the complete virtual disk image.
      */
     public byte[] toByteArray() {
-        return Content;
+        return getContent();
     }
 
 
     /**
         * Populates the virtual disk's content from a byte array.
+        * Both File Allocation Tables and the journal are then loaded back from the new content , the FATs being checked against its FSInfo sector.
+        * An image without a boot sector is assumed to share the geometry of this disk.
         *
         * @param bytes The byte array containing the data to be written to the virtual disk.
-        * @throws IllegalArgumentException if the size of the byte array does not match the expected disk size.
+        * @throws IllegalArgumentException if the size of the byte array does not match the expected disk size , if the boot sector of the image describes another geometry
+        *                                  or if its FATs or its root directory are not laid out the way this program writes them.
         */
     public void fromByteArray(byte[] bytes) {
         if (bytes.length != disk_size) {
             throw new IllegalArgumentException("Byte array size does not match the disk size.");
         }
-        this.Content = bytes;
+        BootSector imageBootSector = bootSectorOfImage(bytes);
+        if (imageBootSector != null && !imageBootSector.getGeometry().equals(geometry)) {
+            throw new IllegalArgumentException("The image was formatted with another geometry , it must be opened with VirtualDiskBuilder.openImage.");
+        }
+        if (imageBootSector != null) {
+            checkMountable(new ArrayDiskStorage(bytes), imageBootSector);
+        }
+        lockAllFiles(true); // Nobody may read or write a file while the whole content is replaced
+        metadataLock.writeLock().lock();
+        try {
+            if (this.Content instanceof ArrayDiskStorage) {
+                this.Content = new ArrayDiskStorage(bytes); // No need to copy , the array becomes the disk
+            } else {
+                this.Content.write(0, bytes, 0, bytes.length);
+            }
+            this.changeTracker.markAll(); // The whole content was replaced
+            if (imageFile != null) {
+                writeOpenTrackingSector(); // The new content must not claim the image is closed while the disk writes it
+            }
+            loadFATsFromDisk(); // The clusters used by the files of the image must not be handed out again
+            loadJournalFromDisk(); // The files of the image replace the ones of this disk
+            rebuildOwnershipIndex();
+        } finally {
+            metadataLock.writeLock().unlock();
+            unlockAllFiles(true);
+        }
+    }
+
+    /**
+     * Reads the boot sector of an image.
+     *
+     * @param bytes The image.
+     * @return The boot sector , null if sector 0 of the image is not a valid boot sector.
+     */
+    private static BootSector bootSectorOfImage(byte[] bytes) {
+        if (bytes.length < BiosParameterBlock.MIN_SECTOR_SIZE) {
+            return null;
+        }
+        try {
+            int bytesPerSector = new BiosParameterBlock(Arrays.copyOf(bytes, BiosParameterBlock.MIN_SECTOR_SIZE)).getBytesPerSector();
+            return new BootSector(Arrays.copyOf(bytes, Math.min(bytes.length, bytesPerSector)));
+        } catch (IllegalArgumentException e) {
+            return null; // An image written before the boot sector was laid out , or a damaged one
+        }
+    }
+
+    /**
+     * Makes sure everything written to the virtual disk reached its storage backend.
+     * For a cached , file backed disk this writes every dirty cluster back to the image file.
+     *
+     * @throws IOException If an I/O error occurs while flushing.
+     */
+    public void flush() throws IOException {
+        Content.flush();
+    }
+
+    /**
+     * Flushes the virtual disk and releases its storage backend , the disk must not be used afterwards.
+     * A disk opened in place from an image file seals a checkpoint if it was written , saves its changed-block map next
+     * to the image and records the checkpoint in the image , so that the next mount resumes its checkpoints.
+     *
+     * @throws IOException If an I/O error occurs while flushing or closing.
+     */
+    public void close() throws IOException {
+        if (imageFile != null) {
+            closeImageFile();
+        }
+        Content.close();
+        bufferPool.reportLeaks(); // Only reports something when the pool runs in debug mode
+    }
+
+    /**
+     * Lets the disk know it writes an image file in place , see {@link #close()}. The storage is flushed right away
+     * so that the image says it is open before any change reaches it : an image left open by a crash is never
+     * trusted to match its changed-block map.
+     *
+     * @param imageFile The image file behind the storage of the disk.
+     * @throws IOException If an I/O error occurs while flushing.
+     */
+    void writesInPlace(Path imageFile) throws IOException {
+        this.imageFile = imageFile;
+        writeOpenTrackingSector();
+        Content.flush();
+    }
+
+    /**
+     * Saves the changed-block map of a disk opened in place , then marks the image closed at its last checkpoint.
+     * The map is on disk before the image refers to it.
+     *
+     * @throws IOException If an I/O error occurs while flushing or saving.
+     */
+    private void closeImageFile() throws IOException {
+        lockAllFiles(false);
+        metadataLock.readLock().lock();
+        try {
+            long sealed = changeTracker.checkpointIfChanged(); // The image holds the disk as of this checkpoint
+            Content.flush();
+            changeTracker.save(trackerFileOf(imageFile), diskId, sealed);
+            TrackingSector tracking = new TrackingSector(sectorSize, diskId, sealed, false);
+            Content.write(geometry.lbaToByteOffset(TrackingSector.TRACKING_LBA), tracking.getTrackingBytes(), 0, sectorSize);
+            Content.flush();
+        } finally {
+            metadataLock.readLock().unlock();
+            unlockAllFiles(false);
+        }
+    }
+
+    /**
+     * Tells whether the FSInfo sector of the image was missing or stale when the image was loaded , and was rewritten
+     * from the File Allocation Tables. The mount then changed the reserved region of the image.
+     *
+     * @return True if the last mount or {@link #fromByteArray(byte[])} rebuilt the FSInfo sector.
+     */
+    public boolean isFSInfoRebuilt() {
+        return fsInfoRebuilt;
+    }
+
+    /**
+     * Retrieves the identifier of the disk , recorded in its images and increments.
+     *
+     * @return The identifier , drawn when the disk was formatted or when its image was mounted without its changed-block map.
+     */
+    public UUID getDiskId() {
+        return diskId;
+    }
+
+    /**
+     * Retrieves the index telling which file owns each cluster.
+     *
+     * @return The cluster ownership index , kept up to date as files are written and deleted.
+     */
+    public ClusterOwnershipIndex getOwnershipIndex() {
+        return ownershipIndex;
+    }
+
+    /**
+     * Retrieves the pool of cluster sized buffers used by the disk.
+     *
+     * @return The buffer pool of the disk.
+     */
+    public ClusterBufferPool getBufferPool() {
+        return bufferPool;
     }
 
     /**
      * Writes the virtual disk's byte array content to an image file.
+     * A checkpoint is sealed , unless nothing was written since the last one , and recorded in the image , which makes
+     * it a base for the increments exported since ; the changed-block map is saved next to it , so that opening the
+     * image again resumes the checkpoints.
      *
      * @param imageFilePath The path to the image file to be created.
      * @throws IOException If an I/O error occurs during file writing.
      */
     public void writeToImageFile(String imageFilePath) throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(imageFilePath)) {
-            fos.write(Content);
+        Path path = Paths.get(imageFilePath);
+        lockAllFiles(false); // The image must not catch a file half written
+        metadataLock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long sealed = changeTracker.checkpointIfChanged(); // The image holds the disk as of this checkpoint
+            Content.transferTo(0, Content.size(), channel);
+            IncrementalImage.seal(channel, sectorSize, diskId, sealed);
+            changeTracker.save(trackerFileOf(path), diskId, sealed);
+        } finally {
+            metadataLock.readLock().unlock();
+            unlockAllFiles(false);
         }
     }
 }
@@ -16,14 +16,39 @@
  */
 package com.Xplr.Forensics.Models.VirtualDisk;
 
+import com.Xplr.Forensics.Models.Sector.BiosParameterBlock;
+import com.Xplr.Forensics.Models.Sector.BootSector;
+import com.Xplr.Forensics.Models.Storage.ArrayDiskStorage;
+import com.Xplr.Forensics.Models.Storage.CachedDiskStorage;
+import com.Xplr.Forensics.Models.Storage.DiskStorage;
+import com.Xplr.Forensics.Models.Storage.FileDiskStorage;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class VirtualDiskBuilder {
-    private VirtualDisk virtualDisk;
 
+    /**
+     * The memory given to the cache of a file backed image opened by {@link #openImageFile(String)}.
+     */
+    private static final long IMAGE_CACHE_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * The period of the background flusher of that cache , so that a process that ends without closing the disk
+     * loses at most the last few seconds of writes instead of every dirty cluster still in the cache.
+     */
+    private static final long IMAGE_FLUSH_INTERVAL_MILLIS = 5000;
 
+    private VirtualDisk virtualDisk;
 
+    /**
+     * Constructs a builder around a disk mounted from an existing image.
+     */
+    private VirtualDiskBuilder(VirtualDisk virtualDisk) {
+        this.virtualDisk = virtualDisk;
+    }
 
     /**
      * Constructs a new VirtualDiskBuilder instance.
@@ -33,26 +58,140 @@ public class VirtualDiskBuilder {
         this.virtualDisk = new VirtualDisk(filename);
     }
 
+    /**
+     * Constructs a new VirtualDiskBuilder over a given storage backend.
+     * This is how a deduplicated or file backed disk is created.
+     *
+     * @param filename The name of the virtual disk.
+     * @param size     The size of the virtual disk in bytes.
+     * @param storage  The backend holding the bytes of the disk.
+     */
+    public VirtualDiskBuilder(String filename, long size, DiskStorage storage) {
+        this.virtualDisk = new VirtualDisk(filename, size, storage);
+    }
+
+    /**
+     * Constructs a new VirtualDiskBuilder over a given storage backend , with a chosen cluster size.
+     *
+     * @param filename             The name of the virtual disk.
+     * @param size                 The size of the virtual disk in bytes.
+     * @param storage              The backend holding the bytes of the disk.
+     * @param clusterSizeInSectors The size of a cluster in sectors , a power of two up to 128.
+     */
+    public VirtualDiskBuilder(String filename, long size, DiskStorage storage, int clusterSizeInSectors) {
+        this.virtualDisk = new VirtualDisk(filename, size, storage, clusterSizeInSectors);
+    }
+
+    /**
+     * Constructs a new VirtualDiskBuilder over a given storage backend , with chosen cluster and sector sizes.
+     *
+     * @param filename             The name of the virtual disk.
+     * @param size                 The size of the virtual disk in bytes.
+     * @param storage              The backend holding the bytes of the disk.
+     * @param clusterSizeInSectors The size of a cluster in sectors , a power of two up to 128.
+     * @param sectorSize           The size of a sector in bytes , 4096 for a 4Kn disk.
+     */
+    public VirtualDiskBuilder(String filename, long size, DiskStorage storage, int clusterSizeInSectors, int sectorSize) {
+        this.virtualDisk = new VirtualDisk(filename, size, storage, clusterSizeInSectors, sectorSize);
+    }
 
-        /**
+
+    /**
+     * Opens an existing image held by a storage backend. Only sector 0 is read to find the layout : the boot sector
+     * gives the sector size , the cluster size , the reserved region and the size of the FATs , the FATs and the
+     * journal are then read from where it says they are.
+     *
+     * @param storage The backend holding the image , the disk reads and writes it in place.
+     * @return A builder holding the mounted disk.
+     * @throws IOException If sector 0 is not the boot sector of a disk this program can mount , or if the FATs or the
+     *                     root directory of the image were not written by this program , such as a volume formatted by another tool.
+     */
+    public static VirtualDiskBuilder openImage(DiskStorage storage) throws IOException {
+        return openImage(storage, null);
+    }
+
+    /**
+     * Opens an existing image held by a storage backend , see {@link #openImage(DiskStorage)} , reloading the
+     * changed-block map saved next to the image file it was read from.
+     *
+     * @param storage   The backend holding the image.
+     * @param imageFile The image file the storage was read from , null if there is none.
+     * @return A builder holding the mounted disk.
+     * @throws IOException If the image cannot be mounted.
+     */
+    static VirtualDiskBuilder openImage(DiskStorage storage, Path imageFile) throws IOException {
+        if (storage.size() < BiosParameterBlock.MIN_SECTOR_SIZE) {
+            throw new IOException("The image is too small to hold a boot sector.");
+        }
+        byte[] sector = new byte[BiosParameterBlock.MIN_SECTOR_SIZE];
+        storage.read(0, sector, 0, sector.length); // The sector size itself is in the first 512 bytes
+        int bytesPerSector = new BiosParameterBlock(sector).getBytesPerSector();
+        try {
+            if (bytesPerSector > sector.length && bytesPerSector <= storage.size()) {
+                sector = new byte[bytesPerSector];
+                storage.read(0, sector, 0, sector.length);
+            }
+            return new VirtualDiskBuilder(new VirtualDisk(storage, new BootSector(sector), imageFile));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot mount the image : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens an image file in place , through a cache. Nothing but sector 0 , the FATs and the journal is read , so
+     * the image may be larger than the memory ; changes made to the disk are written back to the file , every few
+     * seconds in the background and when the disk is flushed or closed. The changed-block map saved next to the image
+     * is reloaded , so that the increments exported from the disk carry on from the checkpoints of the previous session.
+     *
+     * @param imageFilePath The path of the image file.
+     * @return A builder holding the mounted disk.
+     * @throws IOException If the file cannot be opened or is not an image this program can mount.
+     */
+    public static VirtualDiskBuilder openImageFile(String imageFilePath) throws IOException {
+        Path path = Paths.get(imageFilePath);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("No image file at " + imageFilePath);
+        }
+        FileDiskStorage file = new FileDiskStorage(path, Files.size(path));
+        byte[] sector = new byte[BiosParameterBlock.MIN_SECTOR_SIZE];
+        try {
+            file.read(0, sector, 0, sector.length);
+            BiosParameterBlock bpb = new BiosParameterBlock(sector);
+            int blockSize = bpb.getBytesPerSector() * bpb.getSectorsPerCluster(); // The cache works cluster by cluster
+            if (blockSize <= 0) {
+                throw new IOException("Sector 0 of " + imageFilePath + " is not a boot sector.");
+            }
+            VirtualDiskBuilder builder = openImage(new CachedDiskStorage(file, blockSize, (int) Math.max(1, IMAGE_CACHE_BYTES / blockSize), IMAGE_FLUSH_INTERVAL_MILLIS), path);
+            builder.virtualDisk.writesInPlace(path); // Its changed-block map is saved next to the image when it is closed
+            return builder;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
      * Loads a virtual disk image from an image file into the VirtualDisk object
-     * managed by this builder.
+     * managed by this builder. The image is copied in memory , the file itself is never changed ; the disk is
+     * mounted with the layout its boot sector records , whatever the disk of the builder was , and resumes the checkpoints
+     * of the changed-block map saved next to the image.
      *
      * @param imageFilePath The path to the image file to load.
      * @return This VirtualDiskBuilder instance, for chaining.
-     * @throws IOException If an I/O error occurs during file reading.
+     * @throws IOException If an I/O error occurs during file reading , or if the image cannot be mounted.
      */
     public VirtualDiskBuilder loadFromImageFile(String imageFilePath) throws IOException {
         try (FileInputStream fis = new FileInputStream(imageFilePath)) {
-            // Good lord , it should read the entire file into a byte array , no jokes  , this method is a nemesis , don't know if it will works or not 🙏🏾
             long fileSize = new java.io.File(imageFilePath).length();
+            if (fileSize > Integer.MAX_VALUE - 8) {
+                throw new IOException("The image does not fit in memory , open it in place with openImageFile.");
+            }
 
             // here we read the entire image file into a byte array
-            byte[] content = new byte[(int) fileSize];
-            fis.read(content);
+            byte[] content = fis.readAllBytes();
 
-            // then we set the content of the VirtualDisk
-            this.virtualDisk.fromByteArray(content);
+            // then we mount it , the boot sector tells us everything about its layout
+            this.virtualDisk = openImage(new ArrayDiskStorage(content), Paths.get(imageFilePath)).build();
 
             return this;
         } catch (IOException e) {
@@ -0,0 +1,60 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Search.KeywordSearchSummary;
+import com.Xplr.Forensics.Analysis.Search.KeywordSearcher;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line tool looking for a list of keywords in a disk image.
+ * <p>
+ * Usage : {@code SearchKeywords <image> <keyword file> [--case-sensitive]}. The keyword file holds one term per
+ * line , each term is looked for as ASCII and as UTF-16LE text. One line is printed per hit , with its offset , its
+ * cluster and the file owning it.
+ * </p>
+ */
+public class SearchKeywords {
+
+    public static void main(String[] args) {
+        if (args.length != 2 && !(args.length == 3 && args[2].equals("--case-sensitive"))) {
+            System.err.println("Usage: SearchKeywords <image> <keyword file> [--case-sensitive]");
+            return;
+        }
+
+        try {
+            List<String> terms = Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8);
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                KeywordSearcher searcher = new KeywordSearcher(disk, terms, args.length == 2, Runtime.getRuntime().availableProcessors());
+                KeywordSearchSummary summary = searcher.search(System.out::println);
+                System.out.println(summary);
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Recovery.RecoveryCandidate;
+import com.Xplr.Forensics.Analysis.Recovery.UndeleteScanner;
+import com.Xplr.Forensics.Models.Storage.FileDiskStorage;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDiskBuilder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line tool listing the deleted files of a disk image , and recovering them into a new image.
+ * <p>
+ * Usage : {@code Undelete <image> [--recover <new image>] [--min-confidence <c>]}. One line is printed per
+ * candidate , the most likely first. With {@code --recover} , the candidates whose confidence reaches the minimum
+ * (0.5 by default) are copied into a new image of the same size and geometry.
+ * </p>
+ */
+public class Undelete {
+
+    private static final double DEFAULT_MIN_CONFIDENCE = 0.5;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: Undelete <image> [--recover <new image>] [--min-confidence <c>]");
+            return;
+        }
+
+        try {
+            String recoverPath = null;
+            double minConfidence = DEFAULT_MIN_CONFIDENCE;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--recover") && i + 1 < args.length) {
+                    recoverPath = args[++i];
+                } else if (args[i].equals("--min-confidence") && i + 1 < args.length) {
+                    minConfidence = Double.parseDouble(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+
+            VirtualDisk disk = VirtualDiskBuilder.openImageFile(args[0]).build();
+            try {
+                UndeleteScanner scanner = new UndeleteScanner(disk);
+                List<RecoveryCandidate> candidates = scanner.scan();
+                for (RecoveryCandidate candidate : candidates) {
+                    System.out.println(candidate);
+                }
+                if (recoverPath != null) {
+                    long size = disk.getStorage().size();
+                    VirtualDisk target = new VirtualDisk("RECOVERED", size, new FileDiskStorage(Paths.get(recoverPath), size),
+                            disk.getClusterSizeInSectors(), disk.getSectorSize());
+                    try {
+                        System.out.println(scanner.recover(candidates, target, minConfidence));
+                    } finally {
+                        target.close();
+                    }
+                }
+            } finally {
+                disk.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of the marquis valois distribution
+ * Copyright (c) 2024 Acheron Systems corp.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.Xplr.Forensics;
+
+import com.Xplr.Forensics.Analysis.Recovery.RecoveryCandidate;
+import com.Xplr.Forensics.Analysis.Recovery.RecoverySource;
+import com.Xplr.Forensics.Analysis.Recovery.UndeleteScanner;
+import com.Xplr.Forensics.Models.Journal.JournalEntry;
+import com.Xplr.Forensics.Models.VirtualDisk.VirtualDisk;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Command line regression check of the {@link UndeleteScanner} on disks of the default geometry.
+ * <p>
+ * Usage : {@code UndeleteCheck}. The tool
+ * <ol>
+ *   <li>deletes one of three files on a 32 MB disk and checks the scan finds its tombstone and recovers it intact,</li>
+ *   <li>deletes half of many files , so that the journal spans several clusters , and checks the tombstone of every file
+ *   whose clusters were not reused is found,</li>
+ *   <li>checks the clusters of the journal itself are never reported as an orphaned chain.</li>
+ * </ol>
+ * It exits with status 1 if a single check failed.
+ * </p>
+ */
+public class UndeleteCheck {
+
+    private static final long DISK_SIZE = 32L * 1024 * 1024;
+    private static final int FILE_SIZE = 10000;
+    private static final int MANY_FILES = 400;
+
+    public static void main(String[] args) throws Exception {
+        long failures = 0;
+
+        // A few files , one of them deleted
+        VirtualDisk disk = new VirtualDisk("UNDELETE", DISK_SIZE);
+        for (int i = 0; i < 3; i++) {
+            disk.createFile(nameOf(i), contentOf(i));
+        }
+        disk.deleteFile(nameOf(1));
+        List<RecoveryCandidate> candidates = new UndeleteScanner(disk).scan();
+        RecoveryCandidate deleted = find(candidates, nameOf(1));
+        if (deleted == null || deleted.getSource() != RecoverySource.DELETED_ENTRY) {
+            System.err.println("The tombstone of the deleted file was not found : " + candidates);
+            failures++;
+        } else {
+            VirtualDisk target = new VirtualDisk("TARGET", DISK_SIZE);
+            new UndeleteScanner(disk).recover(List.of(deleted), target, 0);
+            if (!Arrays.equals(target.readFile(nameOf(1)), contentOf(1))) {
+                System.err.println("The deleted file was not recovered intact");
+                failures++;
+            }
+        }
+        failures += checkNoJournalOrphan(disk, candidates);
+
+        // Enough files for the journal to take several clusters
+        VirtualDisk large = new VirtualDisk("UNDELETE", DISK_SIZE);
+        for (int i = 0; i < MANY_FILES; i++) {
+            large.createFile(nameOf(i), contentOf(i));
+        }
+        for (int i = 0; i < MANY_FILES; i += 2) {
+            large.deleteFile(nameOf(i));
+        }
+        if (large.getJournalClusters().size() < 2) {
+            System.err.println("The journal was expected to span several clusters");
+            failures++;
+        }
+        // A deleted file whose first cluster went to the growing journal is lost , the others must all be found
+        long recoverable = 0;
+        for (JournalEntry entry : large.getRootDirectory().getDeletedEntries()) {
+            recoverable += large.getMain().getAllocator().isUsed(entry.getCluster_id()) ? 0 : 1;
+        }
+        candidates = new UndeleteScanner(large).scan();
+        long tombstones = candidates.stream().filter(candidate -> candidate.getSource() == RecoverySource.DELETED_ENTRY).count();
+        if (tombstones != recoverable || recoverable < MANY_FILES / 2 - large.getJournalClusters().size()) {
+            System.err.println("Found " + tombstones + " tombstones , " + recoverable + " of the " + MANY_FILES / 2 + " deleted files can be recovered");
+            failures++;
+        }
+        failures += checkNoJournalOrphan(large, candidates);
+
+        System.out.println(failures == 0 ? "PASSED" : "FAILED with " + failures + " errors");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks that no orphaned chain starts in the journal.
+     *
+     * @return 1 if one does , 0 otherwise.
+     */
+    private static long checkNoJournalOrphan(VirtualDisk disk, List<RecoveryCandidate> candidates) {
+        List<Integer> journal = disk.getJournalClusters();
+        for (RecoveryCandidate candidate : candidates) {
+            if (candidate.getSource() == RecoverySource.ORPHANED_CHAIN && journal.contains(candidate.getClusters()[0])) {
+                System.err.println("The journal was reported as an orphaned chain : " + candidate);
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static RecoveryCandidate find(List<RecoveryCandidate> candidates, String name) {
+        for (RecoveryCandidate candidate : candidates) {
+            if (candidate.getFileName().equals(name)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String nameOf(int index) {
+        return "file" + index + ".bin";
+    }
+
+    private static byte[] contentOf(int index) {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(index).nextBytes(content);
+        return content;
+    }
+}